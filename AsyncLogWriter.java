@@ -0,0 +1,350 @@
+package com.library.app.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Background writer behind {@link Logger}.
+ * <p>
+ * Calling threads only enqueue a {@link LogRecord} into a {@link LogRingBuffer};
+ * a single daemon thread drains it in batches, formats the lines and writes
+ * each batch to the console and to a rolling log file that stays open between
+ * batches (see {@link RollingFileChannel}).
+ * <p>
+ * Configured with system properties:
+ * <ul>
+ *   <li>{@code library.log.bufferSize} - ring buffer capacity (default 8192)</li>
+ *   <li>{@code library.log.overflow} - BLOCK, DROP or SAMPLE (default BLOCK)</li>
+ *   <li>{@code library.log.sampleRate} - with SAMPLE, keep one in N records under pressure (default 10)</li>
+ *   <li>{@code library.log.maxSizeMb} - roll the log file at this size, 0 to disable (default 10)</li>
+ *   <li>{@code library.log.maxFiles} - number of rolled files to keep (default 14)</li>
+ *   <li>{@code library.log.rollDaily} - roll the log file at midnight (default true)</li>
+ *   <li>{@code library.log.binary} - also write the binary event log (default false)</li>
+ *   <li>{@code library.log.binary.dictionarySize} - interned strings per binary file section (default 4096)</li>
+ * </ul>
+ */
+final class AsyncLogWriter implements Runnable {
+
+    private static final int MAX_BATCH = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final long FLUSH_TIMEOUT_MILLIS = 5000;
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private final LogRingBuffer buffer;
+    private final LogRingBuffer.OverflowPolicy policy;
+    private final int sampleRate;
+    private final int sampleThreshold;
+    private final RollingFileChannel logFile;
+    private final BinaryLogSink binarySink;
+    private final Thread thread;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private volatile boolean running = true;
+    private volatile boolean parked;
+    private volatile boolean fileEnabled = true;
+    private volatile boolean consoleEnabled = true;
+
+    // Number of records fully written; only advanced by the writer thread
+    private volatile long written;
+
+    // Writer thread state
+    private final StringBuilder fileText = new StringBuilder(16 * 1024);
+    private final StringBuilder outText = new StringBuilder(4 * 1024);
+    private final StringBuilder errText = new StringBuilder(1024);
+    private final SimpleDateFormat secondFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.");
+    private long cachedSecond = Long.MIN_VALUE;
+    private String cachedSecondText;
+
+    AsyncLogWriter(String logFile) {
+        this.buffer = new LogRingBuffer(Integer.getInteger("library.log.bufferSize", 8192));
+        this.policy = parsePolicy(System.getProperty("library.log.overflow"));
+        this.sampleRate = Math.max(1, Integer.getInteger("library.log.sampleRate", 10));
+        this.sampleThreshold = buffer.capacity() - buffer.capacity() / 4;
+        this.logFile = createRollingFile(logFile);
+        this.binarySink = Boolean.getBoolean("library.log.binary")
+                ? new BinaryLogSink(createRollingFile(binaryFileName(logFile)),
+                                    Integer.getInteger("library.log.binary.dictionarySize", 4096))
+                : null;
+
+        this.thread = new Thread(this, "log-writer");
+        this.thread.setDaemon(true);
+        this.thread.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "log-writer-shutdown"));
+    }
+
+    private static RollingFileChannel createRollingFile(String fileName) {
+        return new RollingFileChannel(Paths.get(fileName),
+                                      Long.getLong("library.log.maxSizeMb", 10) * 1024 * 1024,
+                                      Integer.getInteger("library.log.maxFiles", 14),
+                                      Boolean.parseBoolean(System.getProperty("library.log.rollDaily", "true")));
+    }
+
+    private static String binaryFileName(String logFile) {
+        int dot = logFile.lastIndexOf('.');
+        return (dot > 0 ? logFile.substring(0, dot) : logFile) + ".bin";
+    }
+
+    void setFileEnabled(boolean fileEnabled) {
+        this.fileEnabled = fileEnabled;
+    }
+
+    void setConsoleEnabled(boolean consoleEnabled) {
+        this.consoleEnabled = consoleEnabled;
+    }
+
+    /**
+     * Hands a record to the writer according to the overflow policy.
+     * Called from any thread.
+     *
+     * @param record The record
+     */
+    void publish(LogRecord record) {
+        if (!running) {
+            // After shutdown there is no writer left; keep the line on the console
+            System.err.println(format(record, new StringBuilder()));
+            return;
+        }
+
+        if (policy == LogRingBuffer.OverflowPolicy.SAMPLE && !record.isError()
+                && buffer.size() >= sampleThreshold
+                && sampleCounter.incrementAndGet() % sampleRate != 0) {
+            dropped.incrementAndGet();
+            return;
+        }
+
+        if (!buffer.offer(record)) {
+            if (policy == LogRingBuffer.OverflowPolicy.DROP
+                    || (policy == LogRingBuffer.OverflowPolicy.SAMPLE && !record.isError())) {
+                dropped.incrementAndGet();
+                return;
+            }
+            while (!buffer.offer(record)) {
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+                if (!running) {
+                    System.err.println(format(record, new StringBuilder()));
+                    return;
+                }
+            }
+        }
+
+        if (parked) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Waits until every record published before this call has been written.
+     */
+    void flush() {
+        if (Thread.currentThread() == thread) {
+            return;
+        }
+        long target = buffer.published();
+        long deadline = System.currentTimeMillis() + FLUSH_TIMEOUT_MILLIS;
+        while (written < target && thread.isAlive() && System.currentTimeMillis() < deadline) {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Returns the number of records dropped by the overflow policy so far.
+     */
+    long droppedCount() {
+        return dropped.get();
+    }
+
+    private void shutdown() {
+        flush();
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            // The writer itself waits up to the flush timeout for pending compressions
+            thread.join(2 * FLUSH_TIMEOUT_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        long reportedDrops = 0;
+
+        while (true) {
+            int count = drainBatch();
+
+            long drops = dropped.get();
+            if (drops != reportedDrops) {
+                appendDropNotice(drops - reportedDrops);
+                reportedDrops = drops;
+            }
+
+            if (fileText.length() > 0 || outText.length() > 0 || errText.length() > 0) {
+                writeBatch();
+            }
+            written = buffer.consumed();
+
+            if (count == 0) {
+                if (!running) {
+                    break;
+                }
+                parked = true;
+                // Re-check after announcing the park so a concurrent publish is not missed
+                if (buffer.size() == 0 && running) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                }
+                parked = false;
+            }
+        }
+
+        try {
+            logFile.shutdown(FLUSH_TIMEOUT_MILLIS);
+            if (binarySink != null) {
+                binarySink.shutdown(FLUSH_TIMEOUT_MILLIS);
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing log file: " + e.getMessage());
+        }
+    }
+
+    private int drainBatch() {
+        int count = 0;
+        LogRecord record;
+        while (count < MAX_BATCH && (record = buffer.poll()) != null) {
+            count++;
+            if (fileEnabled) {
+                format(record, fileText).append(LINE_SEPARATOR);
+                if (binarySink != null) {
+                    binarySink.append(record);
+                }
+            }
+            if (consoleEnabled) {
+                StringBuilder console = record.isError() ? errText : outText;
+                format(record, console).append(LINE_SEPARATOR);
+            }
+        }
+        return count;
+    }
+
+    private void appendDropNotice(long drops) {
+        LogRecord notice = new LogRecord(System.currentTimeMillis(), Logger.Level.WARN, AsyncLogWriter.class.getName(),
+                                         drops + " log records dropped by overflow policy " + policy, (Throwable) null);
+        if (fileEnabled) {
+            format(notice, fileText).append(LINE_SEPARATOR);
+        }
+        if (consoleEnabled) {
+            format(notice, outText).append(LINE_SEPARATOR);
+        }
+    }
+
+    private void writeBatch() {
+        if (outText.length() > 0) {
+            System.out.print(outText);
+            System.out.flush();
+            outText.setLength(0);
+        }
+        if (errText.length() > 0) {
+            System.err.print(errText);
+            System.err.flush();
+            errText.setLength(0);
+        }
+        if (fileText.length() > 0) {
+            writeToFile(fileText);
+            fileText.setLength(0);
+        }
+        if (binarySink != null) {
+            try {
+                binarySink.flush();
+            } catch (IOException e) {
+                System.err.println("Error writing binary log file: " + e.getMessage());
+            }
+        }
+    }
+
+    private void writeToFile(CharSequence text) {
+        try {
+            logFile.write(StandardCharsets.UTF_8.encode(CharBuffer.wrap(text)));
+        } catch (IOException e) {
+            System.err.println("Error writing to log file: " + e.getMessage());
+            closeChannel();
+        }
+    }
+
+    private void closeChannel() {
+        try {
+            logFile.close();
+        } catch (IOException e) {
+            System.err.println("Error closing log file: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Formats a record as "[timestamp] [LEVEL] [class] message" followed by
+     * the stack trace, if any.
+     */
+    private StringBuilder format(LogRecord record, StringBuilder sb) {
+        sb.append('[');
+        appendTimestamp(record.timestamp, sb);
+        sb.append("] [").append(record.level)
+          .append("] [").append(record.className)
+          .append("] ").append(record.message());
+
+        Throwable thrown = record.thrown();
+        if (thrown != null) {
+            StringWriter trace = new StringWriter();
+            thrown.printStackTrace(new PrintWriter(trace));
+            sb.append(LINE_SEPARATOR).append(trace.toString().stripTrailing());
+        }
+        return sb;
+    }
+
+    private void appendTimestamp(long timestamp, StringBuilder sb) {
+        long second = Math.floorDiv(timestamp, 1000L);
+        String secondText;
+        if (Thread.currentThread() == thread) {
+            // Only the writer thread uses the cache and the shared formatter
+            if (second != cachedSecond) {
+                cachedSecondText = secondFormat.format(new Date(second * 1000L));
+                cachedSecond = second;
+            }
+            secondText = cachedSecondText;
+        } else {
+            secondText = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.").format(new Date(second * 1000L));
+        }
+
+        int millis = (int) Math.floorMod(timestamp, 1000L);
+        sb.append(secondText);
+        if (millis < 100) {
+            sb.append('0');
+        }
+        if (millis < 10) {
+            sb.append('0');
+        }
+        sb.append(millis);
+    }
+
+    private static LogRingBuffer.OverflowPolicy parsePolicy(String value) {
+        if (value != null) {
+            try {
+                return LogRingBuffer.OverflowPolicy.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown log overflow policy: " + value + ", using BLOCK");
+            }
+        }
+        return LogRingBuffer.OverflowPolicy.BLOCK;
+    }
+}
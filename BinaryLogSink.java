@@ -0,0 +1,263 @@
+package com.library.app.util;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Optional log sink that writes compact binary records next to the text log.
+ * <p>
+ * Every record is a varint length followed by a payload whose first byte is
+ * its type:
+ * <ul>
+ *   <li>{@link #RESET} - magic and version; starts a file section and clears the dictionary</li>
+ *   <li>{@link #DEFINE} - varint id and string; adds a dictionary entry</li>
+ *   <li>{@link #EVENT} - epoch nanos (8 bytes), level ordinal, class id, template id,
+ *       argument count, tagged arguments and an optional stack trace</li>
+ * </ul>
+ * Class names and message templates are interned into a per-section dictionary
+ * capped at {@code library.log.binary.dictionarySize} entries; id 0 means the
+ * string follows inline. Messages logged without placeholders are always stored
+ * inline so one-off strings do not fill the dictionary. Timestamps have
+ * millisecond precision. {@link LogReader} converts the files back to text or JSON.
+ * <p>
+ * Used only from the log writer thread.
+ */
+final class BinaryLogSink {
+
+    static final byte[] MAGIC = {'L', 'I', 'B', 'L', 'O', 'G'};
+    static final int VERSION = 1;
+
+    static final int RESET = 0;
+    static final int DEFINE = 1;
+    static final int EVENT = 2;
+
+    static final int TAG_NULL = 0;
+    static final int TAG_LONG = 1;
+    static final int TAG_DOUBLE = 2;
+    static final int TAG_STRING = 3;
+    static final int TAG_BOOLEAN = 4;
+    static final int TAG_THROWABLE = 5;
+
+    private final RollingFileChannel file;
+    private final int maxDictionarySize;
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private final List<LogRecord> batch = new ArrayList<>();
+    private final RecordBuffer out = new RecordBuffer();
+    private final RecordBuffer payload = new RecordBuffer();
+    // Set after a failed write, whose definitions never reached the file
+    private boolean sectionLost;
+
+    BinaryLogSink(RollingFileChannel file, int maxDictionarySize) {
+        this.file = file;
+        this.maxDictionarySize = maxDictionarySize;
+    }
+
+    void append(LogRecord record) {
+        batch.add(record);
+    }
+
+    /**
+     * Encodes and writes the records appended since the last flush.
+     */
+    void flush() throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        boolean written = false;
+        try {
+            // After a failed write the dictionary holds ids the file never defined, so start over
+            ByteBuffer bytes = encodeBatch(sectionLost);
+            // A new or reopened file needs its own header and dictionary
+            while (file.prepare(bytes.remaining())) {
+                bytes = encodeBatch(true);
+            }
+            file.append(bytes);
+            written = true;
+        } finally {
+            batch.clear();
+            sectionLost = !written;
+        }
+    }
+
+    void shutdown(long timeoutMillis) throws IOException {
+        file.shutdown(timeoutMillis);
+    }
+
+    private ByteBuffer encodeBatch(boolean newSection) {
+        out.reset();
+        if (newSection) {
+            dictionary.clear();
+            payload.reset();
+            payload.writeByte(RESET);
+            payload.writeBytes(MAGIC, MAGIC.length);
+            payload.writeVarInt(VERSION);
+            writeRecord();
+        }
+        for (LogRecord record : batch) {
+            encodeEvent(record);
+        }
+        return ByteBuffer.wrap(out.bytes, 0, out.size);
+    }
+
+    private void encodeEvent(LogRecord record) {
+        // Definitions must precede the event that uses them
+        int classId = intern(record.className);
+        boolean hasArgs = record.args != null && record.args.length > 0;
+        int templateId = hasArgs ? intern(record.template) : 0;
+
+        payload.reset();
+        payload.writeByte(EVENT);
+        payload.writeLong(record.timestamp * 1_000_000L);
+        payload.writeVarInt(record.level.ordinal());
+        writeReference(classId, record.className);
+        writeReference(templateId, hasArgs ? record.template : record.message());
+
+        if (hasArgs) {
+            payload.writeVarInt(record.args.length);
+            for (Object arg : record.args) {
+                writeArgument(arg);
+            }
+            payload.writeByte(0);
+        } else {
+            payload.writeVarInt(0);
+            Throwable thrown = record.thrown();
+            if (thrown != null) {
+                payload.writeByte(1);
+                payload.writeString(stackTrace(thrown));
+            } else {
+                payload.writeByte(0);
+            }
+        }
+        writeRecord();
+    }
+
+    private int intern(String value) {
+        if (value == null) {
+            return 0;
+        }
+        Integer id = dictionary.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (dictionary.size() >= maxDictionarySize) {
+            return 0;
+        }
+
+        int newId = dictionary.size() + 1;
+        dictionary.put(value, newId);
+
+        payload.reset();
+        payload.writeByte(DEFINE);
+        payload.writeVarInt(newId);
+        payload.writeString(value);
+        writeRecord();
+        return newId;
+    }
+
+    private void writeReference(int id, String value) {
+        payload.writeVarInt(id);
+        if (id == 0) {
+            payload.writeString(value);
+        }
+    }
+
+    private void writeArgument(Object arg) {
+        if (arg == null) {
+            payload.writeByte(TAG_NULL);
+        } else if (arg instanceof Integer || arg instanceof Long || arg instanceof Short || arg instanceof Byte) {
+            payload.writeByte(TAG_LONG);
+            payload.writeVarLong(((Number) arg).longValue());
+        } else if (arg instanceof Double || arg instanceof Float) {
+            payload.writeByte(TAG_DOUBLE);
+            payload.writeLong(Double.doubleToLongBits(((Number) arg).doubleValue()));
+        } else if (arg instanceof Boolean) {
+            payload.writeByte(TAG_BOOLEAN);
+            payload.writeByte((Boolean) arg ? 1 : 0);
+        } else if (arg instanceof Throwable) {
+            payload.writeByte(TAG_THROWABLE);
+            payload.writeString(stackTrace((Throwable) arg));
+        } else {
+            payload.writeByte(TAG_STRING);
+            payload.writeString(String.valueOf(arg));
+        }
+    }
+
+    private void writeRecord() {
+        out.writeVarInt(payload.size);
+        out.writeBytes(payload.bytes, payload.size);
+    }
+
+    private static String stackTrace(Throwable thrown) {
+        StringWriter trace = new StringWriter();
+        thrown.printStackTrace(new PrintWriter(trace));
+        return trace.toString().stripTrailing();
+    }
+
+    /**
+     * Growable byte buffer with the varint encodings used by the format.
+     */
+    private static final class RecordBuffer {
+        private byte[] bytes = new byte[8 * 1024];
+        private int size;
+
+        void reset() {
+            size = 0;
+        }
+
+        void writeByte(int value) {
+            ensure(1);
+            bytes[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] source, int length) {
+            ensure(length);
+            System.arraycopy(source, 0, bytes, size, length);
+            size += length;
+        }
+
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                bytes[size++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeVarInt(int value) {
+            writeUnsignedVarLong(value & 0xFFFFFFFFL);
+        }
+
+        /** Zigzag-encoded so small negative numbers stay short. */
+        void writeVarLong(long value) {
+            writeUnsignedVarLong((value << 1) ^ (value >> 63));
+        }
+
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(utf8.length);
+            writeBytes(utf8, utf8.length);
+        }
+
+        private void writeUnsignedVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+}
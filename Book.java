@@ -12,7 +12,9 @@ public class Book {
     private int publicationYear;
     private String genre;
     private String description;
-    private String status; // AVAILABLE, BORROWED, RESERVED, DAMAGED, LOST
+    private BookStatus status;
+    // The value as stored when it is not a known status, so saving the book keeps it
+    private String storedStatus;
     private String location; // Shelf or section information
     private int totalCopies;
     private int availableCopies;
@@ -23,7 +25,7 @@ public class Book {
     
 
     public Book() {
-        this.status = "AVAILABLE";
+        this.status = BookStatus.AVAILABLE;
         this.totalCopies = 1;
         this.availableCopies = 1;
     }
@@ -33,7 +35,7 @@ public class Book {
         this.isbn = isbn;
         this.title = title;
         this.author = author;
-        this.status = "AVAILABLE";
+        this.status = BookStatus.AVAILABLE;
         this.totalCopies = 1;
         this.availableCopies = 1;
     }
@@ -51,7 +53,7 @@ public class Book {
         this.publicationYear = publicationYear;
         this.genre = genre;
         this.description = description;
-        this.status = status;
+        setStatus(status);
         this.location = location;
         this.totalCopies = totalCopies;
         this.availableCopies = availableCopies;
@@ -128,10 +130,22 @@ public class Book {
     }
 
     public String getStatus() {
-        return status;
+        if (status == BookStatus.UNKNOWN) {
+            return storedStatus;
+        }
+        return status != null ? status.name() : null;
     }
 
     public void setStatus(String status) {
+        this.status = BookStatus.fromString(status);
+        this.storedStatus = status;
+    }
+
+    public BookStatus getBookStatus() {
+        return status;
+    }
+
+    public void setBookStatus(BookStatus status) {
         this.status = status;
     }
 
@@ -242,17 +256,17 @@ public class Book {
 
     public void updateStatus() {
         if (availableCopies <= 0) {
-            status = "BORROWED";
+            status = BookStatus.BORROWED;
         } else if (availableCopies < totalCopies) {
-            status = "PARTIALLY_AVAILABLE";
+            status = BookStatus.PARTIALLY_AVAILABLE;
         } else {
-            status = "AVAILABLE";
+            status = BookStatus.AVAILABLE;
         }
     }
     
 
     public boolean isAvailable() {
-        return "AVAILABLE".equals(status) || "PARTIALLY_AVAILABLE".equals(status);
+        return status == BookStatus.AVAILABLE || status == BookStatus.PARTIALLY_AVAILABLE;
     }
     
 
@@ -0,0 +1,28 @@
+package com.library.app.event;
+
+/**
+ * A book was added, edited or deleted, or its copies were lent or returned.
+ */
+public final class BookChanged implements DomainEvent {
+
+    private final int bookId;
+    private final ChangeKind kind;
+
+    public BookChanged(int bookId, ChangeKind kind) {
+        this.bookId = bookId;
+        this.kind = kind;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public ChangeKind getKind() {
+        return kind;
+    }
+
+    @Override
+    public String toString() {
+        return "BookChanged{bookId=" + bookId + ", kind=" + kind + "}";
+    }
+}
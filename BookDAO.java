@@ -1,7 +1,10 @@
 package com.library.app.db;
 
 import com.library.app.model.Book;
+import com.library.app.model.BookStatus;
 import com.library.app.util.Logger;
+import com.library.app.util.StringDictionary;
+import com.library.app.util.TextNormalizer;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -10,12 +13,25 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 
 
 public class BookDAO {
     
     private static final Logger logger = new Logger(BookDAO.class.getName());
+    // Unknown stored statuses already warned about, so each is reported once
+    private static final Set<String> reportedUnknownStatuses = ConcurrentHashMap.newKeySet();
+    private static final int BACKFILL_BATCH_SIZE = 500;
+    
+    // Genre, publisher, language and location have a few thousand distinct values;
+    // authors have more, so they get their own, larger dictionary
+    private static final StringDictionary ATTRIBUTE_DICTIONARY = new StringDictionary("book attributes",
+            Integer.getInteger("library.dictionary.bookAttributes", 16384));
+    private static final StringDictionary AUTHOR_DICTIONARY = new StringDictionary("book authors",
+            Integer.getInteger("library.dictionary.authors", 65536));
     
 
     public Book getBookById(int id) throws SQLException {
@@ -35,10 +51,10 @@ public class BookDAO {
                 book = mapResultSetToBook(rs);
             }
             
-            logger.info("Retrieved book by ID: " + id);
+            logger.info("Retrieved book by ID: {}", id);
             return book;
         } catch (SQLException e) {
-            logger.error("Error retrieving book by ID: " + id, e);
+            logger.error("Error retrieving book by ID: {}", id, e);
             throw e;
         } finally {
             closeResources(rs, stmt);
@@ -47,28 +63,57 @@ public class BookDAO {
     
 
     public List<Book> getAllBooks() throws SQLException {
+        List<Book> books = new ArrayList<>();
+        forEachBook(null, books::add);
+        return books;
+    }
+    
+
+    /**
+     * Reads all books ordered by title, passing each one to the sink as soon
+     * as it is mapped.
+     * 
+     * @param handle Lets another thread cancel the query; may be null
+     * @param sink Receives the books; an exception it throws stops the read
+     * @return The number of books read
+     */
+    public int forEachBook(QueryHandle handle, Consumer<? super Book> sink) throws SQLException {
         String sql = "SELECT * FROM books ORDER BY title";
         Connection conn = null;
         Statement stmt = null;
         ResultSet rs = null;
-        List<Book> books = new ArrayList<>();
+        int count = 0;
+        
+        long savedBefore = ATTRIBUTE_DICTIONARY.getBytesSaved() + AUTHOR_DICTIONARY.getBytesSaved();
         
         try {
             conn = DatabaseConnection.getInstance().getConnection();
             stmt = conn.createStatement();
+            if (handle != null) {
+                handle.attach(stmt);
+            }
             rs = stmt.executeQuery(sql);
             
             while (rs.next()) {
-                Book book = mapResultSetToBook(rs);
-                books.add(book);
+                sink.accept(mapResultSetToBook(rs));
+                count++;
             }
             
-            logger.info("Retrieved all books: " + books.size() + " records");
-            return books;
+            long savedKb = (ATTRIBUTE_DICTIONARY.getBytesSaved() + AUTHOR_DICTIONARY.getBytesSaved() - savedBefore) / 1024;
+            logger.info("Retrieved all books: {} records, about {} KB of duplicate strings shared", count, savedKb);
+            logger.debug("String dictionaries: {}, {}", ATTRIBUTE_DICTIONARY, AUTHOR_DICTIONARY);
+            return count;
         } catch (SQLException e) {
-            logger.error("Error retrieving all books", e);
+            if (handle != null && handle.isCancelled()) {
+                logger.debug("Reading all books cancelled after {} records", count);
+            } else {
+                logger.error("Error retrieving all books", e);
+            }
             throw e;
         } finally {
+            if (handle != null) {
+                handle.detach();
+            }
             closeResources(rs, stmt);
         }
     }
@@ -77,8 +122,9 @@ public class BookDAO {
     public int addBook(Book book) throws SQLException {
         String sql = "INSERT INTO books (isbn, title, author, publisher, publication_year, " +
                      "genre, description, status, location, total_copies, available_copies, " +
-                     "cover_image, language, page_count, price) " +
-                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                     "cover_image, language, page_count, price, " +
+                     "title_key, author_key, publisher_key, genre_key, isbn_key) " +
+                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
                      
         Connection conn = null;
         PreparedStatement stmt = null;
@@ -103,6 +149,7 @@ public class BookDAO {
             stmt.setString(13, book.getLanguage());
             stmt.setInt(14, book.getPageCount());
             stmt.setDouble(15, book.getPrice());
+            setSearchKeys(stmt, 16, book);
             
             int affectedRows = stmt.executeUpdate();
             
@@ -114,25 +161,39 @@ public class BookDAO {
             if (rs.next()) {
                 int id = rs.getInt(1);
                 book.setId(id);
-                logger.info("Added new book: " + book.getTitle() + " with ID: " + id);
+                logger.info("Added new book: {} with ID: {}", book.getTitle(), id);
                 return id;
             } else {
                 throw new SQLException("Creating book failed, no ID obtained.");
             }
         } catch (SQLException e) {
-            logger.error("Error adding book: " + book.getTitle(), e);
+            logger.error("Error adding book: {}", book.getTitle(), e);
             throw e;
         } finally {
             closeResources(rs, stmt);
         }
     }
 
-    public void updateBook(Book book) throws SQLException {
-        String sql = "UPDATE books SET isbn = ?, title = ?, author = ?, publisher = ?, " +
-                     "publication_year = ?, genre = ?, description = ?, status = ?, " +
-                     "location = ?, total_copies = ?, available_copies = ?, cover_image = ?, " +
-                     "language = ?, page_count = ?, price = ? " +
-                     "WHERE id = ?";
+    /**
+     * Saves an edited book. The available copies are changed by the amount
+     * they were edited by rather than overwritten, so loans, returns and
+     * checkouts made since the book was read are kept, and never drop below
+     * the copies held for carts. The status follows from the new counts.
+     * 
+     * @param previousAvailableCopies The available copies when the book was read for editing
+     * @return false if the book is gone or the edit would leave fewer available copies than held ones
+     */
+    public boolean updateBook(Book book, int previousAvailableCopies) throws SQLException {
+        String available = "LEAST(p.total, b.available_copies + p.delta)";
+        String sql = "UPDATE books b SET isbn = ?, title = ?, author = ?, publisher = ?, " +
+                     "publication_year = ?, genre = ?, description = ?, " +
+                     "location = ?, cover_image = ?, " +
+                     "language = ?, page_count = ?, price = ?, " +
+                     "title_key = ?, author_key = ?, publisher_key = ?, genre_key = ?, isbn_key = ?, " +
+                     "total_copies = p.total, available_copies = " + available + ", " +
+                     "status = " + statusFor(available, "p.total") + " " +
+                     "FROM (SELECT ?::int AS total, ?::int AS delta) p " +
+                     "WHERE b.id = ? AND " + available + " >= b.held_copies";
                      
         Connection conn = null;
         PreparedStatement stmt = null;
@@ -148,20 +209,48 @@ public class BookDAO {
             stmt.setInt(5, book.getPublicationYear());
             stmt.setString(6, book.getGenre());
             stmt.setString(7, book.getDescription());
-            stmt.setString(8, book.getStatus());
-            stmt.setString(9, book.getLocation());
-            stmt.setInt(10, book.getTotalCopies());
-            stmt.setInt(11, book.getAvailableCopies());
-            stmt.setString(12, book.getCoverImage());
-            stmt.setString(13, book.getLanguage());
-            stmt.setInt(14, book.getPageCount());
-            stmt.setDouble(15, book.getPrice());
-            stmt.setInt(16, book.getId());
+            stmt.setString(8, book.getLocation());
+            stmt.setString(9, book.getCoverImage());
+            stmt.setString(10, book.getLanguage());
+            stmt.setInt(11, book.getPageCount());
+            stmt.setDouble(12, book.getPrice());
+            setSearchKeys(stmt, 13, book);
+            stmt.setInt(18, book.getTotalCopies());
+            stmt.setInt(19, book.getAvailableCopies() - previousAvailableCopies);
+            stmt.setInt(20, book.getId());
+            
+            int affectedRows = stmt.executeUpdate();
+            logger.info("Updated book ID: {}, rows affected: {}", book.getId(), affectedRows);
+            return affectedRows > 0;
+        } catch (SQLException e) {
+            logger.error("Error updating book ID: {}", book.getId(), e);
+            throw e;
+        } finally {
+            closeResources(null, stmt);
+        }
+    }
+    
+
+    /**
+     * Puts a returned copy back on the shelf in a single update, so it cannot
+     * overwrite a checkout or hold made at the same time.
+     */
+    public void returnCopy(int bookId) throws SQLException {
+        String available = "LEAST(total_copies, available_copies + 1)";
+        String sql = "UPDATE books SET available_copies = " + available + ", " +
+                     "status = " + statusFor(available, "total_copies") + " WHERE id = ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, bookId);
             
             int affectedRows = stmt.executeUpdate();
-            logger.info("Updated book ID: " + book.getId() + ", rows affected: " + affectedRows);
+            logger.info("Returned a copy of book ID: {}, rows affected: {}", bookId, affectedRows);
         } catch (SQLException e) {
-            logger.error("Error updating book ID: " + book.getId(), e);
+            logger.error("Error returning a copy of book ID: {}", bookId, e);
             throw e;
         } finally {
             closeResources(null, stmt);
@@ -180,9 +269,9 @@ public class BookDAO {
             stmt.setInt(1, id);
             
             int affectedRows = stmt.executeUpdate();
-            logger.info("Deleted book ID: " + id + ", rows affected: " + affectedRows);
+            logger.info("Deleted book ID: {}, rows affected: {}", id, affectedRows);
         } catch (SQLException e) {
-            logger.error("Error deleting book ID: " + id, e);
+            logger.error("Error deleting book ID: {}", id, e);
             throw e;
         } finally {
             closeResources(null, stmt);
@@ -191,32 +280,110 @@ public class BookDAO {
     
 
     public List<Book> searchBooksByTitle(String title) throws SQLException {
-        String sql = "SELECT * FROM books WHERE LOWER(title) LIKE LOWER(?) ORDER BY title";
-        return searchBooks(sql, "%" + title + "%");
+        return searchBooksByTitle(title, null);
+    }
+    
+
+    public List<Book> searchBooksByTitle(String title, QueryHandle handle) throws SQLException {
+        String sql = "SELECT * FROM books WHERE title_key LIKE ? ORDER BY title";
+        return searchBooks(sql, TextNormalizer.containsPattern(title), handle);
     }
     
 
     public List<Book> searchBooksByAuthor(String author) throws SQLException {
-        String sql = "SELECT * FROM books WHERE LOWER(author) LIKE LOWER(?) ORDER BY author, title";
-        return searchBooks(sql, "%" + author + "%");
+        return searchBooksByAuthor(author, null);
+    }
+    
+
+    public List<Book> searchBooksByAuthor(String author, QueryHandle handle) throws SQLException {
+        String sql = "SELECT * FROM books WHERE author_key LIKE ? ORDER BY author, title";
+        return searchBooks(sql, TextNormalizer.containsPattern(author), handle);
     }
     
 
     public List<Book> searchBooksByIsbn(String isbn) throws SQLException {
-        String sql = "SELECT * FROM books WHERE LOWER(isbn) LIKE LOWER(?) ORDER BY title";
-        return searchBooks(sql, "%" + isbn + "%");
+        return searchBooksByIsbn(isbn, null);
+    }
+    
+
+    public List<Book> searchBooksByIsbn(String isbn, QueryHandle handle) throws SQLException {
+        String sql = "SELECT * FROM books WHERE isbn_key LIKE ? ORDER BY title";
+        return searchBooks(sql, TextNormalizer.likeContains(TextNormalizer.normalizeIdentifier(isbn)), handle);
     }
     
 
     public List<Book> searchBooksByGenre(String genre) throws SQLException {
-        String sql = "SELECT * FROM books WHERE LOWER(genre) LIKE LOWER(?) ORDER BY title";
-        return searchBooks(sql, "%" + genre + "%");
+        return searchBooksByGenre(genre, null);
+    }
+    
+
+    public List<Book> searchBooksByGenre(String genre, QueryHandle handle) throws SQLException {
+        String sql = "SELECT * FROM books WHERE genre_key LIKE ? ORDER BY title";
+        return searchBooks(sql, TextNormalizer.containsPattern(genre), handle);
     }
     
 
     public List<Book> searchBooksByPublisher(String publisher) throws SQLException {
-        String sql = "SELECT * FROM books WHERE LOWER(publisher) LIKE LOWER(?) ORDER BY title";
-        return searchBooks(sql, "%" + publisher + "%");
+        return searchBooksByPublisher(publisher, null);
+    }
+    
+
+    public List<Book> searchBooksByPublisher(String publisher, QueryHandle handle) throws SQLException {
+        String sql = "SELECT * FROM books WHERE publisher_key LIKE ? ORDER BY title";
+        return searchBooks(sql, TextNormalizer.containsPattern(publisher), handle);
+    }
+    
+
+    public int backfillSearchKeys() throws SQLException {
+        // A key stays null when its source is null, so only rows with something to fill are read
+        String selectSql = "SELECT id, isbn, title, author, publisher, genre FROM books " +
+                           "WHERE (title_key IS NULL AND title IS NOT NULL) " +
+                           "OR (isbn_key IS NULL AND isbn IS NOT NULL)";
+        String updateSql = "UPDATE books SET title_key = ?, author_key = ?, publisher_key = ?, " +
+                           "genre_key = ?, isbn_key = ? WHERE id = ?";
+        Connection conn = null;
+        Statement selectStmt = null;
+        PreparedStatement updateStmt = null;
+        ResultSet rs = null;
+        int updated = 0;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            selectStmt = conn.createStatement();
+            updateStmt = conn.prepareStatement(updateSql);
+            rs = selectStmt.executeQuery(selectSql);
+            
+            int pending = 0;
+            while (rs.next()) {
+                Book book = new Book();
+                book.setIsbn(rs.getString("isbn"));
+                book.setTitle(rs.getString("title"));
+                book.setAuthor(rs.getString("author"));
+                book.setPublisher(rs.getString("publisher"));
+                book.setGenre(rs.getString("genre"));
+                
+                setSearchKeys(updateStmt, 1, book);
+                updateStmt.setInt(6, rs.getInt("id"));
+                updateStmt.addBatch();
+                
+                if (++pending == BACKFILL_BATCH_SIZE) {
+                    updated += sum(updateStmt.executeBatch());
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                updated += sum(updateStmt.executeBatch());
+            }
+            
+            logger.info("Backfilled book search keys: {} rows", updated);
+            return updated;
+        } catch (SQLException e) {
+            logger.error("Error backfilling book search keys", e);
+            throw e;
+        } finally {
+            closeResources(rs, selectStmt);
+            closeResources(null, updateStmt);
+        }
     }
     
 
@@ -244,7 +411,7 @@ public class BookDAO {
                 books.add(book);
             }
             
-            logger.info("Retrieved popular books: " + books.size() + " records");
+            logger.info("Retrieved popular books: {} records", books.size());
             return books;
         } catch (SQLException e) {
             logger.error("Error retrieving popular books", e);
@@ -274,7 +441,7 @@ public class BookDAO {
                 books.add(book);
             }
             
-            logger.info("Retrieved recent books: " + books.size() + " records");
+            logger.info("Retrieved recent books: {} records", books.size());
             return books;
         } catch (SQLException e) {
             logger.error("Error retrieving recent books", e);
@@ -285,7 +452,7 @@ public class BookDAO {
     }
     
 
-    private List<Book> searchBooks(String sql, String searchParam) throws SQLException {
+    private List<Book> searchBooks(String sql, String searchParam, QueryHandle handle) throws SQLException {
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
@@ -295,6 +462,9 @@ public class BookDAO {
             conn = DatabaseConnection.getInstance().getConnection();
             stmt = conn.prepareStatement(sql);
             stmt.setString(1, searchParam);
+            if (handle != null) {
+                handle.attach(stmt);
+            }
             rs = stmt.executeQuery();
             
             while (rs.next()) {
@@ -302,33 +472,165 @@ public class BookDAO {
                 books.add(book);
             }
             
-            logger.info("Search results: " + books.size() + " books found");
+            logger.info("Search results: {} books found", books.size());
             return books;
         } catch (SQLException e) {
-            logger.error("Error searching books with param: " + searchParam, e);
+            if (handle != null && handle.isCancelled()) {
+                logger.debug("Book search cancelled for param: {}", searchParam);
+            } else {
+                logger.error("Error searching books with param: {}", searchParam, e);
+            }
+            throw e;
+        } finally {
+            if (handle != null) {
+                handle.detach();
+            }
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    /**
+     * Reads the start of every page of the catalog ordered by title, for
+     * {@link #getBooksPage(PageKey, int, QueryHandle)}. One pass over the
+     * (title, id) index; only the first row of each page is returned.
+     * 
+     * @param pageSize Rows per page
+     * @param handle Lets another thread cancel the query; may be null
+     */
+    public PageIndex<PageKey> getTitlePageIndex(int pageSize, QueryHandle handle) throws SQLException {
+        String sql = "SELECT title, id, total FROM (" +
+                     "SELECT title, id, row_number() OVER (ORDER BY title, id) AS rn, COUNT(*) OVER () AS total " +
+                     "FROM books) AS numbered " +
+                     "WHERE rn % ? = 1 ORDER BY rn";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        List<PageKey> starts = new ArrayList<>();
+        int total = 0;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, pageSize);
+            if (handle != null) {
+                handle.attach(stmt);
+            }
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                starts.add(new PageKey(rs.getString("title"), rs.getInt("id")));
+                total = rs.getInt("total");
+            }
+            
+            logger.info("Indexed book pages: {} books in {} pages", total, starts.size());
+            return new PageIndex<>(pageSize, total, starts);
+        } catch (SQLException e) {
+            if (handle != null && handle.isCancelled()) {
+                logger.debug("Indexing book pages cancelled");
+            } else {
+                logger.error("Error indexing book pages", e);
+            }
             throw e;
         } finally {
+            if (handle != null) {
+                handle.detach();
+            }
             closeResources(rs, stmt);
         }
     }
     
 
-    private Book mapResultSetToBook(ResultSet rs) throws SQLException {
+    /**
+     * Reads one page of the catalog ordered by title, starting at the given key.
+     */
+    public List<Book> getBooksPage(PageKey start, int pageSize, QueryHandle handle) throws SQLException {
+        String sql = "SELECT * FROM books WHERE (title, id) >= (?, ?) ORDER BY title, id LIMIT ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        List<Book> books = new ArrayList<>(pageSize);
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setString(1, start.title);
+            stmt.setInt(2, start.id);
+            stmt.setInt(3, pageSize);
+            if (handle != null) {
+                handle.attach(stmt);
+            }
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                books.add(mapResultSetToBook(rs));
+            }
+            
+            logger.debug("Retrieved book page from {}: {} records", start, books.size());
+            return books;
+        } catch (SQLException e) {
+            if (handle != null && handle.isCancelled()) {
+                logger.debug("Reading book page cancelled");
+            } else {
+                logger.error("Error retrieving book page from: {}", start, e);
+            }
+            throw e;
+        } finally {
+            if (handle != null) {
+                handle.detach();
+            }
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    /**
+     * @return SQL for the circulation status of a book, as {@link Book#updateStatus()} works it out
+     */
+    private static String statusFor(String available, String total) {
+        return "CASE WHEN " + available + " <= 0 THEN 'BORROWED' " +
+               "WHEN " + available + " < " + total + " THEN 'PARTIALLY_AVAILABLE' " +
+               "ELSE 'AVAILABLE' END";
+    }
+    
+
+    private void setSearchKeys(PreparedStatement stmt, int firstIndex, Book book) throws SQLException {
+        stmt.setString(firstIndex, TextNormalizer.normalize(book.getTitle()));
+        stmt.setString(firstIndex + 1, TextNormalizer.normalize(book.getAuthor()));
+        stmt.setString(firstIndex + 2, TextNormalizer.normalize(book.getPublisher()));
+        stmt.setString(firstIndex + 3, TextNormalizer.normalize(book.getGenre()));
+        stmt.setString(firstIndex + 4, TextNormalizer.normalizeIdentifier(book.getIsbn()));
+    }
+    
+
+    private int sum(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count > 0 ? count : 0;
+        }
+        return total;
+    }
+    
+
+    Book mapResultSetToBook(ResultSet rs) throws SQLException {
         Book book = new Book();
         book.setId(rs.getInt("id"));
         book.setIsbn(rs.getString("isbn"));
         book.setTitle(rs.getString("title"));
-        book.setAuthor(rs.getString("author"));
-        book.setPublisher(rs.getString("publisher"));
+        book.setAuthor(AUTHOR_DICTIONARY.intern(rs.getString("author")));
+        book.setPublisher(ATTRIBUTE_DICTIONARY.intern(rs.getString("publisher")));
         book.setPublicationYear(rs.getInt("publication_year"));
-        book.setGenre(rs.getString("genre"));
+        book.setGenre(ATTRIBUTE_DICTIONARY.intern(rs.getString("genre")));
         book.setDescription(rs.getString("description"));
         book.setStatus(rs.getString("status"));
-        book.setLocation(rs.getString("location"));
+        if (book.getBookStatus() == BookStatus.UNKNOWN && reportedUnknownStatuses.add(book.getStatus())) {
+            logger.warn("Unknown status '{}' first read on book ID: {}", book.getStatus(), book.getId());
+        }
+        book.setLocation(ATTRIBUTE_DICTIONARY.intern(rs.getString("location")));
         book.setTotalCopies(rs.getInt("total_copies"));
         book.setAvailableCopies(rs.getInt("available_copies"));
         book.setCoverImage(rs.getString("cover_image"));
-        book.setLanguage(rs.getString("language"));
+        book.setLanguage(ATTRIBUTE_DICTIONARY.intern(rs.getString("language")));
         book.setPageCount(rs.getInt("page_count"));
         book.setPrice(rs.getDouble("price"));
         return book;
@@ -343,4 +645,25 @@ public class BookDAO {
             logger.error("Error closing database resources", e);
         }
     }
+    
+    /**
+     * Position of a book in the catalog ordered by title; ties are broken by id.
+     */
+    public static final class PageKey {
+        
+        private final String title;
+        private final int id;
+        
+
+        PageKey(String title, int id) {
+            this.title = title;
+            this.id = id;
+        }
+        
+
+        @Override
+        public String toString() {
+            return title + " #" + id;
+        }
+    }
 }
@@ -1,34 +1,61 @@
 package com.library.app.ui;
 
+import com.library.app.db.BookDAO;
+import com.library.app.db.PageIndex;
+import com.library.app.db.QueryHandle;
+import com.library.app.event.BookChanged;
+import com.library.app.event.ChangeKind;
+import com.library.app.event.EventBus;
 import com.library.app.factory.DialogFactory;
 import com.library.app.factory.UIComponentFactory;
 import com.library.app.model.Book;
+import com.library.app.model.Member;
+import com.library.app.model.Reservation;
+import com.library.app.model.ReservationStatus;
 import com.library.app.service.BookService;
+import com.library.app.service.MemberService;
+import com.library.app.service.ReservationService;
 import com.library.app.util.Logger;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Panel for managing library books.
+ * <p>
+ * The table follows {@link BookChanged} events: an edited book that is on
+ * screen is read again and its row replaced, while added and deleted books
+ * reload the table, since they move every row after them. While the tab is
+ * hidden, changes only mark the table stale and it reloads when shown.
  */
-public class BookPanel extends JPanel {
+public class BookPanel extends JPanel implements TabPanel {
 
     private static final Logger logger = new Logger(BookPanel.class.getName());
+    // A few screens of rows per page; at most MAX_CACHED_PAGES * PAGE_SIZE books are held
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 32;
     
     private final MainWindow mainWindow;
     private final BookService bookService;
+    private final MemberService memberService;
     private final UIComponentFactory uiFactory;
     private final DialogFactory dialogFactory;
     
     private JTable bookTable;
-    private DefaultTableModel tableModel;
+    private PagedTableModel<BookDAO.PageKey, Book> tableModel;
+    private IndexRowSorter<PagedTableModel<BookDAO.PageKey, Book>> rowSorter;
     private JTextField searchField;
     private JComboBox<String> searchTypeCombo;
+    private LiveSearch<List<Book>> liveSearch;
+    private JLabel totalBooksLabel;
+    private RowReloader<Book> bookReloader;
+    private boolean stale;
     
     /**
      * Constructs a new BookPanel.
@@ -38,11 +65,17 @@ public class BookPanel extends JPanel {
     public BookPanel(MainWindow mainWindow) {
         this.mainWindow = mainWindow;
         this.bookService = new BookService();
+        this.memberService = new MemberService();
         this.uiFactory = new UIComponentFactory();
         this.dialogFactory = new DialogFactory();
+        this.liveSearch = new LiveSearch<>("book-search", 300, this::createSearchQuery,
+                                           this::showSearchResults, this::showSearchError);
+        
+        this.bookReloader = new RowReloader<>("book-rows", bookService::getBookById, this::bookRead);
         
         initializeUI();
         refreshData();
+        EventBus.get().subscribe(BookChanged.class, this::bookChanged);
         logger.info("BookPanel initialized");
     }
     
@@ -114,9 +147,26 @@ public class BookPanel extends JPanel {
             BorderFactory.createLineBorder(new Color(200, 200, 200)),
             BorderFactory.createEmptyBorder(6, 10, 6, 10)
         ));
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                liveSearch.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                liveSearch.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                liveSearch.restart();
+            }
+        });
         
         // Search type combo with better styling
         searchTypeCombo = new JComboBox<>(new String[]{"address", "author", " ISBN", "genre", "Publisher"});
+        searchTypeCombo.addActionListener(e -> liveSearch.restart());
         searchTypeCombo.setFont(new Font("Arial", Font.PLAIN, 14));
         searchTypeCombo.setBackground(Color.WHITE);
         searchTypeCombo.setBorder(BorderFactory.createCompoundBorder(
@@ -152,11 +202,13 @@ public class BookPanel extends JPanel {
         JButton editButton = createActionButton("Edit", "", new Color(255, 152, 0), this::editBook);
 //        JButton deleteButton = createActionButton("Delete", "", new Color(244, 67, 54), this::deleteBook);
         JButton addToCartButton = createActionButton("Add to Cart", "", new Color(121, 85, 172), this::addToCart);
+        JButton reserveButton = createActionButton("Reserve", "", new Color(0, 150, 136), this::reserveBook);
         
         buttonPanel.add(addButton);
         buttonPanel.add(editButton);
 //        buttonPanel.add(deleteButton);
         buttonPanel.add(addToCartButton);
+        buttonPanel.add(reserveButton);
         
         topPanel.add(buttonPanel, BorderLayout.EAST);
         
@@ -171,15 +223,13 @@ public class BookPanel extends JPanel {
         // Create table for books with English column names
         String[] columnNames = {"ID", "ISBN", "Title", "Author", "Publisher", "Year",
                                "Genre", "Status", "Location", "Total Copies", "Available Copies"};
-        tableModel = new DefaultTableModel(columnNames, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false; // Make table read-only
-            }
-        };
+        tableModel = new PagedTableModel<>("book-pages", columnNames, BookPanel::toRow, PAGE_SIZE, MAX_CACHED_PAGES,
+                                           this::booksLoaded, this::showLoadError);
         
         // Create table with modern styling
         bookTable = new JTable(tableModel);
+        rowSorter = new IndexRowSorter<>(tableModel);
+        bookTable.setRowSorter(rowSorter);
         bookTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         bookTable.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS);
         bookTable.getTableHeader().setReorderingAllowed(false);
@@ -251,10 +301,10 @@ public class BookPanel extends JPanel {
         ));
         statusPanel.setBackground(new Color(250, 250, 250));
         
-//        JLabel totalBooksLabel = new JLabel("Total Books: "  );
-//        totalBooksLabel.setFont(new Font("Arial", Font.BOLD, 14));
-//        totalBooksLabel.setForeground(new Color(70, 70, 70));
-//        statusPanel.add(totalBooksLabel, BorderLayout.WEST);
+        totalBooksLabel = new JLabel("Total Books: 0");
+        totalBooksLabel.setFont(new Font("Arial", Font.BOLD, 14));
+        totalBooksLabel.setForeground(new Color(70, 70, 70));
+        statusPanel.add(totalBooksLabel, BorderLayout.WEST);
         
         // Add both panels to a container
         JPanel contentPanel = new JPanel(new BorderLayout());
@@ -266,115 +316,206 @@ public class BookPanel extends JPanel {
     }
     
     /**
-     * Refreshes the book table with the latest data from the database.
+     * Reloads the book table from the database. Only the page index is read
+     * up front; the table reads the pages on screen as it is scrolled. The
+     * whole catalog is never in memory, so it stays in title order and cannot
+     * be sorted by clicking a column.
      */
     public void refreshData() {
-        try {
-            tableModel.setRowCount(0); // Clear existing data
-
-            List<Book> books = bookService.getAllBooks();
-            for (Book book : books) {
-                Object[] rowData = {
-                        book.getId(),
-                        book.getIsbn(),
-                        book.getTitle(),
-                        book.getAuthor(),
-                        book.getPublisher(),
-                        book.getPublicationYear(),
-                        book.getGenre(),
-                        book.getStatus(),
-                        book.getLocation(),
-                        book.getTotalCopies(),
-                        book.getAvailableCopies()
-                };
-                tableModel.addRow(rowData);
+        liveSearch.cancel();
+        rowSorter.setSortable(false);
+        totalBooksLabel.setText("Loading...");
+        tableModel.load(new PagedTableModel.PageSource<BookDAO.PageKey, Book>() {
+            @Override
+            public PageIndex<BookDAO.PageKey> readIndex(int pageSize, QueryHandle handle) throws Exception {
+                return bookService.getBookPageIndex(pageSize, handle);
             }
-
-            // ✅ تجنب ArrayIndexOutOfBoundsException
-            if (getComponentCount() > 2 && getComponent(2) instanceof JPanel statusPanel) {
-                JLabel totalBooksLabel = (JLabel) ((BorderLayout) statusPanel.getLayout())
-                        .getLayoutComponent(BorderLayout.WEST);
-                if (totalBooksLabel != null) {
-                    totalBooksLabel.setText("Total Books: " + books.size());
-                }
+            
+            @Override
+            public List<Book> readPage(BookDAO.PageKey start, int pageSize, QueryHandle handle) throws Exception {
+                return bookService.getBookPage(start, pageSize, handle);
             }
-
-            logger.info("Book data refreshed, " + books.size() + " books loaded");
-        } catch (Exception e) {
-            logger.error("Error refreshing book data", e);
-            JOptionPane.showMessageDialog(this,
-                    "Error loading books: " + e.getMessage(),
-                    "Data Error",
-                    JOptionPane.ERROR_MESSAGE);
+        });
+    }
+    
+    /**
+     * Reloads the table if books changed while the tab was hidden.
+     */
+    @Override
+    public void tabShown() {
+        if (stale) {
+            stale = false;
+            reloadBooks();
+        }
+    }
+    
+    /**
+     * Pages are only read for the rows on screen, so there is nothing to stop.
+     */
+    @Override
+    public void tabHidden() {
+    }
+    
+    /**
+     * Reloads what the table shows: the catalog, or the current search.
+     */
+    private void reloadBooks() {
+        bookReloader.clear();
+        if (searchField.getText().trim().isEmpty()) {
+            refreshData();
+        } else {
+            liveSearch.runNow();
         }
     }
+    
+    /**
+     * Applies a change to a book to the table.
+     */
+    private void bookChanged(BookChanged event) {
+        if (!isShowing()) {
+            stale = true;
+            return;
+        }
+        if (event.getKind() != ChangeKind.UPDATED) {
+            reloadBooks();
+        } else if (findBookRow(event.getBookId()) >= 0) {
+            bookReloader.reload(event.getBookId());
+        }
+    }
+    
+    /**
+     * Replaces the row of a book that was read again after a change.
+     */
+    private void bookRead(int bookId, Book book) {
+        int row = findBookRow(bookId);
+        if (row < 0) {
+            return;
+        }
+        if (book == null) {
+            reloadBooks();
+        } else {
+            tableModel.setRow(row, book);
+        }
+    }
+    
+    /**
+     * @return The model row of the book, or -1 if it is not held in memory
+     */
+    private int findBookRow(int bookId) {
+        return tableModel.findRow(book -> book.getId() == bookId);
+    }
+    
+    /**
+     * Updates the status once the book pages are indexed.
+     */
+    private void booksLoaded(int count) {
+        totalBooksLabel.setText("Total Books: " + count);
+        logger.info("Book data refreshed, " + count + " books indexed");
+    }
+    
+    /**
+     * Returns the book in a table row, or reports that it is still being read.
+     * 
+     * @param row The row in the view, which may be sorted
+     */
+    private Book getRowBook(int row) {
+        Book book = tableModel.getRow(bookTable.convertRowIndexToModel(row));
+        if (book == null) {
+            JOptionPane.showMessageDialog(this, 
+                "The selected book is still loading, please try again in a moment", 
+                "Loading", 
+                JOptionPane.INFORMATION_MESSAGE);
+        }
+        return book;
+    }
+    
+    /**
+     * Reports a failed load.
+     */
+    private void showLoadError(Exception e) {
+        totalBooksLabel.setText("Books could not be loaded");
+        JOptionPane.showMessageDialog(this,
+                "Error loading books: " + e.getMessage(),
+                "Data Error",
+                JOptionPane.ERROR_MESSAGE);
+    }
+    
+    /**
+     * Converts a book to a table row.
+     */
+    private static Object[] toRow(Book book) {
+        return new Object[] {
+            book.getId(),
+            book.getIsbn(),
+            book.getTitle(),
+            book.getAuthor(),
+            book.getPublisher(),
+            book.getPublicationYear(),
+            book.getGenre(),
+            book.getStatus(),
+            book.getLocation(),
+            book.getTotalCopies(),
+            book.getAvailableCopies()
+        };
+    }
 
 
     /**
      * Handles search button action.
      */
     private void searchBooks(ActionEvent e) {
-        try {
-            String searchText = searchField.getText().trim();
-            String searchType = (String) searchTypeCombo.getSelectedItem();
-            
-            if (searchText.isEmpty()) {
-                refreshData();
-                return;
-            }
-            
-            List<Book> results;
-            switch (searchType) {
-                case "Title":
-                    results = bookService.searchBooksByTitle(searchText);
-                    break;
-                case "Author":
-                    results = bookService.searchBooksByAuthor(searchText);
-                    break;
-                case "ISBN":
-                    results = bookService.searchBooksByIsbn(searchText);
-                    break;
-                case "Genre":
-                    results = bookService.searchBooksByGenre(searchText);
-                    break;
-                case "Publisher":
-                    results = bookService.searchBooksByPublisher(searchText);
-                    break;
-                default:
-                    results = bookService.searchBooksByTitle(searchText);
-            }
-            
-            tableModel.setRowCount(0);
-            for (Book book : results) {
-                Object[] rowData = {
-                    book.getId(),
-                    book.getIsbn(),
-                    book.getTitle(),
-                    book.getAuthor(),
-                    book.getPublisher(),
-                    book.getPublicationYear(),
-                    book.getGenre(),
-                    book.getStatus(),
-                    book.getLocation(),
-                    book.getTotalCopies(),
-                    book.getAvailableCopies()
-                };
-                tableModel.addRow(rowData);
-            }
-            
-            // Update status
-            JPanel statusPanel = (JPanel) getComponent(2);
-            JLabel totalBooksLabel = (JLabel) ((BorderLayout) statusPanel.getLayout()).getLayoutComponent(BorderLayout.WEST);
-            totalBooksLabel.setText("Search Results: " + results.size() + " books found");
-            
-            logger.info("Book search completed, " + results.size() + " results for " + searchType + ": " + searchText);
-        } catch (Exception ex) {
-            logger.error("Error searching books", ex);
-            JOptionPane.showMessageDialog(this, 
-                "Error searching books: " + ex.getMessage(), 
-                "Search Error", 
-                JOptionPane.ERROR_MESSAGE);
+        liveSearch.runNow();
+    }
+    
+    /**
+     * Builds the search query from the current search field and type.
+     * Runs on the EDT; the returned query runs on the search thread.
+     */
+    private LiveSearch.Query<List<Book>> createSearchQuery() {
+        String searchText = searchField.getText().trim();
+        String searchType = ((String) searchTypeCombo.getSelectedItem()).trim();
+        
+        if (searchText.isEmpty()) {
+            // The whole catalog is shown paged instead
+            SwingUtilities.invokeLater(this::refreshData);
+            return null;
         }
+        
+        switch (searchType.toLowerCase()) {
+            case "author":
+                return handle -> bookService.searchBooksByAuthor(searchText, handle);
+            case "isbn":
+                return handle -> bookService.searchBooksByIsbn(searchText, handle);
+            case "genre":
+                return handle -> bookService.searchBooksByGenre(searchText, handle);
+            case "publisher":
+                return handle -> bookService.searchBooksByPublisher(searchText, handle);
+            default:
+                return handle -> bookService.searchBooksByTitle(searchText, handle);
+        }
+    }
+    
+    /**
+     * Applies the results of the latest search to the table. Search results
+     * are held in memory, so they can be sorted by clicking a column.
+     */
+    private void showSearchResults(List<Book> results) {
+        rowSorter.setSortable(true);
+        tableModel.setRows(results);
+        totalBooksLabel.setText("Search Results: " + results.size() + " books found");
+        
+        logger.info("Book search completed, " + results.size() + " results for: " + searchField.getText().trim());
+    }
+    
+    /**
+     * Reports a failed search.
+     */
+    private void showSearchError(Exception ex) {
+        logger.error("Error searching books", ex);
+        JOptionPane.showMessageDialog(this, 
+            "Error searching books: " + ex.getMessage(), 
+            "Search Error", 
+            JOptionPane.ERROR_MESSAGE);
     }
     
     /**
@@ -385,7 +526,6 @@ public class BookPanel extends JPanel {
             Book newBook = dialogFactory.showAddBookDialog(this);
             if (newBook != null) {
                 bookService.addBook(newBook);
-                refreshData();
                 logger.info("New book added: " + newBook.getTitle());
                 JOptionPane.showMessageDialog(this, 
                     "Book added successfully", 
@@ -415,13 +555,16 @@ public class BookPanel extends JPanel {
                 return;
             }
             
-            int bookId = (int) tableModel.getValueAt(selectedRow, 0);
+            Book rowBook = getRowBook(selectedRow);
+            if (rowBook == null) {
+                return;
+            }
+            int bookId = rowBook.getId();
             Book selectedBook = bookService.getBookById(bookId);
             
             Book updatedBook = dialogFactory.showEditBookDialog(this, selectedBook);
             if (updatedBook != null) {
-                bookService.updateBook(updatedBook);
-                refreshData();
+                bookService.updateBook(updatedBook, selectedBook.getAvailableCopies());
                 logger.info("Book updated: " + updatedBook.getTitle());
                 JOptionPane.showMessageDialog(this, 
                     "Book updated successfully", 
@@ -451,8 +594,12 @@ public class BookPanel extends JPanel {
                 return;
             }
             
-            int bookId = (int) tableModel.getValueAt(selectedRow, 0);
-            String bookTitle = (String) tableModel.getValueAt(selectedRow, 2);
+            Book rowBook = getRowBook(selectedRow);
+            if (rowBook == null) {
+                return;
+            }
+            int bookId = rowBook.getId();
+            String bookTitle = rowBook.getTitle();
             
             int choice = JOptionPane.showConfirmDialog(this, 
                 "Are you sure you want to delete \"" + bookTitle + "\"?", 
@@ -462,7 +609,6 @@ public class BookPanel extends JPanel {
             
             if (choice == JOptionPane.YES_OPTION) {
                 bookService.deleteBook(bookId);
-                refreshData();
                 logger.info("Book deleted: " + bookTitle);
                 JOptionPane.showMessageDialog(this, 
                     "Book deleted successfully", 
@@ -492,8 +638,12 @@ public class BookPanel extends JPanel {
                 return;
             }
             
-            int bookId = (int) tableModel.getValueAt(selectedRow, 0);
-            int availableCopies = (int) tableModel.getValueAt(selectedRow, 10);
+            Book rowBook = getRowBook(selectedRow);
+            if (rowBook == null) {
+                return;
+            }
+            int bookId = rowBook.getId();
+            int availableCopies = rowBook.getAvailableCopies();
             
             if (availableCopies <= 0) {
                 JOptionPane.showMessageDialog(this, 
@@ -504,7 +654,9 @@ public class BookPanel extends JPanel {
             }
             
             Book selectedBook = bookService.getBookById(bookId);
-            mainWindow.getCartPanel().addBookToCart(selectedBook);
+            if (!mainWindow.getCartPanel().addBookToCart(selectedBook)) {
+                return;
+            }
             
             logger.info("Book added to cart: " + selectedBook.getTitle());
             JOptionPane.showMessageDialog(this, 
@@ -522,4 +674,78 @@ public class BookPanel extends JPanel {
                 JOptionPane.ERROR_MESSAGE);
         }
     }
+    
+    /**
+     * Handles reserve button action: puts a member in the waiting list of a book that is all out.
+     */
+    private void reserveBook(ActionEvent e) {
+        try {
+            int selectedRow = bookTable.getSelectedRow();
+            if (selectedRow == -1) {
+                JOptionPane.showMessageDialog(this, 
+                    "Please select a book to reserve", 
+                    "Selection Required", 
+                    JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            
+            Book rowBook = getRowBook(selectedRow);
+            if (rowBook == null) {
+                return;
+            }
+            int bookId = rowBook.getId();
+            String title = rowBook.getTitle();
+            int availableCopies = rowBook.getAvailableCopies();
+            
+            if (availableCopies > 0) {
+                JOptionPane.showMessageDialog(this, 
+                    "This book has copies available. Add it to the cart instead.", 
+                    "Available", 
+                    JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            
+            List<Member> members = memberService.getMemberDirectoryById();
+            String[] options = new String[members.size()];
+            for (int i = 0; i < options.length; i++) {
+                options[i] = members.get(i).getId() + " - " + members.get(i).getName();
+            }
+            
+            String selection = (String) JOptionPane.showInputDialog(this, 
+                "Reserve \"" + title + "\" for:", 
+                "Reserve Book", 
+                JOptionPane.QUESTION_MESSAGE, 
+                null, 
+                options, 
+                options.length > 0 ? options[0] : null);
+            
+            if (selection == null) {
+                return;
+            }
+            
+            ReservationService reservationService = ReservationService.getInstance();
+            Member member = members.get(Arrays.asList(options).indexOf(selection));
+            Reservation reservation = reservationService.reserve(bookId, member);
+            
+            String message;
+            if (reservation.getStatus() == ReservationStatus.READY) {
+                message = "A copy of \"" + title + "\" is already waiting for " + member.getName() + ".";
+            } else {
+                message = member.getName() + " is number " + reservationService.getQueuePosition(reservation.getId()) + 
+                          " of " + reservationService.getQueueLength(bookId) + " in the waiting list for \"" + title + "\".";
+            }
+            
+            logger.info("Book reserved: " + title + " for member ID " + member.getId());
+            JOptionPane.showMessageDialog(this, 
+                message, 
+                "Reservation", 
+                JOptionPane.INFORMATION_MESSAGE);
+        } catch (Exception ex) {
+            logger.error("Error reserving book", ex);
+            JOptionPane.showMessageDialog(this, 
+                "Error reserving book: " + ex.getMessage(), 
+                "Reservation Error", 
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
 }
@@ -1,11 +1,18 @@
 package com.library.app.service;
 
 import com.library.app.db.BookDAO;
+import com.library.app.db.PageIndex;
+import com.library.app.db.QueryHandle;
+import com.library.app.event.BookChanged;
+import com.library.app.event.ChangeKind;
+import com.library.app.event.EventBus;
 import com.library.app.model.Book;
+import com.library.app.model.BookStatus;
 import com.library.app.util.Logger;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 
 public class BookService {
@@ -39,6 +46,21 @@ public class BookService {
     }
     
 
+    /**
+     * Passes every book to the sink as it is read, for loading tables progressively.
+     */
+    public int forEachBook(QueryHandle handle, Consumer<? super Book> sink) throws Exception {
+        try {
+            return bookDAO.forEachBook(handle, sink);
+        } catch (Exception e) {
+            if (handle == null || !handle.isCancelled()) {
+                logger.error("Error getting all books", e);
+            }
+            throw new Exception("Error retrieving books: " + e.getMessage());
+        }
+    }
+    
+
     public List<Book> getAvailableBooks() throws Exception {
         try {
             List<Book> allBooks = bookDAO.getAllBooks();
@@ -74,8 +96,8 @@ public class BookService {
             }
             
             // Set default values if not provided
-            if (book.getStatus() == null || book.getStatus().trim().isEmpty()) {
-                book.setStatus("AVAILABLE");
+            if (book.getBookStatus() == null) {
+                book.setBookStatus(BookStatus.AVAILABLE);
             }
             
             if (book.getTotalCopies() <= 0) {
@@ -86,7 +108,9 @@ public class BookService {
                 book.setAvailableCopies(book.getTotalCopies());
             }
             
-            return bookDAO.addBook(book);
+            int id = bookDAO.addBook(book);
+            EventBus.get().publish(new BookChanged(id, ChangeKind.ADDED));
+            return id;
         } catch (Exception e) {
             logger.error("Error adding book: " + book.getTitle(), e);
             throw new Exception("Error adding book: " + e.getMessage());
@@ -94,7 +118,12 @@ public class BookService {
     }
     
 
-    public void updateBook(Book book) throws Exception {
+    /**
+     * Saves an edited book.
+     * 
+     * @param previousAvailableCopies The available copies when the book was read for editing
+     */
+    public void updateBook(Book book, int previousAvailableCopies) throws Exception {
         try {
             // Validate input
             if (book.getId() <= 0) {
@@ -121,12 +150,29 @@ public class BookService {
             // Update status based on availability
             book.updateStatus();
             
-            bookDAO.updateBook(book);
+            if (!bookDAO.updateBook(book, previousAvailableCopies)) {
+                throw new IllegalStateException("Book no longer exists, or fewer copies would be available than are held for carts");
+            }
+            EventBus.get().publish(new BookChanged(book.getId(), ChangeKind.UPDATED));
         } catch (Exception e) {
             logger.error("Error updating book: " + book.getTitle(), e);
             throw new Exception("Error updating book: " + e.getMessage());
         }
     }
+    
+
+    /**
+     * Puts a returned copy of a book back on the shelf.
+     */
+    public void returnCopy(int bookId) throws Exception {
+        try {
+            bookDAO.returnCopy(bookId);
+            EventBus.get().publish(new BookChanged(bookId, ChangeKind.UPDATED));
+        } catch (Exception e) {
+            logger.error("Error returning a copy of book ID: " + bookId, e);
+            throw new Exception("Error returning book: " + e.getMessage());
+        }
+    }
 
 
     public void deleteBook(int id) throws Exception {
@@ -143,6 +189,7 @@ public class BookService {
             }
             
             bookDAO.deleteBook(id);
+            EventBus.get().publish(new BookChanged(id, ChangeKind.DELETED));
         } catch (Exception e) {
             logger.error("Error deleting book with ID: " + id, e);
             throw new Exception("Error deleting book: " + e.getMessage());
@@ -151,50 +198,85 @@ public class BookService {
     
 
     public List<Book> searchBooksByTitle(String title) throws Exception {
+        return searchBooksByTitle(title, null);
+    }
+    
+
+    public List<Book> searchBooksByTitle(String title, QueryHandle handle) throws Exception {
         try {
-            return bookDAO.searchBooksByTitle(title);
+            return bookDAO.searchBooksByTitle(title, handle);
         } catch (Exception e) {
-            logger.error("Error searching books by title: " + title, e);
+            if (handle == null || !handle.isCancelled()) {
+                logger.error("Error searching books by title: " + title, e);
+            }
             throw new Exception("Error searching books: " + e.getMessage());
         }
     }
     
 
     public List<Book> searchBooksByAuthor(String author) throws Exception {
+        return searchBooksByAuthor(author, null);
+    }
+    
+
+    public List<Book> searchBooksByAuthor(String author, QueryHandle handle) throws Exception {
         try {
-            return bookDAO.searchBooksByAuthor(author);
+            return bookDAO.searchBooksByAuthor(author, handle);
         } catch (Exception e) {
-            logger.error("Error searching books by author: " + author, e);
+            if (handle == null || !handle.isCancelled()) {
+                logger.error("Error searching books by author: " + author, e);
+            }
             throw new Exception("Error searching books: " + e.getMessage());
         }
     }
     
 
     public List<Book> searchBooksByIsbn(String isbn) throws Exception {
+        return searchBooksByIsbn(isbn, null);
+    }
+    
+
+    public List<Book> searchBooksByIsbn(String isbn, QueryHandle handle) throws Exception {
         try {
-            return bookDAO.searchBooksByIsbn(isbn);
+            return bookDAO.searchBooksByIsbn(isbn, handle);
         } catch (Exception e) {
-            logger.error("Error searching books by ISBN: " + isbn, e);
+            if (handle == null || !handle.isCancelled()) {
+                logger.error("Error searching books by ISBN: " + isbn, e);
+            }
             throw new Exception("Error searching books: " + e.getMessage());
         }
     }
     
 
     public List<Book> searchBooksByGenre(String genre) throws Exception {
+        return searchBooksByGenre(genre, null);
+    }
+    
+
+    public List<Book> searchBooksByGenre(String genre, QueryHandle handle) throws Exception {
         try {
-            return bookDAO.searchBooksByGenre(genre);
+            return bookDAO.searchBooksByGenre(genre, handle);
         } catch (Exception e) {
-            logger.error("Error searching books by genre: " + genre, e);
+            if (handle == null || !handle.isCancelled()) {
+                logger.error("Error searching books by genre: " + genre, e);
+            }
             throw new Exception("Error searching books: " + e.getMessage());
         }
     }
     
 
     public List<Book> searchBooksByPublisher(String publisher) throws Exception {
+        return searchBooksByPublisher(publisher, null);
+    }
+    
+
+    public List<Book> searchBooksByPublisher(String publisher, QueryHandle handle) throws Exception {
         try {
-            return bookDAO.searchBooksByPublisher(publisher);
+            return bookDAO.searchBooksByPublisher(publisher, handle);
         } catch (Exception e) {
-            logger.error("Error searching books by publisher: " + publisher, e);
+            if (handle == null || !handle.isCancelled()) {
+                logger.error("Error searching books by publisher: " + publisher, e);
+            }
             throw new Exception("Error searching books: " + e.getMessage());
         }
     }
@@ -248,4 +330,32 @@ public class BookService {
             throw new Exception("Error retrieving recent books: " + e.getMessage());
         }
     }
+    
+
+    /**
+     * Pages of the whole catalog ordered by title, for tables that only read
+     * the rows on screen.
+     */
+    public PageIndex<BookDAO.PageKey> getBookPageIndex(int pageSize, QueryHandle handle) throws Exception {
+        try {
+            return bookDAO.getTitlePageIndex(pageSize, handle);
+        } catch (Exception e) {
+            if (handle == null || !handle.isCancelled()) {
+                logger.error("Error indexing book pages", e);
+            }
+            throw new Exception("Error retrieving books: " + e.getMessage());
+        }
+    }
+    
+
+    public List<Book> getBookPage(BookDAO.PageKey start, int pageSize, QueryHandle handle) throws Exception {
+        try {
+            return bookDAO.getBooksPage(start, pageSize, handle);
+        } catch (Exception e) {
+            if (handle == null || !handle.isCancelled()) {
+                logger.error("Error getting book page from: " + start, e);
+            }
+            throw new Exception("Error retrieving books: " + e.getMessage());
+        }
+    }
 }
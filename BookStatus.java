@@ -0,0 +1,41 @@
+package com.library.app.model;
+
+
+/**
+ * Availability status of a book.
+ */
+public enum BookStatus {
+    AVAILABLE,
+    PARTIALLY_AVAILABLE,
+    BORROWED,
+    RESERVED,
+    DAMAGED,
+    LOST,
+    /** A stored value that matches none of the other constants; the model keeps the value as stored. */
+    UNKNOWN;
+    
+    private static final BookStatus[] VALUES = values();
+    
+
+    /**
+     * Parses a stored or entered value, ignoring case and surrounding spaces.
+     * 
+     * @param value The value to parse
+     * @return The matching constant, null for an empty value, or UNKNOWN for an unknown one
+     */
+    public static BookStatus fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String key = value.trim();
+        if (key.isEmpty()) {
+            return null;
+        }
+        for (BookStatus constant : VALUES) {
+            if (constant.name().equalsIgnoreCase(key)) {
+                return constant;
+            }
+        }
+        return UNKNOWN;
+    }
+}
@@ -3,13 +3,32 @@ package com.library.app.cart;
 import com.library.app.model.Book;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 
+/**
+ * Group of cart components.
+ * <p>
+ * Each group caches the item count of its subtree and an index from book id
+ * to item, both updated along the parent chain on {@link #add}, {@link #remove}
+ * and {@link #clear}, so counting and duplicate checks do not walk the tree.
+ * Children must therefore only be changed through these methods.
+ */
 public class CartComposite implements CartComponent {
     
     private String name;
     private List<CartComponent> children;
+    private CartComposite parent;
+    
+    private int itemCount;
+    private final Map<Integer, CartItem> itemsByBookId = new HashMap<>();
+    // Items in the subtree whose book id is already indexed by another item
+    private int duplicateItems;
+    // Rebuilt on the next lookup after any change in the subtree
+    private Map<String, CartComponent> componentsByName;
     
 
     public CartComposite(String name) {
@@ -19,41 +38,107 @@ public class CartComposite implements CartComponent {
     
 
     public void add(CartComponent component) {
+        if (component instanceof CartComposite) {
+            CartComposite composite = (CartComposite) component;
+            for (CartComposite ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+                if (ancestor == composite) {
+                    throw new IllegalArgumentException("A group cannot contain itself");
+                }
+            }
+            if (composite.parent != null) {
+                composite.parent.remove(composite);
+            }
+            composite.parent = this;
+        }
+        
         children.add(component);
+        
+        List<CartItem> items = new ArrayList<>();
+        collectItems(component, items);
+        for (CartComposite group = this; group != null; group = group.parent) {
+            group.itemCount += items.size();
+            group.componentsByName = null;
+            for (CartItem item : items) {
+                group.indexItem(item);
+            }
+        }
     }
     
 
     public boolean remove(CartComponent component) {
-        return children.remove(component);
+        int index = indexOfChild(component);
+        if (index < 0) {
+            return false;
+        }
+        
+        CartComponent removed = children.remove(index);
+        if (removed instanceof CartComposite) {
+            ((CartComposite) removed).parent = null;
+        }
+        
+        List<CartItem> items = new ArrayList<>();
+        collectItems(removed, items);
+        for (CartComposite group = this; group != null; group = group.parent) {
+            group.itemCount -= items.size();
+            group.componentsByName = null;
+            for (CartItem item : items) {
+                group.unindexItem(item);
+            }
+        }
+        return true;
     }
     
 
     public List<CartComponent> getChildren() {
-        return children;
+        return Collections.unmodifiableList(children);
+    }
+    
+
+    public CartComposite getParent() {
+        return parent;
     }
     
 
     public void clear() {
+        List<CartItem> items = new ArrayList<>();
+        collectItems(this, items);
+        for (CartComponent component : children) {
+            if (component instanceof CartComposite) {
+                ((CartComposite) component).parent = null;
+            }
+        }
         children.clear();
+        itemCount = 0;
+        itemsByBookId.clear();
+        duplicateItems = 0;
+        componentsByName = null;
+        
+        // Detached first so re-indexing duplicates in the ancestors cannot find these items
+        for (CartComposite group = parent; group != null; group = group.parent) {
+            group.itemCount -= items.size();
+            group.componentsByName = null;
+            for (CartItem item : items) {
+                group.unindexItem(item);
+            }
+        }
     }
     
     @Override
     public String getName() {
         return name;
     }
-
+    
 
     public void setName(String name) {
         this.name = name;
+        for (CartComposite group = parent; group != null; group = group.parent) {
+            group.componentsByName = null;
+        }
     }
     
     @Override
     public int getItemCount() {
-        int count = 0;
-        for (CartComponent component : children) {
-            count += component.getItemCount();
-        }
-        return count;
+        return itemCount;
     }
     
     @Override
@@ -88,36 +173,101 @@ public class CartComposite implements CartComponent {
             return this;
         }
         
-        for (CartComponent component : children) {
-            if (component instanceof CartComposite) {
-                CartComponent found = ((CartComposite) component).findByName(name);
-                if (found != null) {
-                    return found;
-                }
-            } else if (component.getName().equals(name)) {
-                return component;
+        if (componentsByName == null) {
+            Map<String, CartComponent> index = new HashMap<>();
+            indexNames(this, index);
+            componentsByName = index;
+        }
+        return componentsByName.get(name);
+    }
+    
+
+    public CartItem findByBookId(int bookId) {
+        return itemsByBookId.get(bookId);
+    }
+    
+
+    public boolean containsBook(int bookId) {
+        return itemsByBookId.containsKey(bookId);
+    }
+    
+
+    private int indexOfChild(CartComponent component) {
+        // Prefer the same instance; CartItem equality is by book id
+        for (int i = 0; i < children.size(); i++) {
+            if (children.get(i) == component) {
+                return i;
             }
         }
+        return children.indexOf(component);
+    }
+    
+
+    private void indexItem(CartItem item) {
+        int bookId = item.getBook().getId();
+        if (itemsByBookId.putIfAbsent(bookId, item) != null) {
+            duplicateItems++;
+        }
+    }
+    
+
+    private void unindexItem(CartItem item) {
+        int bookId = item.getBook().getId();
+        if (itemsByBookId.get(bookId) != item) {
+            duplicateItems--;
+            return;
+        }
         
-        return null;
+        itemsByBookId.remove(bookId);
+        if (duplicateItems > 0) {
+            CartItem other = scanForBookId(this, bookId);
+            if (other != null) {
+                itemsByBookId.put(bookId, other);
+                duplicateItems--;
+            }
+        }
     }
     
 
-    public CartItem findByBookId(int bookId) {
-        for (CartComponent component : children) {
+    private static CartItem scanForBookId(CartComposite group, int bookId) {
+        for (CartComponent component : group.children) {
             if (component instanceof CartItem) {
                 CartItem item = (CartItem) component;
                 if (item.getBook().getId() == bookId) {
                     return item;
                 }
             } else if (component instanceof CartComposite) {
-                CartItem found = ((CartComposite) component).findByBookId(bookId);
+                CartItem found = scanForBookId((CartComposite) component, bookId);
                 if (found != null) {
                     return found;
                 }
             }
         }
-        
         return null;
     }
+    
+
+    private static void collectItems(CartComponent component, List<CartItem> items) {
+        if (component instanceof CartItem) {
+            items.add((CartItem) component);
+        } else if (component instanceof CartComposite) {
+            for (CartComponent child : ((CartComposite) component).children) {
+                collectItems(child, items);
+            }
+        }
+    }
+    
+
+    private static void indexNames(CartComposite group, Map<String, CartComponent> index) {
+        // Depth-first, first match wins, as the recursive search did
+        for (CartComponent component : group.children) {
+            String componentName = component.getName();
+            if (componentName != null) {
+                index.putIfAbsent(componentName, component);
+            }
+            if (component instanceof CartComposite) {
+                indexNames((CartComposite) component, index);
+            }
+        }
+    }
 }
@@ -0,0 +1,325 @@
+package com.library.app.db;
+
+import com.library.app.cart.CartComponent;
+import com.library.app.cart.CartComposite;
+import com.library.app.cart.CartItem;
+import com.library.app.model.Book;
+import com.library.app.model.SavedCart;
+import com.library.app.util.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class CartDAO {
+    
+    private static final Logger logger = new Logger(CartDAO.class.getName());
+    private final BookDAO bookDAO = new BookDAO();
+    
+
+    public int createCart(String label, String desk) throws SQLException {
+        String sql = "INSERT INTO carts (label, desk, status) VALUES (?, ?, 'OPEN')";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            stmt.setString(1, label);
+            stmt.setString(2, desk);
+            stmt.executeUpdate();
+            
+            rs = stmt.getGeneratedKeys();
+            if (rs.next()) {
+                int id = rs.getInt(1);
+                logger.info("Created cart {} on desk {}", id, desk);
+                return id;
+            } else {
+                throw new SQLException("Creating cart failed, no ID obtained.");
+            }
+        } catch (SQLException e) {
+            logger.error("Error creating cart on desk: {}", desk, e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    public List<SavedCart> getOpenCarts() throws SQLException {
+        String sql = "SELECT c.id, c.label, c.desk, c.member_id, c.status, c.updated_at, " +
+                     "COUNT(ci.book_id) AS item_count " +
+                     "FROM carts c LEFT JOIN cart_items ci ON ci.cart_id = c.id " +
+                     "WHERE c.status = 'OPEN' " +
+                     "GROUP BY c.id " +
+                     "ORDER BY c.updated_at DESC";
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        List<SavedCart> carts = new ArrayList<>();
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery(sql);
+            
+            while (rs.next()) {
+                SavedCart cart = new SavedCart();
+                cart.setId(rs.getInt("id"));
+                cart.setLabel(rs.getString("label"));
+                cart.setDesk(rs.getString("desk"));
+                cart.setMemberId(rs.getInt("member_id"));
+                cart.setStatus(rs.getString("status"));
+                cart.setItemCount(rs.getInt("item_count"));
+                Timestamp updatedAt = rs.getTimestamp("updated_at");
+                cart.setUpdatedMillis(updatedAt != null ? updatedAt.getTime() : 0);
+                carts.add(cart);
+            }
+            
+            logger.info("Retrieved open carts: {} records", carts.size());
+            return carts;
+        } catch (SQLException e) {
+            logger.error("Error retrieving open carts", e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    /**
+     * Moves an open cart to another desk, provided it is still open on the
+     * desk it was listed under, so two desks cannot resume the same cart.
+     * 
+     * @return false if the cart was closed or taken by another desk meanwhile
+     */
+    public boolean claimCart(int cartId, String fromDesk, String toDesk) throws SQLException {
+        String sql = "UPDATE carts SET desk = ?, updated_at = CURRENT_TIMESTAMP " +
+                     "WHERE id = ? AND status = 'OPEN' AND desk = ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setString(1, toDesk);
+            stmt.setInt(2, cartId);
+            stmt.setString(3, fromDesk);
+            boolean claimed = stmt.executeUpdate() > 0;
+            
+            logger.info("Claim of cart {} from desk {} by desk {}: {}", cartId, fromDesk, toDesk, claimed);
+            return claimed;
+        } catch (SQLException e) {
+            logger.error("Error claiming cart: {}", cartId, e);
+            throw e;
+        } finally {
+            closeResources(null, stmt);
+        }
+    }
+    
+
+    /**
+     * Stores a component and, for a group, everything below it.
+     * 
+     * @param cartId The cart
+     * @param parentRowId The row of the group it was added to, or null for the top level
+     * @param component The component that was added
+     * @param rowIds Receives the row id of every stored component; must be an identity map
+     * @return The row id of the component
+     */
+    public long addComponent(int cartId, Long parentRowId, CartComponent component,
+                             Map<CartComponent, Long> rowIds) throws SQLException {
+        String sql = "WITH touched AS (UPDATE carts SET updated_at = CURRENT_TIMESTAMP WHERE id = ?) " +
+                     "INSERT INTO cart_items (cart_id, parent_id, book_id, group_name) " +
+                     "VALUES (?, ?, ?, ?) RETURNING id";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            long rowId = insertComponent(stmt, cartId, parentRowId, component, rowIds);
+            
+            logger.debug("Stored cart component {} in cart {}", component.getName(), cartId);
+            return rowId;
+        } catch (SQLException e) {
+            logger.error("Error storing component in cart: {}", cartId, e);
+            throw e;
+        } finally {
+            closeResources(null, stmt);
+        }
+    }
+    
+
+    public void removeComponent(int cartId, long rowId) throws SQLException {
+        // Children of a group go with it through ON DELETE CASCADE
+        String sql = "WITH touched AS (UPDATE carts SET updated_at = CURRENT_TIMESTAMP WHERE id = ?) " +
+                     "DELETE FROM cart_items WHERE id = ? AND cart_id = ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, cartId);
+            stmt.setLong(2, rowId);
+            stmt.setInt(3, cartId);
+            stmt.executeUpdate();
+            
+            logger.debug("Removed cart row {} from cart {}", rowId, cartId);
+        } catch (SQLException e) {
+            logger.error("Error removing row {} from cart: {}", rowId, cartId, e);
+            throw e;
+        } finally {
+            closeResources(null, stmt);
+        }
+    }
+    
+
+    public void closeCart(int cartId, String status, int memberId) throws SQLException {
+        String updateSql = "UPDATE carts SET status = ?, member_id = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+        String deleteSql = "DELETE FROM cart_items WHERE cart_id = ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(updateSql);
+            stmt.setString(1, status);
+            if (memberId > 0) {
+                stmt.setInt(2, memberId);
+            } else {
+                stmt.setNull(2, Types.INTEGER);
+            }
+            stmt.setInt(3, cartId);
+            stmt.executeUpdate();
+            stmt.close();
+            
+            // Closed carts are kept as a record but their items are not needed any more
+            stmt = conn.prepareStatement(deleteSql);
+            stmt.setInt(1, cartId);
+            stmt.executeUpdate();
+            
+            logger.info("Closed cart {} as {}", cartId, status);
+        } catch (SQLException e) {
+            logger.error("Error closing cart: {}", cartId, e);
+            throw e;
+        } finally {
+            closeResources(null, stmt);
+        }
+    }
+    
+
+    /**
+     * Loads a cart in one query and rebuilds its tree.
+     * 
+     * @param cartId The cart
+     * @param rowIds Receives the row id of every loaded component; must be an identity map
+     * @return The root group of the cart
+     */
+    public CartComposite loadCart(int cartId, Map<CartComponent, Long> rowIds) throws SQLException {
+        String sql = "SELECT ci.id AS item_id, ci.parent_id AS item_parent_id, ci.book_id AS item_book_id, " +
+                     "ci.group_name AS item_group_name, b.* " +
+                     "FROM cart_items ci LEFT JOIN books b ON b.id = ci.book_id " +
+                     "WHERE ci.cart_id = ? ORDER BY ci.id";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, cartId);
+            rs = stmt.executeQuery();
+            
+            CartComposite root = new CartComposite("Root");
+            Map<Long, CartComposite> groups = new HashMap<>();
+            
+            // Rows are in id order, so a group is always read before its children
+            while (rs.next()) {
+                long rowId = rs.getLong("item_id");
+                long parentRowId = rs.getLong("item_parent_id");
+                CartComposite parent = rs.wasNull() ? root : groups.get(parentRowId);
+                if (parent == null) {
+                    continue;
+                }
+                
+                CartComponent component;
+                rs.getInt("item_book_id");
+                if (rs.wasNull()) {
+                    CartComposite group = new CartComposite(rs.getString("item_group_name"));
+                    groups.put(rowId, group);
+                    component = group;
+                } else {
+                    Book book = bookDAO.mapResultSetToBook(rs);
+                    component = new CartItem(book);
+                }
+                parent.add(component);
+                rowIds.put(component, rowId);
+            }
+            
+            logger.info("Loaded cart {}: {} items", cartId, root.getItemCount());
+            return root;
+        } catch (SQLException e) {
+            logger.error("Error loading cart: {}", cartId, e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    private long insertComponent(PreparedStatement stmt, int cartId, Long parentRowId,
+                                 CartComponent component, Map<CartComponent, Long> rowIds) throws SQLException {
+        stmt.setInt(1, cartId);
+        stmt.setInt(2, cartId);
+        if (parentRowId != null) {
+            stmt.setLong(3, parentRowId);
+        } else {
+            stmt.setNull(3, Types.BIGINT);
+        }
+        if (component instanceof CartItem) {
+            stmt.setInt(4, ((CartItem) component).getBook().getId());
+            stmt.setNull(5, Types.VARCHAR);
+        } else {
+            stmt.setNull(4, Types.INTEGER);
+            stmt.setString(5, component.getName());
+        }
+        
+        long rowId;
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (!rs.next()) {
+                throw new SQLException("Storing cart component failed, no ID obtained.");
+            }
+            rowId = rs.getLong(1);
+        }
+        rowIds.put(component, rowId);
+        
+        if (component instanceof CartComposite) {
+            for (CartComponent child : ((CartComposite) component).getChildren()) {
+                insertComponent(stmt, cartId, rowId, child, rowIds);
+            }
+        }
+        return rowId;
+    }
+    
+
+    private void closeResources(ResultSet rs, Statement stmt) {
+        try {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        } catch (SQLException e) {
+            logger.error("Error closing database resources", e);
+        }
+    }
+}
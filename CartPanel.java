@@ -3,14 +3,20 @@ package com.library.app.ui;
 import com.library.app.cart.CartComponent;
 import com.library.app.cart.CartComposite;
 import com.library.app.cart.CartItem;
+import com.library.app.event.EventBus;
+import com.library.app.event.MemberChanged;
 import com.library.app.factory.UIComponentFactory;
 import com.library.app.model.Book;
 import com.library.app.model.Member;
-import com.library.app.model.Transaction;
-import com.library.app.service.BookService;
+import com.library.app.model.SavedCart;
+import com.library.app.service.CartService;
+import com.library.app.service.CirculationPolicy;
+import com.library.app.service.HoldService;
+import com.library.app.service.LibraryCalendar;
 import com.library.app.service.MemberService;
-import com.library.app.service.TransactionService;
+import com.library.app.service.ReservationService;
 import com.library.app.util.DateUtil;
+import com.library.app.util.LibraryClock;
 import com.library.app.util.Logger;
 
 
@@ -20,19 +26,21 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 
-public class CartPanel extends JPanel {
-
+public class CartPanel extends JPanel implements TabPanel {
+    
     private static final Logger logger = new Logger(CartPanel.class.getName());
     
     private final MainWindow mainWindow;
-    private final BookService bookService;
     private final MemberService memberService;
-    private final TransactionService transactionService;
+    private final CartService cartService;
+    private final HoldService holdService;
     private final UIComponentFactory uiFactory;
     
     private JTable cartTable;
@@ -40,6 +48,11 @@ public class CartPanel extends JPanel {
     private JLabel totalItemsLabel;
     private JComboBox<String> memberCombo;
     private JButton checkoutButton;
+    private DataLoader<Member> memberLoader;
+    // Member to select again once the member list has been reloaded
+    private int memberToReselect;
+    private RowReloader<Member> memberReloader;
+    private boolean membersStale;
     
 
     private JButton createActionButton(String text, String iconName, Color color, ActionListener actionListener) {
@@ -68,18 +81,30 @@ public class CartPanel extends JPanel {
     // Composite pattern implementation
     private CartComposite cartRoot;
     
+    // Stored copy of the cart; 0 until the first item is added
+    private int cartId;
+    private final Map<CartComponent, Long> cartRowIds = new IdentityHashMap<>();
+    
+    // Hold on a copy for each item, released when the item leaves the cart
+    private final Map<CartItem, Long> itemHolds = new IdentityHashMap<>();
+    
 
     public CartPanel(MainWindow mainWindow) {
         this.mainWindow = mainWindow;
-        this.bookService = new BookService();
         this.memberService = new MemberService();
-        this.transactionService = new TransactionService();
+        this.cartService = new CartService();
+        this.holdService = new HoldService();
         this.uiFactory = new UIComponentFactory();
         
         // Initialize the cart root (Composite pattern)
         this.cartRoot = new CartComposite("Root");
+        this.memberLoader = new DataLoader<>("cart members", null, this::clearMemberCombo,
+                                             this::appendMembers, this::membersLoaded, this::showMemberLoadError);
+        
+        this.memberReloader = new RowReloader<>("cart-members", memberService::getMemberById, this::memberRead);
         
         initializeUI();
+        EventBus.get().subscribe(MemberChanged.class, this::memberChanged);
         logger.info("CartPanel initialized");
     }
     
@@ -250,10 +275,12 @@ public class CartPanel extends JPanel {
         JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 10, 0));
         buttonPanel.setOpaque(false);
         
+        JButton resumeButton = createActionButton("Resume Cart", "", new Color(25, 118, 210), this::resumeCart);
         JButton removeButton = createActionButton("Remove Item", "", new Color(244, 67, 54), this::removeFromCart);
         JButton clearButton = createActionButton("Clear Cart", "", new Color(158, 158, 158), this::clearCart);
         checkoutButton = createActionButton("Checkout", "", new Color(76, 175, 80), this::checkout);
         
+        buttonPanel.add(resumeButton);
         buttonPanel.add(removeButton);
         buttonPanel.add(clearButton);
         buttonPanel.add(checkoutButton);
@@ -279,27 +306,122 @@ public class CartPanel extends JPanel {
     
 
     private void loadMembersIntoComboBox() {
-        try {
-            memberCombo.removeAllItems();
+        membersStale = false;
+        memberReloader.clear();
+        // Directory is already ordered by ID; building it the first time reads the members table
+        memberLoader.load((handle, sink) -> {
+            for (Member member : memberService.getMemberDirectoryById()) {
+                sink.accept(member);
+            }
+        });
+    }
+    
 
-            List<Member> members = memberService.getAllMembers();
+    private void clearMemberCombo() {
+        if (memberCombo.getSelectedItem() != null) {
+            memberToReselect = getSelectedMemberId();
+        }
+        memberCombo.removeAllItems();
+    }
+    
 
-            // ✅ ترتيب القائمة حسب الـ ID قبل الإضافة
-            members.sort(Comparator.comparingInt(Member::getId));
+    private void appendMembers(List<Member> members) {
+        List<String> labels = new ArrayList<>(members.size());
+        for (Member member : members) {
+            labels.add(memberLabel(member));
+        }
+        // One change event per chunk rather than per member
+        ((DefaultComboBoxModel<String>) memberCombo.getModel()).addAll(labels);
+        if (memberCombo.getSelectedIndex() == -1 && memberCombo.getItemCount() > 0) {
+            memberCombo.setSelectedIndex(0);
+        }
+    }
+    
 
-            for (Member member : members) {
-                memberCombo.addItem(member.getId() + " - " + member.getName());
+    private void membersLoaded(int count) {
+        if (memberToReselect > 0) {
+            int index = findMemberItem(memberToReselect);
+            if (index >= 0) {
+                memberCombo.setSelectedIndex(index);
             }
+            memberToReselect = 0;
+        }
+    }
+    
 
-        } catch (Exception e) {
-            logger.error("Error loading members into combo box", e);
-            JOptionPane.showMessageDialog(this,
-                    "Error loading members: " + e.getMessage(),
-                    "Data Error",
-                    JOptionPane.ERROR_MESSAGE);
+    private void showMemberLoadError(Exception e) {
+        JOptionPane.showMessageDialog(this,
+                "Error loading members: " + e.getMessage(),
+                "Data Error",
+                JOptionPane.ERROR_MESSAGE);
+    }
+    
+
+    private static String memberLabel(Member member) {
+        return member.getId() + " - " + member.getName();
+    }
+    
+
+    private void memberChanged(MemberChanged event) {
+        if (!isShowing()) {
+            // Reloaded when the tab is shown
+            membersStale = true;
+        } else if (memberLoader.isLoading()) {
+            // The members already read may predate the change
+            loadMembersIntoComboBox();
+        } else {
+            memberReloader.reload(event.getMemberId());
+        }
+    }
+    
+
+    private void memberRead(int memberId, Member member) {
+        DefaultComboBoxModel<String> model = (DefaultComboBoxModel<String>) memberCombo.getModel();
+        int index = findMemberItem(memberId);
+        if (member == null) {
+            if (index >= 0) {
+                model.removeElementAt(index);
+            }
+        } else if (index >= 0) {
+            boolean selected = memberCombo.getSelectedIndex() == index;
+            model.removeElementAt(index);
+            model.insertElementAt(memberLabel(member), index);
+            if (selected) {
+                memberCombo.setSelectedIndex(index);
+            }
+        } else {
+            // New members have the highest ID, and the list is ordered by ID
+            model.addElement(memberLabel(member));
+        }
+    }
+    
+
+    private int findMemberItem(int memberId) {
+        String prefix = memberId + " - ";
+        for (int i = 0; i < memberCombo.getItemCount(); i++) {
+            if (memberCombo.getItemAt(i).startsWith(prefix)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+
+    @Override
+    public void tabShown() {
+        if (membersStale) {
+            loadMembersIntoComboBox();
+        } else {
+            memberLoader.resume();
         }
     }
+    
 
+    @Override
+    public void tabHidden() {
+        memberLoader.pause();
+    }
+    
 
 
     public void refreshData() {
@@ -325,7 +447,7 @@ public class CartPanel extends JPanel {
                 Object[] rowData = {
                     -1, // No ID for composites
                     composite.getName(),
-                    composite.getChildren().size() + " items",
+                    composite.getItemCount() + " items",
                     "",
                     "Book Group"
                 };
@@ -342,34 +464,44 @@ public class CartPanel extends JPanel {
     }
     
 
-    public void addBookToCart(Book book) {
+    /**
+     * Adds a book to the cart and holds a copy of it.
+     * 
+     * @return false if the book was not added
+     */
+    public boolean addBookToCart(Book book) {
         try {
-            // Check if book already exists in cart
-            for (CartComponent component : cartRoot.getChildren()) {
-                if (component instanceof CartItem) {
-                    CartItem item = (CartItem) component;
-                    if (item.getBook().getId() == book.getId()) {
-                        JOptionPane.showMessageDialog(this, 
-                            "This book is already in your cart", 
-                            "Duplicate Item", 
-                            JOptionPane.INFORMATION_MESSAGE);
-                        return;
-                    }
-                }
+            // Check if book already exists in cart, including inside groups
+            if (cartRoot.containsBook(book.getId())) {
+                JOptionPane.showMessageDialog(this, 
+                    "This book is already in your cart", 
+                    "Duplicate Item", 
+                    JOptionPane.INFORMATION_MESSAGE);
+                return false;
             }
             
             // Add new book to cart
             CartItem newItem = new CartItem(book);
+            if (!holdItem(newItem)) {
+                JOptionPane.showMessageDialog(this, 
+                    "No copy of \"" + book.getTitle() + "\" is free to hold right now", 
+                    "Book Unavailable", 
+                    JOptionPane.WARNING_MESSAGE);
+                return false;
+            }
             cartRoot.add(newItem);
+            saveAddedComponent(newItem);
             
             refreshData();
             logger.info("Book added to cart: " + book.getTitle());
+            return true;
         } catch (Exception e) {
             logger.error("Error adding book to cart", e);
             JOptionPane.showMessageDialog(this, 
                 "Error adding book to cart: " + e.getMessage(), 
                 "Cart Error", 
                 JOptionPane.ERROR_MESSAGE);
+            return false;
         }
     }
     
@@ -377,15 +509,31 @@ public class CartPanel extends JPanel {
     public void createBookGroup(String groupName, List<Book> books) {
         try {
             CartComposite group = new CartComposite(groupName);
+            List<String> unavailable = new ArrayList<>();
             
             for (Book book : books) {
-                group.add(new CartItem(book));
+                CartItem item = new CartItem(book);
+                if (holdItem(item)) {
+                    group.add(item);
+                } else {
+                    unavailable.add(book.getTitle());
+                }
             }
             
-            cartRoot.add(group);
-            refreshData();
+            if (group.getItemCount() > 0) {
+                cartRoot.add(group);
+                saveAddedComponent(group);
+                refreshData();
+            }
+            
+            if (!unavailable.isEmpty()) {
+                JOptionPane.showMessageDialog(this, 
+                    "These books have no copy free to hold and were left out:\n" + String.join("\n", unavailable), 
+                    "Books Unavailable", 
+                    JOptionPane.WARNING_MESSAGE);
+            }
             
-            logger.info("Created book group: " + groupName + " with " + books.size() + " books");
+            logger.info("Created book group: " + groupName + " with " + group.getItemCount() + " of " + books.size() + " books");
         } catch (Exception e) {
             logger.error("Error creating book group", e);
             JOptionPane.showMessageDialog(this, 
@@ -422,6 +570,8 @@ public class CartPanel extends JPanel {
             }
             
             cartRoot.remove(component);
+            saveRemovedComponent(component);
+            releaseHolds(component);
             refreshData();
             
             logger.info("Item removed from cart: " + component.getName());
@@ -445,9 +595,11 @@ public class CartPanel extends JPanel {
                 "Clear all items from the cart?", 
                 "Confirm Clear", 
                 JOptionPane.YES_NO_OPTION);
-                
+            
             if (choice == JOptionPane.YES_OPTION) {
+                releaseHolds(cartRoot);
                 cartRoot = new CartComposite("Root");
+                closeSavedCart(0);
                 refreshData();
                 logger.info("Cart cleared");
             }
@@ -461,6 +613,255 @@ public class CartPanel extends JPanel {
     }
     
 
+    private void resumeCart(ActionEvent e) {
+        try {
+            List<SavedCart> openCarts = new ArrayList<>();
+            for (SavedCart cart : cartService.getOpenCarts()) {
+                if (cart.getId() != cartId) {
+                    openCarts.add(cart);
+                }
+            }
+            
+            if (openCarts.isEmpty()) {
+                JOptionPane.showMessageDialog(this, 
+                    "There are no other saved carts to resume", 
+                    "Resume Cart", 
+                    JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            
+            SavedCart selected = (SavedCart) JOptionPane.showInputDialog(this, 
+                "Select a cart to resume:", 
+                "Resume Cart", 
+                JOptionPane.QUESTION_MESSAGE, 
+                null, 
+                openCarts.toArray(), 
+                openCarts.get(0));
+            
+            if (selected == null) {
+                return;
+            }
+            
+            if (!cartService.claimCart(selected)) {
+                JOptionPane.showMessageDialog(this, 
+                    "That cart has just been resumed on another desk or closed", 
+                    "Resume Cart", 
+                    JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            
+            // The current cart stays saved with its holds and can be resumed later;
+            // one that could not be saved is dropped, so its holds go too
+            if (cartId == 0) {
+                releaseHolds(cartRoot);
+            }
+            Map<CartComponent, Long> rowIds = new IdentityHashMap<>();
+            cartRoot = cartService.loadCart(selected.getId(), rowIds);
+            cartId = selected.getId();
+            cartRowIds.clear();
+            cartRowIds.putAll(rowIds);
+            adoptHolds(holdService.getHoldsForCart(cartId));
+            refreshData();
+            
+            logger.info("Resumed cart " + cartId + " with " + cartRoot.getItemCount() + " items");
+        } catch (Exception ex) {
+            logger.error("Error resuming cart", ex);
+            JOptionPane.showMessageDialog(this, 
+                "Error resuming cart: " + ex.getMessage(), 
+                "Cart Error", 
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+
+    private void saveAddedComponent(CartComponent component) {
+        // A cart stored just now already holds everything in it
+        if (ensureSavedCart() == 0 || cartRowIds.containsKey(component)) {
+            return;
+        }
+        
+        try {
+            cartService.addComponent(cartId, null, component, cartRowIds);
+        } catch (Exception e) {
+            // The cart keeps working in memory; it just cannot be resumed elsewhere
+            logger.warn("Cart change was not saved: " + e.getMessage());
+        }
+    }
+    
+
+    private int ensureSavedCart() {
+        if (cartId == 0) {
+            try {
+                String label = memberCombo.getSelectedItem() != null 
+                    ? (String) memberCombo.getSelectedItem() 
+                    : "Cart from " + CartService.getDeskName();
+                cartId = cartService.createCart(label);
+            } catch (Exception e) {
+                logger.warn("Cart was not saved: " + e.getMessage());
+                return cartId;
+            }
+            
+            // Items added while the cart could not be stored go in with it, holds included
+            try {
+                for (CartComponent child : cartRoot.getChildren()) {
+                    cartService.addComponent(cartId, null, child, cartRowIds);
+                }
+                for (Long holdId : itemHolds.values()) {
+                    holdService.transferHold(holdId, cartId);
+                }
+            } catch (Exception e) {
+                logger.warn("Cart contents were not saved: " + e.getMessage());
+            }
+        }
+        return cartId;
+    }
+    
+
+    private boolean holdItem(CartItem item) throws Exception {
+        int bookId = item.getBook().getId();
+        long holdId = holdService.placeHold(bookId, ensureSavedCart());
+        if (holdId == 0 && getSelectedMemberId() > 0) {
+            // The only free copy may be the one set aside for this member's reservation
+            holdId = ReservationService.getInstance().claimReadyHold(getSelectedMemberId(), bookId, cartId);
+        }
+        if (holdId == 0) {
+            return false;
+        }
+        itemHolds.put(item, holdId);
+        return true;
+    }
+    
+
+    private void releaseHolds(CartComponent component) {
+        List<CartItem> items = new ArrayList<>();
+        collectItems(component, items);
+        List<Long> holdIds = new ArrayList<>();
+        for (CartItem item : items) {
+            Long holdId = itemHolds.remove(item);
+            if (holdId != null) {
+                holdIds.add(holdId);
+            }
+        }
+        
+        try {
+            ReservationService.getInstance().releaseCartHolds(holdIds);
+        } catch (Exception e) {
+            // Left to expire
+            logger.warn("Holds were not released: " + e.getMessage());
+        }
+    }
+    
+
+    /**
+     * Matches the stored holds of a resumed cart to its items by book id.
+     * Items whose hold expired get a new one at checkout.
+     */
+    private void adoptHolds(Map<Long, Integer> holds) {
+        itemHolds.clear();
+        Map<Integer, List<Long>> holdsByBook = new HashMap<>();
+        for (Map.Entry<Long, Integer> hold : holds.entrySet()) {
+            holdsByBook.computeIfAbsent(hold.getValue(), k -> new ArrayList<>()).add(hold.getKey());
+        }
+        
+        List<CartItem> items = new ArrayList<>();
+        collectItems(cartRoot, items);
+        for (CartItem item : items) {
+            List<Long> bookHolds = holdsByBook.get(item.getBook().getId());
+            if (bookHolds != null && !bookHolds.isEmpty()) {
+                itemHolds.put(item, bookHolds.remove(bookHolds.size() - 1));
+            }
+        }
+    }
+    
+
+    /**
+     * Renews the holds of the given items and holds a new copy for any that expired.
+     * 
+     * @return Titles of the books that could not be held again
+     */
+    private List<String> renewHolds(List<CartItem> items) throws Exception {
+        List<Long> holdIds = new ArrayList<>();
+        for (CartItem item : items) {
+            Long holdId = itemHolds.get(item);
+            if (holdId != null) {
+                holdIds.add(holdId);
+            }
+        }
+        Set<Long> renewed = holdService.extendHolds(holdIds);
+        
+        List<String> unavailable = new ArrayList<>();
+        for (CartItem item : items) {
+            Long holdId = itemHolds.get(item);
+            if (holdId == null || !renewed.contains(holdId)) {
+                itemHolds.remove(item);
+                if (!holdItem(item)) {
+                    unavailable.add(item.getBook().getTitle());
+                }
+            }
+        }
+        return unavailable;
+    }
+    
+
+    private int getSelectedMemberId() {
+        String memberSelection = (String) memberCombo.getSelectedItem();
+        return memberSelection != null ? Integer.parseInt(memberSelection.split(" - ")[0]) : 0;
+    }
+    
+
+    private static void collectItems(CartComponent component, List<CartItem> items) {
+        if (component instanceof CartItem) {
+            items.add((CartItem) component);
+        } else if (component instanceof CartComposite) {
+            for (CartComponent child : ((CartComposite) component).getChildren()) {
+                collectItems(child, items);
+            }
+        }
+    }
+    
+
+    private void saveRemovedComponent(CartComponent component) {
+        Long rowId = cartRowIds.get(component);
+        forgetRowIds(component);
+        if (cartId == 0 || rowId == null) {
+            return;
+        }
+        
+        try {
+            cartService.removeComponent(cartId, rowId);
+        } catch (Exception e) {
+            logger.warn("Cart change was not saved: " + e.getMessage());
+        }
+    }
+    
+
+    private void forgetRowIds(CartComponent component) {
+        cartRowIds.remove(component);
+        if (component instanceof CartComposite) {
+            for (CartComponent child : ((CartComposite) component).getChildren()) {
+                forgetRowIds(child);
+            }
+        }
+    }
+    
+
+    private void closeSavedCart(int memberId) {
+        if (cartId != 0) {
+            try {
+                if (memberId > 0) {
+                    cartService.checkoutCart(cartId, memberId);
+                } else {
+                    cartService.abandonCart(cartId);
+                }
+            } catch (Exception e) {
+                logger.warn("Saved cart was not closed: " + e.getMessage());
+            }
+        }
+        cartId = 0;
+        cartRowIds.clear();
+    }
+    
+
     private void checkout(ActionEvent e) {
         try {
             if (cartRoot.getChildren().isEmpty()) {
@@ -485,25 +886,18 @@ public class CartPanel extends JPanel {
             Member member = memberService.getMemberById(memberId);
             
             // Flatten cart items (extract individual books from groups)
+            List<CartItem> items = new ArrayList<>();
+            collectItems(cartRoot, items);
             List<Book> books = new ArrayList<>();
-            cartRoot.getItemsFlat(books);
-            
-            // Check member borrow limit
-            int currentlyBorrowed = member.getBorrowedCount();
-            int toBeBorrowed = books.size();
-            int maxBorrowLimit = 5; // Default limit
-            
-            if ("PREMIUM".equalsIgnoreCase(member.getRole())) {
-                maxBorrowLimit = 10;
-            } else if ("ADMIN".equalsIgnoreCase(member.getRole())) {
-                maxBorrowLimit = 15;
+            for (CartItem item : items) {
+                books.add(item.getBook());
             }
             
-            if (currentlyBorrowed + toBeBorrowed > maxBorrowLimit) {
+            // Check limits and loan periods for the whole cart at once
+            CirculationPolicy.Decision decision = CirculationPolicy.get().evaluate(member, books);
+            if (!decision.isAllowed()) {
                 JOptionPane.showMessageDialog(this, 
-                    "Member has reached their borrowing limit.\n" +
-                    "Current: " + currentlyBorrowed + ", Attempting to borrow: " + toBeBorrowed + 
-                    ", Maximum allowed: " + maxBorrowLimit, 
+                    "This checkout is not allowed:\n" + String.join("\n", decision.getProblems()), 
                     "Limit Reached", 
                     JOptionPane.WARNING_MESSAGE);
                 return;
@@ -514,48 +908,75 @@ public class CartPanel extends JPanel {
                 "Proceed with checkout for " + books.size() + " book(s) for " + member.getName() + "?", 
                 "Confirm Checkout", 
                 JOptionPane.YES_NO_OPTION);
-                
+            
             if (choice != JOptionPane.YES_OPTION) {
                 return;
             }
             
             // Process borrowing
-            List<Transaction> transactions = new ArrayList<>();
-            Date borrowDate = new Date();
-            Date dueDate = DateUtil.calculateDueDate(borrowDate, 14); // 2 weeks by default
+            long borrowMillis = LibraryClock.currentTimeMillis();
+            long[] dueMillis = new long[books.size()];
+            long firstDueMillis = Long.MAX_VALUE;
+            long lastDueMillis = borrowMillis;
+            for (int i = 0; i < dueMillis.length; i++) {
+                dueMillis[i] = LibraryCalendar.getInstance().calculateDueDate(borrowMillis, decision.getLoanDays(i));
+                firstDueMillis = Math.min(firstDueMillis, dueMillis[i]);
+                lastDueMillis = Math.max(lastDueMillis, dueMillis[i]);
+            }
             
-            for (Book book : books) {
-                // Check book availability again to be safe
-                Book freshBook = bookService.getBookById(book.getId());
-                if (freshBook.getAvailableCopies() <= 0) {
-                    JOptionPane.showMessageDialog(this, 
-                        "Book \"" + book.getTitle() + "\" is no longer available.\n" +
-                        "Please remove it from your cart and try again.", 
-                        "Book Unavailable", 
-                        JOptionPane.ERROR_MESSAGE);
-                    return;
+            // Every item holds a copy; only holds that lapsed while the cart sat idle can fail here
+            List<String> unavailable = renewHolds(items);
+            if (!unavailable.isEmpty()) {
+                JOptionPane.showMessageDialog(this, 
+                    "These books are no longer available:\n" + String.join("\n", unavailable) + "\n" +
+                    "Please remove them from your cart and try again.", 
+                    "Book Unavailable", 
+                    JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            
+            // Holds become loans, book counts and transactions in a single statement
+            List<Long> holdIds = new ArrayList<>();
+            for (CartItem item : items) {
+                holdIds.add(itemHolds.get(item));
+            }
+            List<String> reservedForOthers = new ArrayList<>();
+            Map<Long, Integer> reservedHolds = ReservationService.getInstance().getReservedHolds(holdIds);
+            for (int i = 0; i < items.size(); i++) {
+                Integer reservedFor = reservedHolds.get(holdIds.get(i));
+                if (reservedFor != null && reservedFor != member.getId()) {
+                    reservedForOthers.add(items.get(i).getBook().getTitle());
                 }
-                
-                Transaction transaction = new Transaction();
-                transaction.setBookId(book.getId());
-                transaction.setMemberId(member.getId());
-                transaction.setBorrowDate(borrowDate);
-                transaction.setDueDate(dueDate);
-                transaction.setStatus("BORROWED");
-                transaction.setBookTitle(book.getTitle());
-                transaction.setMemberName(member.getName());
-                
-                transactions.add(transaction);
             }
+            if (!reservedForOthers.isEmpty()) {
+                JOptionPane.showMessageDialog(this, 
+                    "These copies are set aside for another member's reservation:\n" + 
+                    String.join("\n", reservedForOthers) + "\n" +
+                    "Please remove them from the cart before checking out for " + member.getName() + ".", 
+                    "Reserved Copies", 
+                    JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            HoldService.Conversion conversion = holdService.convertHoldsToLoans(holdIds, member.getId(), borrowMillis, dueMillis);
+            if (conversion != HoldService.Conversion.LENT) {
+                JOptionPane.showMessageDialog(this, 
+                    conversion == HoldService.Conversion.NOT_ENOUGH_COPIES
+                        ? "A book in the cart no longer has enough available copies. Nothing was borrowed; please check the cart and try again."
+                        : "Some holds expired during checkout. Please try again.", 
+                    "Checkout Incomplete", 
+                    JOptionPane.WARNING_MESSAGE);
+                return;
+            }
+            itemHolds.clear();
             
-            // Save transactions to database and update books
-            for (Transaction transaction : transactions) {
-                transactionService.addTransaction(transaction);
-                
-                // Update book availability
-                Book book = bookService.getBookById(transaction.getBookId());
-                book.setAvailableCopies(book.getAvailableCopies() - 1);
-                bookService.updateBook(book);
+            List<Integer> bookIds = new ArrayList<>();
+            for (Book book : books) {
+                bookIds.add(book.getId());
+            }
+            try {
+                ReservationService.getInstance().fulfil(member.getId(), bookIds, holdIds);
+            } catch (Exception ex) {
+                logger.warn("Reservations were not updated after checkout: " + ex.getMessage());
             }
             
             // Update member's borrowed count
@@ -565,17 +986,16 @@ public class CartPanel extends JPanel {
             // Show checkout success message
             JOptionPane.showMessageDialog(this, 
                 books.size() + " book(s) borrowed successfully by " + member.getName() + ".\n" +
-                "Due date: " + DateUtil.formatDate(dueDate), 
+                (firstDueMillis == lastDueMillis ? "Due date: " : "Last due date: ") + 
+                DateUtil.formatDate(DateUtil.toDate(lastDueMillis)), 
                 "Checkout Complete", 
                 JOptionPane.INFORMATION_MESSAGE);
             
             // Clear cart after successful checkout
             cartRoot = new CartComposite("Root");
+            closeSavedCart(member.getId());
             refreshData();
             
-            // Refresh the BorrowingPanel data
-            mainWindow.refreshAllPanels();
-            
             logger.info("Checkout completed: " + books.size() + " books for member ID " + member.getId());
         } catch (Exception ex) {
             logger.error("Error during checkout", ex);
@@ -0,0 +1,136 @@
+package com.library.app.service;
+
+import com.library.app.cart.CartComponent;
+import com.library.app.cart.CartComposite;
+import com.library.app.db.CartDAO;
+import com.library.app.model.SavedCart;
+import com.library.app.util.Logger;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Stores carts so a half-built checkout survives a restart and can be resumed
+ * on another desk. Every add and remove is written as a single row change.
+ */
+public class CartService {
+
+    public static final String STATUS_OPEN = "OPEN";
+    public static final String STATUS_CHECKED_OUT = "CHECKED_OUT";
+    public static final String STATUS_ABANDONED = "ABANDONED";
+
+    private static final Logger logger = new Logger(CartService.class.getName());
+    private static String deskName;
+    private final CartDAO cartDAO;
+
+
+    public CartService() {
+        this.cartDAO = new CartDAO();
+    }
+
+
+    /**
+     * @return The name of this desk, from {@code -Dlibrary.desk} or the host name
+     */
+    public static synchronized String getDeskName() {
+        if (deskName == null) {
+            deskName = System.getProperty("library.desk");
+            if (deskName == null || deskName.trim().isEmpty()) {
+                try {
+                    deskName = InetAddress.getLocalHost().getHostName();
+                } catch (Exception e) {
+                    deskName = "desk";
+                }
+            }
+        }
+        return deskName;
+    }
+
+
+    public int createCart(String label) throws Exception {
+        try {
+            return cartDAO.createCart(label, getDeskName());
+        } catch (Exception e) {
+            logger.error("Error creating cart", e);
+            throw new Exception("Error creating cart: " + e.getMessage());
+        }
+    }
+
+
+    public List<SavedCart> getOpenCarts() throws Exception {
+        try {
+            return cartDAO.getOpenCarts();
+        } catch (Exception e) {
+            logger.error("Error getting open carts", e);
+            throw new Exception("Error retrieving carts: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Moves a listed cart to this desk.
+     * 
+     * @return false if the cart was closed or resumed on another desk since it was listed
+     */
+    public boolean claimCart(SavedCart cart) throws Exception {
+        try {
+            return cartDAO.claimCart(cart.getId(), cart.getDesk(), getDeskName());
+        } catch (Exception e) {
+            logger.error("Error claiming cart: " + cart.getId(), e);
+            throw new Exception("Error claiming cart: " + e.getMessage());
+        }
+    }
+
+
+    public CartComposite loadCart(int cartId, Map<CartComponent, Long> rowIds) throws Exception {
+        try {
+            return cartDAO.loadCart(cartId, rowIds);
+        } catch (Exception e) {
+            logger.error("Error loading cart: " + cartId, e);
+            throw new Exception("Error loading cart: " + e.getMessage());
+        }
+    }
+
+
+    public long addComponent(int cartId, Long parentRowId, CartComponent component,
+                             Map<CartComponent, Long> rowIds) throws Exception {
+        try {
+            return cartDAO.addComponent(cartId, parentRowId, component, rowIds);
+        } catch (Exception e) {
+            logger.error("Error saving cart item for cart: " + cartId, e);
+            throw new Exception("Error saving cart item: " + e.getMessage());
+        }
+    }
+
+
+    public void removeComponent(int cartId, long rowId) throws Exception {
+        try {
+            cartDAO.removeComponent(cartId, rowId);
+        } catch (Exception e) {
+            logger.error("Error removing cart item for cart: " + cartId, e);
+            throw new Exception("Error removing cart item: " + e.getMessage());
+        }
+    }
+
+
+    public void checkoutCart(int cartId, int memberId) throws Exception {
+        closeCart(cartId, STATUS_CHECKED_OUT, memberId);
+    }
+
+
+    public void abandonCart(int cartId) throws Exception {
+        closeCart(cartId, STATUS_ABANDONED, 0);
+    }
+
+
+    private void closeCart(int cartId, String status, int memberId) throws Exception {
+        try {
+            cartDAO.closeCart(cartId, status, memberId);
+        } catch (Exception e) {
+            logger.error("Error closing cart: " + cartId, e);
+            throw new Exception("Error closing cart: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.library.app.event;
+
+/**
+ * How a book or member changed.
+ */
+public enum ChangeKind {
+    ADDED,
+    UPDATED,
+    DELETED
+}
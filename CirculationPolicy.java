@@ -0,0 +1,397 @@
+package com.library.app.service;
+
+import com.library.app.model.Book;
+import com.library.app.model.Member;
+import com.library.app.model.MemberRole;
+import com.library.app.model.MemberStatus;
+import com.library.app.util.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Borrowing rules compiled into a dense decision table.
+ * <p>
+ * The table has one cell per member role, member status and genre, holding
+ * the loan period, the loan limit, the number of renewals allowed and the
+ * daily fine rate. Genres not named by any rule share one "other" column, so
+ * a decision is a map lookup for the genre followed by array reads.
+ * <p>
+ * Defaults come from {@link SettingsService}: active members get the loan
+ * period and per-role limit from the settings, any other status may not
+ * borrow, renewals are unlimited and there is no fine. Rules in the
+ * {@code circulation.rules} setting override them, one per line or separated
+ * by {@code ;}:
+ * <pre>
+ *   ROLE | GENRE | STATUS : loan_days=7, max_loans=2, renewals=0, fine_rate=0.5
+ * </pre>
+ * Any of the three selectors may be {@code *}. More specific rules win over
+ * less specific ones; among equally specific rules the later one wins. In a
+ * genre column {@code max_loans} limits the books of that genre in one
+ * checkout; in the "other" column it is the member's overall limit.
+ * <p>
+ * The compiled policy is immutable and is rebuilt whenever the settings change.
+ */
+public final class CirculationPolicy {
+    
+    private static final Logger logger = new Logger(CirculationPolicy.class.getName());
+    
+    public static final String RULES_KEY = "circulation.rules";
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+    
+    private static final MemberRole[] ROLES = MemberRole.values();
+    private static final MemberStatus[] STATUSES = MemberStatus.values();
+    private static final int OTHER_GENRE = 0;
+    private static final int MAX_CACHED_GENRES = 4096;
+    
+    private static volatile CirculationPolicy current;
+    
+    // Normalized genre name to column; column 0 is every genre without a rule
+    private final Map<String, Integer> genreColumns;
+    // Raw genre strings as they appear on books, to skip normalizing on every lookup
+    private final Map<String, Integer> genreCache = new ConcurrentHashMap<>();
+    private final int genreCount;
+    private final int[] loanDays;
+    private final int[] maxLoans;
+    private final int[] renewals;
+    private final double[] fineRates;
+    
+
+    CirculationPolicy(SettingsService.Snapshot settings) {
+        List<Rule> rules = parseRules(settings.getString(RULES_KEY, null));
+        
+        Map<String, Integer> columns = new HashMap<>();
+        for (Rule rule : rules) {
+            if (rule.genre != null && !columns.containsKey(rule.genre)) {
+                columns.put(rule.genre, columns.size() + 1);
+            }
+        }
+        this.genreColumns = Collections.unmodifiableMap(columns);
+        this.genreCount = columns.size() + 1;
+        
+        int cells = ROLES.length * STATUSES.length * genreCount;
+        this.loanDays = new int[cells];
+        this.maxLoans = new int[cells];
+        this.renewals = new int[cells];
+        this.fineRates = new double[cells];
+        
+        for (MemberRole role : ROLES) {
+            for (MemberStatus status : STATUSES) {
+                int limit = status == MemberStatus.ACTIVE ? settings.getMaxBorrows(role) : 0;
+                for (int genre = 0; genre < genreCount; genre++) {
+                    int cell = cell(role, status, genre);
+                    loanDays[cell] = settings.getLoanDays();
+                    maxLoans[cell] = genre == OTHER_GENRE ? limit : UNLIMITED;
+                    renewals[cell] = UNLIMITED;
+                    fineRates[cell] = 0.0;
+                }
+            }
+        }
+        
+        // Stable sort keeps the written order among equally specific rules
+        List<Rule> ordered = new ArrayList<>(rules);
+        ordered.sort((a, b) -> Integer.compare(a.specificity(), b.specificity()));
+        for (Rule rule : ordered) {
+            apply(rule);
+        }
+    }
+    
+
+    /**
+     * @return The policy compiled from the current settings
+     */
+    public static CirculationPolicy get() {
+        CirculationPolicy policy = current;
+        if (policy == null) {
+            synchronized (CirculationPolicy.class) {
+                policy = current;
+                if (policy == null) {
+                    SettingsService settings = SettingsService.getInstance();
+                    policy = current = new CirculationPolicy(settings.getSnapshot());
+                    settings.addListener(CirculationPolicy::recompile);
+                }
+            }
+        }
+        return policy;
+    }
+    
+
+    private static void recompile() {
+        current = new CirculationPolicy(SettingsService.getInstance().getSnapshot());
+        logger.info("Circulation policy recompiled");
+    }
+    
+
+    public int getLoanDays(Member member, Book book) {
+        return loanDays[cell(member, book)];
+    }
+    
+
+    public int getRenewalsAllowed(Member member, Book book) {
+        return renewals[cell(member, book)];
+    }
+    
+
+    public double getFineRate(Member member, Book book) {
+        return fineRates[cell(member, book)];
+    }
+    
+
+    /**
+     * @return The overall number of loans a member with this role and status may hold
+     */
+    public int getMaxLoans(MemberRole role, MemberStatus status) {
+        return maxLoans[cell(orDefault(role), orDefault(status), OTHER_GENRE)];
+    }
+    
+
+    /**
+     * @return The overall limit of an active member with this member's role
+     */
+    public int getMaxAllowedBorrows(Member member) {
+        return getMaxLoans(member.getMemberRole(), MemberStatus.ACTIVE);
+    }
+    
+
+    /**
+     * Members who are not active have a limit of 0 unless a rule says otherwise.
+     */
+    public boolean canBorrowMore(Member member) {
+        return member.getBorrowedCount() < getMaxLoans(member.getMemberRole(), member.getMemberStatus()) &&
+               !member.isExpired();
+    }
+    
+
+    /**
+     * Decides a whole checkout: the member's overall limit, per-genre limits
+     * and the loan period of each book.
+     * 
+     * @param member The borrower
+     * @param books The books in the cart
+     * @return The decision; loan periods are filled in even when it is refused
+     */
+    public Decision evaluate(Member member, List<Book> books) {
+        int base = cell(orDefault(member.getMemberRole()), orDefault(member.getMemberStatus()), OTHER_GENRE);
+        int[] bookLoanDays = new int[books.size()];
+        int[] genreCounts = new int[genreCount];
+        List<String> problems = new ArrayList<>();
+        
+        for (int i = 0; i < bookLoanDays.length; i++) {
+            int genre = genreColumn(books.get(i).getGenre());
+            bookLoanDays[i] = loanDays[base + genre];
+            genreCounts[genre]++;
+        }
+        
+        if (member.isExpired()) {
+            problems.add("Membership has expired");
+        }
+        int limit = maxLoans[base];
+        int total = member.getBorrowedCount() + books.size();
+        if (total > limit) {
+            problems.add("Borrowing limit reached. Current: " + member.getBorrowedCount() +
+                         ", Attempting to borrow: " + books.size() + ", Maximum allowed: " + limit);
+        }
+        for (Map.Entry<String, Integer> genre : genreColumns.entrySet()) {
+            int column = genre.getValue();
+            if (genreCounts[column] > maxLoans[base + column]) {
+                problems.add("At most " + maxLoans[base + column] + " " + genre.getKey() +
+                             " book(s) per checkout; cart has " + genreCounts[column]);
+            }
+        }
+        
+        return new Decision(problems, bookLoanDays);
+    }
+    
+
+    private int cell(Member member, Book book) {
+        return cell(orDefault(member.getMemberRole()), orDefault(member.getMemberStatus()), genreColumn(book.getGenre()));
+    }
+    
+
+    private int cell(MemberRole role, MemberStatus status, int genre) {
+        return (role.ordinal() * STATUSES.length + status.ordinal()) * genreCount + genre;
+    }
+    
+
+    private int genreColumn(String genre) {
+        if (genre == null || genreColumns.isEmpty()) {
+            return OTHER_GENRE;
+        }
+        Integer column = genreCache.get(genre);
+        if (column == null) {
+            column = genreColumns.getOrDefault(normalizeGenre(genre), OTHER_GENRE);
+            if (genreCache.size() < MAX_CACHED_GENRES) {
+                genreCache.put(genre, column);
+            }
+        }
+        return column;
+    }
+    
+
+    private void apply(Rule rule) {
+        for (MemberRole role : ROLES) {
+            if (rule.role != null && rule.role != role) {
+                continue;
+            }
+            for (MemberStatus status : STATUSES) {
+                if (rule.status != null && rule.status != status) {
+                    continue;
+                }
+                for (int genre = 0; genre < genreCount; genre++) {
+                    if (rule.genre != null && genreColumns.get(rule.genre) != genre) {
+                        continue;
+                    }
+                    int cell = cell(role, status, genre);
+                    if (rule.loanDays != null) loanDays[cell] = rule.loanDays;
+                    if (rule.maxLoans != null) maxLoans[cell] = rule.maxLoans;
+                    if (rule.renewals != null) renewals[cell] = rule.renewals;
+                    if (rule.fineRate != null) fineRates[cell] = rule.fineRate;
+                }
+            }
+        }
+    }
+    
+
+    private static List<Rule> parseRules(String text) {
+        List<Rule> rules = new ArrayList<>();
+        if (text == null) {
+            return rules;
+        }
+        for (String line : text.split("[\\n;]")) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            try {
+                rules.add(Rule.parse(line));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Ignoring circulation rule \"" + line.trim() + "\": " + e.getMessage());
+            }
+        }
+        return rules;
+    }
+    
+
+    private static String normalizeGenre(String genre) {
+        return genre.trim().toLowerCase(Locale.ROOT);
+    }
+    
+
+    private static MemberRole orDefault(MemberRole role) {
+        // Legacy roles such as the old 'MEMBER' default are treated as regular members
+        return role != null && role != MemberRole.UNKNOWN ? role : MemberRole.REGULAR;
+    }
+    
+
+    private static MemberStatus orDefault(MemberStatus status) {
+        return status != null ? status : MemberStatus.INACTIVE;
+    }
+    
+    /**
+     * Outcome of {@link #evaluate(Member, List)}.
+     */
+    public static final class Decision {
+        
+        private final List<String> problems;
+        private final int[] loanDays;
+        
+
+        Decision(List<String> problems, int[] loanDays) {
+            this.problems = Collections.unmodifiableList(problems);
+            this.loanDays = loanDays;
+        }
+        
+
+        public boolean isAllowed() {
+            return problems.isEmpty();
+        }
+        
+
+        /**
+         * @return Why the checkout is refused; empty when it is allowed
+         */
+        public List<String> getProblems() {
+            return problems;
+        }
+        
+
+        /**
+         * @param index Position of the book in the evaluated list
+         */
+        public int getLoanDays(int index) {
+            return loanDays[index];
+        }
+    }
+    
+    private static final class Rule {
+        
+        private MemberRole role;
+        private String genre;
+        private MemberStatus status;
+        private Integer loanDays;
+        private Integer maxLoans;
+        private Integer renewals;
+        private Double fineRate;
+        
+
+        static Rule parse(String line) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("missing ':'");
+            }
+            String[] selectors = line.substring(0, colon).split("\\|");
+            if (selectors.length != 3) {
+                throw new IllegalArgumentException("expected ROLE | GENRE | STATUS");
+            }
+            
+            Rule rule = new Rule();
+            String role = selectors[0].trim();
+            String genre = selectors[1].trim();
+            String status = selectors[2].trim();
+            if (!"*".equals(role)) {
+                rule.role = MemberRole.valueOf(role.toUpperCase(Locale.ROOT));
+            }
+            if (!"*".equals(genre)) {
+                rule.genre = normalizeGenre(genre);
+            }
+            if (!"*".equals(status)) {
+                rule.status = MemberStatus.valueOf(status.toUpperCase(Locale.ROOT));
+            }
+            
+            for (String assignment : line.substring(colon + 1).split(",")) {
+                String[] parts = assignment.split("=", 2);
+                if (parts.length != 2) {
+                    continue;
+                }
+                String key = parts[0].trim().toLowerCase(Locale.ROOT);
+                String value = parts[1].trim();
+                switch (key) {
+                    case "loan_days":
+                        rule.loanDays = Integer.parseInt(value);
+                        break;
+                    case "max_loans":
+                        rule.maxLoans = Integer.parseInt(value);
+                        break;
+                    case "renewals":
+                        rule.renewals = Integer.parseInt(value);
+                        break;
+                    case "fine_rate":
+                        rule.fineRate = Double.parseDouble(value);
+                        break;
+                    default:
+                        throw new IllegalArgumentException("unknown field " + key);
+                }
+            }
+            return rule;
+        }
+        
+
+        int specificity() {
+            return (role != null ? 1 : 0) + (genre != null ? 1 : 0) + (status != null ? 1 : 0);
+        }
+    }
+}
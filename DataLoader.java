@@ -0,0 +1,257 @@
+package com.library.app.ui;
+
+import com.library.app.db.QueryHandle;
+import com.library.app.util.Logger;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.util.List;
+import java.util.Vector;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Loads table data on a background thread and hands the rows to the Event
+ * Dispatch Thread in chunks as they are read.
+ * <p>
+ * Each load runs in a {@link SwingWorker}; rows published by the source are
+ * batched by Swing and delivered to {@code onRows} on the EDT, so the first
+ * rows show up while the query is still reading. A progress message is shown
+ * in the given status label. Loads requested while one is running are
+ * coalesced: the running load is cancelled and a single new load starts when
+ * it has stopped, using the most recent source. A load stopped with
+ * {@link #pause()}, for example because its tab was left, is restarted by
+ * {@link #resume()}.
+ * <p>
+ * All methods must be called on the EDT.
+ *
+ * @param <T> The type of the rows
+ */
+public class DataLoader<T> {
+
+    private static final Logger logger = new Logger(DataLoader.class.getName());
+
+    /**
+     * Reads rows and passes each one to the sink, on a background thread.
+     */
+    public interface Source<T> {
+        void load(QueryHandle handle, Consumer<? super T> sink) throws Exception;
+    }
+
+    private final String name;
+    private final JLabel statusLabel;
+    private final Runnable onStart;
+    private final Consumer<List<T>> onRows;
+    private final IntConsumer onDone;
+    private final Consumer<Exception> onError;
+
+    private Worker running;
+    private Source<T> pending;
+    private Source<T> paused;
+
+    /**
+     * Creates a loader.
+     *
+     * @param name The name used in log messages
+     * @param statusLabel Shows progress while loading; may be null
+     * @param onStart Called before the first rows of a load, usually to clear the table
+     * @param onRows Receives each chunk of rows
+     * @param onDone Receives the number of rows once a load has completed
+     * @param onError Receives the failure of a load
+     */
+    public DataLoader(String name, JLabel statusLabel, Runnable onStart, Consumer<List<T>> onRows,
+                      IntConsumer onDone, Consumer<Exception> onError) {
+        this.name = name;
+        this.statusLabel = statusLabel;
+        this.onStart = onStart;
+        this.onRows = onRows;
+        this.onDone = onDone;
+        this.onError = onError;
+    }
+
+    /**
+     * Starts loading from the source, replacing a load that is still running.
+     */
+    public void load(Source<T> source) {
+        paused = null;
+        if (running != null) {
+            // Started once the running load has let go of the connection
+            pending = source;
+            running.stop();
+            return;
+        }
+        start(source);
+    }
+
+    /**
+     * Cancels the running load and any load waiting to start, for good.
+     */
+    public void cancel() {
+        paused = null;
+        pending = null;
+        if (running != null) {
+            running.stop();
+        }
+    }
+
+    /**
+     * Cancels the running load, remembering it for {@link #resume()}.
+     */
+    public void pause() {
+        if (running != null) {
+            paused = pending != null ? pending : running.source;
+            pending = null;
+            running.stop();
+        }
+    }
+
+    /**
+     * Restarts a load that was paused before it completed.
+     */
+    public void resume() {
+        if (paused != null) {
+            load(paused);
+        }
+    }
+
+    public boolean isLoading() {
+        return running != null;
+    }
+
+    /**
+     * Appends rows to a table model with a single change event.
+     */
+    public static void addRows(DefaultTableModel model, List<Object[]> rows) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        Vector<Vector<Object>> data = (Vector<Vector<Object>>) (Vector<?>) model.getDataVector();
+        int first = data.size();
+        for (Object[] row : rows) {
+            Vector<Object> cells = new Vector<>(row.length);
+            for (Object cell : row) {
+                cells.add(cell);
+            }
+            data.add(cells);
+        }
+        model.fireTableRowsInserted(first, data.size() - 1);
+    }
+
+    /**
+     * Replaces the cells of one row with a single change event.
+     */
+    public static void replaceRow(DefaultTableModel model, int row, Object[] cells) {
+        @SuppressWarnings("unchecked")
+        Vector<Vector<Object>> data = (Vector<Vector<Object>>) (Vector<?>) model.getDataVector();
+        Vector<Object> rowCells = data.get(row);
+        for (int column = 0; column < cells.length; column++) {
+            rowCells.set(column, cells[column]);
+        }
+        model.fireTableRowsUpdated(row, row);
+    }
+
+    private void start(Source<T> source) {
+        onStart.run();
+        showStatus("Loading...");
+        running = new Worker(source);
+        running.execute();
+    }
+
+    private void finished(Worker worker) {
+        if (worker != running) {
+            return;
+        }
+        running = null;
+        if (pending != null) {
+            Source<T> next = pending;
+            pending = null;
+            start(next);
+        }
+    }
+
+    private void showStatus(String text) {
+        if (statusLabel != null) {
+            statusLabel.setText(text);
+        }
+    }
+
+    private final class Worker extends SwingWorker<Integer, T> {
+
+        private final Source<T> source;
+        private final QueryHandle handle = new QueryHandle();
+        private volatile boolean started;
+        // Only touched on the EDT
+        private int delivered;
+
+        Worker(Source<T> source) {
+            this.source = source;
+        }
+
+        void stop() {
+            handle.cancel();
+            cancel(false);
+        }
+
+        @Override
+        protected Integer doInBackground() throws Exception {
+            started = true;
+            int[] count = new int[1];
+            try {
+                source.load(handle, row -> {
+                    if (handle.isCancelled()) {
+                        throw new LoadCancelledException();
+                    }
+                    publish(row);
+                    count[0]++;
+                });
+                return count[0];
+            } finally {
+                // Not done(): that runs as soon as the worker is cancelled, while the query may still be running
+                SwingUtilities.invokeLater(() -> finished(this));
+            }
+        }
+
+        @Override
+        protected void process(List<T> chunk) {
+            if (isCancelled()) {
+                return;
+            }
+            onRows.accept(chunk);
+            delivered += chunk.size();
+            showStatus("Loading... " + delivered + " rows");
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                logger.debug("{} load cancelled after {} rows", name, delivered);
+                if (!started) {
+                    // Cancelled while queued; doInBackground will never run
+                    finished(this);
+                }
+                return;
+            }
+            try {
+                int count = get();
+                onDone.accept(count);
+                logger.info("{} loaded in the background: {} rows", name, count);
+            } catch (Exception e) {
+                Exception error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                logger.error("Error loading " + name, error);
+                onError.accept(error);
+            }
+        }
+    }
+
+    /**
+     * Thrown into the source to stop reading once a load has been cancelled.
+     */
+    private static final class LoadCancelledException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        LoadCancelledException() {
+            super("Load cancelled", null, false, false);
+        }
+    }
+}
@@ -1,33 +1,60 @@
 package com.library.app.util;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
+import java.util.TimeZone;
 
 /**
  * Utility class for date operations.
+ * <p>
+ * Formatting and parsing use immutable {@link DateTimeFormatter}s and are safe
+ * on any thread. Day arithmetic works on epoch milliseconds and epoch days in
+ * the default time zone without allocating; the {@link Date} methods are thin
+ * adapters over the {@code long} versions.
  */
 public class DateUtil {
     
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd");
-    private static final SimpleDateFormat DATE_TIME_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-    private static final SimpleDateFormat DISPLAY_DATE_FORMAT = new SimpleDateFormat("MMM dd, yyyy");
+    public static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+    
+    /** Epoch-millis value standing for "no date" in fields that store dates as {@code long}. */
+    public static final long NO_DATE = Long.MIN_VALUE;
+    
+    private static final ZoneId ZONE = ZoneId.systemDefault();
+    private static final TimeZone TIME_ZONE = TimeZone.getTimeZone(ZONE);
+    
+    private static final DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DISPLAY_DATE_FORMAT = DateTimeFormatter.ofPattern("MMM dd, yyyy");
+    // Typed input may leave out leading zeros, as the old SimpleDateFormat parsing allowed
+    private static final DateTimeFormatter DATE_INPUT_FORMAT = DateTimeFormatter.ofPattern("yyyy-M-d");
+    private static final DateTimeFormatter DATE_TIME_INPUT_FORMAT = DateTimeFormatter.ofPattern("yyyy-M-d H:m:s");
     
     /**
-     * Formats a date to string using the default date format (yyyy-MM-dd).
+     * Formats a date to string using the display date format (MMM dd, yyyy).
      * 
      * @param date The date to format
      * @return The formatted date string
      */
-    
     public static String formatDate(Date date) {
         if (date == null) {
             return "";
         }
-        synchronized (DISPLAY_DATE_FORMAT) {
-            return DISPLAY_DATE_FORMAT.format(date);
-        }
+        return formatDate(toLocalDate(date.getTime()));
+    }
+    
+    /**
+     * Formats a date to string using the display date format (MMM dd, yyyy).
+     * 
+     * @param date The date to format
+     * @return The formatted date string
+     */
+    public static String formatDate(LocalDate date) {
+        return date == null ? "" : DISPLAY_DATE_FORMAT.format(date);
     }
     
     /**
@@ -40,9 +67,17 @@ public class DateUtil {
         if (date == null) {
             return "";
         }
-        synchronized (DATE_TIME_FORMAT) {
-            return DATE_TIME_FORMAT.format(date);
-        }
+        return formatDateTime(toLocalDateTime(date.getTime()));
+    }
+    
+    /**
+     * Formats a date time to string using the date time format (yyyy-MM-dd HH:mm:ss).
+     * 
+     * @param dateTime The date time to format
+     * @return The formatted date time string
+     */
+    public static String formatDateTime(LocalDateTime dateTime) {
+        return dateTime == null ? "" : DATE_TIME_FORMAT.format(dateTime);
     }
     
     /**
@@ -53,16 +88,34 @@ public class DateUtil {
      * @throws ParseException if the string cannot be parsed
      */
     public static Date parseDate(String dateStr) throws ParseException {
+        LocalDate date = parseLocalDate(dateStr);
+        return date == null ? null : new Date(startOfDayMillis(date.toEpochDay()));
+    }
+    
+    /**
+     * Parses a date string in the default date format (yyyy-MM-dd). Month and
+     * day may have one digit, e.g. 2024-1-5. A day past the end of its month
+     * is moved back to the last day, e.g. 2024-02-30 to 2024-02-29. Text that is not
+     * a date, or a month or day out of range, is rejected.
+     * 
+     * @param dateStr The date string to parse
+     * @return The parsed date, or null if the string is empty
+     * @throws ParseException if the string cannot be parsed
+     */
+    public static LocalDate parseLocalDate(String dateStr) throws ParseException {
         if (dateStr == null || dateStr.trim().isEmpty()) {
             return null;
         }
-        synchronized (DATE_FORMAT) {
-            return DATE_FORMAT.parse(dateStr);
+        try {
+            return LocalDate.parse(dateStr.trim(), DATE_INPUT_FORMAT);
+        } catch (DateTimeParseException e) {
+            throw new ParseException(e.getMessage(), e.getErrorIndex());
         }
     }
     
     /**
      * Parses a date time string to a Date object using the date time format (yyyy-MM-dd HH:mm:ss).
+     * Fields other than the year may have one digit, e.g. 2024-1-5 9:05:00.
      * 
      * @param dateTimeStr The date time string to parse
      * @return The parsed Date object
@@ -72,8 +125,11 @@ public class DateUtil {
         if (dateTimeStr == null || dateTimeStr.trim().isEmpty()) {
             return null;
         }
-        synchronized (DATE_TIME_FORMAT) {
-            return DATE_TIME_FORMAT.parse(dateTimeStr);
+        try {
+            LocalDateTime dateTime = LocalDateTime.parse(dateTimeStr.trim(), DATE_TIME_INPUT_FORMAT);
+            return Date.from(dateTime.atZone(ZONE).toInstant());
+        } catch (DateTimeParseException e) {
+            throw new ParseException(e.getMessage(), e.getErrorIndex());
         }
     }
     
@@ -85,10 +141,31 @@ public class DateUtil {
      * @return The calculated due date
      */
     public static Date calculateDueDate(Date startDate, int days) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(startDate);
-        cal.add(Calendar.DAY_OF_MONTH, days);
-        return cal.getTime();
+        return new Date(calculateDueDate(startDate.getTime(), days));
+    }
+    
+    /**
+     * Calculates a due date based on a start time and a loan period. The time
+     * of day is kept, also across daylight saving changes.
+     * 
+     * @param startMillis The start time in epoch milliseconds
+     * @param days The number of days in the loan period
+     * @return The due time in epoch milliseconds
+     */
+    public static long calculateDueDate(long startMillis, int days) {
+        // Same rule as Calendar.add(DAY_OF_MONTH): move by whole days at the
+        // original offset, then correct for an offset change unless that
+        // would leave the target day
+        long startOffset = offset(startMillis);
+        long dueMillis = startMillis + days * MILLIS_PER_DAY;
+        long correction = startOffset - offset(dueMillis);
+        if (correction != 0) {
+            long corrected = dueMillis + correction;
+            if (toEpochDay(corrected) == Math.floorDiv(startMillis + startOffset, MILLIS_PER_DAY) + days) {
+                dueMillis = corrected;
+            }
+        }
+        return dueMillis;
     }
     
     /**
@@ -99,8 +176,18 @@ public class DateUtil {
      * @return The number of days between the dates
      */
     public static long daysBetween(Date startDate, Date endDate) {
-        long diff = endDate.getTime() - startDate.getTime();
-        return diff / (24 * 60 * 60 * 1000);
+        return daysBetween(startDate.getTime(), endDate.getTime());
+    }
+    
+    /**
+     * Calculates the number of whole 24-hour periods between two times.
+     * 
+     * @param startMillis The start time in epoch milliseconds
+     * @param endMillis The end time in epoch milliseconds
+     * @return The number of days between the times
+     */
+    public static long daysBetween(long startMillis, long endMillis) {
+        return (endMillis - startMillis) / MILLIS_PER_DAY;
     }
     
     /**
@@ -110,7 +197,7 @@ public class DateUtil {
      * @return true if the date is in the past, false otherwise
      */
     public static boolean isPastDate(Date date) {
-        return date.before(new Date());
+        return LibraryClock.get().isPast(date);
     }
     
     /**
@@ -120,29 +207,17 @@ public class DateUtil {
      * @return The date at the start of the day
      */
     public static Date getStartOfDay(Date date) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(date);
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        return cal.getTime();
+        return new Date(startOfDayMillis(toEpochDay(date.getTime())));
     }
     
     /**
-     * Gets the end of a day (23:59:59) for a given date.
+     * Gets the end of a day (23:59:59.999) for a given date.
      * 
      * @param date The date
      * @return The date at the end of the day
      */
     public static Date getEndOfDay(Date date) {
-        Calendar cal = Calendar.getInstance();
-        cal.setTime(date);
-        cal.set(Calendar.HOUR_OF_DAY, 23);
-        cal.set(Calendar.MINUTE, 59);
-        cal.set(Calendar.SECOND, 59);
-        cal.set(Calendar.MILLISECOND, 999);
-        return cal.getTime();
+        return new Date(startOfDayMillis(toEpochDay(date.getTime()) + 1) - 1);
     }
     
     /**
@@ -152,9 +227,7 @@ public class DateUtil {
      * @return The date a specified number of days ago
      */
     public static Date getDaysAgo(int days) {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.DAY_OF_MONTH, -days);
-        return cal.getTime();
+        return new Date(calculateDueDate(LibraryClock.currentTimeMillis(), -days));
     }
     
     /**
@@ -164,9 +237,7 @@ public class DateUtil {
      * @return The date a specified number of months ago
      */
     public static Date getMonthsAgo(int months) {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.MONTH, -months);
-        return cal.getTime();
+        return Date.from(toLocalDateTime(LibraryClock.currentTimeMillis()).minusMonths(months).atZone(ZONE).toInstant());
     }
     
     /**
@@ -176,9 +247,7 @@ public class DateUtil {
      * @return The date a specified number of years ago
      */
     public static Date getYearsAgo(int years) {
-        Calendar cal = Calendar.getInstance();
-        cal.add(Calendar.YEAR, -years);
-        return cal.getTime();
+        return Date.from(toLocalDateTime(LibraryClock.currentTimeMillis()).minusYears(years).atZone(ZONE).toInstant());
     }
     
     /**
@@ -190,14 +259,107 @@ public class DateUtil {
      * @return The created Date object
      */
     public static Date createDate(int year, int month, int day) {
-        Calendar cal = Calendar.getInstance();
-        cal.set(Calendar.YEAR, year);
-        cal.set(Calendar.MONTH, month - 1); // Calendar months are 0-based
-        cal.set(Calendar.DAY_OF_MONTH, day);
-        cal.set(Calendar.HOUR_OF_DAY, 0);
-        cal.set(Calendar.MINUTE, 0);
-        cal.set(Calendar.SECOND, 0);
-        cal.set(Calendar.MILLISECOND, 0);
-        return cal.getTime();
+        return new Date(startOfDayMillis(LocalDate.of(year, month, day).toEpochDay()));
+    }
+    
+    /**
+     * Returns the local epoch day (days since 1970-01-01 in the default time
+     * zone) that contains the given instant.
+     * 
+     * @param epochMillis The instant in epoch milliseconds
+     * @return The local epoch day
+     */
+    public static long toEpochDay(long epochMillis) {
+        return Math.floorDiv(epochMillis + offset(epochMillis), MILLIS_PER_DAY);
+    }
+    
+    /**
+     * Returns the instant at which the given local epoch day starts.
+     * 
+     * @param epochDay The local epoch day
+     * @return The start of the day in epoch milliseconds
+     */
+    public static long startOfDayMillis(long epochDay) {
+        return localToEpochMillis(epochDay * MILLIS_PER_DAY);
+    }
+    
+    /**
+     * Converts epoch milliseconds to a local date.
+     * 
+     * @param epochMillis The instant in epoch milliseconds
+     * @return The local date
+     */
+    public static LocalDate toLocalDate(long epochMillis) {
+        return LocalDate.ofEpochDay(toEpochDay(epochMillis));
+    }
+    
+    /**
+     * Converts epoch milliseconds to a local date time.
+     * 
+     * @param epochMillis The instant in epoch milliseconds
+     * @return The local date time
+     */
+    public static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONE);
+    }
+    
+    /**
+     * Converts a Date to a local date.
+     * 
+     * @param date The date
+     * @return The local date, or null if the date is null
+     */
+    public static LocalDate toLocalDate(Date date) {
+        return date == null ? null : toLocalDate(date.getTime());
+    }
+    
+    /**
+     * Converts a local date to a Date at the start of that day.
+     * 
+     * @param date The local date
+     * @return The Date, or null if the date is null
+     */
+    public static Date toDate(LocalDate date) {
+        return date == null ? null : new Date(startOfDayMillis(date.toEpochDay()));
+    }
+    
+    /**
+     * Converts epoch milliseconds to a new Date.
+     * 
+     * @param epochMillis The instant in epoch milliseconds, or {@link #NO_DATE}
+     * @return The Date, or null for {@link #NO_DATE}
+     */
+    public static Date toDate(long epochMillis) {
+        return epochMillis == NO_DATE ? null : new Date(epochMillis);
+    }
+    
+    /**
+     * Converts a Date to epoch milliseconds.
+     * 
+     * @param date The date, may be null
+     * @return The instant in epoch milliseconds, or {@link #NO_DATE} if the date is null
+     */
+    public static long toMillis(Date date) {
+        return date == null ? NO_DATE : date.getTime();
+    }
+    
+    private static long offset(long epochMillis) {
+        return TIME_ZONE.getOffset(epochMillis);
+    }
+    
+    /**
+     * Converts a local wall-clock time, expressed as milliseconds since the
+     * local epoch, back to an instant. As with Calendar, a time skipped by a
+     * daylight saving gap is read with the offset from before the gap and a
+     * repeated time resolves to its later occurrence.
+     */
+    private static long localToEpochMillis(long localMillis) {
+        // Offsets change at most a few times a year, so a day either side
+        // gives the offsets before and after any nearby transition
+        long offsetAfter = offset(localMillis + MILLIS_PER_DAY);
+        if (offset(localMillis - offsetAfter) == offsetAfter) {
+            return localMillis - offsetAfter;
+        }
+        return localMillis - offset(localMillis - MILLIS_PER_DAY);
     }
 }
@@ -0,0 +1,10 @@
+package com.library.app.event;
+
+/**
+ * Something that changed in the library's data, published on the
+ * {@link EventBus} by the service that made the change.
+ * <p>
+ * Events only carry ids; listeners read the current state themselves.
+ */
+public interface DomainEvent {
+}
@@ -0,0 +1,108 @@
+package com.library.app.event;
+
+import com.library.app.util.Logger;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * In-process bus that tells the UI about changes made by the services.
+ * <p>
+ * Publishing never blocks: the event goes on a lock-free queue and, if no
+ * delivery is pending yet, one is scheduled on the Event Dispatch Thread. A
+ * delivery hands every queued event to the listeners of its type in the order
+ * the events were published, so a burst of changes, such as a checkout of
+ * several books, costs a single trip to the EDT. Events published while
+ * listeners run, including from the EDT itself, go out in the next delivery.
+ * <p>
+ * Listeners always run on the EDT and may touch Swing components directly.
+ */
+public final class EventBus {
+
+    private static final Logger logger = new Logger(EventBus.class.getName());
+
+    private static final EventBus instance = new EventBus();
+
+    private final Queue<DomainEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean deliveryScheduled = new AtomicBoolean();
+    private final List<Listener<?>> listeners = new CopyOnWriteArrayList<>();
+
+
+    private EventBus() {
+    }
+
+
+    public static EventBus get() {
+        return instance;
+    }
+
+
+    /**
+     * Registers a listener for events of a type and its subtypes.
+     */
+    public <E extends DomainEvent> void subscribe(Class<E> type, Consumer<? super E> listener) {
+        listeners.add(new Listener<>(type, listener));
+    }
+
+
+    public void unsubscribe(Consumer<?> listener) {
+        listeners.removeIf(registered -> registered.consumer == listener);
+    }
+
+
+    /**
+     * Queues an event for the listeners; safe to call from any thread.
+     */
+    public void publish(DomainEvent event) {
+        queue.offer(event);
+        if (deliveryScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(this::deliver);
+        }
+    }
+
+
+    private void deliver() {
+        // Cleared first, so an event queued after the drain below schedules a new delivery
+        deliveryScheduled.set(false);
+        List<DomainEvent> events = new ArrayList<>();
+        for (DomainEvent event = queue.poll(); event != null; event = queue.poll()) {
+            events.add(event);
+        }
+
+        for (DomainEvent event : events) {
+            for (Listener<?> listener : listeners) {
+                try {
+                    listener.offer(event);
+                } catch (RuntimeException e) {
+                    logger.error("Listener failed on " + event, e);
+                }
+            }
+        }
+        if (!events.isEmpty()) {
+            logger.debug("Delivered {} events", events.size());
+        }
+    }
+
+    private static final class Listener<E extends DomainEvent> {
+
+        private final Class<E> type;
+        private final Consumer<? super E> consumer;
+
+        Listener(Class<E> type, Consumer<? super E> consumer) {
+            this.type = type;
+            this.consumer = consumer;
+        }
+
+        void offer(DomainEvent event) {
+            if (type.isInstance(event)) {
+                consumer.accept(type.cast(event));
+            }
+        }
+    }
+}
@@ -0,0 +1,389 @@
+package com.library.app.factory;
+
+import java.awt.geom.Path2D;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Turns the SVG elements of a Feather icon into a Java2D outline, so it can
+ * be stroked without an SVG library.
+ * <p>
+ * Covers what the Feather set uses: {@code path} with every path command,
+ * {@code line}, {@code polyline}, {@code polygon}, {@code circle} and
+ * {@code rect} with rounded corners. Coordinates stay on the icon's 24 by 24
+ * grid; the caller scales them to the size being drawn.
+ */
+final class FeatherShapes {
+
+    private static final Pattern ELEMENT = Pattern.compile("<(\\w+)((?:\\s+[\\w-]+=\"[^\"]*\")*)\\s*/?>");
+    private static final Pattern ATTRIBUTE = Pattern.compile("([\\w-]+)=\"([^\"]*)\"");
+    // Arcs become cubic curves of at most a quarter turn each, which follow the arc closely
+    private static final double MAX_ARC_SEGMENT = Math.PI / 2;
+
+    private FeatherShapes() {
+    }
+
+    /**
+     * @throws IllegalArgumentException If the elements use something this parser does not cover
+     */
+    static Path2D parse(String elements) {
+        Path2D.Double shape = new Path2D.Double();
+        Matcher element = ELEMENT.matcher(elements);
+        while (element.find()) {
+            Map<String, String> attributes = new HashMap<>();
+            Matcher attribute = ATTRIBUTE.matcher(element.group(2));
+            while (attribute.find()) {
+                attributes.put(attribute.group(1), attribute.group(2));
+            }
+            switch (element.group(1)) {
+                case "path":
+                    new PathParser(attributes.get("d"), shape).parse();
+                    break;
+                case "line":
+                    shape.moveTo(number(attributes, "x1"), number(attributes, "y1"));
+                    shape.lineTo(number(attributes, "x2"), number(attributes, "y2"));
+                    break;
+                case "polyline":
+                case "polygon":
+                    addPoints(shape, attributes.get("points"), element.group(1).equals("polygon"));
+                    break;
+                case "circle":
+                    addEllipse(shape, number(attributes, "cx"), number(attributes, "cy"),
+                               number(attributes, "r"), number(attributes, "r"));
+                    break;
+                case "rect":
+                    addRect(shape, attributes);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported SVG element: " + element.group(1));
+            }
+        }
+        return shape;
+    }
+
+    private static double number(Map<String, String> attributes, String name) {
+        String value = attributes.get(name);
+        return value == null || value.isEmpty() ? 0 : Double.parseDouble(value);
+    }
+
+    private static void addPoints(Path2D shape, String points, boolean closed) {
+        String[] values = points.trim().split("[\\s,]+");
+        for (int i = 0; i + 1 < values.length; i += 2) {
+            double x = Double.parseDouble(values[i]);
+            double y = Double.parseDouble(values[i + 1]);
+            if (i == 0) {
+                shape.moveTo(x, y);
+            } else {
+                shape.lineTo(x, y);
+            }
+        }
+        if (closed) {
+            shape.closePath();
+        }
+    }
+
+    private static void addEllipse(Path2D shape, double cx, double cy, double rx, double ry) {
+        shape.moveTo(cx + rx, cy);
+        arcTo(shape, cx + rx, cy, cx - rx, cy, rx, ry, 0, false, true);
+        arcTo(shape, cx - rx, cy, cx + rx, cy, rx, ry, 0, false, true);
+        shape.closePath();
+    }
+
+    private static void addRect(Path2D shape, Map<String, String> attributes) {
+        double x = number(attributes, "x");
+        double y = number(attributes, "y");
+        double width = number(attributes, "width");
+        double height = number(attributes, "height");
+        // A missing radius takes the other one, as in SVG
+        double rx = attributes.containsKey("rx") ? number(attributes, "rx") : number(attributes, "ry");
+        double ry = attributes.containsKey("ry") ? number(attributes, "ry") : rx;
+        rx = Math.min(rx, width / 2);
+        ry = Math.min(ry, height / 2);
+
+        shape.moveTo(x + rx, y);
+        shape.lineTo(x + width - rx, y);
+        if (rx > 0 && ry > 0) {
+            arcTo(shape, x + width - rx, y, x + width, y + ry, rx, ry, 0, false, true);
+        }
+        shape.lineTo(x + width, y + height - ry);
+        if (rx > 0 && ry > 0) {
+            arcTo(shape, x + width, y + height - ry, x + width - rx, y + height, rx, ry, 0, false, true);
+        }
+        shape.lineTo(x + rx, y + height);
+        if (rx > 0 && ry > 0) {
+            arcTo(shape, x + rx, y + height, x, y + height - ry, rx, ry, 0, false, true);
+        }
+        shape.lineTo(x, y + ry);
+        if (rx > 0 && ry > 0) {
+            arcTo(shape, x, y + ry, x + rx, y, rx, ry, 0, false, true);
+        }
+        shape.closePath();
+    }
+
+    /**
+     * Adds an SVG elliptical arc from (x0, y0) to (x, y) as cubic curves,
+     * converting the endpoint form to the centre form as the SVG
+     * specification describes in its implementation notes.
+     */
+    private static void arcTo(Path2D shape, double x0, double y0, double x, double y, double rx, double ry,
+                              double rotationDegrees, boolean largeArc, boolean sweep) {
+        if (x0 == x && y0 == y) {
+            return;
+        }
+        rx = Math.abs(rx);
+        ry = Math.abs(ry);
+        if (rx == 0 || ry == 0) {
+            shape.lineTo(x, y);
+            return;
+        }
+
+        double phi = Math.toRadians(rotationDegrees);
+        double cos = Math.cos(phi);
+        double sin = Math.sin(phi);
+        double dx = (x0 - x) / 2;
+        double dy = (y0 - y) / 2;
+        double x1 = cos * dx + sin * dy;
+        double y1 = -sin * dx + cos * dy;
+
+        // Radii too small to reach the end point are scaled up until they just do
+        double lambda = (x1 * x1) / (rx * rx) + (y1 * y1) / (ry * ry);
+        if (lambda > 1) {
+            rx *= Math.sqrt(lambda);
+            ry *= Math.sqrt(lambda);
+        }
+
+        double numerator = rx * rx * ry * ry - rx * rx * y1 * y1 - ry * ry * x1 * x1;
+        double denominator = rx * rx * y1 * y1 + ry * ry * x1 * x1;
+        double factor = Math.sqrt(Math.max(0, numerator / denominator)) * (largeArc == sweep ? -1 : 1);
+        double cx1 = factor * rx * y1 / ry;
+        double cy1 = -factor * ry * x1 / rx;
+        double cx = cos * cx1 - sin * cy1 + (x0 + x) / 2;
+        double cy = sin * cx1 + cos * cy1 + (y0 + y) / 2;
+
+        double startAngle = angle(1, 0, (x1 - cx1) / rx, (y1 - cy1) / ry);
+        double sweepAngle = angle((x1 - cx1) / rx, (y1 - cy1) / ry, (-x1 - cx1) / rx, (-y1 - cy1) / ry);
+        if (!sweep && sweepAngle > 0) {
+            sweepAngle -= 2 * Math.PI;
+        } else if (sweep && sweepAngle < 0) {
+            sweepAngle += 2 * Math.PI;
+        }
+
+        int segments = (int) Math.ceil(Math.abs(sweepAngle) / MAX_ARC_SEGMENT - 1e-9);
+        double step = sweepAngle / segments;
+        double control = 4.0 / 3.0 * Math.tan(step / 4);
+        double theta = startAngle;
+        for (int i = 0; i < segments; i++) {
+            double cos1 = Math.cos(theta);
+            double sin1 = Math.sin(theta);
+            double cos2 = Math.cos(theta + step);
+            double sin2 = Math.sin(theta + step);
+            // The segment on the unit circle, then stretched, rotated and moved onto the ellipse
+            double[] points = {
+                cos1 - control * sin1, sin1 + control * cos1,
+                cos2 + control * sin2, sin2 - control * cos2,
+                cos2, sin2
+            };
+            for (int p = 0; p < points.length; p += 2) {
+                double px = points[p] * rx;
+                double py = points[p + 1] * ry;
+                points[p] = cos * px - sin * py + cx;
+                points[p + 1] = sin * px + cos * py + cy;
+            }
+            if (i == segments - 1) {
+                // Land exactly on the end point so the next segment joins cleanly
+                points[4] = x;
+                points[5] = y;
+            }
+            shape.curveTo(points[0], points[1], points[2], points[3], points[4], points[5]);
+            theta += step;
+        }
+    }
+
+    private static double angle(double ux, double uy, double vx, double vy) {
+        return Math.atan2(ux * vy - uy * vx, ux * vx + uy * vy);
+    }
+
+    /**
+     * Reads the {@code d} attribute of a path, one command at a time.
+     */
+    private static final class PathParser {
+
+        private final String data;
+        private final Path2D shape;
+        private int position;
+
+        private double x;
+        private double y;
+        private double startX;
+        private double startY;
+        // Second control point of the last curve, reflected by S and T
+        private double controlX;
+        private double controlY;
+        private char lastCommand;
+
+        PathParser(String data, Path2D shape) {
+            this.data = data;
+            this.shape = shape;
+        }
+
+        void parse() {
+            char command = 0;
+            skipSeparators();
+            while (position < data.length()) {
+                char next = data.charAt(position);
+                if (Character.isLetter(next)) {
+                    command = next;
+                    position++;
+                } else if (command == 0) {
+                    throw new IllegalArgumentException("Path data must start with a command: " + data);
+                }
+                command(command);
+                // Further coordinates after a moveto are implicit linetos
+                if (command == 'M') {
+                    command = 'L';
+                } else if (command == 'm') {
+                    command = 'l';
+                }
+                skipSeparators();
+            }
+        }
+
+        private void command(char command) {
+            boolean relative = Character.isLowerCase(command);
+            double baseX = relative ? x : 0;
+            double baseY = relative ? y : 0;
+            char upper = Character.toUpperCase(command);
+            switch (upper) {
+                case 'M':
+                    x = baseX + number();
+                    y = baseY + number();
+                    startX = x;
+                    startY = y;
+                    shape.moveTo(x, y);
+                    break;
+                case 'L':
+                    x = baseX + number();
+                    y = baseY + number();
+                    shape.lineTo(x, y);
+                    break;
+                case 'H':
+                    x = baseX + number();
+                    shape.lineTo(x, y);
+                    break;
+                case 'V':
+                    y = baseY + number();
+                    shape.lineTo(x, y);
+                    break;
+                case 'C': {
+                    double x1 = baseX + number();
+                    double y1 = baseY + number();
+                    curve(x1, y1, baseX + number(), baseY + number(), baseX + number(), baseY + number());
+                    break;
+                }
+                case 'S': {
+                    boolean follows = lastCommand == 'C' || lastCommand == 'S';
+                    double x1 = follows ? 2 * x - controlX : x;
+                    double y1 = follows ? 2 * y - controlY : y;
+                    curve(x1, y1, baseX + number(), baseY + number(), baseX + number(), baseY + number());
+                    break;
+                }
+                case 'Q': {
+                    double x1 = baseX + number();
+                    double y1 = baseY + number();
+                    quad(x1, y1, baseX + number(), baseY + number());
+                    break;
+                }
+                case 'T': {
+                    boolean follows = lastCommand == 'Q' || lastCommand == 'T';
+                    quad(follows ? 2 * x - controlX : x, follows ? 2 * y - controlY : y,
+                         baseX + number(), baseY + number());
+                    break;
+                }
+                case 'A': {
+                    double rx = number();
+                    double ry = number();
+                    double rotation = number();
+                    boolean largeArc = flag();
+                    boolean sweep = flag();
+                    double endX = baseX + number();
+                    double endY = baseY + number();
+                    arcTo(shape, x, y, endX, endY, rx, ry, rotation, largeArc, sweep);
+                    x = endX;
+                    y = endY;
+                    break;
+                }
+                case 'Z':
+                    shape.closePath();
+                    x = startX;
+                    y = startY;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported path command '" + command + "': " + data);
+            }
+            lastCommand = upper;
+        }
+
+        private void curve(double x1, double y1, double x2, double y2, double endX, double endY) {
+            shape.curveTo(x1, y1, x2, y2, endX, endY);
+            controlX = x2;
+            controlY = y2;
+            x = endX;
+            y = endY;
+        }
+
+        private void quad(double x1, double y1, double endX, double endY) {
+            shape.quadTo(x1, y1, endX, endY);
+            controlX = x1;
+            controlY = y1;
+            x = endX;
+            y = endY;
+        }
+
+        private double number() {
+            skipSeparators();
+            int start = position;
+            if (position < data.length() && (data.charAt(position) == '-' || data.charAt(position) == '+')) {
+                position++;
+            }
+            boolean dot = false;
+            while (position < data.length()) {
+                char c = data.charAt(position);
+                if (c == '.' && !dot) {
+                    dot = true;
+                } else if (c == 'e' || c == 'E') {
+                    position++;
+                    if (position < data.length() && (data.charAt(position) == '-' || data.charAt(position) == '+')) {
+                        position++;
+                    }
+                    continue;
+                } else if (!Character.isDigit(c)) {
+                    // "-" or a second "." starts the next number, as in "1.5.5" or "2-3"
+                    break;
+                }
+                position++;
+            }
+            if (start == position) {
+                throw new IllegalArgumentException("Number expected at " + start + ": " + data);
+            }
+            return Double.parseDouble(data.substring(start, position));
+        }
+
+        private boolean flag() {
+            // Arc flags are single digits and may be written without separators, as in "a1 1 0 011 1"
+            skipSeparators();
+            if (position >= data.length() || (data.charAt(position) != '0' && data.charAt(position) != '1')) {
+                throw new IllegalArgumentException("Arc flag expected at " + position + ": " + data);
+            }
+            return data.charAt(position++) == '1';
+        }
+
+        private void skipSeparators() {
+            while (position < data.length()
+                    && (Character.isWhitespace(data.charAt(position)) || data.charAt(position) == ',')) {
+                position++;
+            }
+        }
+    }
+}
@@ -0,0 +1,318 @@
+package com.library.app.db;
+
+import com.library.app.util.Logger;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+public class HoldDAO {
+    
+    private static final Logger logger = new Logger(HoldDAO.class.getName());
+    
+    /** SQLSTATE raised by library_short_of_copies, created in SchemaUpgrade, when a conversion finds a book short. */
+    public static final String SHORT_OF_COPIES_STATE = "LB001";
+    
+    // Follows a "released" CTE: gives the held copies back, one update per book, and counts the holds
+    private static final String RETURN_HELD_COPIES =
+        ", returned AS (UPDATE books b SET held_copies = GREATEST(0, b.held_copies - r.n) " +
+        "FROM (SELECT book_id, COUNT(*) AS n FROM released GROUP BY book_id) r " +
+        "WHERE b.id = r.book_id) " +
+        "SELECT COUNT(*) FROM released";
+    
+
+    /**
+     * Reserves one free copy of a book. The copy is counted as held in the same
+     * statement that checks it is free, so two desks cannot hold the last copy.
+     * 
+     * @param bookId The book
+     * @param cartId The stored cart the hold belongs to, or 0
+     * @param desk The desk placing the hold
+     * @param ttlSeconds How long the hold lasts unless extended
+     * @return The hold id, or 0 if no copy is free
+     */
+    public long placeHold(int bookId, int cartId, String desk, int ttlSeconds) throws SQLException {
+        String sql = "WITH claimed AS (" +
+                     "UPDATE books SET held_copies = held_copies + 1 " +
+                     "WHERE id = ? AND available_copies - held_copies > 0 RETURNING id) " +
+                     "INSERT INTO book_holds (book_id, cart_id, desk, expires_at) " +
+                     "SELECT id, ?, ?, CURRENT_TIMESTAMP + ? * INTERVAL '1 second' FROM claimed " +
+                     "RETURNING id";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, bookId);
+            if (cartId > 0) {
+                stmt.setInt(2, cartId);
+            } else {
+                stmt.setNull(2, Types.INTEGER);
+            }
+            stmt.setString(3, desk);
+            stmt.setInt(4, ttlSeconds);
+            rs = stmt.executeQuery();
+            
+            long holdId = rs.next() ? rs.getLong(1) : 0;
+            logger.debug("Hold on book {}: {}", bookId, holdId > 0 ? holdId : "no free copy");
+            return holdId;
+        } catch (SQLException e) {
+            logger.error("Error placing hold on book: {}", bookId, e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    public int releaseHolds(List<Long> holdIds) throws SQLException {
+        if (holdIds.isEmpty()) {
+            return 0;
+        }
+        String sql = "WITH released AS (DELETE FROM book_holds WHERE id = ANY(?) RETURNING book_id)" +
+                     RETURN_HELD_COPIES;
+        return release(sql, holdIds);
+    }
+    
+
+    public int releaseExpiredHolds() throws SQLException {
+        String sql = "WITH released AS (DELETE FROM book_holds WHERE expires_at < CURRENT_TIMESTAMP RETURNING book_id)" +
+                     RETURN_HELD_COPIES;
+        return release(sql, null);
+    }
+    
+
+    /**
+     * Pushes the expiry of the given holds forward.
+     * 
+     * @return The ids of the holds that still existed
+     */
+    public Set<Long> extendHolds(List<Long> holdIds, int ttlSeconds) throws SQLException {
+        Set<Long> extended = new HashSet<>();
+        if (holdIds.isEmpty()) {
+            return extended;
+        }
+        String sql = "UPDATE book_holds SET expires_at = GREATEST(expires_at, CURRENT_TIMESTAMP + ? * INTERVAL '1 second') " +
+                     "WHERE id = ANY(?) RETURNING id";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, ttlSeconds);
+            stmt.setArray(2, toArray(conn, holdIds));
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                extended.add(rs.getLong(1));
+            }
+            
+            logger.debug("Extended {} of {} holds", extended.size(), holdIds.size());
+            return extended;
+        } catch (SQLException e) {
+            logger.error("Error extending holds", e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    /**
+     * Gives a live hold to a stored cart, or to no cart, and restarts its TTL.
+     * A hold that already lasts longer, such as a copy set aside for a
+     * reservation, keeps its expiry.
+     *
+     * @return false if the hold had already expired
+     */
+    public boolean transferHold(long holdId, int cartId, String desk, int ttlSeconds) throws SQLException {
+        String sql = "UPDATE book_holds SET cart_id = ?, desk = ?, " +
+                     "expires_at = GREATEST(expires_at, CURRENT_TIMESTAMP + ? * INTERVAL '1 second') WHERE id = ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            if (cartId > 0) {
+                stmt.setInt(1, cartId);
+            } else {
+                stmt.setNull(1, Types.INTEGER);
+            }
+            stmt.setString(2, desk);
+            stmt.setInt(3, ttlSeconds);
+            stmt.setLong(4, holdId);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            logger.error("Error transferring hold: {}", holdId, e);
+            throw e;
+        } finally {
+            closeResources(null, stmt);
+        }
+    }
+
+
+    /**
+     * @return Hold id to book id for the live holds of a stored cart, oldest first
+     */
+    public Map<Long, Integer> getHoldsForCart(int cartId) throws SQLException {
+        String sql = "SELECT id, book_id FROM book_holds WHERE cart_id = ? ORDER BY id";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        Map<Long, Integer> holds = new LinkedHashMap<>();
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, cartId);
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                holds.put(rs.getLong("id"), rs.getInt("book_id"));
+            }
+            
+            logger.info("Retrieved holds for cart {}: {} records", cartId, holds.size());
+            return holds;
+        } catch (SQLException e) {
+            logger.error("Error retrieving holds for cart: {}", cartId, e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    /**
+     * Turns holds into loans in one statement: the holds are deleted, the held
+     * copies become borrowed copies and a transaction is inserted per hold.
+     * Nothing happens unless every hold still exists. A book that no longer has
+     * as many available copies as holds being converted, because a change
+     * elsewhere took them, raises {@link #SHORT_OF_COPIES_STATE}, which undoes
+     * the whole statement.
+     * 
+     * @param dueMillis The due date of each loan, in the order of the hold ids
+     * @return The book id of each loan created, by transaction id; empty if any hold had gone
+     * @throws SQLException With {@link #SHORT_OF_COPIES_STATE} when a book is short of available copies
+     */
+    public Map<Integer, Integer> convertHoldsToLoans(List<Long> holdIds, int memberId, long borrowMillis, long[] dueMillis)
+            throws SQLException {
+        Map<Integer, Integer> loans = new LinkedHashMap<>();
+        if (holdIds.isEmpty()) {
+            return loans;
+        }
+        String sql = "WITH locked AS (SELECT id FROM book_holds WHERE id = ANY(?) FOR UPDATE), " +
+                     "consumed AS (DELETE FROM book_holds WHERE id IN (SELECT id FROM locked) " +
+                     "AND (SELECT COUNT(*) FROM locked) = ? RETURNING id, book_id), " +
+                     "counts AS (SELECT book_id, COUNT(*) AS n FROM consumed GROUP BY book_id), " +
+                     "updated AS (UPDATE books b SET " +
+                     "held_copies = GREATEST(0, b.held_copies - c.n), " +
+                     "available_copies = b.available_copies - c.n, " +
+                     "status = CASE WHEN b.available_copies - c.n <= 0 THEN 'BORROWED' " +
+                     "WHEN b.available_copies - c.n < b.total_copies THEN 'PARTIALLY_AVAILABLE' " +
+                     "ELSE 'AVAILABLE' END " +
+                     "FROM counts c WHERE b.id = c.book_id AND b.available_copies >= c.n RETURNING b.id) " +
+                     // A book left out of the update raises an error from the (volatile, so never
+                     // pre-evaluated) function, which aborts the statement
+                     "INSERT INTO transactions (book_id, member_id, borrow_date, due_date, status) " +
+                     "SELECT c.book_id, ?, ?, d.due_date, " +
+                     "CASE WHEN (SELECT COUNT(*) FROM updated) = (SELECT COUNT(*) FROM counts) THEN 'BORROWED' " +
+                     "ELSE library_short_of_copies((SELECT MIN(book_id) FROM counts " +
+                     "WHERE book_id NOT IN (SELECT id FROM updated))) END " +
+                     "FROM consumed c " +
+                     "JOIN unnest(?::bigint[], ?::timestamp[]) AS d (hold_id, due_date) ON d.hold_id = c.id " +
+                     "RETURNING id, book_id";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setArray(1, toArray(conn, holdIds));
+            stmt.setInt(2, holdIds.size());
+            stmt.setInt(3, memberId);
+            stmt.setTimestamp(4, new Timestamp(borrowMillis));
+            Timestamp[] dueDates = new Timestamp[holdIds.size()];
+            for (int i = 0; i < dueDates.length; i++) {
+                dueDates[i] = new Timestamp(dueMillis[i]);
+            }
+            stmt.setArray(5, toArray(conn, holdIds));
+            stmt.setArray(6, conn.createArrayOf("timestamp", dueDates));
+            rs = stmt.executeQuery();
+            while (rs.next()) {
+                loans.put(rs.getInt("id"), rs.getInt("book_id"));
+            }
+            
+            logger.info("Converted {} holds to loans for member ID: {}", loans.size(), memberId);
+            return loans;
+        } catch (SQLException e) {
+            if (SHORT_OF_COPIES_STATE.equals(e.getSQLState())) {
+                logger.warn("Holds of member ID {} not converted: {}", memberId, e.getMessage());
+            } else {
+                logger.error("Error converting holds to loans for member ID: {}", memberId, e);
+            }
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    private int release(String sql, List<Long> holdIds) throws SQLException {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            if (holdIds != null) {
+                stmt.setArray(1, toArray(conn, holdIds));
+            }
+            rs = stmt.executeQuery();
+            
+            int released = rs.next() ? rs.getInt(1) : 0;
+            if (released > 0) {
+                logger.info("Released {} {}holds", released, holdIds == null ? "expired " : "");
+            }
+            return released;
+        } catch (SQLException e) {
+            logger.error("Error releasing holds", e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    private static Array toArray(Connection conn, List<Long> ids) throws SQLException {
+        return conn.createArrayOf("bigint", new ArrayList<>(ids).toArray());
+    }
+    
+
+    private void closeResources(ResultSet rs, Statement stmt) {
+        try {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        } catch (SQLException e) {
+            logger.error("Error closing database resources", e);
+        }
+    }
+}
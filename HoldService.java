@@ -0,0 +1,178 @@
+package com.library.app.service;
+
+import com.library.app.db.HoldDAO;
+import com.library.app.event.BookChanged;
+import com.library.app.event.ChangeKind;
+import com.library.app.event.EventBus;
+import com.library.app.event.LoanOpened;
+import com.library.app.util.Logger;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Soft holds on copies of books in a cart.
+ * <p>
+ * Adding a book to a cart holds one copy for {@code library.hold.ttlMinutes}
+ * (30 by default), so other desks see it as taken and checkout does not fail
+ * late on a copy that went out in the meantime. Checkout extends the holds and
+ * turns them into loans; a background reaper gives back holds of carts that
+ * were walked away from.
+ */
+public class HoldService {
+    
+    private static final Logger logger = new Logger(HoldService.class.getName());
+    private static final int TTL_SECONDS = 60 * Math.max(1, Integer.getInteger("library.hold.ttlMinutes", 30));
+    private static final long REAP_INTERVAL_SECONDS = 60;
+    private static ScheduledExecutorService reaper;
+    private final HoldDAO holdDAO;
+    
+
+    public HoldService() {
+        this.holdDAO = new HoldDAO();
+        startReaper();
+    }
+    
+
+    /**
+     * @return The hold id, or 0 if every copy is borrowed or held
+     */
+    public long placeHold(int bookId, int cartId) throws Exception {
+        return placeHold(bookId, cartId, TTL_SECONDS);
+    }
+    
+
+    /**
+     * @param ttlSeconds How long the hold lasts instead of the cart TTL
+     * @return The hold id, or 0 if every copy is borrowed or held
+     */
+    public long placeHold(int bookId, int cartId, int ttlSeconds) throws Exception {
+        try {
+            return holdDAO.placeHold(bookId, cartId, CartService.getDeskName(), ttlSeconds);
+        } catch (Exception e) {
+            logger.error("Error placing hold on book: " + bookId, e);
+            throw new Exception("Error placing hold: " + e.getMessage());
+        }
+    }
+    
+
+    public void releaseHolds(List<Long> holdIds) throws Exception {
+        try {
+            holdDAO.releaseHolds(holdIds);
+        } catch (Exception e) {
+            logger.error("Error releasing holds", e);
+            throw new Exception("Error releasing holds: " + e.getMessage());
+        }
+    }
+    
+
+    /**
+     * Moves a hold, such as a copy set aside for a reservation, into a cart with the cart TTL.
+     * 
+     * @return false if the hold had already expired
+     */
+    public boolean transferHold(long holdId, int cartId) throws Exception {
+        try {
+            return holdDAO.transferHold(holdId, cartId, CartService.getDeskName(), TTL_SECONDS);
+        } catch (Exception e) {
+            logger.error("Error transferring hold: " + holdId, e);
+            throw new Exception("Error transferring hold: " + e.getMessage());
+        }
+    }
+    
+
+    /**
+     * Restarts the TTL of the given holds.
+     * 
+     * @return The holds that had not expired yet
+     */
+    public Set<Long> extendHolds(List<Long> holdIds) throws Exception {
+        try {
+            return holdDAO.extendHolds(holdIds, TTL_SECONDS);
+        } catch (Exception e) {
+            logger.error("Error extending holds", e);
+            throw new Exception("Error extending holds: " + e.getMessage());
+        }
+    }
+    
+
+    public Map<Long, Integer> getHoldsForCart(int cartId) throws Exception {
+        try {
+            return holdDAO.getHoldsForCart(cartId);
+        } catch (Exception e) {
+            logger.error("Error getting holds for cart: " + cartId, e);
+            throw new Exception("Error retrieving holds: " + e.getMessage());
+        }
+    }
+    
+
+    /**
+     * How a checkout's holds fared; nothing was lent unless every hold was.
+     */
+    public enum Conversion {
+        LENT,
+        HOLDS_EXPIRED,
+        NOT_ENOUGH_COPIES
+    }
+    
+
+    /**
+     * Lends every held copy to the member in one statement.
+     * 
+     * @param dueMillis The due date of each loan, in the order of the hold ids
+     * @return LENT, or why nothing was lent
+     */
+    public Conversion convertHoldsToLoans(List<Long> holdIds, int memberId, long borrowMillis, long[] dueMillis)
+            throws Exception {
+        try {
+            Map<Integer, Integer> loans;
+            try {
+                loans = holdDAO.convertHoldsToLoans(holdIds, memberId, borrowMillis, dueMillis);
+            } catch (SQLException e) {
+                if (HoldDAO.SHORT_OF_COPIES_STATE.equals(e.getSQLState())) {
+                    return Conversion.NOT_ENOUGH_COPIES;
+                }
+                throw e;
+            }
+            Set<Integer> lentBooks = new HashSet<>();
+            for (Map.Entry<Integer, Integer> loan : loans.entrySet()) {
+                EventBus.get().publish(new LoanOpened(loan.getKey(), loan.getValue(), memberId));
+                if (lentBooks.add(loan.getValue())) {
+                    // The statement changed the book's available copies too
+                    EventBus.get().publish(new BookChanged(loan.getValue(), ChangeKind.UPDATED));
+                }
+            }
+            return loans.size() == holdIds.size() ? Conversion.LENT : Conversion.HOLDS_EXPIRED;
+        } catch (Exception e) {
+            logger.error("Error converting holds for member: " + memberId, e);
+            throw new Exception("Error completing checkout: " + e.getMessage());
+        }
+    }
+    
+
+    private static synchronized void startReaper() {
+        if (reaper != null) {
+            return;
+        }
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "hold-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        HoldDAO dao = new HoldDAO();
+        reaper.scheduleWithFixedDelay(() -> {
+            try {
+                dao.releaseExpiredHolds();
+            } catch (Exception e) {
+                logger.warn("Expired holds were not released: " + e.getMessage());
+            }
+        }, 0, REAP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,224 @@
+package com.library.app.factory;
+
+import com.library.app.util.Logger;
+
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.Path2D;
+import java.awt.image.BaseMultiResolutionImage;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Feather icons for the whole application, each drawn once per size,
+ * colour and display scale.
+ * <p>
+ * All the icons of one size, colour and scale are drawn together onto one
+ * image, a sheet laid out as a grid of equal cells in {@link FeatherIcons}
+ * order, and each icon is a sub-image sharing the sheet's pixels. Icons are
+ * handed out as shared {@link ImageIcon}s. On a scaled display an icon also
+ * carries a sheet drawn at the display scale, so Swing paints it sharp at its
+ * logical size.
+ * <p>
+ * Sheets are written as PNG files to the directory named by the
+ * {@code library.iconCache} system property, by default
+ * {@code .library/icon-cache} in the user's home directory, and read back by
+ * later runs instead of being drawn again. The file names carry a fingerprint
+ * of the icon definitions, so changed icons are drawn afresh. A cache that
+ * cannot be read or written only costs the drawing.
+ * <p>
+ * Safe to use from any thread.
+ */
+final class IconAtlas {
+
+    private static final Logger logger = new Logger(IconAtlas.class.getName());
+
+    private static final IconAtlas instance = new IconAtlas();
+
+    // Raise when the drawing changes, so sheets cached by older versions are drawn again
+    private static final int RENDER_VERSION = 1;
+    private static final double GRID = 24;
+    private static final float STROKE_WIDTH = 2f;
+
+    private final List<String> names;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private final int columns;
+    private final String fingerprint;
+    private final Path cacheDirectory;
+    private final double displayScale;
+
+    private final ConcurrentMap<String, Sheet> sheets = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ImageIcon> icons = new ConcurrentHashMap<>();
+
+
+    private IconAtlas() {
+        Map<String, String> definitions = FeatherIcons.all();
+        this.names = new ArrayList<>(definitions.keySet());
+        for (int i = 0; i < names.size(); i++) {
+            positions.put(names.get(i), i);
+        }
+        this.columns = (int) Math.ceil(Math.sqrt(names.size()));
+        this.fingerprint = Integer.toHexString(Objects.hash(RENDER_VERSION, new ArrayList<>(definitions.entrySet())));
+        String defaultDirectory = Paths.get(System.getProperty("user.home"), ".library", "icon-cache").toString();
+        this.cacheDirectory = Paths.get(System.getProperty("library.iconCache", defaultDirectory));
+        this.displayScale = detectDisplayScale();
+    }
+
+
+    static IconAtlas getInstance() {
+        return instance;
+    }
+
+
+    /**
+     * @param size The width and height in logical pixels
+     * @return The icon, or null if there is no icon by that name
+     */
+    ImageIcon getIcon(String name, Color color, int size) {
+        Integer position = positions.get(name);
+        if (position == null) {
+            return null;
+        }
+        int argb = color.getRGB();
+        return icons.computeIfAbsent(name + "/" + size + "/" + Integer.toHexString(argb), key -> {
+            BufferedImage image = sheet(size, 1, argb).icon(position);
+            if (displayScale == 1) {
+                return new ImageIcon(image);
+            }
+            BufferedImage scaled = sheet(size, displayScale, argb).icon(position);
+            return new ImageIcon(new BaseMultiResolutionImage(image, scaled));
+        });
+    }
+
+
+    private Sheet sheet(int size, double scale, int argb) {
+        String key = size + "-" + Math.round(scale * 100) + "-" + String.format("%08x", argb);
+        return sheets.computeIfAbsent(key, k -> {
+            int cell = (int) Math.ceil(size * scale);
+            Path file = cacheDirectory.resolve("feather-" + k + "-" + fingerprint + ".png");
+            BufferedImage image = readCached(file, cell);
+            if (image == null) {
+                long start = System.nanoTime();
+                image = render(cell, size * scale / GRID, new Color(argb, true));
+                logger.debug("Drew icon sheet {} in {} ms", k, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                writeCached(file, image);
+            }
+            return new Sheet(image, cell, columns);
+        });
+    }
+
+
+    private BufferedImage render(int cell, double unit, Color color) {
+        int rows = (names.size() + columns - 1) / columns;
+        BufferedImage image = new BufferedImage(columns * cell, rows * cell, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+            g.setColor(color);
+            g.setStroke(new BasicStroke(STROKE_WIDTH, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+
+            for (int i = 0; i < names.size(); i++) {
+                String name = names.get(i);
+                Path2D shape;
+                try {
+                    shape = FeatherShapes.parse(FeatherIcons.all().get(name));
+                } catch (IllegalArgumentException e) {
+                    logger.error("Cannot draw icon " + name, e);
+                    continue;
+                }
+                // Clipped to the cell, so strokes at the edge of the grid do not bleed into neighbours
+                Graphics2D icon = (Graphics2D) g.create((i % columns) * cell, (i / columns) * cell, cell, cell);
+                try {
+                    icon.scale(unit, unit);
+                    icon.draw(shape);
+                } finally {
+                    icon.dispose();
+                }
+            }
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+
+    private BufferedImage readCached(Path file, int cell) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            BufferedImage image = ImageIO.read(file.toFile());
+            int rows = (names.size() + columns - 1) / columns;
+            if (image != null && image.getWidth() == columns * cell && image.getHeight() == rows * cell) {
+                return image;
+            }
+            logger.warn("Ignoring icon cache file {} with unexpected size", file);
+        } catch (IOException e) {
+            logger.warn("Cannot read icon cache file {}: {}", file, e.getMessage());
+        }
+        return null;
+    }
+
+
+    private void writeCached(Path file, BufferedImage image) {
+        try {
+            Files.createDirectories(cacheDirectory);
+            // Written aside and moved into place, so another instance never reads half a file
+            Path temp = Files.createTempFile(cacheDirectory, "feather-", ".tmp");
+            try {
+                ImageIO.write(image, "png", temp.toFile());
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            logger.warn("Cannot write icon cache file {}: {}", file, e.getMessage());
+        }
+    }
+
+
+    private static double detectDisplayScale() {
+        // Icons are drawn for the main screen; Swing scales them on other screens
+        if (GraphicsEnvironment.isHeadless()) {
+            return 1;
+        }
+        try {
+            return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                                      .getDefaultConfiguration().getDefaultTransform().getScaleX();
+        } catch (HeadlessException e) {
+            return 1;
+        }
+    }
+
+
+    private static final class Sheet {
+
+        private final BufferedImage image;
+        private final int cell;
+        private final int columns;
+
+        Sheet(BufferedImage image, int cell, int columns) {
+            this.image = image;
+            this.cell = cell;
+            this.columns = columns;
+        }
+
+        BufferedImage icon(int position) {
+            return image.getSubimage((position % columns) * cell, (position / columns) * cell, cell, cell);
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package com.library.app.ui;
+
+import javax.swing.*;
+import javax.swing.table.TableModel;
+import java.text.CollationKey;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Sorts and filters a table model on the client, without querying again.
+ * <p>
+ * The view is an {@code int[]} of model rows. The first time a column is
+ * sorted its values are read once and ranked: strings by their collation key
+ * for the default locale, other values by their natural order. The ranks are
+ * kept until the model changes, so sorting again, or on several columns, only
+ * packs each row's rank and position into a {@code long} and sorts those
+ * primitives, one stable pass per sort key. Filters are conditions on column
+ * values, combined with AND, and are tested against the same cached column
+ * values. When a few rows are updated only their cached values are read
+ * again, and each is taken out of the view and put back where it now
+ * belongs, without sorting the other rows again. Above {@link #PARALLEL_THRESHOLD} rows the ranking, the sorting and
+ * the filtering run in parallel.
+ * <p>
+ * {@link #setSortable(boolean)} turns sorting off for models that cannot
+ * read all their rows, such as a {@link PagedTableModel} in paged mode.
+ *
+ * @param <M> The type of the table model
+ */
+public class IndexRowSorter<M extends TableModel> extends RowSorter<M> {
+
+    public static final int PARALLEL_THRESHOLD = 10_000;
+    private static final int MAX_SORT_KEYS = 3;
+    // Larger updates rebuild the view
+    private static final int MAX_INCREMENTAL_ROWS = 64;
+
+    private static final ThreadLocal<Collator> COLLATOR = ThreadLocal.withInitial(() -> {
+        Collator collator = Collator.getInstance();
+        collator.setStrength(Collator.SECONDARY);
+        return collator;
+    });
+
+    private final M model;
+    private List<SortKey> sortKeys = Collections.emptyList();
+    private final Map<Integer, Predicate<Object>> filters = new HashMap<>();
+    private boolean sortable = true;
+
+    // Per column, valid until the model changes
+    private final Map<Integer, Object[]> columnValues = new HashMap<>();
+    private final Map<Integer, int[]> columnRanks = new HashMap<>();
+
+    // null while the view shows every model row in model order
+    private int[] viewToModel;
+    private int[] modelToView;
+
+    public IndexRowSorter(M model) {
+        this.model = model;
+    }
+
+    /**
+     * Shows only the rows whose value in the column meets the condition, on
+     * top of the conditions set on other columns.
+     *
+     * @param condition The condition, or null to stop filtering on the column
+     */
+    public void setColumnFilter(int column, Predicate<Object> condition) {
+        if (condition == null) {
+            filters.remove(column);
+        } else {
+            filters.put(column, condition);
+        }
+        apply();
+    }
+
+    /**
+     * Turns sorting on or off; turning it off also drops the current sort keys.
+     */
+    public void setSortable(boolean sortable) {
+        this.sortable = sortable;
+        if (!sortable && !sortKeys.isEmpty()) {
+            setSortKeys(null);
+        }
+    }
+
+    @Override
+    public M getModel() {
+        return model;
+    }
+
+    @Override
+    public void toggleSortOrder(int column) {
+        if (!sortable) {
+            return;
+        }
+        List<SortKey> keys = new ArrayList<>(sortKeys);
+        SortOrder order = SortOrder.ASCENDING;
+        for (int i = 0; i < keys.size(); i++) {
+            if (keys.get(i).getColumn() == column) {
+                if (i == 0) {
+                    order = keys.get(0).getSortOrder() == SortOrder.ASCENDING ? SortOrder.DESCENDING : SortOrder.ASCENDING;
+                }
+                keys.remove(i);
+                break;
+            }
+        }
+        keys.add(0, new SortKey(column, order));
+        if (keys.size() > MAX_SORT_KEYS) {
+            keys = keys.subList(0, MAX_SORT_KEYS);
+        }
+        setSortKeys(keys);
+    }
+
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        List<SortKey> newKeys = keys == null ? Collections.<SortKey>emptyList()
+                                             : Collections.unmodifiableList(new ArrayList<>(keys));
+        if (!newKeys.equals(sortKeys)) {
+            sortKeys = newKeys;
+            fireSortOrderChanged();
+            apply();
+        }
+    }
+
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+
+    @Override
+    public int convertRowIndexToModel(int index) {
+        return viewToModel == null ? index : viewToModel[index];
+    }
+
+    @Override
+    public int convertRowIndexToView(int index) {
+        if (modelToView == null) {
+            return index;
+        }
+        return index >= 0 && index < modelToView.length ? modelToView[index] : -1;
+    }
+
+    @Override
+    public int getViewRowCount() {
+        return viewToModel == null ? model.getRowCount() : viewToModel.length;
+    }
+
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+
+    @Override
+    public void modelStructureChanged() {
+        sortKeys = Collections.emptyList();
+        allRowsChanged();
+    }
+
+    @Override
+    public void allRowsChanged() {
+        invalidate();
+    }
+
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+        invalidate();
+    }
+
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+        invalidate();
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+        rowsChanged(firstRow, endRow, -1);
+    }
+
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+        rowsChanged(firstRow, endRow, column);
+    }
+
+    /**
+     * Reads the cached values of the updated rows again and moves just those
+     * rows in the view.
+     *
+     * @param column The updated column, or -1 for every column
+     */
+    private void rowsChanged(int firstRow, int endRow, int column) {
+        if (endRow - firstRow >= MAX_INCREMENTAL_ROWS || firstRow < 0 || endRow >= model.getRowCount()) {
+            invalidate();
+            return;
+        }
+
+        boolean changed = false;
+        for (Map.Entry<Integer, Object[]> entry : columnValues.entrySet()) {
+            int valueColumn = entry.getKey();
+            Object[] values = entry.getValue();
+            if (column >= 0 && valueColumn != column) {
+                continue;
+            }
+            if (values.length != model.getRowCount()) {
+                invalidate();
+                return;
+            }
+            for (int row = firstRow; row <= endRow; row++) {
+                Object value = model.getValueAt(row, valueColumn);
+                if (!Objects.equals(value, values[row])) {
+                    values[row] = value;
+                    // Ranked again only when the column is next sorted in full
+                    columnRanks.remove(valueColumn);
+                    changed = true;
+                }
+            }
+        }
+        if (!changed || viewToModel == null) {
+            return;
+        }
+
+        // The other rows keep their values, so they stay in order without the updated ones
+        int[] lastViewToModel = viewToModel;
+        int[] view = new int[lastViewToModel.length];
+        int size = 0;
+        for (int row : lastViewToModel) {
+            if (row < firstRow || row > endRow) {
+                view[size++] = row;
+            }
+        }
+
+        List<SortKey> activeKeys = activeKeys();
+        for (int row = firstRow; row <= endRow; row++) {
+            if (!accepts(row)) {
+                continue;
+            }
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (compareRows(view[middle], row, activeKeys) <= 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            if (size == view.length) {
+                view = Arrays.copyOf(view, size + (endRow - row) + 1);
+            }
+            System.arraycopy(view, low, view, low + 1, size - low);
+            view[low] = row;
+            size++;
+        }
+
+        viewToModel = Arrays.copyOf(view, size);
+        Arrays.fill(modelToView, -1);
+        for (int i = 0; i < size; i++) {
+            modelToView[viewToModel[i]] = i;
+        }
+        fireRowSorterChanged(lastViewToModel);
+    }
+
+    private void invalidate() {
+        columnValues.clear();
+        columnRanks.clear();
+        if (viewToModel != null || !sortKeys.isEmpty() || !filters.isEmpty()) {
+            apply();
+        }
+    }
+
+    /**
+     * Rebuilds the view from the cached ranks and the filters.
+     */
+    private void apply() {
+        int[] lastViewToModel = viewToModel != null ? viewToModel : identity(model.getRowCount());
+        int rows = model.getRowCount();
+        List<SortKey> activeKeys = activeKeys();
+
+        if (activeKeys.isEmpty() && filters.isEmpty()) {
+            viewToModel = null;
+            modelToView = null;
+            fireRowSorterChanged(lastViewToModel);
+            return;
+        }
+
+        int[] view = filters.isEmpty() ? identity(rows) : filter(rows);
+        // Least significant key first; each pass is stable, so earlier passes break ties
+        for (int k = activeKeys.size() - 1; k >= 0; k--) {
+            SortKey key = activeKeys.get(k);
+            view = sortByRank(view, ranks(key.getColumn()), key.getSortOrder() == SortOrder.DESCENDING);
+        }
+
+        viewToModel = view;
+        modelToView = new int[rows];
+        Arrays.fill(modelToView, -1);
+        for (int i = 0; i < view.length; i++) {
+            modelToView[view[i]] = i;
+        }
+        fireRowSorterChanged(lastViewToModel);
+    }
+
+    private List<SortKey> activeKeys() {
+        List<SortKey> activeKeys = new ArrayList<>();
+        for (SortKey key : sortKeys) {
+            if (key.getSortOrder() != SortOrder.UNSORTED && key.getColumn() < model.getColumnCount()) {
+                activeKeys.add(key);
+            }
+        }
+        return activeKeys;
+    }
+
+    private boolean accepts(int row) {
+        for (Map.Entry<Integer, Predicate<Object>> entry : filters.entrySet()) {
+            if (entry.getKey() < model.getColumnCount() && !entry.getValue().test(values(entry.getKey())[row])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int compareRows(int a, int b, List<SortKey> keys) {
+        for (SortKey key : keys) {
+            Object[] values = values(key.getColumn());
+            int result = compareKeys(sortKey(values[a]), sortKey(values[b]));
+            if (result != 0) {
+                return key.getSortOrder() == SortOrder.DESCENDING ? -result : result;
+            }
+        }
+        return 0;
+    }
+
+    private int[] filter(int rows) {
+        List<Object[]> values = new ArrayList<>();
+        List<Predicate<Object>> conditions = new ArrayList<>();
+        for (Map.Entry<Integer, Predicate<Object>> entry : filters.entrySet()) {
+            if (entry.getKey() < model.getColumnCount()) {
+                values.add(values(entry.getKey()));
+                conditions.add(entry.getValue());
+            }
+        }
+
+        IntStream range = IntStream.range(0, rows);
+        if (rows >= PARALLEL_THRESHOLD) {
+            range = range.parallel();
+        }
+        return range.filter(row -> {
+            for (int i = 0; i < conditions.size(); i++) {
+                if (!conditions.get(i).test(values.get(i)[row])) {
+                    return false;
+                }
+            }
+            return true;
+        }).toArray();
+    }
+
+    private static int[] sortByRank(int[] view, int[] ranks, boolean descending) {
+        // Rank in the high half, current position in the low half: sorting the longs is a stable sort by rank
+        long[] packed = new long[view.length];
+        for (int i = 0; i < view.length; i++) {
+            long rank = descending ? -ranks[view[i]] : ranks[view[i]];
+            packed[i] = (rank << 32) | i;
+        }
+        if (packed.length >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(packed);
+        } else {
+            Arrays.sort(packed);
+        }
+
+        int[] sorted = new int[view.length];
+        for (int i = 0; i < packed.length; i++) {
+            sorted[i] = view[(int) packed[i]];
+        }
+        return sorted;
+    }
+
+    /**
+     * @return The dense rank of every model row's value in the column; equal values share a rank
+     */
+    private int[] ranks(int column) {
+        int[] ranks = columnRanks.get(column);
+        if (ranks != null) {
+            return ranks;
+        }
+
+        Object[] values = values(column);
+        boolean parallel = values.length >= PARALLEL_THRESHOLD;
+        Object[] keys = new Object[values.length];
+        IntStream range = IntStream.range(0, values.length);
+        (parallel ? range.parallel() : range).forEach(row -> keys[row] = sortKey(values[row]));
+
+        Integer[] order = new Integer[keys.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Comparator<Integer> byKey = (a, b) -> compareKeys(keys[a], keys[b]);
+        if (parallel) {
+            Arrays.parallelSort(order, byKey);
+        } else {
+            Arrays.sort(order, byKey);
+        }
+
+        ranks = new int[keys.length];
+        int rank = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i > 0 && compareKeys(keys[order[i - 1]], keys[order[i]]) != 0) {
+                rank++;
+            }
+            ranks[order[i]] = rank;
+        }
+        columnRanks.put(column, ranks);
+        return ranks;
+    }
+
+    private Object[] values(int column) {
+        Object[] values = columnValues.get(column);
+        if (values == null) {
+            values = new Object[model.getRowCount()];
+            for (int row = 0; row < values.length; row++) {
+                values[row] = model.getValueAt(row, column);
+            }
+            columnValues.put(column, values);
+        }
+        return values;
+    }
+
+    private static Object sortKey(Object value) {
+        if (value == null || value instanceof Number || value instanceof Comparable && !(value instanceof String)) {
+            return value;
+        }
+        return COLLATOR.get().getCollationKey(value.toString());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareKeys(Object a, Object b) {
+        if (a == b) {
+            return 0;
+        }
+        // Empty cells first
+        if (a == null) {
+            return -1;
+        }
+        if (b == null) {
+            return 1;
+        }
+        if (a instanceof Number && b instanceof Number) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a instanceof CollationKey && b instanceof CollationKey) {
+            return ((CollationKey) a).compareTo((CollationKey) b);
+        }
+        if (a.getClass() == b.getClass() && a instanceof Comparable) {
+            return ((Comparable) a).compareTo(b);
+        }
+        // Mixed types in one column: group them by type
+        return a.getClass().getName().compareTo(b.getClass().getName());
+    }
+
+    private static int[] identity(int rows) {
+        int[] view = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            view[i] = i;
+        }
+        return view;
+    }
+}
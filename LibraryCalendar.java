@@ -0,0 +1,282 @@
+package com.library.app.service;
+
+import com.library.app.util.DateUtil;
+import com.library.app.util.LibraryClock;
+import com.library.app.util.Logger;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Opening calendar of the library, used to move due dates off closed days.
+ * <p>
+ * Weekly closures and holidays are read from the {@code settings} table:
+ * <ul>
+ *   <li>{@code calendar.closed_weekdays} - e.g. {@code FRIDAY,SATURDAY}</li>
+ *   <li>{@code calendar.holidays} - dates or ranges, e.g. {@code 2025-03-30..2025-04-01, 2025-06-06}</li>
+ * </ul>
+ * They are compiled into a table over a window of epoch days holding, for each
+ * day, the number of open days before it, plus the sorted list of open days.
+ * {@link #nextOpenDay(long)} and {@link #addOpenDays(long, int)} are then two
+ * array reads. Days outside the window fall back to a day-by-day scan.
+ * The table is rebuilt whenever {@link SettingsService} loads changed settings.
+ */
+public class LibraryCalendar {
+    
+    private static final Logger logger = new Logger(LibraryCalendar.class.getName());
+    
+    public static final String CLOSED_WEEKDAYS_KEY = "calendar.closed_weekdays";
+    public static final String HOLIDAYS_KEY = "calendar.holidays";
+    
+    private static final int YEARS_BEFORE = 1;
+    private static final int YEARS_AFTER = 3;
+    // Upper bound for the fallback scan so a calendar closed every day cannot hang
+    private static final int MAX_SCAN_DAYS = 3660;
+    
+    private static LibraryCalendar instance;
+    
+    private volatile Table table;
+    
+
+    LibraryCalendar(Set<DayOfWeek> closedWeekdays, String holidays) {
+        this.table = new Table(closedWeekdays, holidays, today());
+    }
+    
+
+    public static synchronized LibraryCalendar getInstance() {
+        if (instance == null) {
+            instance = new LibraryCalendar(EnumSet.noneOf(DayOfWeek.class), null);
+            instance.reload();
+            SettingsService.getInstance().addListener(instance::reload);
+        }
+        return instance;
+    }
+    
+
+    /**
+     * Rebuilds the calendar from the current settings. If they cannot be
+     * applied, the current calendar is kept.
+     */
+    public void reload() {
+        try {
+            SettingsService.Snapshot settings = SettingsService.getInstance().getSnapshot();
+            table = new Table(parseWeekdays(settings.getString(CLOSED_WEEKDAYS_KEY, null)),
+                              settings.getString(HOLIDAYS_KEY, null),
+                              today());
+            logger.info("Library calendar loaded: {} open days in window", table.openDays.length);
+        } catch (Exception e) {
+            logger.error("Error loading library calendar, keeping current calendar", e);
+        }
+    }
+    
+
+    /**
+     * Checks whether the library is open on a local epoch day.
+     * 
+     * @param epochDay The local epoch day
+     * @return true if the library is open
+     */
+    public boolean isOpen(long epochDay) {
+        return table.isOpen(epochDay);
+    }
+    
+
+    /**
+     * Returns the first open day on or after the given day.
+     * 
+     * @param epochDay The local epoch day
+     * @return The first open epoch day at or after it
+     */
+    public long nextOpenDay(long epochDay) {
+        return table.nextOpenDay(epochDay);
+    }
+    
+
+    /**
+     * Returns the day on which the library has been open for N days after the
+     * given day, i.e. the Nth open day strictly after it.
+     * 
+     * @param epochDay The local epoch day to count from
+     * @param openDays The number of open days, at least 1
+     * @return The resulting epoch day
+     */
+    public long addOpenDays(long epochDay, int openDays) {
+        return table.addOpenDays(epochDay, openDays);
+    }
+    
+
+    /**
+     * Calculates a due date: the loan period in calendar days, moved forward to
+     * the next open day if it ends on a closed day. The time of day is kept.
+     * 
+     * @param borrowMillis The borrow time in epoch milliseconds
+     * @param loanDays The loan period in days
+     * @return The due time in epoch milliseconds
+     */
+    public long calculateDueDate(long borrowMillis, int loanDays) {
+        long dueMillis = DateUtil.calculateDueDate(borrowMillis, loanDays);
+        long dueDay = DateUtil.toEpochDay(dueMillis);
+        long openDay = nextOpenDay(dueDay);
+        return openDay == dueDay ? dueMillis : DateUtil.calculateDueDate(borrowMillis, loanDays + (int) (openDay - dueDay));
+    }
+    
+
+    public Date calculateDueDate(Date borrowDate, int loanDays) {
+        return new Date(calculateDueDate(borrowDate.getTime(), loanDays));
+    }
+    
+
+    private static long today() {
+        // The application clock, so a fixed or offset clock gets a window around its own date
+        return DateUtil.toEpochDay(LibraryClock.currentTimeMillis());
+    }
+    
+
+    private static Set<DayOfWeek> parseWeekdays(String value) {
+        Set<DayOfWeek> weekdays = EnumSet.noneOf(DayOfWeek.class);
+        if (value == null) {
+            return weekdays;
+        }
+        for (String part : value.split(",")) {
+            String name = part.trim().toUpperCase();
+            if (name.isEmpty()) {
+                continue;
+            }
+            try {
+                weekdays.add(DayOfWeek.valueOf(name));
+            } catch (IllegalArgumentException e) {
+                logger.warn("Ignoring unknown weekday in {}: {}", CLOSED_WEEKDAYS_KEY, part);
+            }
+        }
+        if (weekdays.size() == 7) {
+            logger.warn("{} closes every weekday; ignoring it", CLOSED_WEEKDAYS_KEY);
+            weekdays.clear();
+        }
+        return weekdays;
+    }
+    
+
+    /**
+     * Immutable compiled calendar for a window of epoch days.
+     */
+    private static final class Table {
+        private final boolean[] closedWeekdays = new boolean[7];
+        private final long firstDay;
+        private final long[] holidayList;
+        // openBefore[i] = number of open days in [firstDay, firstDay + i)
+        private final int[] openBefore;
+        // Offsets from firstDay of the open days, in order
+        private final int[] openDays;
+    
+        private Table(Set<DayOfWeek> closed, String holidays, long today) {
+            for (DayOfWeek day : closed) {
+                closedWeekdays[day.getValue() - 1] = true;
+            }
+            this.holidayList = parseHolidays(holidays);
+            this.firstDay = LocalDate.ofEpochDay(today).minusYears(YEARS_BEFORE).withDayOfYear(1).toEpochDay();
+            long endDay = LocalDate.ofEpochDay(today).plusYears(YEARS_AFTER + 1).withDayOfYear(1).toEpochDay();
+    
+            int length = (int) (endDay - firstDay);
+            int[] open = new int[length];
+            this.openBefore = new int[length + 1];
+            int count = 0;
+            for (int i = 0; i < length; i++) {
+                openBefore[i] = count;
+                if (!isClosedScan(firstDay + i)) {
+                    open[count++] = i;
+                }
+            }
+            openBefore[length] = count;
+            this.openDays = Arrays.copyOf(open, count);
+        }
+    
+        boolean isOpen(long epochDay) {
+            long index = epochDay - firstDay;
+            if (index >= 0 && index < openBefore.length - 1) {
+                return openBefore[(int) index + 1] != openBefore[(int) index];
+            }
+            return !isClosedScan(epochDay);
+        }
+    
+        long nextOpenDay(long epochDay) {
+            long index = epochDay - firstDay;
+            if (index >= 0 && index < openBefore.length - 1) {
+                int rank = openBefore[(int) index];
+                if (rank < openDays.length) {
+                    return firstDay + openDays[rank];
+                }
+            }
+            return scanForward(epochDay, 1);
+        }
+    
+        long addOpenDays(long epochDay, int count) {
+            if (count <= 0) {
+                return nextOpenDay(epochDay);
+            }
+            long index = epochDay + 1 - firstDay;
+            if (index >= 0 && index < openBefore.length - 1) {
+                int rank = openBefore[(int) index] + count - 1;
+                if (rank < openDays.length) {
+                    return firstDay + openDays[rank];
+                }
+            }
+            return scanForward(epochDay + 1, count);
+        }
+    
+        private long scanForward(long epochDay, int count) {
+            long day = epochDay;
+            int remaining = count;
+            for (int i = 0; i < MAX_SCAN_DAYS * Math.max(1, count); i++, day++) {
+                if (!isClosedScan(day) && --remaining == 0) {
+                    return day;
+                }
+            }
+            return epochDay;
+        }
+    
+        private boolean isClosedScan(long epochDay) {
+            // 1970-01-01 was a Thursday
+            int weekday = (int) Math.floorMod(epochDay + 3, 7L);
+            if (closedWeekdays[weekday]) {
+                return true;
+            }
+            for (int i = 0; i < holidayList.length; i += 2) {
+                if (epochDay >= holidayList[i] && epochDay <= holidayList[i + 1]) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    
+        /**
+         * Parses "date" and "from..to" entries into flat [from, to] pairs of epoch days.
+         */
+        private static long[] parseHolidays(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return new long[0];
+            }
+            String[] parts = value.split("[,;\\s]+");
+            long[] ranges = new long[parts.length * 2];
+            int size = 0;
+            for (String part : parts) {
+                if (part.isEmpty()) {
+                    continue;
+                }
+                try {
+                    int separator = part.indexOf("..");
+                    LocalDate from = LocalDate.parse(separator < 0 ? part : part.substring(0, separator));
+                    LocalDate to = separator < 0 ? from : LocalDate.parse(part.substring(separator + 2));
+                    ranges[size++] = from.toEpochDay();
+                    ranges[size++] = to.toEpochDay();
+                } catch (RuntimeException e) {
+                    logger.warn("Ignoring invalid holiday in {}: {}", HOLIDAYS_KEY, part);
+                }
+            }
+            return Arrays.copyOf(ranges, size);
+        }
+    }
+}
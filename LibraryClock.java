@@ -0,0 +1,151 @@
+package com.library.app.util;
+
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Source of the current time for date checks in the model and UI.
+ * <p>
+ * The default clock reads a cached value that a single daemon thread
+ * refreshes every {@code library.clock.tickMillis} milliseconds (default 100),
+ * so checks such as {@code isOverdue()} in a table renderer cost a volatile
+ * read instead of an allocation. Tests can install a {@link Fixed} clock with
+ * {@link #set(LibraryClock)} to make time-dependent logic deterministic.
+ */
+public abstract class LibraryClock {
+
+    private static final long DEFAULT_TICK_MILLIS = 100;
+
+    private static volatile LibraryClock current;
+    private static LibraryClock ticking;
+
+    /**
+     * @return The current time in epoch milliseconds
+     */
+    public abstract long millis();
+
+    /**
+     * @return The current time as a new Date
+     */
+    public Date now() {
+        return new Date(millis());
+    }
+
+    /**
+     * Checks if a date is before the current time of this clock.
+     *
+     * @param date The date to check, may be null
+     * @return true if the date is in the past
+     */
+    public boolean isPast(Date date) {
+        return date != null && date.getTime() < millis();
+    }
+
+    /**
+     * Returns the clock used by the application, starting the default ticking
+     * clock on first use.
+     *
+     * @return The current clock
+     */
+    public static LibraryClock get() {
+        LibraryClock clock = current;
+        if (clock == null) {
+            synchronized (LibraryClock.class) {
+                if (current == null) {
+                    if (ticking == null) {
+                        ticking = new Ticking(Long.getLong("library.clock.tickMillis", DEFAULT_TICK_MILLIS));
+                    }
+                    current = ticking;
+                }
+                clock = current;
+            }
+        }
+        return clock;
+    }
+
+    /**
+     * Replaces the clock used by the application, e.g. with a fixed clock in tests.
+     *
+     * @param clock The clock to use, or null to go back to the default clock
+     */
+    public static synchronized void set(LibraryClock clock) {
+        current = clock;
+    }
+
+    /**
+     * @return The current time in epoch milliseconds from the application clock
+     */
+    public static long currentTimeMillis() {
+        return get().millis();
+    }
+
+    /**
+     * @return A clock that reads the system time on every call
+     */
+    public static LibraryClock system() {
+        return new LibraryClock() {
+            @Override
+            public long millis() {
+                return System.currentTimeMillis();
+            }
+        };
+    }
+
+    /**
+     * @param millis The time in epoch milliseconds
+     * @return A clock that stays at the given time until it is moved
+     */
+    public static Fixed fixed(long millis) {
+        return new Fixed(millis);
+    }
+
+    /**
+     * Clock that only moves when told to.
+     */
+    public static final class Fixed extends LibraryClock {
+        private final AtomicLong millis;
+
+        private Fixed(long millis) {
+            this.millis = new AtomicLong(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        public void setMillis(long millis) {
+            this.millis.set(millis);
+        }
+
+        public void advance(long deltaMillis) {
+            millis.addAndGet(deltaMillis);
+        }
+    }
+
+    /**
+     * Clock that caches the system time and refreshes it on a daemon thread.
+     */
+    private static final class Ticking extends LibraryClock {
+        private volatile long millis = System.currentTimeMillis();
+
+        private Ticking(long tickMillis) {
+            long period = Math.max(1, tickMillis);
+            ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "library-clock");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(() -> millis = System.currentTimeMillis(),
+                                          period, period, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.library.app.ui;
+
+import com.library.app.db.QueryHandle;
+import com.library.app.util.Logger;
+
+import javax.swing.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Search-as-you-type support for the panels.
+ * <p>
+ * Keystrokes restart a debounce timer; when it fires, the query is taken from
+ * the UI on the Event Dispatch Thread and executed on a background thread. A
+ * newer query cancels the one still running, and results are delivered back on
+ * the EDT only if they belong to the latest query.
+ *
+ * @param <R> The result type of the query
+ */
+public class LiveSearch<R> {
+
+    private static final Logger logger = new Logger(LiveSearch.class.getName());
+
+    /**
+     * A query that can be cancelled through the given handle.
+     */
+    public interface Query<R> {
+        R run(QueryHandle handle) throws Exception;
+    }
+
+    private final Supplier<Query<R>> querySource;
+    private final Consumer<R> onResult;
+    private final Consumer<Exception> onError;
+    private final Timer debounceTimer;
+    private final ExecutorService executor;
+
+    // Only touched on the EDT
+    private long generation;
+    private QueryHandle runningHandle;
+
+    /**
+     * Creates a live search.
+     *
+     * @param name The name of the background thread
+     * @param delayMillis The debounce delay after the last keystroke
+     * @param querySource Builds the query from the current UI state, or returns null for no query
+     * @param onResult Receives the result of the latest query on the EDT
+     * @param onError Receives the failure of the latest query on the EDT
+     */
+    public LiveSearch(String name, int delayMillis, Supplier<Query<R>> querySource,
+                      Consumer<R> onResult, Consumer<Exception> onError) {
+        this.querySource = querySource;
+        this.onResult = onResult;
+        this.onError = onError;
+        this.debounceTimer = new Timer(delayMillis, e -> execute());
+        this.debounceTimer.setRepeats(false);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules a search after the debounce delay, replacing any pending one.
+     */
+    public void restart() {
+        debounceTimer.restart();
+    }
+
+    /**
+     * Runs a search immediately, for example from a Search button.
+     */
+    public void runNow() {
+        debounceTimer.stop();
+        execute();
+    }
+
+    /**
+     * Drops the pending search and cancels the running one.
+     */
+    public void cancel() {
+        debounceTimer.stop();
+        generation++;
+        cancelRunning();
+    }
+
+    private void execute() {
+        Query<R> query = querySource.get();
+        long queryGeneration = ++generation;
+        cancelRunning();
+
+        if (query == null) {
+            return;
+        }
+
+        QueryHandle handle = new QueryHandle();
+        runningHandle = handle;
+
+        executor.execute(() -> {
+            R result = null;
+            Exception error = null;
+
+            if (!handle.isCancelled()) {
+                try {
+                    result = query.run(handle);
+                } catch (Exception e) {
+                    error = e;
+                }
+            }
+
+            R finalResult = result;
+            Exception finalError = error;
+            SwingUtilities.invokeLater(() -> deliver(queryGeneration, handle, finalResult, finalError));
+        });
+    }
+
+    private void deliver(long queryGeneration, QueryHandle handle, R result, Exception error) {
+        if (queryGeneration != generation || handle.isCancelled()) {
+            logger.debug("Discarding stale search result");
+            return;
+        }
+
+        runningHandle = null;
+        if (error != null) {
+            onError.accept(error);
+        } else {
+            onResult.accept(result);
+        }
+    }
+
+    private void cancelRunning() {
+        if (runningHandle != null) {
+            runningHandle.cancel();
+            runningHandle = null;
+        }
+    }
+}
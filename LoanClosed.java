@@ -0,0 +1,11 @@
+package com.library.app.event;
+
+/**
+ * A borrowed book was returned.
+ */
+public final class LoanClosed extends LoanEvent {
+
+    public LoanClosed(int transactionId, int bookId, int memberId) {
+        super(transactionId, bookId, memberId);
+    }
+}
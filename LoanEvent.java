@@ -0,0 +1,35 @@
+package com.library.app.event;
+
+/**
+ * Something that happened to a loan, identified by its transaction.
+ */
+public abstract class LoanEvent implements DomainEvent {
+
+    private final int transactionId;
+    private final int bookId;
+    private final int memberId;
+
+    protected LoanEvent(int transactionId, int bookId, int memberId) {
+        this.transactionId = transactionId;
+        this.bookId = bookId;
+        this.memberId = memberId;
+    }
+
+    public int getTransactionId() {
+        return transactionId;
+    }
+
+    public int getBookId() {
+        return bookId;
+    }
+
+    public int getMemberId() {
+        return memberId;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "{transactionId=" + transactionId +
+               ", bookId=" + bookId + ", memberId=" + memberId + "}";
+    }
+}
@@ -0,0 +1,11 @@
+package com.library.app.event;
+
+/**
+ * A book was lent to a member.
+ */
+public final class LoanOpened extends LoanEvent {
+
+    public LoanOpened(int transactionId, int bookId, int memberId) {
+        super(transactionId, bookId, memberId);
+    }
+}
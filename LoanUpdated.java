@@ -0,0 +1,11 @@
+package com.library.app.event;
+
+/**
+ * A loan was renewed or edited.
+ */
+public final class LoanUpdated extends LoanEvent {
+
+    public LoanUpdated(int transactionId, int bookId, int memberId) {
+        super(transactionId, bookId, memberId);
+    }
+}
@@ -0,0 +1,390 @@
+package com.library.app.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Command line reader for the binary event log written by {@link BinaryLogSink}.
+ * <p>
+ * Usage:
+ * <pre>
+ * java com.library.app.util.LogReader [--from TIME] [--to TIME] [--level LEVEL]
+ *                                     [--class PREFIX] [--format text|json] FILE...
+ * </pre>
+ * TIME is a local date ({@code 2024-05-01}) or date-time ({@code 2024-05-01T14:30}).
+ * LEVEL is the minimum level to print. Files may be plain or gzip-compressed
+ * segments and are read in the order given.
+ */
+public class LogReader {
+
+    private static final DateTimeFormatter TEXT_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final Logger.Level[] LEVELS = Logger.Level.values();
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private long fromNanos = Long.MIN_VALUE;
+    private long toNanos = Long.MAX_VALUE;
+    private Logger.Level minLevel = Logger.Level.DEBUG;
+    private String classPrefix;
+    private boolean json;
+
+    private final Map<Integer, String> dictionary = new HashMap<>();
+
+    public static void main(String[] args) {
+        LogReader reader = new LogReader();
+        List<String> files = new ArrayList<>();
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--from":
+                        reader.fromNanos = reader.parseTime(args[++i], false);
+                        break;
+                    case "--to":
+                        reader.toNanos = reader.parseTime(args[++i], true);
+                        break;
+                    case "--level":
+                        reader.minLevel = Logger.Level.valueOf(args[++i].toUpperCase());
+                        break;
+                    case "--class":
+                        reader.classPrefix = args[++i];
+                        break;
+                    case "--format":
+                        reader.json = "json".equalsIgnoreCase(args[++i]);
+                        break;
+                    default:
+                        files.add(args[i]);
+                }
+            }
+        } catch (RuntimeException e) {
+            usage("Invalid arguments: " + e.getMessage());
+            return;
+        }
+
+        if (files.isEmpty()) {
+            usage("No input files");
+            return;
+        }
+
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 64 * 1024)) {
+            for (String file : files) {
+                reader.read(file, out);
+            }
+        } catch (IOException e) {
+            System.err.println("Error reading log: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void usage(String problem) {
+        System.err.println(problem);
+        System.err.println("Usage: LogReader [--from TIME] [--to TIME] [--level LEVEL] "
+                           + "[--class PREFIX] [--format text|json] FILE...");
+        System.exit(2);
+    }
+
+    /**
+     * Reads one file and writes the matching events.
+     *
+     * @param file The binary log file, optionally gzip-compressed
+     * @param out Where to write the events
+     * @throws IOException if the file cannot be read
+     */
+    public void read(String file, Writer out) throws IOException {
+        dictionary.clear();
+        try (DataInputStream in = new DataInputStream(open(file))) {
+            while (true) {
+                int length;
+                try {
+                    length = (int) readUnsignedVarLong(in);
+                } catch (EOFException e) {
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                try {
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    // Last record was cut short by an unclean exit
+                    System.err.println("Truncated record at end of " + file);
+                    break;
+                }
+                handle(new DataInputStream(new ByteArrayInputStream(payload)), out);
+            }
+        }
+    }
+
+    private InputStream open(String file) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(Paths.get(file)), 64 * 1024);
+        in.mark(2);
+        int first = in.read();
+        int second = in.read();
+        in.reset();
+        if (first == 0x1F && second == 0x8B) {
+            return new BufferedInputStream(new GZIPInputStream(in, 64 * 1024), 64 * 1024);
+        }
+        return in;
+    }
+
+    private void handle(DataInputStream in, Writer out) throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case BinaryLogSink.RESET:
+                byte[] magic = new byte[BinaryLogSink.MAGIC.length];
+                in.readFully(magic);
+                if (!Arrays.equals(magic, BinaryLogSink.MAGIC)) {
+                    throw new IOException("Not a binary log file");
+                }
+                int version = (int) readUnsignedVarLong(in);
+                if (version > BinaryLogSink.VERSION) {
+                    throw new IOException("Unsupported binary log version: " + version);
+                }
+                dictionary.clear();
+                break;
+            case BinaryLogSink.DEFINE:
+                int id = (int) readUnsignedVarLong(in);
+                dictionary.put(id, readString(in));
+                break;
+            case BinaryLogSink.EVENT:
+                readEvent(in, out);
+                break;
+            default:
+                // Unknown record types from newer writers are skipped
+                break;
+        }
+    }
+
+    private void readEvent(DataInputStream in, Writer out) throws IOException {
+        long nanos = in.readLong();
+        Logger.Level level = LEVELS[(int) readUnsignedVarLong(in)];
+        String className = readReference(in);
+
+        // Cheap filters first; the rest of the payload is only decoded for matches
+        if (nanos < fromNanos || nanos > toNanos || level.ordinal() < minLevel.ordinal()
+                || (classPrefix != null && !className.startsWith(classPrefix))) {
+            return;
+        }
+
+        String template = readReference(in);
+        int argCount = (int) readUnsignedVarLong(in);
+        List<Object> args = new ArrayList<>(argCount);
+        for (int i = 0; i < argCount; i++) {
+            args.add(readArgument(in));
+        }
+        String thrown = in.readUnsignedByte() != 0 ? readString(in) : null;
+
+        String message = substitute(template, args);
+        if (thrown == null && args.size() > countPlaceholders(template)
+                && args.get(args.size() - 1) instanceof ThrowableText) {
+            thrown = ((ThrowableText) args.get(args.size() - 1)).trace;
+        }
+
+        if (json) {
+            writeJson(out, nanos, level, className, message, thrown);
+        } else {
+            writeText(out, nanos, level, className, message, thrown);
+        }
+    }
+
+    private void writeText(Writer out, long nanos, Logger.Level level, String className,
+                           String message, String thrown) throws IOException {
+        out.write('[');
+        out.write(TEXT_TIME.format(toLocal(nanos)));
+        out.write("] [");
+        out.write(level.name());
+        out.write("] [");
+        out.write(className);
+        out.write("] ");
+        out.write(message);
+        out.write(System.lineSeparator());
+        if (thrown != null) {
+            out.write(thrown);
+            out.write(System.lineSeparator());
+        }
+    }
+
+    private void writeJson(Writer out, long nanos, Logger.Level level, String className,
+                           String message, String thrown) throws IOException {
+        out.write("{\"time\":\"");
+        out.write(Instant.ofEpochSecond(0, nanos).toString());
+        out.write("\",\"epochNanos\":");
+        out.write(Long.toString(nanos));
+        out.write(",\"level\":\"");
+        out.write(level.name());
+        out.write("\",\"class\":");
+        writeJsonString(out, className);
+        out.write(",\"message\":");
+        writeJsonString(out, message);
+        if (thrown != null) {
+            out.write(",\"exception\":");
+            writeJsonString(out, thrown);
+        }
+        out.write('}');
+        out.write('\n');
+    }
+
+    private static void writeJsonString(Writer out, String value) throws IOException {
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.write("\\\"");
+                    break;
+                case '\\':
+                    out.write("\\\\");
+                    break;
+                case '\n':
+                    out.write("\\n");
+                    break;
+                case '\r':
+                    out.write("\\r");
+                    break;
+                case '\t':
+                    out.write("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.write(c);
+                    }
+            }
+        }
+        out.write('"');
+    }
+
+    private String readReference(DataInputStream in) throws IOException {
+        int id = (int) readUnsignedVarLong(in);
+        if (id == 0) {
+            return readString(in);
+        }
+        String value = dictionary.get(id);
+        if (value == null) {
+            throw new IOException("Undefined dictionary id: " + id);
+        }
+        return value;
+    }
+
+    private Object readArgument(DataInputStream in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case BinaryLogSink.TAG_NULL:
+                return null;
+            case BinaryLogSink.TAG_LONG:
+                long raw = readUnsignedVarLong(in);
+                return (raw >>> 1) ^ -(raw & 1);
+            case BinaryLogSink.TAG_DOUBLE:
+                return Double.longBitsToDouble(in.readLong());
+            case BinaryLogSink.TAG_BOOLEAN:
+                return in.readUnsignedByte() != 0;
+            case BinaryLogSink.TAG_THROWABLE:
+                return new ThrowableText(readString(in));
+            case BinaryLogSink.TAG_STRING:
+                return readString(in);
+            default:
+                throw new IOException("Unknown argument tag: " + tag);
+        }
+    }
+
+    private static String substitute(String template, List<Object> args) {
+        if (args.isEmpty()) {
+            return template;
+        }
+        StringBuilder sb = new StringBuilder(template.length() + 16 * args.size());
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while (argIndex < args.size() && (placeholder = template.indexOf("{}", start)) >= 0) {
+            sb.append(template, start, placeholder).append(args.get(argIndex++));
+            start = placeholder + 2;
+        }
+        sb.append(template, start, template.length());
+        return sb.toString();
+    }
+
+    private static int countPlaceholders(String template) {
+        int count = 0;
+        int index = 0;
+        while ((index = template.indexOf("{}", index)) >= 0) {
+            count++;
+            index += 2;
+        }
+        return count;
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] utf8 = new byte[(int) readUnsignedVarLong(in)];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static long readUnsignedVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+            if (shift > 63) {
+                throw new IOException("Malformed varint");
+            }
+        }
+    }
+
+    private long parseTime(String value, boolean endOfRange) {
+        LocalDateTime time;
+        if (value.indexOf('T') >= 0) {
+            time = LocalDateTime.parse(value);
+        } else {
+            LocalDate date = LocalDate.parse(value);
+            time = endOfRange ? date.plusDays(1).atStartOfDay().minusNanos(1) : date.atStartOfDay();
+        }
+        Instant instant = time.atZone(zone).toInstant();
+        return instant.getEpochSecond() * 1_000_000_000L + instant.getNano();
+    }
+
+    private LocalDateTime toLocal(long nanos) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(0, nanos), zone);
+    }
+
+    /**
+     * A logged exception; printed as its stack trace rather than substituted.
+     */
+    private static final class ThrowableText {
+        private final String trace;
+
+        private ThrowableText(String trace) {
+            this.trace = trace;
+        }
+
+        @Override
+        public String toString() {
+            int newline = trace.indexOf('\n');
+            return newline < 0 ? trace : trace.substring(0, newline).trim();
+        }
+    }
+}
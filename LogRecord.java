@@ -0,0 +1,86 @@
+package com.library.app.util;
+
+/**
+ * A single log event handed from a calling thread to the log writer.
+ * <p>
+ * Records are immutable once published; everything that is expensive to
+ * produce, such as the timestamp text, placeholder substitution and stack
+ * traces, is left to the writer.
+ */
+final class LogRecord {
+
+    final long timestamp;
+    final Logger.Level level;
+    final String className;
+    final String template;
+    final Object[] args;
+
+    // Resolved lazily on the writer thread
+    private String message;
+    private Throwable thrown;
+    private boolean resolved;
+
+    LogRecord(long timestamp, Logger.Level level, String className, String message, Throwable thrown) {
+        this.timestamp = timestamp;
+        this.level = level;
+        this.className = className;
+        this.template = message;
+        this.args = null;
+        this.message = message;
+        this.thrown = thrown;
+        this.resolved = true;
+    }
+
+    LogRecord(long timestamp, Logger.Level level, String className, String template, Object[] args) {
+        this.timestamp = timestamp;
+        this.level = level;
+        this.className = className;
+        this.template = template;
+        this.args = args;
+    }
+
+    boolean isError() {
+        return level == Logger.Level.ERROR;
+    }
+
+    String message() {
+        resolve();
+        return message;
+    }
+
+    Throwable thrown() {
+        resolve();
+        return thrown;
+    }
+
+    /**
+     * Substitutes each {} in the template with the next argument. A trailing
+     * Throwable that no placeholder consumed becomes the record's exception.
+     */
+    private void resolve() {
+        if (resolved) {
+            return;
+        }
+        resolved = true;
+
+        if (template == null || args == null || args.length == 0) {
+            message = template;
+            return;
+        }
+
+        StringBuilder sb = new StringBuilder(template.length() + 16 * args.length);
+        int argIndex = 0;
+        int start = 0;
+        int placeholder;
+        while (argIndex < args.length && (placeholder = template.indexOf("{}", start)) >= 0) {
+            sb.append(template, start, placeholder).append(args[argIndex++]);
+            start = placeholder + 2;
+        }
+        sb.append(template, start, template.length());
+
+        if (argIndex < args.length && args[args.length - 1] instanceof Throwable last) {
+            thrown = last;
+        }
+        message = sb.toString();
+    }
+}
@@ -0,0 +1,117 @@
+package com.library.app.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free multi-producer single-consumer queue of log records.
+ * <p>
+ * Each slot carries a sequence number: producers claim a position with a
+ * single CAS on the tail and publish the record by advancing the slot's
+ * sequence, and the single consumer frees the slot by advancing it again by
+ * the capacity. Neither side ever blocks the other.
+ */
+final class LogRingBuffer {
+
+    /**
+     * What a producer does when the buffer is full.
+     */
+    enum OverflowPolicy {
+        /** Wait for the writer to make room; nothing is lost. */
+        BLOCK,
+        /** Drop the new record. */
+        DROP,
+        /** Under pressure keep one in N records and drop the rest; errors are never dropped. */
+        SAMPLE
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<LogRecord> records;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    // Written by the consumer only, read by producers for size()
+    private volatile long head;
+
+    LogRingBuffer(int requestedCapacity) {
+        int size = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.records = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds a record if there is room.
+     *
+     * @param record The record
+     * @return false if the buffer is full
+     */
+    boolean offer(LogRecord record) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    records.lazySet(index, record);
+                    // Volatile write publishes the record to the consumer
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Removes the next record. Must only be called from the consumer thread.
+     *
+     * @return The next record, or null if the buffer is empty
+     */
+    LogRecord poll() {
+        long position = head;
+        int index = (int) (position & mask);
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+
+        LogRecord record = records.get(index);
+        records.lazySet(index, null);
+        sequences.set(index, position + capacity);
+        head = position + 1;
+        return record;
+    }
+
+    /**
+     * Returns the number of records ever claimed by producers.
+     */
+    long published() {
+        return tail.get();
+    }
+
+    /**
+     * Returns the number of records ever taken by the consumer.
+     */
+    long consumed() {
+        return head;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+}
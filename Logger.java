@@ -1,22 +1,54 @@
 package com.library.app.util;
 
-import java.io.FileWriter;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Simple logger class for the application.
+ * <p>
+ * Logging calls only enqueue a record; formatting and all console and file
+ * output happen on a background writer thread (see {@link AsyncLogWriter}).
+ * <p>
+ * Messages below the effective level are discarded before any work is done.
+ * The level is set globally with {@code -Dlibrary.log.level=DEBUG} and per class
+ * or package with {@code -Dlibrary.log.level.com.library.app.db=WARN}, or at
+ * runtime with {@link #setLevel(Level)} and {@link #setLevel(String, Level)}.
+ * <p>
+ * Prefer the placeholder forms, e.g. {@code logger.info("Retrieved {} books", count)}:
+ * the message is only built on the writer thread and only if it is logged. Arguments
+ * are rendered later, so pass values rather than objects that are modified afterwards.
+ * A trailing exception argument without a matching placeholder is logged as the cause.
  */
 public class Logger {
     
-    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS");
+    /**
+     * Log levels, from most to least verbose.
+     */
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF
+    }
+    
     private static final String LOG_FILE = "library_app.log";
+    private static final String LEVEL_PROPERTY = "library.log.level";
+    private static final AsyncLogWriter WRITER = new AsyncLogWriter(LOG_FILE);
+    
+    private static final Map<String, Level> classLevels = new ConcurrentHashMap<>();
+    private static volatile Level globalLevel = Level.INFO;
+    // Bumped on every level change so loggers can cache their effective level
+    private static volatile int levelVersion;
     
     private final String className;
-    private static boolean logToFile = true;
-    private static boolean logToConsole = true;
+    private static volatile boolean logToFile = true;
+    private static volatile boolean logToConsole = true;
+    
+    // Level version in the high half and threshold ordinal in the low half, in one
+    // volatile so a thread never sees the version of one update with the threshold of another
+    private volatile long cachedLevel = (long) -1 << 32;
+    
+    static {
+        loadLevelsFromSystemProperties();
+    }
     
     /**
      * Creates a new logger for the specified class.
@@ -27,13 +59,80 @@ public class Logger {
         this.className = className;
     }
     
+    /**
+     * Checks whether messages of the given level are logged by this logger.
+     * 
+     * @param level The level
+     * @return true if the level passes the threshold
+     */
+    public boolean isEnabled(Level level) {
+        int version = levelVersion;
+        long cached = cachedLevel;
+        int threshold;
+        if ((int) (cached >>> 32) == version) {
+            threshold = (int) cached;
+        } else {
+            threshold = effectiveLevel(className).ordinal();
+            cachedLevel = (long) version << 32 | threshold;
+        }
+        return level.ordinal() >= threshold && level != Level.OFF && (logToFile || logToConsole);
+    }
+    
+    public boolean isDebugEnabled() {
+        return isEnabled(Level.DEBUG);
+    }
+    
+    public boolean isInfoEnabled() {
+        return isEnabled(Level.INFO);
+    }
+    
     /**
      * Logs an informational message.
      * 
      * @param message The message to log
      */
     public void info(String message) {
-        log("INFO", message, null);
+        log(Level.INFO, message, null);
+    }
+    
+    /**
+     * Logs an informational message built only if INFO is enabled.
+     * 
+     * @param message Supplies the message to log
+     */
+    public void info(Supplier<String> message) {
+        log(Level.INFO, message);
+    }
+    
+    /**
+     * Logs an informational message with one {} placeholder.
+     * 
+     * @param template The message template
+     * @param arg The placeholder argument
+     */
+    public void info(String template, Object arg) {
+        logTemplate(Level.INFO, template, arg);
+    }
+    
+    /**
+     * Logs an informational message with two {} placeholders.
+     * 
+     * @param template The message template
+     * @param arg1 The first placeholder argument
+     * @param arg2 The second placeholder argument
+     */
+    public void info(String template, Object arg1, Object arg2) {
+        logTemplate(Level.INFO, template, arg1, arg2);
+    }
+    
+    /**
+     * Logs an informational message with {} placeholders.
+     * 
+     * @param template The message template
+     * @param args The placeholder arguments
+     */
+    public void info(String template, Object... args) {
+        logTemplate(Level.INFO, template, args);
     }
     
     /**
@@ -42,7 +141,7 @@ public class Logger {
      * @param message The message to log
      */
     public void warn(String message) {
-        log("WARN", message, null);
+        log(Level.WARN, message, null);
     }
     
     /**
@@ -52,7 +151,47 @@ public class Logger {
      * @param e The exception to log
      */
     public void warn(String message, Exception e) {
-        log("WARN", message, e);
+        log(Level.WARN, message, e);
+    }
+    
+    /**
+     * Logs a warning message built only if WARN is enabled.
+     * 
+     * @param message Supplies the message to log
+     */
+    public void warn(Supplier<String> message) {
+        log(Level.WARN, message);
+    }
+    
+    /**
+     * Logs a warning message with one {} placeholder.
+     * 
+     * @param template The message template
+     * @param arg The placeholder argument
+     */
+    public void warn(String template, Object arg) {
+        logTemplate(Level.WARN, template, arg);
+    }
+    
+    /**
+     * Logs a warning message with two {} placeholders.
+     * 
+     * @param template The message template
+     * @param arg1 The first placeholder argument
+     * @param arg2 The second placeholder argument
+     */
+    public void warn(String template, Object arg1, Object arg2) {
+        logTemplate(Level.WARN, template, arg1, arg2);
+    }
+    
+    /**
+     * Logs a warning message with {} placeholders.
+     * 
+     * @param template The message template
+     * @param args The placeholder arguments
+     */
+    public void warn(String template, Object... args) {
+        logTemplate(Level.WARN, template, args);
     }
     
     /**
@@ -61,7 +200,7 @@ public class Logger {
      * @param message The message to log
      */
     public void error(String message) {
-        log("ERROR", message, null);
+        log(Level.ERROR, message, null);
     }
     
     /**
@@ -71,7 +210,48 @@ public class Logger {
      * @param e The exception to log
      */
     public void error(String message, Exception e) {
-        log("ERROR", message, e);
+        log(Level.ERROR, message, e);
+    }
+    
+    /**
+     * Logs an error message built only if ERROR is enabled.
+     * 
+     * @param message Supplies the message to log
+     */
+    public void error(Supplier<String> message) {
+        log(Level.ERROR, message);
+    }
+    
+    /**
+     * Logs an error message with one {} placeholder.
+     * 
+     * @param template The message template
+     * @param arg The placeholder argument
+     */
+    public void error(String template, Object arg) {
+        logTemplate(Level.ERROR, template, arg);
+    }
+    
+    /**
+     * Logs an error message with two {} placeholders, or one placeholder
+     * followed by the exception.
+     * 
+     * @param template The message template
+     * @param arg1 The first placeholder argument
+     * @param arg2 The second placeholder argument or the exception
+     */
+    public void error(String template, Object arg1, Object arg2) {
+        logTemplate(Level.ERROR, template, arg1, arg2);
+    }
+    
+    /**
+     * Logs an error message with {} placeholders.
+     * 
+     * @param template The message template
+     * @param args The placeholder arguments, optionally followed by the exception
+     */
+    public void error(String template, Object... args) {
+        logTemplate(Level.ERROR, template, args);
     }
     
     /**
@@ -80,7 +260,81 @@ public class Logger {
      * @param message The message to log
      */
     public void debug(String message) {
-        log("DEBUG", message, null);
+        log(Level.DEBUG, message, null);
+    }
+    
+    /**
+     * Logs a debug message built only if DEBUG is enabled.
+     * 
+     * @param message Supplies the message to log
+     */
+    public void debug(Supplier<String> message) {
+        log(Level.DEBUG, message);
+    }
+    
+    /**
+     * Logs a debug message with one {} placeholder.
+     * 
+     * @param template The message template
+     * @param arg The placeholder argument
+     */
+    public void debug(String template, Object arg) {
+        logTemplate(Level.DEBUG, template, arg);
+    }
+    
+    /**
+     * Logs a debug message with two {} placeholders.
+     * 
+     * @param template The message template
+     * @param arg1 The first placeholder argument
+     * @param arg2 The second placeholder argument
+     */
+    public void debug(String template, Object arg1, Object arg2) {
+        logTemplate(Level.DEBUG, template, arg1, arg2);
+    }
+    
+    /**
+     * Logs a debug message with {} placeholders.
+     * 
+     * @param template The message template
+     * @param args The placeholder arguments
+     */
+    public void debug(String template, Object... args) {
+        logTemplate(Level.DEBUG, template, args);
+    }
+    
+    /**
+     * Sets the level for all classes without a more specific level.
+     * 
+     * @param level The level
+     */
+    public static void setLevel(Level level) {
+        globalLevel = level;
+        levelVersion++;
+    }
+    
+    /**
+     * Sets the level for a class or package. The longest matching prefix wins.
+     * 
+     * @param classOrPackage The fully qualified class or package name
+     * @param level The level, or null to remove the override
+     */
+    public static void setLevel(String classOrPackage, Level level) {
+        if (level == null) {
+            classLevels.remove(classOrPackage);
+        } else {
+            classLevels.put(classOrPackage, level);
+        }
+        levelVersion++;
+    }
+    
+    /**
+     * Returns the level for all classes without a more specific level.
+     * 
+     * @return The global level
+     */
+    public static Level getLevel() {
+        return globalLevel;
     }
     
     /**
@@ -90,6 +344,7 @@ public class Logger {
      */
     public static void setLogToFile(boolean logToFile) {
         Logger.logToFile = logToFile;
+        WRITER.setFileEnabled(logToFile);
     }
     
     /**
@@ -99,6 +354,14 @@ public class Logger {
      */
     public static void setLogToConsole(boolean logToConsole) {
         Logger.logToConsole = logToConsole;
+        WRITER.setConsoleEnabled(logToConsole);
+    }
+    
+    /**
+     * Blocks until every message logged so far has been written.
+     */
+    public static void flush() {
+        WRITER.flush();
     }
     
     /**
@@ -108,38 +371,76 @@ public class Logger {
      * @param message The message to log
      * @param e The exception to log, or null if none
      */
-    private void log(String level, String message, Exception e) {
-        String timestamp;
-        synchronized (DATE_FORMAT) {
-            timestamp = DATE_FORMAT.format(new Date());
+    private void log(Level level, String message, Exception e) {
+        if (isEnabled(level)) {
+            WRITER.publish(new LogRecord(System.currentTimeMillis(), level, className, message, e));
+        }
+    }
+    
+    private void log(Level level, Supplier<String> message) {
+        if (isEnabled(level)) {
+            WRITER.publish(new LogRecord(System.currentTimeMillis(), level, className, message.get(), (Throwable) null));
+        }
+    }
+    
+    private void logTemplate(Level level, String template, Object arg) {
+        if (isEnabled(level)) {
+            publishTemplate(level, template, new Object[]{arg});
         }
-        
-        String logEntry = String.format("[%s] [%s] [%s] %s", 
-                                        timestamp, level, className, message);
-        
-        if (logToConsole) {
-            if ("ERROR".equals(level)) {
-                System.err.println(logEntry);
-                if (e != null) {
-                    e.printStackTrace(System.err);
+    }
+    
+    private void logTemplate(Level level, String template, Object arg1, Object arg2) {
+        if (isEnabled(level)) {
+            publishTemplate(level, template, new Object[]{arg1, arg2});
+        }
+    }
+    
+    private void logTemplate(Level level, String template, Object[] args) {
+        if (isEnabled(level)) {
+            publishTemplate(level, template, args);
+        }
+    }
+    
+    private void publishTemplate(Level level, String template, Object[] args) {
+        WRITER.publish(new LogRecord(System.currentTimeMillis(), level, className, template, args));
+    }
+    
+    private static Level effectiveLevel(String className) {
+        if (!classLevels.isEmpty()) {
+            String name = className;
+            while (true) {
+                Level level = classLevels.get(name);
+                if (level != null) {
+                    return level;
                 }
-            } else {
-                System.out.println(logEntry);
-                if (e != null) {
-                    e.printStackTrace(System.out);
+                int dot = name.lastIndexOf('.');
+                if (dot < 0) {
+                    break;
                 }
+                name = name.substring(0, dot);
             }
         }
-        
-        if (logToFile) {
-            try (PrintWriter writer = new PrintWriter(new FileWriter(LOG_FILE, true))) {
-                writer.println(logEntry);
-                if (e != null) {
-                    e.printStackTrace(writer);
-                }
-            } catch (IOException ex) {
-                System.err.println("Error writing to log file: " + ex.getMessage());
+        return globalLevel;
+    }
+    
+    private static void loadLevelsFromSystemProperties() {
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (!key.equals(LEVEL_PROPERTY) && !key.startsWith(LEVEL_PROPERTY + ".")) {
+                continue;
+            }
+            Level level;
+            try {
+                level = Level.valueOf(System.getProperty(key).trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("Unknown log level for " + key + ": " + System.getProperty(key));
+                continue;
+            }
+            if (key.equals(LEVEL_PROPERTY)) {
+                globalLevel = level;
+            } else {
+                classLevels.put(key.substring(LEVEL_PROPERTY.length() + 1), level);
             }
         }
+        levelVersion++;
     }
 }
@@ -16,6 +16,8 @@ import java.awt.event.WindowEvent;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 
 public class LoginDialog extends JDialog {
@@ -28,11 +30,22 @@ public class LoginDialog extends JDialog {
     private JButton loginButton;
     private JButton cancelButton;
     private boolean authenticated = false;
+    private final CompletionStage<?> databaseReady;
     
 
     public LoginDialog(JFrame parent) {
+        this(parent, CompletableFuture.completedFuture(null));
+    }
+    
+
+    /**
+     * @param databaseReady Completes once the members table can be queried;
+     *                      the dialog can be shown and filled in before that
+     */
+    public LoginDialog(JFrame parent, CompletionStage<?> databaseReady) {
         super(parent, "Administrator Login", true);
         this.uiFactory = new UIComponentFactory();
+        this.databaseReady = databaseReady;
         initializeUI();
     }
     
@@ -240,6 +253,20 @@ public class LoginDialog extends JDialog {
             return;
         }
         
+        if (!databaseReady.toCompletableFuture().isDone()) {
+            // Logs in by itself once the database is up
+            setInputEnabled(false);
+            loginButton.setText("Connecting...");
+            databaseReady.whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+                loginButton.setText("Login");
+                setInputEnabled(true);
+                if (error == null) {
+                    attemptLogin();
+                }
+            }));
+            return;
+        }
+        
         if (authenticate(username, password)) {
             authenticated = true;
             dispose();
@@ -296,6 +323,13 @@ public class LoginDialog extends JDialog {
     }
     
 
+    private void setInputEnabled(boolean enabled) {
+        usernameField.setEnabled(enabled);
+        passwordField.setEnabled(enabled);
+        loginButton.setEnabled(enabled);
+    }
+    
+
     public boolean showDialog() {
         setVisible(true);
         return authenticated;
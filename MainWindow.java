@@ -7,12 +7,18 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 
 public class MainWindow extends JFrame {
 
     private static final Logger logger = new Logger(MainWindow.class.getName());
     private static final String APP_TITLE = "Library Management System";
+    private static final int BOOKS_TAB = 0;
+    private static final int MEMBERS_TAB = 1;
+    private static final int RETURN_TAB = 2;
+    private static final int CART_TAB = 3;
     
     private JTabbedPane tabbedPane;
     private BookPanel bookPanel;
@@ -20,6 +26,7 @@ public class MainWindow extends JFrame {
 //    private BorrowingPanel borrowingPanel;
     private ReturnPanel returnPanel;
     private CartPanel cartPanel;
+    private Component shownTab;
     
     private final UIComponentFactory uiFactory;
     
@@ -29,9 +36,6 @@ public class MainWindow extends JFrame {
         initializeUI();
         setupWindowListeners();
         logger.info("MainWindow initialized");
-
-        // تم تمرير الـ bookPanel إلى الـ returnPanel
-        returnPanel = new ReturnPanel(this, bookPanel);
     }
 
 
@@ -61,21 +65,20 @@ public class MainWindow extends JFrame {
         tabbedPane.setForeground(new Color(50, 50, 50));
         tabbedPane.setBorder(BorderFactory.createEmptyBorder(5, 5, 0, 5));
         
-        // Initialize panels
+        // Only the first tab's panel is built now; the others are built the first time they are needed
         bookPanel = new BookPanel(this);
-        memberPanel = new MemberPanel(this);
 //        borrowingPanel = new BorrowingPanel(this);
-        returnPanel = new ReturnPanel(this, bookPanel);
-
-
-        cartPanel = new CartPanel(this);
         
         // Add panels to tabbed pane with icons
         tabbedPane.addTab("Books", uiFactory.createIcon(""), bookPanel, "Manage library books");
-        tabbedPane.addTab("Members", uiFactory.createIcon(""), memberPanel, "Manage library members");
+        tabbedPane.addTab("Members", uiFactory.createIcon(""), createPlaceholder(), "Manage library members");
 //        tabbedPane.addTab("Borrow", uiFactory.createIcon("arrow-right-circle"), borrowingPanel, "Borrow books to members");
-        tabbedPane.addTab("Return", uiFactory.createIcon(""), returnPanel, "Return books from members");
-        tabbedPane.addTab("Cart", uiFactory.createIcon(""), cartPanel, "View current book selection");
+        tabbedPane.addTab("Return", uiFactory.createIcon(""), createPlaceholder(), "Return books from members");
+        tabbedPane.addTab("Cart", uiFactory.createIcon(""), createPlaceholder(), "View current book selection");
+        
+        // Panels stop loading while their tab is hidden and pick up again when it is shown
+        shownTab = tabbedPane.getSelectedComponent();
+        tabbedPane.addChangeListener(e -> tabChanged());
         
         mainPanel.add(tabbedPane, BorderLayout.CENTER);
         
@@ -150,6 +153,29 @@ public class MainWindow extends JFrame {
     }
     
 
+    private static JPanel createPlaceholder() {
+        JPanel placeholder = new JPanel();
+        placeholder.setBackground(new Color(240, 242, 245));
+        return placeholder;
+    }
+    
+
+    private void tabChanged() {
+        int index = tabbedPane.getSelectedIndex();
+        Component selected = index >= 0 ? getTabPanel(index) : null;
+        if (selected == shownTab) {
+            return;
+        }
+        if (shownTab instanceof TabPanel) {
+            ((TabPanel) shownTab).tabHidden();
+        }
+        shownTab = selected;
+        if (selected instanceof TabPanel) {
+            ((TabPanel) selected).tabShown();
+        }
+    }
+    
+
     public void switchToTab(int tabIndex) {
         if (tabIndex >= 0 && tabIndex < tabbedPane.getTabCount()) {
             tabbedPane.setSelectedIndex(tabIndex);
@@ -157,16 +183,51 @@ public class MainWindow extends JFrame {
     }
     
 
-    public CartPanel getCartPanel() {
-        return cartPanel;
+    public void buildAllTabs() {
+        // Builds the tabs still showing placeholders without selecting them
+        for (int index = 0; index < tabbedPane.getTabCount(); index++) {
+            getTabPanel(index);
+        }
+    }
+    
+
+    private Component getTabPanel(int index) {
+        switch (index) {
+            case BOOKS_TAB:
+                return bookPanel;
+            case MEMBERS_TAB:
+                if (memberPanel == null) {
+                    memberPanel = buildTab(MEMBERS_TAB, () -> new MemberPanel(this));
+                }
+                return memberPanel;
+            case RETURN_TAB:
+                if (returnPanel == null) {
+                    returnPanel = buildTab(RETURN_TAB, () -> new ReturnPanel(this));
+                }
+                return returnPanel;
+            case CART_TAB:
+                return getCartPanel();
+            default:
+                return tabbedPane.getComponentAt(index);
+        }
+    }
+    
+
+    private <T extends Component> T buildTab(int index, Supplier<T> factory) {
+        long start = System.nanoTime();
+        T panel = factory.get();
+        tabbedPane.setComponentAt(index, panel);
+        logger.info("Built {} tab in {} ms", tabbedPane.getTitleAt(index),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return panel;
     }
     
 
-    public void refreshAllPanels() {
-        bookPanel.refreshData();
-        memberPanel.refreshData();
-//        borrowingPanel.refreshData();
-        returnPanel.refreshData();
-        cartPanel.refreshData();
+    public CartPanel getCartPanel() {
+        // Books can be added to the cart before its tab was ever opened
+        if (cartPanel == null) {
+            cartPanel = buildTab(CART_TAB, () -> new CartPanel(this));
+        }
+        return cartPanel;
     }
 }
@@ -1,5 +1,8 @@
 package com.library.app.model;
 
+import com.library.app.util.DateUtil;
+import com.library.app.util.LibraryClock;
+
 import java.util.Date;
 import java.util.Objects;
 
@@ -10,19 +13,24 @@ public class Member {
     private String email;
     private String phone;
     private String address;
-    private Date joinDate;
-    private Date expiryDate;
-    private String role; // REGULAR, PREMIUM, ADMIN
-    private String status; // ACTIVE, INACTIVE, SUSPENDED
+    // Dates are kept as epoch millis, DateUtil.NO_DATE when unset
+    private long joinMillis = DateUtil.NO_DATE;
+    private long expiryMillis = DateUtil.NO_DATE;
+    private MemberRole role;
+    private MemberStatus status;
+    // The values as stored when they are not a known role or status, so saving the member keeps them
+    private String storedRole;
+    private String storedStatus;
     private String password;
     private int borrowedCount;
     private String profileImage;
+    private String cardNumber;
     
 
     public Member() {
-        this.joinDate = new Date();
-        this.role = "REGULAR";
-        this.status = "ACTIVE";
+        this.joinMillis = LibraryClock.currentTimeMillis();
+        this.role = MemberRole.REGULAR;
+        this.status = MemberStatus.ACTIVE;
         this.borrowedCount = 0;
     }
     
@@ -31,9 +39,9 @@ public class Member {
         this.name = name;
         this.email = email;
         this.phone = phone;
-        this.joinDate = new Date();
-        this.role = "REGULAR";
-        this.status = "ACTIVE";
+        this.joinMillis = LibraryClock.currentTimeMillis();
+        this.role = MemberRole.REGULAR;
+        this.status = MemberStatus.ACTIVE;
         this.borrowedCount = 0;
     }
     
@@ -46,10 +54,10 @@ public class Member {
         this.email = email;
         this.phone = phone;
         this.address = address;
-        this.joinDate = joinDate;
-        this.expiryDate = expiryDate;
-        this.role = role;
-        this.status = status;
+        this.joinMillis = DateUtil.toMillis(joinDate);
+        this.expiryMillis = DateUtil.toMillis(expiryDate);
+        setRole(role);
+        setStatus(status);
         this.password = password;
         this.borrowedCount = borrowedCount;
         this.profileImage = profileImage;
@@ -98,34 +106,74 @@ public class Member {
     }
 
     public Date getJoinDate() {
-        return joinDate;
+        return DateUtil.toDate(joinMillis);
     }
 
     public void setJoinDate(Date joinDate) {
-        this.joinDate = joinDate;
+        this.joinMillis = DateUtil.toMillis(joinDate);
+    }
+
+    public long getJoinMillis() {
+        return joinMillis;
+    }
+
+    public void setJoinMillis(long joinMillis) {
+        this.joinMillis = joinMillis;
     }
 
     public Date getExpiryDate() {
-        return expiryDate;
+        return DateUtil.toDate(expiryMillis);
     }
 
     public void setExpiryDate(Date expiryDate) {
-        this.expiryDate = expiryDate;
+        this.expiryMillis = DateUtil.toMillis(expiryDate);
+    }
+
+    public long getExpiryMillis() {
+        return expiryMillis;
+    }
+
+    public void setExpiryMillis(long expiryMillis) {
+        this.expiryMillis = expiryMillis;
     }
 
     public String getRole() {
-        return role;
+        if (role == MemberRole.UNKNOWN) {
+            return storedRole;
+        }
+        return role != null ? role.name() : null;
     }
 
     public void setRole(String role) {
+        this.role = MemberRole.fromString(role);
+        this.storedRole = role;
+    }
+
+    public MemberRole getMemberRole() {
+        return role;
+    }
+
+    public void setMemberRole(MemberRole role) {
         this.role = role;
     }
 
     public String getStatus() {
-        return status;
+        if (status == MemberStatus.UNKNOWN) {
+            return storedStatus;
+        }
+        return status != null ? status.name() : null;
     }
 
     public void setStatus(String status) {
+        this.status = MemberStatus.fromString(status);
+        this.storedStatus = status;
+    }
+
+    public MemberStatus getMemberStatus() {
+        return status;
+    }
+
+    public void setMemberStatus(MemberStatus status) {
         this.status = status;
     }
 
@@ -153,6 +201,14 @@ public class Member {
         this.profileImage = profileImage;
     }
 
+    public String getCardNumber() {
+        return cardNumber;
+    }
+
+    public void setCardNumber(String cardNumber) {
+        this.cardNumber = cardNumber;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -187,44 +243,27 @@ public class Member {
         copy.email = this.email;
         copy.phone = this.phone;
         copy.address = this.address;
-        copy.joinDate = this.joinDate != null ? new Date(this.joinDate.getTime()) : null;
-        copy.expiryDate = this.expiryDate != null ? new Date(this.expiryDate.getTime()) : null;
+        copy.joinMillis = this.joinMillis;
+        copy.expiryMillis = this.expiryMillis;
         copy.role = this.role;
         copy.status = this.status;
         copy.password = this.password;
         copy.borrowedCount = this.borrowedCount;
         copy.profileImage = this.profileImage;
+        copy.cardNumber = this.cardNumber;
         return copy;
     }
 
 
     public boolean isExpired() {
-        if (expiryDate == null) {
+        if (expiryMillis == DateUtil.NO_DATE) {
             return false;
         }
-        return new Date().after(expiryDate);
+        return expiryMillis < LibraryClock.currentTimeMillis();
     }
 
 
-    public int getMaxAllowedBorrows() {
-        if ("PREMIUM".equalsIgnoreCase(role)) {
-            return 10;
-        } else if ("ADMIN".equalsIgnoreCase(role)) {
-            return 15;
-        } else {
-            return 5; // REGULAR members
-        }
-    }
-
-
-    public boolean canBorrowMore() {
-        return borrowedCount < getMaxAllowedBorrows() && 
-               "ACTIVE".equalsIgnoreCase(status) && 
-               !isExpired();
-    }
-    
-
     public boolean isActive() {
-        return "ACTIVE".equalsIgnoreCase(status) && !isExpired();
+        return status == MemberStatus.ACTIVE && !isExpired();
     }
 }
\ No newline at end of file
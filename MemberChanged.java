@@ -0,0 +1,28 @@
+package com.library.app.event;
+
+/**
+ * A member was added, edited or deleted.
+ */
+public final class MemberChanged implements DomainEvent {
+
+    private final int memberId;
+    private final ChangeKind kind;
+
+    public MemberChanged(int memberId, ChangeKind kind) {
+        this.memberId = memberId;
+        this.kind = kind;
+    }
+
+    public int getMemberId() {
+        return memberId;
+    }
+
+    public ChangeKind getKind() {
+        return kind;
+    }
+
+    @Override
+    public String toString() {
+        return "MemberChanged{memberId=" + memberId + ", kind=" + kind + "}";
+    }
+}
@@ -1,7 +1,11 @@
 package com.library.app.db;
 
 import com.library.app.model.Member;
+import com.library.app.model.MemberRole;
+import com.library.app.model.MemberStatus;
+import com.library.app.util.DateUtil;
 import com.library.app.util.Logger;
+import com.library.app.util.TextNormalizer;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -10,12 +14,21 @@ import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 
 public class MemberDAO {
     
     private static final Logger logger = new Logger(MemberDAO.class.getName());
+    // Unknown stored roles and statuses already warned about, so each is reported once
+    private static final Set<String> reportedUnknownValues = ConcurrentHashMap.newKeySet();
+    private static final int BACKFILL_BATCH_SIZE = 500;
+    private static final String CARD_NUMBER_PREFIX = "LIB-";
 
 
     public Member getMemberById(int id) throws SQLException {
@@ -35,10 +48,10 @@ public class MemberDAO {
                 member = mapResultSetToMember(rs);
             }
             
-            logger.info("Retrieved member by ID: " + id);
+            logger.info("Retrieved member by ID: {}", id);
             return member;
         } catch (SQLException e) {
-            logger.error("Error retrieving member by ID: " + id, e);
+            logger.error("Error retrieving member by ID: {}", id, e);
             throw e;
         } finally {
             closeResources(rs, stmt);
@@ -47,6 +60,11 @@ public class MemberDAO {
     
 
     public List<Member> getAllMembers() throws SQLException {
+        return getAllMembers(true);
+    }
+    
+
+    public List<Member> getAllMembers(boolean includeBorrowedCounts) throws SQLException {
         String sql = "SELECT * FROM members ORDER BY name";
         Connection conn = null;
         Statement stmt = null;
@@ -64,9 +82,11 @@ public class MemberDAO {
             }
             
             // Update the borrowed count for each member from the transactions table
-            updateBorrowedCounts(members, conn);
+            if (includeBorrowedCounts) {
+                updateBorrowedCounts(members, conn);
+            }
             
-            logger.info("Retrieved all members: " + members.size() + " records");
+            logger.info("Retrieved all members: {} records", members.size());
             return members;
         } catch (SQLException e) {
             logger.error("Error retrieving all members", e);
@@ -76,37 +96,119 @@ public class MemberDAO {
         }
     }
 
+    /**
+     * Reads all members ordered by name with their borrowed counts, passing
+     * each one to the sink as soon as it is mapped.
+     * 
+     * @param handle Lets another thread cancel the query; may be null
+     * @param sink Receives the members; an exception it throws stops the read
+     * @return The number of members read
+     */
+    public int forEachMember(QueryHandle handle, Consumer<? super Member> sink) throws SQLException {
+        String sql = "SELECT * FROM members ORDER BY name";
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        int count = 0;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            // Counts first, so each member is complete when it is handed on
+            Map<Integer, Integer> borrowedCounts = getBorrowedCountMap(conn);
+            
+            stmt = conn.createStatement();
+            if (handle != null) {
+                handle.attach(stmt);
+            }
+            rs = stmt.executeQuery(sql);
+            
+            while (rs.next()) {
+                Member member = mapResultSetToMember(rs);
+                member.setBorrowedCount(borrowedCounts.getOrDefault(member.getId(), 0));
+                sink.accept(member);
+                count++;
+            }
+            
+            logger.info("Retrieved all members: {} records", count);
+            return count;
+        } catch (SQLException e) {
+            if (handle != null && handle.isCancelled()) {
+                logger.debug("Reading all members cancelled after {} records", count);
+            } else {
+                logger.error("Error retrieving all members", e);
+            }
+            throw e;
+        } finally {
+            if (handle != null) {
+                handle.detach();
+            }
+            closeResources(rs, stmt);
+        }
+    }
+    
+
     private void updateBorrowedCounts(List<Member> members, Connection conn) {
         if (members.isEmpty()) {
             return;
         }
         
+        Map<Integer, Integer> borrowedCountMap = getBorrowedCountMap(conn);
+        
+        // Update each member's borrowed count
+        for (Member member : members) {
+            Integer borrowedCount = borrowedCountMap.get(member.getId());
+            member.setBorrowedCount(borrowedCount != null ? borrowedCount : 0);
+        }
+        
+        logger.info("Updated borrowed counts for {} members", members.size());
+    }
+    
+
+    /**
+     * @return The member's open loans, counted like the member list counts them
+     */
+    public int countOpenLoans(int memberId) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM transactions WHERE member_id = ? AND return_date IS NULL";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, memberId);
+            rs = stmt.executeQuery();
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            logger.error("Error counting open loans for member ID: {}", memberId, e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    /**
+     * @return Open loans per member id; empty if they could not be read
+     */
+    private Map<Integer, Integer> getBorrowedCountMap(Connection conn) {
         String sql = "SELECT member_id, COUNT(*) as book_count FROM transactions " +
                     "WHERE return_date IS NULL GROUP BY member_id";
+        Map<Integer, Integer> borrowedCountMap = new HashMap<>();
         
         try (Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             
-            // Create a map for quick lookup of borrowed counts
-            java.util.Map<Integer, Integer> borrowedCountMap = new java.util.HashMap<>();
-            
             while (rs.next()) {
                 int memberId = rs.getInt("member_id");
                 int bookCount = rs.getInt("book_count");
                 borrowedCountMap.put(memberId, bookCount);
             }
-            
-            // Update each member's borrowed count
-            for (Member member : members) {
-                Integer borrowedCount = borrowedCountMap.get(member.getId());
-                member.setBorrowedCount(borrowedCount != null ? borrowedCount : 0);
-            }
-            
-            logger.info("Updated borrowed counts for " + members.size() + " members");
         } catch (SQLException e) {
             logger.error("Error updating borrowed counts for members", e);
             // Don't throw the exception - this is a supplementary operation
         }
+        return borrowedCountMap;
     }
     
 
@@ -127,7 +229,7 @@ public class MemberDAO {
                 members.add(member);
             }
             
-            logger.info("Retrieved active members: " + members.size() + " records");
+            logger.info("Retrieved active members: {} records", members.size());
             return members;
         } catch (SQLException e) {
             logger.error("Error retrieving active members", e);
@@ -139,9 +241,15 @@ public class MemberDAO {
     
 
     public int addMember(Member member) throws SQLException {
-        String sql = "INSERT INTO members (name, email, phone, address, join_date, " +
-                     "expiry_date, role, status, password, borrowed_count) " +
-                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        // The id is drawn first so the default card number, which is built from it, goes in
+        // with the row; the number format is kept in sync with formatCardNumber
+        String sql = "WITH new_member AS (SELECT nextval(pg_get_serial_sequence('members', 'id'))::int AS id) " +
+                     "INSERT INTO members (id, name, email, phone, address, join_date, " +
+                     "expiry_date, role, status, password, borrowed_count, " +
+                     "name_key, email_key, phone_key, card_number) " +
+                     "SELECT id, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, " +
+                     "COALESCE(?, ? || lpad(id::text, GREATEST(6, length(id::text)), '0')) " +
+                     "FROM new_member RETURNING id, card_number";
                      
         Connection conn = null;
         PreparedStatement stmt = null;
@@ -149,39 +257,36 @@ public class MemberDAO {
         
         try {
             conn = DatabaseConnection.getInstance().getConnection();
-            stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            stmt = conn.prepareStatement(sql);
             
             stmt.setString(1, member.getName());
             stmt.setString(2, member.getEmail());
             stmt.setString(3, member.getPhone());
             stmt.setString(4, member.getAddress());
-            stmt.setTimestamp(5, member.getJoinDate() != null ? 
-                              new Timestamp(member.getJoinDate().getTime()) : null);
-            stmt.setTimestamp(6, member.getExpiryDate() != null ? 
-                              new Timestamp(member.getExpiryDate().getTime()) : null);
+            stmt.setTimestamp(5, toTimestamp(member.getJoinMillis()));
+            stmt.setTimestamp(6, toTimestamp(member.getExpiryMillis()));
             stmt.setString(7, member.getRole());
             stmt.setString(8, member.getStatus());
             stmt.setString(9, member.getPassword());
             stmt.setInt(10, member.getBorrowedCount());
 //            stmt.setString(11, member.getProfileImage());
+            setSearchKeys(stmt, 11, member);
+            String cardNumber = member.getCardNumber();
+            stmt.setString(14, cardNumber == null || cardNumber.trim().isEmpty() ? null : cardNumber);
+            stmt.setString(15, CARD_NUMBER_PREFIX);
             
-            int affectedRows = stmt.executeUpdate();
-            
-            if (affectedRows == 0) {
-                throw new SQLException("Creating member failed, no rows affected.");
-            }
-            
-            rs = stmt.getGeneratedKeys();
+            rs = stmt.executeQuery();
             if (rs.next()) {
-                int id = rs.getInt(1);
+                int id = rs.getInt("id");
                 member.setId(id);
-                logger.info("Added new member: " + member.getName() + " with ID: " + id);
+                member.setCardNumber(rs.getString("card_number"));
+                logger.info("Added new member: {} with ID: {}", member.getName(), id);
                 return id;
             } else {
                 throw new SQLException("Creating member failed, no ID obtained.");
             }
         } catch (SQLException e) {
-            logger.error("Error adding member: " + member.getName(), e);
+            logger.error("Error adding member: {}", member.getName(), e);
             throw e;
         } finally {
             closeResources(rs, stmt);
@@ -191,7 +296,7 @@ public class MemberDAO {
     public void updateMember(Member member) throws SQLException {
         String sql = "UPDATE members SET name = ?, email = ?, phone = ?, address = ?, " +
                      "join_date = ?, expiry_date = ?, role = ?, status = ?, password = ?, " +
-                     "borrowed_count = ? " +
+                     "borrowed_count = ?, name_key = ?, email_key = ?, phone_key = ? " +
                      "WHERE id = ?";
                      
         Connection conn = null;
@@ -205,21 +310,20 @@ public class MemberDAO {
             stmt.setString(2, member.getEmail());
             stmt.setString(3, member.getPhone());
             stmt.setString(4, member.getAddress());
-            stmt.setTimestamp(5, member.getJoinDate() != null ? 
-                              new Timestamp(member.getJoinDate().getTime()) : null);
-            stmt.setTimestamp(6, member.getExpiryDate() != null ? 
-                              new Timestamp(member.getExpiryDate().getTime()) : null);
+            stmt.setTimestamp(5, toTimestamp(member.getJoinMillis()));
+            stmt.setTimestamp(6, toTimestamp(member.getExpiryMillis()));
             stmt.setString(7, member.getRole());
             stmt.setString(8, member.getStatus());
             stmt.setString(9, member.getPassword());
             stmt.setInt(10, member.getBorrowedCount());
 //            stmt.setString(11, member.getProfileImage());
-            stmt.setInt(11, member.getId());
+            setSearchKeys(stmt, 11, member);
+            stmt.setInt(14, member.getId());
             
             int affectedRows = stmt.executeUpdate();
-            logger.info("Updated member ID: " + member.getId() + ", rows affected: " + affectedRows);
+            logger.info("Updated member ID: {}, rows affected: {}", member.getId(), affectedRows);
         } catch (SQLException e) {
-            logger.error("Error updating member ID: " + member.getId(), e);
+            logger.error("Error updating member ID: {}", member.getId(), e);
             throw e;
         } finally {
             closeResources(null, stmt);
@@ -238,9 +342,9 @@ public class MemberDAO {
             stmt.setInt(1, id);
             
             int affectedRows = stmt.executeUpdate();
-            logger.info("Deleted member ID: " + id + ", rows affected: " + affectedRows);
+            logger.info("Deleted member ID: {}, rows affected: {}", id, affectedRows);
         } catch (SQLException e) {
-            logger.error("Error deleting member ID: " + id, e);
+            logger.error("Error deleting member ID: {}", id, e);
             throw e;
         } finally {
             closeResources(null, stmt);
@@ -266,10 +370,10 @@ public class MemberDAO {
                 members.add(member);
             }
             
-            logger.info("Search by ID " + id + " results: " + members.size() + " members found");
+            logger.info("Search by ID {} results: {} members found", id, members.size());
             return members;
         } catch (SQLException e) {
-            logger.error("Error searching members by ID: " + id, e);
+            logger.error("Error searching members by ID: {}", id, e);
             throw e;
         } finally {
             closeResources(rs, stmt);
@@ -278,20 +382,90 @@ public class MemberDAO {
     
 
     public List<Member> searchMembersByName(String name) throws SQLException {
-        String sql = "SELECT * FROM members WHERE LOWER(name) LIKE LOWER(?) ORDER BY name";
-        return searchMembers(sql, "%" + name + "%");
+        return searchMembersByName(name, null);
+    }
+    
+
+    public List<Member> searchMembersByName(String name, QueryHandle handle) throws SQLException {
+        String sql = "SELECT * FROM members WHERE name_key LIKE ? ORDER BY name";
+        return searchMembers(sql, TextNormalizer.containsPattern(name), handle);
     }
     
 
     public List<Member> searchMembersByEmail(String email) throws SQLException {
-        String sql = "SELECT * FROM members WHERE LOWER(email) LIKE LOWER(?) ORDER BY name";
-        return searchMembers(sql, "%" + email + "%");
+        return searchMembersByEmail(email, null);
+    }
+    
+
+    public List<Member> searchMembersByEmail(String email, QueryHandle handle) throws SQLException {
+        String sql = "SELECT * FROM members WHERE email_key LIKE ? ORDER BY name";
+        return searchMembers(sql, TextNormalizer.likeContains(TextNormalizer.normalizeEmail(email)), handle);
     }
     
 
     public List<Member> searchMembersByPhone(String phone) throws SQLException {
-        String sql = "SELECT * FROM members WHERE LOWER(phone) LIKE LOWER(?) ORDER BY name";
-        return searchMembers(sql, "%" + phone + "%");
+        return searchMembersByPhone(phone, null);
+    }
+    
+
+    public List<Member> searchMembersByPhone(String phone, QueryHandle handle) throws SQLException {
+        String digits = TextNormalizer.normalizePhone(phone);
+        if (digits.isEmpty()) {
+            return new ArrayList<>();
+        }
+        String sql = "SELECT * FROM members WHERE phone_key LIKE ? ORDER BY name";
+        return searchMembers(sql, TextNormalizer.likeContains(digits), handle);
+    }
+    
+
+    public int backfillSearchKeys() throws SQLException {
+        // A key stays null when its source is null, so only rows with something to fill are read
+        String selectSql = "SELECT id, name, email, phone FROM members " +
+                           "WHERE (name_key IS NULL AND name IS NOT NULL) " +
+                           "OR (email_key IS NULL AND email IS NOT NULL) " +
+                           "OR (phone_key IS NULL AND phone IS NOT NULL)";
+        String updateSql = "UPDATE members SET name_key = ?, email_key = ?, phone_key = ? WHERE id = ?";
+        Connection conn = null;
+        Statement selectStmt = null;
+        PreparedStatement updateStmt = null;
+        ResultSet rs = null;
+        int updated = 0;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            selectStmt = conn.createStatement();
+            updateStmt = conn.prepareStatement(updateSql);
+            rs = selectStmt.executeQuery(selectSql);
+            
+            int pending = 0;
+            while (rs.next()) {
+                Member member = new Member();
+                member.setName(rs.getString("name"));
+                member.setEmail(rs.getString("email"));
+                member.setPhone(rs.getString("phone"));
+                
+                setSearchKeys(updateStmt, 1, member);
+                updateStmt.setInt(4, rs.getInt("id"));
+                updateStmt.addBatch();
+                
+                if (++pending == BACKFILL_BATCH_SIZE) {
+                    updated += sum(updateStmt.executeBatch());
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                updated += sum(updateStmt.executeBatch());
+            }
+            
+            logger.info("Backfilled member search keys: {} rows", updated);
+            return updated;
+        } catch (SQLException e) {
+            logger.error("Error backfilling member search keys", e);
+            throw e;
+        } finally {
+            closeResources(rs, selectStmt);
+            closeResources(null, updateStmt);
+        }
     }
     
 
@@ -317,7 +491,7 @@ public class MemberDAO {
                 members.add(member);
             }
             
-            logger.info("Retrieved members with overdue books: " + members.size() + " records");
+            logger.info("Retrieved members with overdue books: {} records", members.size());
             return members;
         } catch (SQLException e) {
             logger.error("Error retrieving members with overdue books", e);
@@ -346,7 +520,7 @@ public class MemberDAO {
                 members.add(member);
             }
             
-            logger.info("Retrieved recent members: " + members.size() + " records");
+            logger.info("Retrieved recent members: {} records", members.size());
             return members;
         } catch (SQLException e) {
             logger.error("Error retrieving recent members", e);
@@ -357,7 +531,7 @@ public class MemberDAO {
     }
     
 
-    private List<Member> searchMembers(String sql, String searchParam) throws SQLException {
+    private List<Member> searchMembers(String sql, String searchParam, QueryHandle handle) throws SQLException {
         Connection conn = null;
         PreparedStatement stmt = null;
         ResultSet rs = null;
@@ -367,6 +541,9 @@ public class MemberDAO {
             conn = DatabaseConnection.getInstance().getConnection();
             stmt = conn.prepareStatement(sql);
             stmt.setString(1, searchParam);
+            if (handle != null) {
+                handle.attach(stmt);
+            }
             rs = stmt.executeQuery();
             
             while (rs.next()) {
@@ -374,17 +551,45 @@ public class MemberDAO {
                 members.add(member);
             }
             
-            logger.info("Search results: " + members.size() + " members found");
+            logger.info("Search results: {} members found", members.size());
             return members;
         } catch (SQLException e) {
-            logger.error("Error searching members", e);
+            if (handle != null && handle.isCancelled()) {
+                logger.debug("Member search cancelled");
+            } else {
+                logger.error("Error searching members", e);
+            }
             throw e;
         } finally {
+            if (handle != null) {
+                handle.detach();
+            }
             closeResources(rs, stmt);
         }
     }
     
 
+    public static String formatCardNumber(int memberId) {
+        return CARD_NUMBER_PREFIX + String.format("%06d", memberId);
+    }
+    
+
+    private void setSearchKeys(PreparedStatement stmt, int firstIndex, Member member) throws SQLException {
+        stmt.setString(firstIndex, TextNormalizer.normalize(member.getName()));
+        stmt.setString(firstIndex + 1, TextNormalizer.normalizeEmail(member.getEmail()));
+        stmt.setString(firstIndex + 2, TextNormalizer.normalizePhone(member.getPhone()));
+    }
+    
+
+    private int sum(int[] counts) {
+        int total = 0;
+        for (int count : counts) {
+            total += count > 0 ? count : 0;
+        }
+        return total;
+    }
+    
+
     private Member mapResultSetToMember(ResultSet rs) throws SQLException {
         Member member = new Member();
         member.setId(rs.getInt("id"));
@@ -395,16 +600,20 @@ public class MemberDAO {
         
         Timestamp joinDate = rs.getTimestamp("join_date");
         if (joinDate != null) {
-            member.setJoinDate(new java.util.Date(joinDate.getTime()));
+            member.setJoinMillis(joinDate.getTime());
         }
         
         Timestamp expiryDate = rs.getTimestamp("expiry_date");
-        if (expiryDate != null) {
-            member.setExpiryDate(new java.util.Date(expiryDate.getTime()));
-        }
+        member.setExpiryMillis(expiryDate != null ? expiryDate.getTime() : DateUtil.NO_DATE);
         
         member.setRole(rs.getString("role"));
         member.setStatus(rs.getString("status"));
+        if (member.getMemberRole() == MemberRole.UNKNOWN && reportedUnknownValues.add("role " + member.getRole())) {
+            logger.warn("Unknown role '{}' first read on member ID: {}; treated as REGULAR", member.getRole(), member.getId());
+        }
+        if (member.getMemberStatus() == MemberStatus.UNKNOWN && reportedUnknownValues.add("status " + member.getStatus())) {
+            logger.warn("Unknown status '{}' first read on member ID: {}", member.getStatus(), member.getId());
+        }
         
         // Safely retrieve optional fields that might not exist in all database versions
         try {
@@ -414,6 +623,13 @@ public class MemberDAO {
             member.setPassword("");
         }
         
+        try {
+            member.setCardNumber(rs.getString("card_number"));
+        } catch (SQLException e) {
+            // Card number column is added by SchemaUpgrade
+            member.setCardNumber(null);
+        }
+        
         // Calculate borrowed count from transactions table instead of using a column
         member.setBorrowedCount(0); // Default to 0
         
@@ -424,6 +640,11 @@ public class MemberDAO {
     }
     
 
+    private static Timestamp toTimestamp(long epochMillis) {
+        return epochMillis != DateUtil.NO_DATE ? new Timestamp(epochMillis) : null;
+    }
+    
+
     private void closeResources(ResultSet rs, Statement stmt) {
         try {
             if (rs != null) rs.close();
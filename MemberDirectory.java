@@ -0,0 +1,321 @@
+package com.library.app.service;
+
+import com.library.app.db.MemberDAO;
+import com.library.app.model.Member;
+import com.library.app.model.MemberRole;
+import com.library.app.model.MemberStatus;
+import com.library.app.util.Logger;
+import com.library.app.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory directory of members used when a member has to be picked.
+ * <p>
+ * The directory is loaded once from the database and then kept up to date by
+ * {@link MemberService} on every member write, so lookups by id, email, phone,
+ * card number and name prefix never touch the database. Entries only hold the
+ * fields needed to identify a member; borrowed counts are not tracked.
+ */
+public class MemberDirectory {
+
+    private static final Logger logger = new Logger(MemberDirectory.class.getName());
+
+    private static MemberDirectory instance;
+
+    private final Map<Integer, Entry> byId = new HashMap<>();
+    private final Map<String, Entry> byEmail = new HashMap<>();
+    private final Map<String, Entry> byPhone = new HashMap<>();
+    private final Map<String, Entry> byCardNumber = new HashMap<>();
+    // Keyed by name key plus id so members sharing a name stay distinct
+    private final TreeMap<String, Entry> byName = new TreeMap<>();
+
+    private boolean loaded;
+
+
+    private MemberDirectory() {
+    }
+
+
+    public static synchronized MemberDirectory getInstance() {
+        if (instance == null) {
+            instance = new MemberDirectory();
+        }
+        return instance;
+    }
+
+
+    /**
+     * Loads the directory from the database if it has not been loaded yet.
+     *
+     * @throws Exception if the members cannot be read
+     */
+    public synchronized void ensureLoaded() throws Exception {
+        if (!loaded) {
+            reload();
+        }
+    }
+
+
+    /**
+     * Replaces the directory contents with the current members table.
+     *
+     * @throws Exception if the members cannot be read
+     */
+    public synchronized void reload() throws Exception {
+        try {
+            List<Member> members = new MemberDAO().getAllMembers(false);
+
+            clear();
+            for (Member member : members) {
+                index(new Entry(member, member.getCardNumber()));
+            }
+            loaded = true;
+
+            logger.info("Member directory loaded: " + byId.size() + " members");
+        } catch (Exception e) {
+            logger.error("Error loading member directory", e);
+            throw new Exception("Error loading member directory: " + e.getMessage());
+        }
+    }
+
+
+    /**
+     * Adds or replaces a member after it was written to the database.
+     * Ignored until the directory has been loaded, since the load picks it up.
+     *
+     * @param member The member as written
+     */
+    public synchronized void put(Member member) {
+        if (!loaded || member == null || member.getId() <= 0) {
+            return;
+        }
+        Entry previous = byId.get(member.getId());
+        unindex(previous);
+
+        // Edit dialogs do not carry the card number; it never changes once assigned
+        String cardNumber = member.getCardNumber();
+        if (cardNumber == null && previous != null) {
+            cardNumber = previous.cardNumber;
+        }
+        index(new Entry(member, cardNumber));
+    }
+
+
+    /**
+     * Removes a member after it was deleted from the database.
+     *
+     * @param id The member ID
+     */
+    public synchronized void remove(int id) {
+        if (loaded) {
+            unindex(byId.get(id));
+        }
+    }
+
+
+    public synchronized Entry findById(int id) throws Exception {
+        ensureLoaded();
+        return byId.get(id);
+    }
+
+
+    public synchronized Entry findByEmail(String email) throws Exception {
+        ensureLoaded();
+        return email == null ? null : byEmail.get(TextNormalizer.normalizeEmail(email));
+    }
+
+
+    public synchronized Entry findByPhone(String phone) throws Exception {
+        ensureLoaded();
+        String key = TextNormalizer.normalizePhone(phone);
+        return key == null || key.isEmpty() ? null : byPhone.get(key);
+    }
+
+
+    public synchronized Entry findByCardNumber(String cardNumber) throws Exception {
+        ensureLoaded();
+        return cardNumber == null ? null : byCardNumber.get(normalizeCardNumber(cardNumber));
+    }
+
+
+    /**
+     * Finds members whose normalized name starts with the given prefix,
+     * ordered by name.
+     *
+     * @param prefix The name prefix
+     * @return The matching entries
+     * @throws Exception if the directory cannot be loaded
+     */
+    public synchronized List<Entry> findByNamePrefix(String prefix) throws Exception {
+        ensureLoaded();
+        String key = TextNormalizer.normalize(prefix == null ? "" : prefix);
+        return new ArrayList<>(byName.subMap(key, true, key + Character.MAX_VALUE, false).values());
+    }
+
+
+    /**
+     * Returns all members ordered by name.
+     *
+     * @return All entries
+     * @throws Exception if the directory cannot be loaded
+     */
+    public synchronized List<Entry> getAll() throws Exception {
+        ensureLoaded();
+        return new ArrayList<>(byName.values());
+    }
+
+
+    /**
+     * Returns all members ordered by ID.
+     *
+     * @return All entries
+     * @throws Exception if the directory cannot be loaded
+     */
+    public synchronized List<Entry> getAllById() throws Exception {
+        List<Entry> entries = getAll();
+        entries.sort(Comparator.comparingInt(Entry::getId));
+        return entries;
+    }
+
+
+    public synchronized int size() {
+        return byId.size();
+    }
+
+
+    /**
+     * Converts entries to lightweight members for the selection dialogs.
+     *
+     * @param entries The entries
+     * @return Members carrying the directory fields only
+     */
+    public static List<Member> toMembers(List<Entry> entries) {
+        List<Member> members = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            members.add(entry.toMember());
+        }
+        return members;
+    }
+
+
+    private void index(Entry entry) {
+        byId.put(entry.id, entry);
+        byName.put(entry.nameKey + '\u0000' + entry.id, entry);
+        if (entry.email != null) {
+            byEmail.put(TextNormalizer.normalizeEmail(entry.email), entry);
+        }
+        String phoneKey = TextNormalizer.normalizePhone(entry.phone);
+        if (phoneKey != null && !phoneKey.isEmpty()) {
+            byPhone.put(phoneKey, entry);
+        }
+        if (entry.cardNumber != null) {
+            byCardNumber.put(normalizeCardNumber(entry.cardNumber), entry);
+        }
+    }
+
+
+    private void unindex(Entry entry) {
+        if (entry == null) {
+            return;
+        }
+        byId.remove(entry.id);
+        byName.remove(entry.nameKey + '\u0000' + entry.id);
+        // Only drop secondary keys that still point at this entry; another
+        // member may share a phone number
+        if (entry.email != null) {
+            byEmail.remove(TextNormalizer.normalizeEmail(entry.email), entry);
+        }
+        String phoneKey = TextNormalizer.normalizePhone(entry.phone);
+        if (phoneKey != null) {
+            byPhone.remove(phoneKey, entry);
+        }
+        if (entry.cardNumber != null) {
+            byCardNumber.remove(normalizeCardNumber(entry.cardNumber), entry);
+        }
+    }
+
+
+    private void clear() {
+        byId.clear();
+        byEmail.clear();
+        byPhone.clear();
+        byCardNumber.clear();
+        byName.clear();
+        loaded = false;
+    }
+
+
+    private static String normalizeCardNumber(String cardNumber) {
+        return TextNormalizer.normalizeIdentifier(cardNumber);
+    }
+
+
+    /**
+     * Compact, immutable member record held by the directory.
+     */
+    public static final class Entry {
+        private final int id;
+        private final String name;
+        private final String email;
+        private final String phone;
+        private final MemberRole role;
+        private final MemberStatus status;
+        private final String cardNumber;
+        private final String nameKey;
+
+        private Entry(Member member, String cardNumber) {
+            this.id = member.getId();
+            this.name = member.getName();
+            this.email = member.getEmail();
+            this.phone = member.getPhone();
+            this.role = member.getMemberRole();
+            this.status = member.getMemberStatus();
+            this.cardNumber = cardNumber;
+            this.nameKey = TextNormalizer.normalize(member.getName() == null ? "" : member.getName());
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getEmail() {
+            return email;
+        }
+
+        public String getPhone() {
+            return phone;
+        }
+
+        public MemberRole getRole() {
+            return role;
+        }
+
+        public MemberStatus getStatus() {
+            return status;
+        }
+
+        public String getCardNumber() {
+            return cardNumber;
+        }
+
+        public Member toMember() {
+            Member member = new Member(name, email, phone);
+            member.setId(id);
+            member.setMemberRole(role);
+            member.setMemberStatus(status);
+            member.setCardNumber(cardNumber);
+            member.setJoinDate(null);
+            return member;
+        }
+    }
+}
@@ -1,20 +1,31 @@
 package com.library.app.ui;
 
 import com.library.app.factory.DialogFactory;
+import com.library.app.event.EventBus;
+import com.library.app.event.LoanClosed;
+import com.library.app.event.LoanEvent;
+import com.library.app.event.LoanOpened;
+import com.library.app.event.MemberChanged;
 import com.library.app.factory.UIComponentFactory;
 import com.library.app.model.Member;
+import com.library.app.model.MemberRole;
+import com.library.app.model.MemberStatus;
 import com.library.app.service.MemberService;
 import com.library.app.util.Logger;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Predicate;
 
 
-public class MemberPanel extends JPanel {
+public class MemberPanel extends JPanel implements TabPanel {
 
     private static final Logger logger = new Logger(MemberPanel.class.getName());
     
@@ -27,6 +38,15 @@ public class MemberPanel extends JPanel {
     private DefaultTableModel tableModel;
     private JTextField searchField;
     private JComboBox<String> searchTypeCombo;
+    private LiveSearch<List<Member>> liveSearch;
+    private JLabel totalMembersLabel;
+    private DataLoader<Member> dataLoader;
+    private IndexRowSorter<DefaultTableModel> rowSorter;
+    private JComboBox<String> roleFilterCombo;
+    private JComboBox<String> statusFilterCombo;
+    private RowReloader<Member> memberReloader;
+    private boolean showingSearchResults;
+    private boolean stale;
     
 
     public MemberPanel(MainWindow mainWindow) {
@@ -34,9 +54,20 @@ public class MemberPanel extends JPanel {
         this.memberService = new MemberService();
         this.uiFactory = new UIComponentFactory();
         this.dialogFactory = new DialogFactory();
+        this.liveSearch = new LiveSearch<>("member-search", 300, this::createSearchQuery,
+                                           this::showSearchResults, this::showSearchError);
         
         initializeUI();
+        this.dataLoader = new DataLoader<>("members", totalMembersLabel, () -> tableModel.setRowCount(0),
+                                           this::appendMembers, this::membersLoaded, this::showLoadError);
+        this.memberReloader = new RowReloader<>("member-rows", memberService::getMemberWithBorrowedCount,
+                                                this::memberRead);
         refreshData();
+        
+        // Rows follow changes made anywhere in the application instead of reloading the whole table
+        EventBus.get().subscribe(MemberChanged.class, this::memberChanged);
+        EventBus.get().subscribe(LoanOpened.class, this::loanChanged);
+        EventBus.get().subscribe(LoanClosed.class, this::loanChanged);
         logger.info("MemberPanel initialized");
     }
     
@@ -85,9 +116,26 @@ public class MemberPanel extends JPanel {
             BorderFactory.createLineBorder(new Color(200, 200, 200)),
             BorderFactory.createEmptyBorder(6, 10, 6, 10)
         ));
+        searchField.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                liveSearch.restart();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                liveSearch.restart();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                liveSearch.restart();
+            }
+        });
         
         // Search type combo with better styling
         searchTypeCombo = new JComboBox<>(new String[]{"ID", "Name", "Email", "Phone"});
+        searchTypeCombo.addActionListener(e -> liveSearch.restart());
         searchTypeCombo.setFont(new Font("Arial", Font.PLAIN, 14));
         searchTypeCombo.setBackground(Color.WHITE);
         searchTypeCombo.setBorder(BorderFactory.createCompoundBorder(
@@ -107,10 +155,16 @@ public class MemberPanel extends JPanel {
         searchButton.setIconTextGap(8);
         searchButton.addActionListener(this::searchMembers);
         
+        // Filters apply to the loaded rows without querying again
+        roleFilterCombo = createFilterCombo("All Roles", MemberRole.values());
+        statusFilterCombo = createFilterCombo("All Statuses", MemberStatus.values());
+        
         searchPanel.add(searchLabel);
         searchPanel.add(searchField);
         searchPanel.add(searchTypeCombo);
         searchPanel.add(searchButton);
+        searchPanel.add(roleFilterCombo);
+        searchPanel.add(statusFilterCombo);
         
         topPanel.add(searchPanel, BorderLayout.WEST);
         
@@ -144,6 +198,8 @@ public class MemberPanel extends JPanel {
         
         // Create table with modern styling
         memberTable = new JTable(tableModel);
+        rowSorter = new IndexRowSorter<>(tableModel);
+        memberTable.setRowSorter(rowSorter);
         memberTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         memberTable.setAutoResizeMode(JTable.AUTO_RESIZE_ALL_COLUMNS);
         memberTable.getTableHeader().setReorderingAllowed(false);
@@ -208,7 +264,7 @@ public class MemberPanel extends JPanel {
         ));
         statusPanel.setBackground(new Color(250, 250, 250));
         
-        JLabel totalMembersLabel = new JLabel("إجمالي الأعضاء: 0");
+        totalMembersLabel = new JLabel("إجمالي الأعضاء: 0");
         totalMembersLabel.setFont(new Font("Arial", Font.BOLD, 14));
         totalMembersLabel.setForeground(new Color(70, 70, 70));
         statusPanel.add(totalMembersLabel, BorderLayout.WEST);
@@ -218,107 +274,245 @@ public class MemberPanel extends JPanel {
     
 
     public void refreshData() {
-        try {
-            tableModel.setRowCount(0); // Clear existing data
-            
-            List<Member> members = memberService.getAllMembers();
-            for (Member member : members) {
-                Object[] rowData = {
-                    member.getId(),
-                    member.getName(),
-                    member.getEmail(),
-                    member.getPhone(),
-                    member.getAddress(),
-                    member.getJoinDate(),
-                    member.getRole(),
-                    member.getStatus(),
-                    member.getBorrowedCount()
-                };
-                tableModel.addRow(rowData);
-            }
-            
-            // Update total members count in status bar
-            JPanel statusPanel = (JPanel) getComponent(2);
-            JLabel totalMembersLabel = (JLabel) ((BorderLayout) statusPanel.getLayout()).getLayoutComponent(BorderLayout.WEST);
-            totalMembersLabel.setText("Total Members: " + members.size());
-            
-            logger.info("Member data refreshed, " + members.size() + " members loaded");
-        } catch (Exception e) {
-            logger.error("Error refreshing member data", e);
-            JOptionPane.showMessageDialog(this, 
-                "Error loading members: " + e.getMessage(), 
-                "Data Error", 
-                JOptionPane.ERROR_MESSAGE);
+        liveSearch.cancel();
+        memberReloader.clear();
+        stale = false;
+        showingSearchResults = false;
+        dataLoader.load(memberService::forEachMember);
+    }
+    
+
+    @Override
+    public void tabShown() {
+        if (stale) {
+            refreshData();
+        } else {
+            dataLoader.resume();
         }
     }
     
 
-    private void searchMembers(ActionEvent e) {
-        try {
-            String searchText = searchField.getText().trim();
-            String searchType = (String) searchTypeCombo.getSelectedItem();
-            
-            if (searchText.isEmpty()) {
-                refreshData();
-                return;
-            }
-            
-            List<Member> results;
-            switch (searchType) {
-                case "ID":
-                    try {
-                        int id = Integer.parseInt(searchText);
-                        results = memberService.searchMembersById(id);
-                    } catch (NumberFormatException ex) {
-                        JOptionPane.showMessageDialog(this, 
-                            "Please enter a valid member ID", 
-                            "Invalid Input", 
-                            JOptionPane.WARNING_MESSAGE);
-                        return;
-                    }
-                    break;
-                case "Name":
-                    results = memberService.searchMembersByName(searchText);
-                    break;
-                case "Email":
-                    results = memberService.searchMembersByEmail(searchText);
-                    break;
-                case "Phone":
-                    results = memberService.searchMembersByPhone(searchText);
-                    break;
-                default:
-                    results = memberService.searchMembersByName(searchText);
+    @Override
+    public void tabHidden() {
+        dataLoader.pause();
+    }
+    
+
+    private void appendMembers(List<Member> members) {
+        List<Object[]> rows = new ArrayList<>(members.size());
+        for (Member member : members) {
+            rows.add(toRow(member));
+        }
+        DataLoader.addRows(tableModel, rows);
+    }
+    
+
+    private void memberChanged(MemberChanged event) {
+        if (!isShowing()) {
+            // Reloaded when the tab is shown
+            stale = true;
+            return;
+        }
+        if (dataLoader.isLoading()) {
+            // The rows already read may predate the change
+            refreshData();
+            return;
+        }
+        
+        switch (event.getKind()) {
+            case DELETED:
+                memberRead(event.getMemberId(), null);
+                break;
+            case ADDED:
+            case UPDATED:
+                memberReloader.reload(event.getMemberId());
+                break;
+        }
+    }
+    
+
+    private void loanChanged(LoanEvent event) {
+        // The borrowed count of the member's row is now different
+        if (!isShowing()) {
+            stale = true;
+        } else if (!dataLoader.isLoading() && findMemberRow(event.getMemberId()) >= 0) {
+            memberReloader.reload(event.getMemberId());
+        }
+    }
+    
+
+    private void memberRead(int memberId, Member member) {
+        int row = findMemberRow(memberId);
+        if (member == null) {
+            if (row >= 0) {
+                tableModel.removeRow(row);
             }
-            
-            tableModel.setRowCount(0);
-            for (Member member : results) {
-                Object[] rowData = {
-                    member.getId(),
-                    member.getName(),
-                    member.getEmail(),
-                    member.getPhone(),
-                    member.getAddress(),
-                    member.getJoinDate(),
-                    member.getRole(),
-                    member.getStatus(),
-                    member.getBorrowedCount()
-                };
-                tableModel.addRow(rowData);
+        } else if (row >= 0) {
+            DataLoader.replaceRow(tableModel, row, toRow(member));
+        } else if (!showingSearchResults) {
+            DataLoader.addRows(tableModel, List.<Object[]>of(toRow(member)));
+        }
+        updateTotal();
+    }
+    
+
+    private int findMemberRow(int memberId) {
+        for (int row = 0; row < tableModel.getRowCount(); row++) {
+            Object id = tableModel.getValueAt(row, 0);
+            if (id instanceof Integer && (Integer) id == memberId) {
+                return row;
             }
-            
-            // Update status
-            JPanel statusPanel = (JPanel) getComponent(2);
-            JLabel totalMembersLabel = (JLabel) ((BorderLayout) statusPanel.getLayout()).getLayoutComponent(BorderLayout.WEST);
-            totalMembersLabel.setText("Search Results: " + results.size() + " members found");
-            
-            logger.info("Member search completed, " + results.size() + " results for " + searchType + ": " + searchText);
-        } catch (Exception ex) {
-            logger.error("Error searching members", ex);
+        }
+        return -1;
+    }
+    
+
+    private void updateTotal() {
+        if (showingSearchResults) {
+            totalMembersLabel.setText("Search Results: " + tableModel.getRowCount() + " members found" + filterSummary());
+        } else if (!dataLoader.isLoading()) {
+            totalMembersLabel.setText("Total Members: " + tableModel.getRowCount() + filterSummary());
+        }
+    }
+    
+
+    private void membersLoaded(int count) {
+        totalMembersLabel.setText("Total Members: " + count + filterSummary());
+        logger.info("Member data refreshed, " + count + " members loaded");
+    }
+    
+
+    private void showLoadError(Exception e) {
+        totalMembersLabel.setText("Members could not be loaded");
+        JOptionPane.showMessageDialog(this, 
+            "Error loading members: " + e.getMessage(), 
+            "Data Error", 
+            JOptionPane.ERROR_MESSAGE);
+    }
+    
+
+    private JComboBox<String> createFilterCombo(String allLabel, Enum<?>[] values) {
+        JComboBox<String> combo = new JComboBox<>();
+        combo.addItem(allLabel);
+        for (Enum<?> value : values) {
+            combo.addItem(value.name());
+        }
+        combo.setFont(new Font("Arial", Font.PLAIN, 14));
+        combo.setBackground(Color.WHITE);
+        combo.addActionListener(e -> applyFilters());
+        return combo;
+    }
+    
+
+    private void applyFilters() {
+        rowSorter.setColumnFilter(6, valueFilter(roleFilterCombo));
+        rowSorter.setColumnFilter(7, valueFilter(statusFilterCombo));
+        updateTotal();
+    }
+    
+
+    private static Predicate<Object> valueFilter(JComboBox<String> combo) {
+        if (combo.getSelectedIndex() <= 0) {
+            return null;
+        }
+        String selected = (String) combo.getSelectedItem();
+        return value -> value != null && selected.equalsIgnoreCase(value.toString().trim());
+    }
+    
+
+    private String filterSummary() {
+        int shown = rowSorter.getViewRowCount();
+        return shown == tableModel.getRowCount() ? "" : " (showing " + shown + ")";
+    }
+    
+
+    private static Object[] toRow(Member member) {
+        return new Object[] {
+            member.getId(),
+            member.getName(),
+            member.getEmail(),
+            member.getPhone(),
+            member.getAddress(),
+            member.getJoinDate(),
+            member.getRole(),
+            member.getStatus(),
+            member.getBorrowedCount()
+        };
+    }
+    
+
+    private void searchMembers(ActionEvent e) {
+        String searchText = searchField.getText().trim();
+        if ("ID".equals(searchTypeCombo.getSelectedItem()) && !searchText.isEmpty() && parseId(searchText) < 0) {
             JOptionPane.showMessageDialog(this, 
-                "Error searching members: " + ex.getMessage(), 
-                "Search Error", 
-                JOptionPane.ERROR_MESSAGE);
+                "Please enter a valid member ID", 
+                "Invalid Input", 
+                JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        liveSearch.runNow();
+    }
+    
+
+    private LiveSearch.Query<List<Member>> createSearchQuery() {
+        String searchText = searchField.getText().trim();
+        String searchType = (String) searchTypeCombo.getSelectedItem();
+        
+        if (searchText.isEmpty()) {
+            return handle -> memberService.getAllMembers();
         }
+        
+        switch (searchType) {
+            case "ID":
+                int id = parseId(searchText);
+                if (id < 0) {
+                    // Keep the current rows while a non-numeric ID is being typed
+                    return null;
+                }
+                return handle -> memberService.searchMembersById(id);
+            case "Email":
+                return handle -> memberService.searchMembersByEmail(searchText, handle);
+            case "Phone":
+                return handle -> memberService.searchMembersByPhone(searchText, handle);
+            default:
+                return handle -> memberService.searchMembersByName(searchText, handle);
+        }
+    }
+    
+
+    private int parseId(String text) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException ex) {
+            return -1;
+        }
+    }
+    
+
+    private void showSearchResults(List<Member> results) {
+        dataLoader.cancel();
+        memberReloader.clear();
+        showingSearchResults = true;
+        tableModel.setRowCount(0);
+        List<Object[]> rows = new ArrayList<>(results.size());
+        for (Member member : results) {
+            rows.add(toRow(member));
+        }
+        DataLoader.addRows(tableModel, rows);
+        
+        // Update status
+        updateTotal();
+        
+        logger.info("Member search completed, " + results.size() + " results for: " + searchField.getText().trim());
+    }
+    
+
+    private void showSearchError(Exception ex) {
+        logger.error("Error searching members", ex);
+        JOptionPane.showMessageDialog(this, 
+            "Error searching members: " + ex.getMessage(), 
+            "Search Error", 
+            JOptionPane.ERROR_MESSAGE);
     }
     
 
@@ -343,7 +537,6 @@ public class MemberPanel extends JPanel {
             Member newMember = dialogFactory.showAddMemberDialog(this);
             if (newMember != null) {
                 memberService.addMember(newMember);
-                refreshData();
                 logger.info("New member added: " + newMember.getName());
                 JOptionPane.showMessageDialog(this, 
                     "Member added successfully", 
@@ -371,13 +564,12 @@ public class MemberPanel extends JPanel {
                 return;
             }
             
-            int memberId = (int) tableModel.getValueAt(selectedRow, 0);
+            int memberId = (int) memberTable.getValueAt(selectedRow, 0);
             Member selectedMember = memberService.getMemberById(memberId);
             
             Member updatedMember = dialogFactory.showEditMemberDialog(this, selectedMember);
             if (updatedMember != null) {
                 memberService.updateMember(updatedMember);
-                refreshData();
                 logger.info("Member updated: " + updatedMember.getName());
                 JOptionPane.showMessageDialog(this, 
                     "Member updated successfully", 
@@ -405,9 +597,9 @@ public class MemberPanel extends JPanel {
                 return;
             }
             
-            int memberId = (int) tableModel.getValueAt(selectedRow, 0);
-            String memberName = (String) tableModel.getValueAt(selectedRow, 1);
-            int borrowedCount = (int) tableModel.getValueAt(selectedRow, 8);
+            int memberId = (int) memberTable.getValueAt(selectedRow, 0);
+            String memberName = (String) memberTable.getValueAt(selectedRow, 1);
+            int borrowedCount = (int) memberTable.getValueAt(selectedRow, 8);
             
             if (borrowedCount > 0) {
                 JOptionPane.showMessageDialog(this, 
@@ -425,7 +617,6 @@ public class MemberPanel extends JPanel {
             
             if (choice == JOptionPane.YES_OPTION) {
                 memberService.deleteMember(memberId);
-                refreshData();
                 logger.info("Member deleted: " + memberName);
                 JOptionPane.showMessageDialog(this, 
                     "Member deleted successfully", 
@@ -453,8 +644,8 @@ public class MemberPanel extends JPanel {
                 return;
             }
             
-            int memberId = (int) tableModel.getValueAt(selectedRow, 0);
-            String memberName = (String) tableModel.getValueAt(selectedRow, 1);
+            int memberId = (int) memberTable.getValueAt(selectedRow, 0);
+            String memberName = (String) memberTable.getValueAt(selectedRow, 1);
             
             dialogFactory.showMemberHistoryDialog(this, memberId, memberName);
             logger.info("Viewed history for member: " + memberName);
@@ -0,0 +1,38 @@
+package com.library.app.model;
+
+
+/**
+ * Membership role of a member; decides the borrowing limit.
+ */
+public enum MemberRole {
+    REGULAR,
+    PREMIUM,
+    ADMIN,
+    /** A stored value that matches none of the other constants; the model keeps the value as stored. */
+    UNKNOWN;
+    
+    private static final MemberRole[] VALUES = values();
+    
+
+    /**
+     * Parses a stored or entered value, ignoring case and surrounding spaces.
+     * 
+     * @param value The value to parse
+     * @return The matching constant, null for an empty value, or UNKNOWN for an unknown one
+     */
+    public static MemberRole fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String key = value.trim();
+        if (key.isEmpty()) {
+            return null;
+        }
+        for (MemberRole constant : VALUES) {
+            if (constant.name().equalsIgnoreCase(key)) {
+                return constant;
+            }
+        }
+        return UNKNOWN;
+    }
+}
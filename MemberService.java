@@ -1,21 +1,31 @@
 package com.library.app.service;
 
 import com.library.app.db.MemberDAO;
+import com.library.app.db.QueryHandle;
+import com.library.app.event.ChangeKind;
+import com.library.app.event.EventBus;
+import com.library.app.event.MemberChanged;
 import com.library.app.model.Member;
+import com.library.app.model.MemberRole;
+import com.library.app.model.MemberStatus;
+import com.library.app.util.DateUtil;
+import com.library.app.util.LibraryClock;
 import com.library.app.util.Logger;
 
-import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
 
 
 public class MemberService {
     
     private static final Logger logger = new Logger(MemberService.class.getName());
     private final MemberDAO memberDAO;
+    private final MemberDirectory directory;
     
 
     public MemberService() {
         this.memberDAO = new MemberDAO();
+        this.directory = MemberDirectory.getInstance();
     }
     
 
@@ -39,6 +49,40 @@ public class MemberService {
     }
     
 
+    /**
+     * Reads one member with their borrowed count, as {@link #forEachMember} does.
+     * 
+     * @return The member, or null if there is none with the id
+     */
+    public Member getMemberWithBorrowedCount(int id) throws Exception {
+        try {
+            Member member = memberDAO.getMemberById(id);
+            if (member != null) {
+                member.setBorrowedCount(memberDAO.countOpenLoans(id));
+            }
+            return member;
+        } catch (Exception e) {
+            logger.error("Error getting member by ID: " + id, e);
+            throw new Exception("Error retrieving member: " + e.getMessage());
+        }
+    }
+    
+
+    /**
+     * Passes every member, with their borrowed count, to the sink as it is read.
+     */
+    public int forEachMember(QueryHandle handle, Consumer<? super Member> sink) throws Exception {
+        try {
+            return memberDAO.forEachMember(handle, sink);
+        } catch (Exception e) {
+            if (handle == null || !handle.isCancelled()) {
+                logger.error("Error getting all members", e);
+            }
+            throw new Exception("Error retrieving members: " + e.getMessage());
+        }
+    }
+    
+
     public List<Member> getActiveMembers() throws Exception {
         try {
             return memberDAO.getActiveMembers();
@@ -71,19 +115,22 @@ public class MemberService {
             }
             
             // Set default values if not provided
-            if (member.getJoinDate() == null) {
-                member.setJoinDate(new Date());
+            if (member.getJoinMillis() == DateUtil.NO_DATE) {
+                member.setJoinMillis(LibraryClock.currentTimeMillis());
             }
             
-            if (member.getRole() == null || member.getRole().trim().isEmpty()) {
-                member.setRole("REGULAR");
+            if (member.getMemberRole() == null) {
+                member.setMemberRole(MemberRole.REGULAR);
             }
             
-            if (member.getStatus() == null || member.getStatus().trim().isEmpty()) {
-                member.setStatus("ACTIVE");
+            if (member.getMemberStatus() == null) {
+                member.setMemberStatus(MemberStatus.ACTIVE);
             }
             
-            return memberDAO.addMember(member);
+            int id = memberDAO.addMember(member);
+            directory.put(member);
+            EventBus.get().publish(new MemberChanged(id, ChangeKind.ADDED));
+            return id;
         } catch (Exception e) {
             logger.error("Error adding member: " + member.getName(), e);
             throw new Exception("Error adding member: " + e.getMessage());
@@ -119,6 +166,8 @@ public class MemberService {
             }
             
             memberDAO.updateMember(member);
+            directory.put(member);
+            EventBus.get().publish(new MemberChanged(member.getId(), ChangeKind.UPDATED));
         } catch (Exception e) {
             logger.error("Error updating member: " + member.getName(), e);
             throw new Exception("Error updating member: " + e.getMessage());
@@ -140,6 +189,8 @@ public class MemberService {
             }
             
             memberDAO.deleteMember(id);
+            directory.remove(id);
+            EventBus.get().publish(new MemberChanged(id, ChangeKind.DELETED));
         } catch (Exception e) {
             logger.error("Error deleting member with ID: " + id, e);
             throw new Exception("Error deleting member: " + e.getMessage());
@@ -147,6 +198,29 @@ public class MemberService {
     }
     
 
+    /**
+     * Returns all members from the in-memory directory, ordered by name.
+     * The returned members carry identifying fields only, not borrowed counts.
+     */
+    public List<Member> getMemberDirectory() throws Exception {
+        return MemberDirectory.toMembers(directory.getAll());
+    }
+    
+
+    /**
+     * Returns all members from the in-memory directory, ordered by ID.
+     */
+    public List<Member> getMemberDirectoryById() throws Exception {
+        return MemberDirectory.toMembers(directory.getAllById());
+    }
+    
+
+    public Member findMemberByCardNumber(String cardNumber) throws Exception {
+        MemberDirectory.Entry entry = directory.findByCardNumber(cardNumber);
+        return entry != null ? entry.toMember() : null;
+    }
+    
+
     public List<Member> searchMembersById(int id) throws Exception {
         try {
             return memberDAO.searchMembersById(id);
@@ -158,30 +232,51 @@ public class MemberService {
     
 
     public List<Member> searchMembersByName(String name) throws Exception {
+        return searchMembersByName(name, null);
+    }
+    
+
+    public List<Member> searchMembersByName(String name, QueryHandle handle) throws Exception {
         try {
-            return memberDAO.searchMembersByName(name);
+            return memberDAO.searchMembersByName(name, handle);
         } catch (Exception e) {
-            logger.error("Error searching members by name: " + name, e);
+            if (handle == null || !handle.isCancelled()) {
+                logger.error("Error searching members by name: " + name, e);
+            }
             throw new Exception("Error searching members: " + e.getMessage());
         }
     }
     
 
     public List<Member> searchMembersByEmail(String email) throws Exception {
+        return searchMembersByEmail(email, null);
+    }
+    
+
+    public List<Member> searchMembersByEmail(String email, QueryHandle handle) throws Exception {
         try {
-            return memberDAO.searchMembersByEmail(email);
+            return memberDAO.searchMembersByEmail(email, handle);
         } catch (Exception e) {
-            logger.error("Error searching members by email: " + email, e);
+            if (handle == null || !handle.isCancelled()) {
+                logger.error("Error searching members by email: " + email, e);
+            }
             throw new Exception("Error searching members: " + e.getMessage());
         }
     }
     
 
     public List<Member> searchMembersByPhone(String phone) throws Exception {
+        return searchMembersByPhone(phone, null);
+    }
+    
+
+    public List<Member> searchMembersByPhone(String phone, QueryHandle handle) throws Exception {
         try {
-            return memberDAO.searchMembersByPhone(phone);
+            return memberDAO.searchMembersByPhone(phone, handle);
         } catch (Exception e) {
-            logger.error("Error searching members by phone: " + phone, e);
+            if (handle == null || !handle.isCancelled()) {
+                logger.error("Error searching members by phone: " + phone, e);
+            }
             throw new Exception("Error searching members: " + e.getMessage());
         }
     }
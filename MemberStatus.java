@@ -0,0 +1,38 @@
+package com.library.app.model;
+
+
+/**
+ * Account status of a member.
+ */
+public enum MemberStatus {
+    ACTIVE,
+    INACTIVE,
+    SUSPENDED,
+    /** A stored value that matches none of the other constants; the model keeps the value as stored. */
+    UNKNOWN;
+    
+    private static final MemberStatus[] VALUES = values();
+    
+
+    /**
+     * Parses a stored or entered value, ignoring case and surrounding spaces.
+     * 
+     * @param value The value to parse
+     * @return The matching constant, null for an empty value, or UNKNOWN for an unknown one
+     */
+    public static MemberStatus fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String key = value.trim();
+        if (key.isEmpty()) {
+            return null;
+        }
+        for (MemberStatus constant : VALUES) {
+            if (constant.name().equalsIgnoreCase(key)) {
+                return constant;
+            }
+        }
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,45 @@
+package com.library.app.db;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Start keys of the pages of an ordered result, for keyset paging with
+ * random access.
+ * <p>
+ * Page {@code p} is read with {@code WHERE key >= start(p) ORDER BY key LIMIT pageSize},
+ * which uses the index instead of skipping rows the way {@code OFFSET} does.
+ *
+ * @param <K> The type of the key the result is ordered by
+ */
+public final class PageIndex<K> {
+
+    private final int pageSize;
+    private final int rowCount;
+    private final List<K> pageStarts;
+
+    public PageIndex(int pageSize, int rowCount, List<K> pageStarts) {
+        this.pageSize = pageSize;
+        this.rowCount = rowCount;
+        this.pageStarts = Collections.unmodifiableList(pageStarts);
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public int getPageCount() {
+        return pageStarts.size();
+    }
+
+    /**
+     * @return The key of the first row of a page
+     */
+    public K getPageStart(int page) {
+        return pageStarts.get(page);
+    }
+}
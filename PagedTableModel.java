@@ -0,0 +1,373 @@
+package com.library.app.ui;
+
+import com.library.app.db.PageIndex;
+import com.library.app.db.QueryHandle;
+import com.library.app.util.Logger;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Read-only table model that only keeps the rows near the part of the table
+ * on screen.
+ * <p>
+ * In paged mode the model first reads a {@link PageIndex} of the result: the
+ * row count and the key each page starts at. Rows are then read a page at a
+ * time, on a background thread, when the table first asks for them; the pages
+ * either side are prefetched. Pages live in a small LRU cache, so memory
+ * stays bounded however large the result is. Until its page arrives a row
+ * shows empty cells. Requests for pages the view has since scrolled far away
+ * from are dropped, so fast scrolling only reads what ends up on screen.
+ * <p>
+ * Short results such as search matches can be shown with {@link #setRows(List)}.
+ * A row that changed can be replaced in place with {@link #setRow(int, Object)}.
+ * <p>
+ * All methods must be called on the Event Dispatch Thread.
+ *
+ * @param <K> The type of the key the paged result is ordered by
+ * @param <T> The type of the rows
+ */
+public class PagedTableModel<K, T> extends AbstractTableModel {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger logger = new Logger(PagedTableModel.class.getName());
+
+    // Pages read ahead on each side of the page being shown
+    private static final int PREFETCH_PAGES = 1;
+    // Queued pages further than this from the page being shown are no longer wanted
+    private static final int STALE_DISTANCE = 4;
+
+    /**
+     * Reads a result in pages, on a background thread.
+     */
+    public interface PageSource<K, T> {
+        PageIndex<K> readIndex(int pageSize, QueryHandle handle) throws Exception;
+
+        List<T> readPage(K start, int pageSize, QueryHandle handle) throws Exception;
+    }
+
+    private final String name;
+    private final String[] columnNames;
+    private final Function<T, Object[]> rowMapper;
+    private final int pageSize;
+    private final Map<Integer, Page<T>> pages;
+    private final IntConsumer onReady;
+    private final Consumer<Exception> onError;
+    private final ExecutorService fetcher;
+
+    private long generation;
+    private PageSource<K, T> source;
+    private PageIndex<K> index;
+    private QueryHandle handle;
+    // Rows given to setRows, when not paged
+    private Page<T> fixedRows = new Page<>(Collections.<T>emptyList(), new Object[0][]);
+
+    private final Deque<Integer> wanted = new ArrayDeque<>();
+    private final Set<Integer> queued = new HashSet<>();
+    private boolean fetching;
+    private int shownPage = -1;
+
+    /**
+     * Creates an empty model.
+     *
+     * @param name The name of the background thread
+     * @param columnNames The column headers
+     * @param rowMapper Converts a row to its cell values
+     * @param pageSize Rows per page
+     * @param maxCachedPages Pages kept in memory
+     * @param onReady Receives the row count once a paged result is ready to show
+     * @param onError Receives the failure to read a paged result
+     */
+    public PagedTableModel(String name, String[] columnNames, Function<T, Object[]> rowMapper,
+                           int pageSize, int maxCachedPages, IntConsumer onReady, Consumer<Exception> onError) {
+        this.name = name;
+        this.columnNames = columnNames.clone();
+        this.rowMapper = rowMapper;
+        this.pageSize = pageSize;
+        this.onReady = onReady;
+        this.onError = onError;
+        this.pages = new LinkedHashMap<Integer, Page<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Page<T>> eldest) {
+                return size() > maxCachedPages;
+            }
+        };
+        this.fetcher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Shows a paged result, discarding the current rows.
+     */
+    public void load(PageSource<K, T> newSource) {
+        reset();
+        source = newSource;
+        long loadGeneration = generation;
+        QueryHandle indexHandle = new QueryHandle();
+        handle = indexHandle;
+
+        fetcher.execute(() -> {
+            try {
+                PageIndex<K> newIndex = newSource.readIndex(pageSize, indexHandle);
+                SwingUtilities.invokeLater(() -> indexLoaded(loadGeneration, newIndex));
+            } catch (Exception e) {
+                SwingUtilities.invokeLater(() -> indexFailed(loadGeneration, e));
+            }
+        });
+    }
+
+    /**
+     * Shows a list of rows held in memory, discarding the current rows.
+     */
+    public void setRows(List<T> rows) {
+        reset();
+        Object[][] cells = new Object[rows.size()][];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = rowMapper.apply(rows.get(i));
+        }
+        fixedRows = new Page<>(rows, cells);
+        fireTableDataChanged();
+    }
+
+    /**
+     * @return The row object, or null if its page has not been read yet
+     */
+    public T getRow(int row) {
+        Page<T> page = pageOf(row);
+        int offset = index != null ? row % pageSize : row;
+        return page != null && offset < page.items.size() ? page.items.get(offset) : null;
+    }
+
+    /**
+     * Finds a row among the rows held in memory; rows of pages that are not
+     * cached are not searched, as they are read fresh when shown.
+     *
+     * @return The first matching row, or -1 if none of the rows in memory match
+     */
+    public int findRow(Predicate<? super T> condition) {
+        if (source == null) {
+            return indexOf(fixedRows, condition);
+        }
+        for (Map.Entry<Integer, Page<T>> page : pages.entrySet()) {
+            int offset = indexOf(page.getValue(), condition);
+            if (offset >= 0) {
+                return page.getKey() * pageSize + offset;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Replaces a row held in memory, such as one found with {@link #findRow(Predicate)}.
+     */
+    public void setRow(int row, T item) {
+        Page<T> page = source == null ? fixedRows : pages.get(row / pageSize);
+        int offset = source == null ? row : row % pageSize;
+        if (page == null || offset >= page.items.size()) {
+            return;
+        }
+        page.items.set(offset, item);
+        page.cells[offset] = rowMapper.apply(item);
+        fireTableRowsUpdated(row, row);
+    }
+
+    public boolean isPaged() {
+        return index != null;
+    }
+
+    @Override
+    public int getRowCount() {
+        if (source != null) {
+            return index != null ? index.getRowCount() : 0;
+        }
+        return fixedRows.cells.length;
+    }
+
+    @Override
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return columnNames[column];
+    }
+
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Page<T> page = pageOf(row);
+        int offset = index != null ? row % pageSize : row;
+        return page != null && offset < page.cells.length ? page.cells[offset][column] : null;
+    }
+
+    private static <T> int indexOf(Page<T> page, Predicate<? super T> condition) {
+        for (int i = 0; i < page.items.size(); i++) {
+            if (condition.test(page.items.get(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private Page<T> pageOf(int row) {
+        if (source == null) {
+            return fixedRows;
+        }
+        if (index == null) {
+            return null;
+        }
+        int pageNumber = row / pageSize;
+        Page<T> page = pages.get(pageNumber);
+        if (pageNumber != shownPage) {
+            shownPage = pageNumber;
+            requestAround(pageNumber);
+        } else if (page == null) {
+            request(pageNumber);
+        }
+        if (!wanted.isEmpty()) {
+            fetchNext();
+        }
+        return page;
+    }
+
+    private void requestAround(int pageNumber) {
+        // Last request is read first, so the page itself goes in after its neighbours
+        for (int distance = PREFETCH_PAGES; distance > 0; distance--) {
+            request(pageNumber + distance);
+            request(pageNumber - distance);
+        }
+        request(pageNumber);
+    }
+
+    private void request(int pageNumber) {
+        if (pageNumber < 0 || pageNumber >= index.getPageCount()
+                || pages.containsKey(pageNumber) || !queued.add(pageNumber)) {
+            return;
+        }
+        wanted.push(pageNumber);
+    }
+
+    private void fetchNext() {
+        if (fetching || index == null) {
+            return;
+        }
+        while (!wanted.isEmpty()) {
+            int pageNumber = wanted.pop();
+            queued.remove(pageNumber);
+            if (Math.abs(pageNumber - shownPage) > STALE_DISTANCE || pages.containsKey(pageNumber)) {
+                continue;
+            }
+
+            fetching = true;
+            long fetchGeneration = generation;
+            PageSource<K, T> pageSource = source;
+            K start = index.getPageStart(pageNumber);
+            QueryHandle pageHandle = handle;
+            fetcher.execute(() -> {
+                try {
+                    List<T> items = pageSource.readPage(start, pageSize, pageHandle);
+                    SwingUtilities.invokeLater(() -> pageLoaded(fetchGeneration, pageNumber, items));
+                } catch (Exception e) {
+                    SwingUtilities.invokeLater(() -> pageFailed(fetchGeneration, pageNumber, e));
+                }
+            });
+            return;
+        }
+    }
+
+    private void indexLoaded(long loadGeneration, PageIndex<K> newIndex) {
+        if (loadGeneration != generation) {
+            return;
+        }
+        index = newIndex;
+        fireTableDataChanged();
+        onReady.accept(newIndex.getRowCount());
+    }
+
+    private void indexFailed(long loadGeneration, Exception e) {
+        if (loadGeneration != generation) {
+            return;
+        }
+        logger.error("Error reading " + name, e);
+        onError.accept(e);
+    }
+
+    private void pageLoaded(long fetchGeneration, int pageNumber, List<T> items) {
+        fetching = false;
+        if (fetchGeneration == generation) {
+            Object[][] cells = new Object[items.size()][];
+            for (int i = 0; i < cells.length; i++) {
+                cells[i] = rowMapper.apply(items.get(i));
+            }
+            pages.put(pageNumber, new Page<>(items, cells));
+
+            int first = pageNumber * pageSize;
+            int last = Math.min(getRowCount(), first + pageSize) - 1;
+            if (last >= first) {
+                fireTableRowsUpdated(first, last);
+            }
+        }
+        fetchNext();
+    }
+
+    private void pageFailed(long fetchGeneration, int pageNumber, Exception e) {
+        fetching = false;
+        if (fetchGeneration == generation) {
+            // Left empty until the next load rather than read again on every repaint
+            logger.error("Error reading page " + pageNumber + " of " + name, e);
+            pages.put(pageNumber, new Page<>(Collections.<T>emptyList(), new Object[0][]));
+        }
+        fetchNext();
+    }
+
+    private void reset() {
+        generation++;
+        if (handle != null) {
+            handle.cancel();
+            handle = null;
+        }
+        source = null;
+        index = null;
+        fixedRows = new Page<>(Collections.<T>emptyList(), new Object[0][]);
+        pages.clear();
+        wanted.clear();
+        queued.clear();
+        shownPage = -1;
+        fireTableDataChanged();
+    }
+
+    private static final class Page<T> {
+
+        private final List<T> items;
+        private final Object[][] cells;
+
+        Page(List<T> items, Object[][] cells) {
+            this.items = new ArrayList<>(items);
+            this.cells = cells;
+        }
+    }
+}
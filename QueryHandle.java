@@ -0,0 +1,71 @@
+package com.library.app.db;
+
+import com.library.app.util.Logger;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Lets a caller cancel a query that is running on another thread.
+ * <p>
+ * A DAO attaches the statement it is executing; {@link #cancel()} then asks
+ * the driver to abort it with {@link Statement#cancel()}. A handle that is
+ * cancelled before the statement is attached cancels it on attach.
+ */
+public class QueryHandle {
+
+    private static final Logger logger = new Logger(QueryHandle.class.getName());
+
+    // Upper bound for interactive queries so an abandoned search never runs on
+    private static final int QUERY_TIMEOUT_SECONDS = 10;
+
+    private Statement statement;
+    private boolean cancelled;
+
+    /**
+     * Attaches the statement about to be executed.
+     *
+     * @param statement The statement
+     * @throws SQLException if the handle was already cancelled
+     */
+    public synchronized void attach(Statement statement) throws SQLException {
+        if (cancelled) {
+            throw new SQLException("Query cancelled");
+        }
+        this.statement = statement;
+        statement.setQueryTimeout(QUERY_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Detaches the statement once it has finished executing.
+     */
+    public synchronized void detach() {
+        this.statement = null;
+    }
+
+    /**
+     * Cancels the attached statement, or the next one to be attached.
+     */
+    public void cancel() {
+        Statement toCancel;
+        synchronized (this) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toCancel = statement;
+        }
+
+        if (toCancel != null) {
+            try {
+                toCancel.cancel();
+            } catch (SQLException e) {
+                logger.warn("Error cancelling query: " + e.getMessage());
+            }
+        }
+    }
+
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+}
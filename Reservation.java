@@ -0,0 +1,134 @@
+package com.library.app.model;
+
+import com.library.app.util.DateUtil;
+import com.library.app.util.LibraryClock;
+
+import java.util.Date;
+
+
+public class Reservation {
+    private int id;
+    private int bookId;
+    private int memberId;
+    private int priority; // higher is served first; equal priorities in order of arrival
+    private ReservationStatus status;
+    private long queuedMillis;
+    // Set once a copy is set aside, DateUtil.NO_DATE until then
+    private long pickupExpiresMillis = DateUtil.NO_DATE;
+    private long holdId;
+    
+    // Denormalized fields for display
+    private String bookTitle;
+    private String memberName;
+    
+
+    public Reservation() {
+        this.queuedMillis = LibraryClock.currentTimeMillis();
+        this.status = ReservationStatus.WAITING;
+    }
+    
+
+    public Reservation(int bookId, int memberId, int priority) {
+        this();
+        this.bookId = bookId;
+        this.memberId = memberId;
+        this.priority = priority;
+    }
+    
+    // Getters and Setters
+    
+    public int getId() {
+        return id;
+    }
+    
+    public void setId(int id) {
+        this.id = id;
+    }
+    
+    public int getBookId() {
+        return bookId;
+    }
+    
+    public void setBookId(int bookId) {
+        this.bookId = bookId;
+    }
+    
+    public int getMemberId() {
+        return memberId;
+    }
+    
+    public void setMemberId(int memberId) {
+        this.memberId = memberId;
+    }
+    
+    public int getPriority() {
+        return priority;
+    }
+    
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+    
+    public ReservationStatus getStatus() {
+        return status;
+    }
+    
+    public void setStatus(ReservationStatus status) {
+        this.status = status;
+    }
+    
+    public long getQueuedMillis() {
+        return queuedMillis;
+    }
+    
+    public void setQueuedMillis(long queuedMillis) {
+        this.queuedMillis = queuedMillis;
+    }
+    
+    public long getPickupExpiresMillis() {
+        return pickupExpiresMillis;
+    }
+    
+    public void setPickupExpiresMillis(long pickupExpiresMillis) {
+        this.pickupExpiresMillis = pickupExpiresMillis;
+    }
+    
+    public Date getPickupExpiresDate() {
+        return DateUtil.toDate(pickupExpiresMillis);
+    }
+    
+    public long getHoldId() {
+        return holdId;
+    }
+    
+    public void setHoldId(long holdId) {
+        this.holdId = holdId;
+    }
+    
+    public String getBookTitle() {
+        return bookTitle;
+    }
+    
+    public void setBookTitle(String bookTitle) {
+        this.bookTitle = bookTitle;
+    }
+    
+    public String getMemberName() {
+        return memberName;
+    }
+    
+    public void setMemberName(String memberName) {
+        this.memberName = memberName;
+    }
+    
+    @Override
+    public String toString() {
+        return "Reservation{" +
+               "id=" + id +
+               ", bookId=" + bookId +
+               ", memberId=" + memberId +
+               ", priority=" + priority +
+               ", status=" + status +
+               '}';
+    }
+}
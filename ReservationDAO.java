@@ -0,0 +1,346 @@
+package com.library.app.db;
+
+import com.library.app.model.Reservation;
+import com.library.app.model.ReservationStatus;
+import com.library.app.util.DateUtil;
+import com.library.app.util.Logger;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class ReservationDAO {
+    
+    private static final Logger logger = new Logger(ReservationDAO.class.getName());
+    private static final String SELECT_RESERVATION =
+        "SELECT r.*, b.title AS book_title, m.name AS member_name " +
+        "FROM reservations r " +
+        "LEFT JOIN books b ON r.book_id = b.id " +
+        "LEFT JOIN members m ON r.member_id = m.id ";
+    
+
+    public int addReservation(Reservation reservation) throws SQLException {
+        String sql = "INSERT INTO reservations (book_id, member_id, priority, status, queued_at) " +
+                     "VALUES (?, ?, ?, ?, ?)";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+            stmt.setInt(1, reservation.getBookId());
+            stmt.setInt(2, reservation.getMemberId());
+            stmt.setInt(3, reservation.getPriority());
+            stmt.setString(4, reservation.getStatus().name());
+            stmt.setTimestamp(5, new Timestamp(reservation.getQueuedMillis()));
+            stmt.executeUpdate();
+            
+            rs = stmt.getGeneratedKeys();
+            if (rs.next()) {
+                int id = rs.getInt(1);
+                logger.info("Added reservation {} for book {} by member {}", id, reservation.getBookId(), reservation.getMemberId());
+                return id;
+            } else {
+                throw new SQLException("Creating reservation failed, no ID obtained.");
+            }
+        } catch (SQLException e) {
+            logger.error("Error adding reservation for book: {}", reservation.getBookId(), e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    public Reservation getReservationById(int id) throws SQLException {
+        String sql = SELECT_RESERVATION + "WHERE r.id = ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, id);
+            rs = stmt.executeQuery();
+            
+            return rs.next() ? mapResultSetToReservation(rs) : null;
+        } catch (SQLException e) {
+            logger.error("Error retrieving reservation by ID: {}", id, e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    /**
+     * @return The member's waiting or ready reservation for the book, or null
+     */
+    public Reservation findActiveReservation(int memberId, int bookId) throws SQLException {
+        String sql = SELECT_RESERVATION +
+                     "WHERE r.member_id = ? AND r.book_id = ? AND r.status IN ('WAITING', 'READY') " +
+                     "ORDER BY r.id LIMIT 1";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, memberId);
+            stmt.setInt(2, bookId);
+            rs = stmt.executeQuery();
+            
+            return rs.next() ? mapResultSetToReservation(rs) : null;
+        } catch (SQLException e) {
+            logger.error("Error finding reservation of member {} for book: {}", memberId, bookId, e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    /**
+     * Reads waiting reservations in arrival order, keeping only the columns the queues need.
+     * 
+     * @param afterId Only reservations with a larger id; 0 for all
+     */
+    public List<Reservation> getWaitingReservations(int afterId) throws SQLException {
+        String sql = "SELECT id, book_id, member_id, priority FROM reservations " +
+                     "WHERE status = 'WAITING' AND id > ? ORDER BY id";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        List<Reservation> reservations = new ArrayList<>();
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, afterId);
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                Reservation reservation = new Reservation(rs.getInt("book_id"), rs.getInt("member_id"), rs.getInt("priority"));
+                reservation.setId(rs.getInt("id"));
+                reservations.add(reservation);
+            }
+            
+            logger.debug("Retrieved waiting reservations after {}: {} records", afterId, reservations.size());
+            return reservations;
+        } catch (SQLException e) {
+            logger.error("Error retrieving waiting reservations", e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    /**
+     * Sets a copy aside for a waiting reservation.
+     * 
+     * @return false if the reservation was no longer waiting
+     */
+    public boolean markReady(int id, long holdId, long pickupExpiresMillis) throws SQLException {
+        String sql = "UPDATE reservations SET status = 'READY', hold_id = ?, pickup_expires_at = ? " +
+                     "WHERE id = ? AND status = 'WAITING'";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setLong(1, holdId);
+            stmt.setTimestamp(2, new Timestamp(pickupExpiresMillis));
+            stmt.setInt(3, id);
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            logger.error("Error marking reservation ready: {}", id, e);
+            throw e;
+        } finally {
+            closeResources(null, stmt);
+        }
+    }
+    
+
+    /**
+     * @return false if the reservation was not in the expected status
+     */
+    public boolean updateStatus(int id, ReservationStatus from, ReservationStatus to) throws SQLException {
+        String sql = "UPDATE reservations SET status = ? WHERE id = ? AND status = ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setString(1, to.name());
+            stmt.setInt(2, id);
+            stmt.setString(3, from.name());
+            return stmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            logger.error("Error updating reservation {} to {}", id, to, e);
+            throw e;
+        } finally {
+            closeResources(null, stmt);
+        }
+    }
+    
+
+    /**
+     * Closes the member's waiting and ready reservations for books they have
+     * just borrowed. A ready reservation keeps the id of the hold on the copy
+     * set aside for it, which the caller releases unless that copy was lent.
+     * 
+     * @return The reservations that were closed, with their book and hold ids
+     */
+    public List<Reservation> fulfil(int memberId, List<Integer> bookIds) throws SQLException {
+        String sql = "UPDATE reservations SET status = 'FULFILLED' " +
+                     "WHERE member_id = ? AND book_id = ANY(?) AND status IN ('WAITING', 'READY') " +
+                     "RETURNING id, book_id, member_id, priority, hold_id";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        List<Reservation> fulfilled = new ArrayList<>();
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setInt(1, memberId);
+            Array books = conn.createArrayOf("integer", bookIds.toArray());
+            stmt.setArray(2, books);
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                Reservation reservation = new Reservation(rs.getInt("book_id"), rs.getInt("member_id"), rs.getInt("priority"));
+                reservation.setId(rs.getInt("id"));
+                reservation.setHoldId(rs.getLong("hold_id"));
+                reservation.setStatus(ReservationStatus.FULFILLED);
+                fulfilled.add(reservation);
+            }
+            return fulfilled;
+        } catch (SQLException e) {
+            logger.error("Error fulfilling reservations of member: {}", memberId, e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    /**
+     * Finds which of the given holds are copies set aside for ready reservations.
+     * 
+     * @return The member each such copy is set aside for, by hold id
+     */
+    public Map<Long, Integer> getReadyHoldMembers(List<Long> holdIds) throws SQLException {
+        String sql = "SELECT hold_id, member_id FROM reservations WHERE status = 'READY' AND hold_id = ANY(?)";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        Map<Long, Integer> members = new HashMap<>();
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setArray(1, conn.createArrayOf("bigint", holdIds.toArray()));
+            rs = stmt.executeQuery();
+            
+            while (rs.next()) {
+                members.put(rs.getLong("hold_id"), rs.getInt("member_id"));
+            }
+            return members;
+        } catch (SQLException e) {
+            logger.error("Error reading reservations of holds", e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    /**
+     * Expires ready reservations whose pickup window has passed.
+     * 
+     * @return The expired reservations with their book and hold ids
+     */
+    public List<Reservation> expireReadyReservations() throws SQLException {
+        String sql = "UPDATE reservations SET status = 'EXPIRED' " +
+                     "WHERE status = 'READY' AND pickup_expires_at < CURRENT_TIMESTAMP " +
+                     "RETURNING id, book_id, member_id, priority, hold_id";
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        List<Reservation> expired = new ArrayList<>();
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery(sql);
+            
+            while (rs.next()) {
+                Reservation reservation = new Reservation(rs.getInt("book_id"), rs.getInt("member_id"), rs.getInt("priority"));
+                reservation.setId(rs.getInt("id"));
+                reservation.setHoldId(rs.getLong("hold_id"));
+                reservation.setStatus(ReservationStatus.EXPIRED);
+                expired.add(reservation);
+            }
+            
+            if (!expired.isEmpty()) {
+                logger.info("Expired {} uncollected reservations", expired.size());
+            }
+            return expired;
+        } catch (SQLException e) {
+            logger.error("Error expiring reservations", e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    private Reservation mapResultSetToReservation(ResultSet rs) throws SQLException {
+        Reservation reservation = new Reservation();
+        reservation.setId(rs.getInt("id"));
+        reservation.setBookId(rs.getInt("book_id"));
+        reservation.setMemberId(rs.getInt("member_id"));
+        reservation.setPriority(rs.getInt("priority"));
+        reservation.setStatus(ReservationStatus.fromString(rs.getString("status")));
+        
+        Timestamp queuedAt = rs.getTimestamp("queued_at");
+        if (queuedAt != null) {
+            reservation.setQueuedMillis(queuedAt.getTime());
+        }
+        
+        Timestamp pickupExpiresAt = rs.getTimestamp("pickup_expires_at");
+        reservation.setPickupExpiresMillis(pickupExpiresAt != null ? pickupExpiresAt.getTime() : DateUtil.NO_DATE);
+        
+        reservation.setHoldId(rs.getLong("hold_id"));
+        reservation.setBookTitle(rs.getString("book_title"));
+        reservation.setMemberName(rs.getString("member_name"));
+        
+        return reservation;
+    }
+    
+
+    private void closeResources(ResultSet rs, Statement stmt) {
+        try {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        } catch (SQLException e) {
+            logger.error("Error closing database resources", e);
+        }
+    }
+}
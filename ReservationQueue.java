@@ -0,0 +1,169 @@
+package com.library.app.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * Waiting list of one book: higher priority first, then in order of arrival.
+ * <p>
+ * Each priority level appends reservations to a slot array and keeps a Fenwick
+ * tree of the slots still in use, so taking the head, cancelling anywhere in
+ * the list and finding a reservation's position are all O(log n). Not thread
+ * safe; {@link ReservationService} guards all queues with its own lock.
+ */
+final class ReservationQueue {
+    
+    private final TreeMap<Integer, Level> levels = new TreeMap<>(Collections.reverseOrder());
+    private final Map<Integer, Level> levelOf = new HashMap<>();
+    
+
+    /**
+     * Appends a reservation behind every other one of the same or higher priority.
+     * 
+     * @return false if the reservation was already queued
+     */
+    boolean add(int reservationId, int priority) {
+        if (levelOf.containsKey(reservationId)) {
+            return false;
+        }
+        Level level = levels.computeIfAbsent(priority, k -> new Level());
+        level.append(reservationId);
+        levelOf.put(reservationId, level);
+        return true;
+    }
+    
+
+    boolean remove(int reservationId) {
+        Level level = levelOf.remove(reservationId);
+        if (level == null) {
+            return false;
+        }
+        level.remove(reservationId);
+        return true;
+    }
+    
+
+    /**
+     * @return The reservation served next, or 0 if nobody is waiting
+     */
+    int peek() {
+        for (Level level : levels.values()) {
+            if (level.size > 0) {
+                return level.ids[level.head];
+            }
+        }
+        return 0;
+    }
+    
+
+    /**
+     * @return The 1-based place of a reservation in the list, or 0 if it is not queued
+     */
+    int position(int reservationId) {
+        Level target = levelOf.get(reservationId);
+        if (target == null) {
+            return 0;
+        }
+        int ahead = 0;
+        for (Level level : levels.values()) {
+            if (level == target) {
+                break;
+            }
+            ahead += level.size;
+        }
+        return ahead + target.rank(reservationId) + 1;
+    }
+    
+
+    int size() {
+        return levelOf.size();
+    }
+    
+
+    private static final class Level {
+        
+        // Reservation id per slot, 0 once it left the list
+        private int[] ids = new int[8];
+        // Fenwick tree over ids: 1 for a slot in use, 0 otherwise; 1-based
+        private int[] tree = new int[9];
+        private final Map<Integer, Integer> slotOf = new HashMap<>();
+        private int end;
+        private int head;
+        private int size;
+        
+
+        void append(int reservationId) {
+            if (end == ids.length) {
+                compact();
+            }
+            ids[end] = reservationId;
+            slotOf.put(reservationId, end);
+            update(end, 1);
+            end++;
+            size++;
+        }
+        
+
+        void remove(int reservationId) {
+            int slot = slotOf.remove(reservationId);
+            ids[slot] = 0;
+            update(slot, -1);
+            size--;
+            while (head < end && ids[head] == 0) {
+                head++;
+            }
+        }
+        
+
+        int rank(int reservationId) {
+            // Slots in use before this one
+            int sum = 0;
+            for (int i = slotOf.get(reservationId); i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+            return sum;
+        }
+        
+
+        private void update(int slot, int delta) {
+            for (int i = slot + 1; i < tree.length; i += i & -i) {
+                tree[i] += delta;
+            }
+        }
+        
+
+        /**
+         * Drops unused slots, doubling the capacity if the list is more than half full.
+         */
+        private void compact() {
+            int capacity = size * 2 > ids.length ? ids.length * 2 : ids.length;
+            int[] newIds = new int[capacity];
+            int[] newTree = new int[capacity + 1];
+            int count = 0;
+            for (int i = head; i < end; i++) {
+                if (ids[i] != 0) {
+                    newIds[count] = ids[i];
+                    slotOf.put(ids[i], count);
+                    count++;
+                }
+            }
+            // Linear Fenwick build; runs to the end so partial sums reach every parent
+            for (int i = 1; i <= capacity; i++) {
+                if (i <= count) {
+                    newTree[i] += 1;
+                }
+                int parent = i + (i & -i);
+                if (parent <= capacity) {
+                    newTree[parent] += newTree[i];
+                }
+            }
+            ids = newIds;
+            tree = newTree;
+            end = count;
+            head = 0;
+        }
+    }
+}
@@ -0,0 +1,357 @@
+package com.library.app.service;
+
+import com.library.app.db.ReservationDAO;
+import com.library.app.model.Member;
+import com.library.app.model.MemberRole;
+import com.library.app.model.Reservation;
+import com.library.app.model.ReservationStatus;
+import com.library.app.util.LibraryClock;
+import com.library.app.util.Logger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Waiting lists for books that are all out.
+ * <p>
+ * Waiting reservations live in the {@code reservations} table and are mirrored
+ * here as one {@link ReservationQueue} per book, so finding the next patron
+ * for a returned copy and a patron's place in line never scan the table. The
+ * table stays authoritative: a reservation is only served through a
+ * conditional update, and entries another desk served or cancelled are
+ * dropped from the mirror when met. Reservations added on other desks are
+ * read by id before each change, and a background sweep reloads the mirror.
+ * <p>
+ * A returned copy for a waiting patron is held for {@code library.reservation.pickupDays}
+ * open days (3 by default) with a soft hold; when that runs out the copy moves
+ * on to the next patron.
+ */
+public class ReservationService {
+    
+    private static final Logger logger = new Logger(ReservationService.class.getName());
+    private static final int PICKUP_DAYS = Math.max(1, Integer.getInteger("library.reservation.pickupDays", 3));
+    private static final long SWEEP_INTERVAL_SECONDS = 60;
+    private static final int PREMIUM_PRIORITY = 1;
+    private static ReservationService instance;
+    
+    private final ReservationDAO reservationDAO;
+    private final HoldService holdService;
+    private final Map<Integer, ReservationQueue> queues = new HashMap<>();
+    private final Map<Integer, Integer> bookOfReservation = new HashMap<>();
+    private int lastSeenId;
+    
+
+    ReservationService() {
+        this.reservationDAO = new ReservationDAO();
+        this.holdService = new HoldService();
+    }
+    
+
+    public static synchronized ReservationService getInstance() {
+        if (instance == null) {
+            instance = new ReservationService();
+            instance.startSweeper();
+        }
+        return instance;
+    }
+    
+
+    /**
+     * Puts a member in the waiting list of a book. Premium members go ahead of
+     * regular members; otherwise first come, first served.
+     * 
+     * @return The new reservation, or the member's existing one for the book
+     */
+    public synchronized Reservation reserve(int bookId, Member member) throws Exception {
+        try {
+            Reservation existing = reservationDAO.findActiveReservation(member.getId(), bookId);
+            if (existing != null) {
+                return existing;
+            }
+            
+            int priority = member.getMemberRole() == MemberRole.PREMIUM ? PREMIUM_PRIORITY : 0;
+            Reservation reservation = new Reservation(bookId, member.getId(), priority);
+            reservation.setMemberName(member.getName());
+            reservation.setId(reservationDAO.addReservation(reservation));
+            
+            readNewReservations();
+            enqueue(reservation);
+            return reservation;
+        } catch (Exception e) {
+            logger.error("Error reserving book ID: " + bookId + " for member ID: " + member.getId(), e);
+            throw new Exception("Error adding reservation: " + e.getMessage());
+        }
+    }
+    
+
+    /**
+     * @return The 1-based place of a waiting reservation, or 0 if it is not waiting
+     */
+    public synchronized int getQueuePosition(int reservationId) {
+        Integer bookId = bookOfReservation.get(reservationId);
+        return bookId != null ? queues.get(bookId).position(reservationId) : 0;
+    }
+    
+
+    public synchronized int getQueueLength(int bookId) {
+        ReservationQueue queue = queues.get(bookId);
+        return queue != null ? queue.size() : 0;
+    }
+    
+
+    /**
+     * Cancels a reservation. A copy already set aside for it goes to the next patron.
+     */
+    public synchronized void cancel(int reservationId) throws Exception {
+        try {
+            Reservation reservation = reservationDAO.getReservationById(reservationId);
+            if (reservation == null) {
+                return;
+            }
+            dequeue(reservationId);
+            
+            if (reservationDAO.updateStatus(reservationId, ReservationStatus.WAITING, ReservationStatus.CANCELLED)) {
+                logger.info("Cancelled reservation: " + reservationId);
+            } else if (reservationDAO.updateStatus(reservationId, ReservationStatus.READY, ReservationStatus.CANCELLED)) {
+                releaseHold(reservation.getHoldId());
+                allocateReturnedCopy(reservation.getBookId());
+                logger.info("Cancelled ready reservation: " + reservationId);
+            }
+        } catch (Exception e) {
+            logger.error("Error cancelling reservation: " + reservationId, e);
+            throw new Exception("Error cancelling reservation: " + e.getMessage());
+        }
+    }
+    
+
+    /**
+     * Sets a copy that has just come back aside for the next patron in line.
+     * 
+     * @return The reservation the copy is held for, or null if nobody is waiting
+     *         or the copy has already been taken
+     */
+    public synchronized Reservation allocateReturnedCopy(int bookId) throws Exception {
+        try {
+            readNewReservations();
+            ReservationQueue queue = queues.get(bookId);
+            
+            while (queue != null && queue.size() > 0) {
+                int reservationId = queue.peek();
+                long now = LibraryClock.currentTimeMillis();
+                long pickupExpires = LibraryCalendar.getInstance().calculateDueDate(now, PICKUP_DAYS);
+                long holdId = holdService.placeHold(bookId, 0, (int) ((pickupExpires - now) / 1000));
+                if (holdId == 0) {
+                    return null;
+                }
+                
+                boolean ready = reservationDAO.markReady(reservationId, holdId, pickupExpires);
+                dequeue(reservationId);
+                if (ready) {
+                    Reservation reservation = reservationDAO.getReservationById(reservationId);
+                    logger.info("Copy of book " + bookId + " held for reservation " + reservationId);
+                    return reservation;
+                }
+                // Served or cancelled on another desk
+                releaseHold(holdId);
+            }
+            return null;
+        } catch (Exception e) {
+            logger.error("Error allocating returned copy of book ID: " + bookId, e);
+            throw new Exception("Error allocating reservation: " + e.getMessage());
+        }
+    }
+    
+
+    /**
+     * Lets a member with a copy waiting for them take it into a cart. The
+     * reservation stays ready until the member checks the copy out; if the
+     * cart lets go of the copy, it goes back to the reservation.
+     * 
+     * @return The hold now owned by the cart, or 0 if nothing is waiting for the member
+     */
+    public synchronized long claimReadyHold(int memberId, int bookId, int cartId) throws Exception {
+        try {
+            Reservation reservation = reservationDAO.findActiveReservation(memberId, bookId);
+            if (reservation == null || reservation.getStatus() != ReservationStatus.READY
+                    || reservation.getHoldId() == 0) {
+                return 0;
+            }
+            if (!holdService.transferHold(reservation.getHoldId(), cartId)) {
+                return 0;
+            }
+            logger.info("Copy held for reservation " + reservation.getId() + " taken into cart " + cartId);
+            return reservation.getHoldId();
+        } catch (Exception e) {
+            logger.error("Error claiming reservation of member ID: " + memberId, e);
+            throw new Exception("Error claiming reservation: " + e.getMessage());
+        }
+    }
+    
+
+    /**
+     * Finds the holds among a cart's that are copies set aside for a reservation.
+     * 
+     * @return The member each such copy is set aside for, by hold id
+     */
+    public Map<Long, Integer> getReservedHolds(List<Long> holdIds) throws Exception {
+        if (holdIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        try {
+            return reservationDAO.getReadyHoldMembers(holdIds);
+        } catch (Exception e) {
+            logger.error("Error reading reservations of holds", e);
+            throw new Exception("Error reading reservations: " + e.getMessage());
+        }
+    }
+    
+
+    /**
+     * Lets go of holds a cart no longer needs. Copies set aside for a
+     * reservation go back to it; the other copies are released.
+     */
+    public void releaseCartHolds(List<Long> holdIds) throws Exception {
+        List<Long> released = new ArrayList<>(holdIds);
+        for (Long holdId : getReservedHolds(holdIds).keySet()) {
+            released.remove(holdId);
+            if (!holdService.transferHold(holdId, 0)) {
+                logger.warn("Copy held for a reservation had expired in the cart: hold " + holdId);
+            }
+        }
+        holdService.releaseHolds(released);
+    }
+    
+
+    /**
+     * Closes a member's reservations for books they have just borrowed. A copy
+     * that was set aside for them and not lent in this checkout is released
+     * and passed to the next patron in line.
+     * 
+     * @param lentHoldIds The holds that were turned into the loans
+     */
+    public synchronized void fulfil(int memberId, List<Integer> bookIds, List<Long> lentHoldIds) throws Exception {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        try {
+            Set<Integer> freedBooks = new LinkedHashSet<>();
+            for (Reservation reservation : reservationDAO.fulfil(memberId, bookIds)) {
+                dequeue(reservation.getId());
+                if (reservation.getHoldId() != 0 && !lentHoldIds.contains(reservation.getHoldId())) {
+                    releaseHold(reservation.getHoldId());
+                    freedBooks.add(reservation.getBookId());
+                }
+            }
+            for (int bookId : freedBooks) {
+                allocateReturnedCopy(bookId);
+            }
+        } catch (Exception e) {
+            logger.error("Error fulfilling reservations of member ID: " + memberId, e);
+            throw new Exception("Error updating reservations: " + e.getMessage());
+        }
+    }
+    
+
+    /**
+     * Rebuilds the waiting lists from the table.
+     */
+    public void reload() throws Exception {
+        List<Reservation> waiting = reservationDAO.getWaitingReservations(0);
+        synchronized (this) {
+            queues.clear();
+            bookOfReservation.clear();
+            lastSeenId = 0;
+            for (Reservation reservation : waiting) {
+                enqueue(reservation);
+            }
+            // Picks up anything added while the table was being read
+            readNewReservations();
+        }
+        logger.info("Reservation queues loaded: {} waiting in {} books", waiting.size(), queues.size());
+    }
+    
+
+    /**
+     * Expires copies that were not collected in time and passes them on.
+     */
+    synchronized void expirePickups() throws Exception {
+        Set<Integer> books = new LinkedHashSet<>();
+        for (Reservation reservation : reservationDAO.expireReadyReservations()) {
+            releaseHold(reservation.getHoldId());
+            books.add(reservation.getBookId());
+        }
+        for (int bookId : books) {
+            Reservation next = allocateReturnedCopy(bookId);
+            if (next != null) {
+                logger.info("Uncollected copy of book " + bookId + " passed to member ID: " + next.getMemberId());
+            }
+        }
+    }
+    
+
+    private void readNewReservations() throws Exception {
+        for (Reservation reservation : reservationDAO.getWaitingReservations(lastSeenId)) {
+            enqueue(reservation);
+        }
+    }
+    
+
+    private void enqueue(Reservation reservation) {
+        queues.computeIfAbsent(reservation.getBookId(), k -> new ReservationQueue())
+              .add(reservation.getId(), reservation.getPriority());
+        bookOfReservation.put(reservation.getId(), reservation.getBookId());
+        lastSeenId = Math.max(lastSeenId, reservation.getId());
+    }
+    
+
+    private void dequeue(int reservationId) {
+        Integer bookId = bookOfReservation.remove(reservationId);
+        if (bookId == null) {
+            return;
+        }
+        ReservationQueue queue = queues.get(bookId);
+        queue.remove(reservationId);
+        if (queue.size() == 0) {
+            queues.remove(bookId);
+        }
+    }
+    
+
+    private void releaseHold(long holdId) {
+        if (holdId == 0) {
+            return;
+        }
+        try {
+            holdService.releaseHolds(Collections.singletonList(holdId));
+        } catch (Exception e) {
+            // Left to expire
+            logger.warn("Reservation hold was not released: " + e.getMessage());
+        }
+    }
+    
+
+    private void startSweeper() {
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "reservation-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> {
+            try {
+                expirePickups();
+                reload();
+            } catch (Exception e) {
+                logger.warn("Reservation sweep failed: " + e.getMessage());
+            }
+        }, 0, SWEEP_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,38 @@
+package com.library.app.model;
+
+
+/**
+ * Status of a reservation in a book's waiting list.
+ */
+public enum ReservationStatus {
+    WAITING,
+    READY,
+    FULFILLED,
+    CANCELLED,
+    EXPIRED;
+    
+    private static final ReservationStatus[] VALUES = values();
+    
+
+    /**
+     * Parses a stored or entered value, ignoring case and surrounding spaces.
+     * 
+     * @param value The value to parse
+     * @return The matching constant, null for an empty value, or WAITING for an unknown one
+     */
+    public static ReservationStatus fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String key = value.trim();
+        if (key.isEmpty()) {
+            return null;
+        }
+        for (ReservationStatus constant : VALUES) {
+            if (constant.name().equalsIgnoreCase(key)) {
+                return constant;
+            }
+        }
+        return WAITING;
+    }
+}
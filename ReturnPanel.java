@@ -1,14 +1,24 @@
 package com.library.app.ui;
 
+import com.library.app.event.ChangeKind;
+import com.library.app.event.EventBus;
+import com.library.app.event.LoanClosed;
+import com.library.app.event.LoanEvent;
+import com.library.app.event.LoanOpened;
+import com.library.app.event.LoanUpdated;
+import com.library.app.event.MemberChanged;
 import com.library.app.factory.DialogFactory;
 import com.library.app.factory.UIComponentFactory;
-import com.library.app.model.Book;
 import com.library.app.model.Member;
+import com.library.app.model.Reservation;
 import com.library.app.model.Transaction;
+import com.library.app.model.TransactionStatus;
 import com.library.app.service.BookService;
 import com.library.app.service.MemberService;
+import com.library.app.service.ReservationService;
 import com.library.app.service.TransactionService;
 import com.library.app.util.DateUtil;
+import com.library.app.util.LibraryClock;
 import com.library.app.util.Logger;
 
 import javax.swing.*;
@@ -17,19 +27,21 @@ import javax.swing.table.DefaultTableCellRenderer;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.time.LocalDate;
 import java.util.Date;
 import java.util.List;
 
 
-public class ReturnPanel extends JPanel {
+public class ReturnPanel extends JPanel implements TabPanel {
 
     private static final Logger logger = new Logger(ReturnPanel.class.getName());
-    private BookPanel bookPanel;
 
     private final MainWindow mainWindow;
     private final BookService bookService;
     private final MemberService memberService;
     private final TransactionService transactionService;
+    private final ReservationService reservationService;
     private final UIComponentFactory uiFactory;
     private final DialogFactory dialogFactory;
     
@@ -40,18 +52,34 @@ public class ReturnPanel extends JPanel {
     private Member selectedMember;
     private JLabel selectedMemberLabel;
     private JLabel borrowedCountLabel;
+    private DataLoader<Transaction> dataLoader;
+    private IndexRowSorter<DefaultTableModel> rowSorter;
+    private JCheckBox overdueOnlyCheck;
+    private RowReloader<Transaction> loanReloader;
+    private RowReloader<Member> memberReloader;
+    private boolean stale;
     
 
-    public ReturnPanel(MainWindow mainWindow, BookPanel bookPanel) {
+    public ReturnPanel(MainWindow mainWindow) {
         this.mainWindow = mainWindow;
-        this.bookPanel = bookPanel;  // ← احفظه في المتغير
         this.bookService = new BookService();
         this.memberService = new MemberService();
         this.transactionService = new TransactionService();
+        this.reservationService = ReservationService.getInstance();
         this.uiFactory = new UIComponentFactory();
         this.dialogFactory = new DialogFactory();
 
         initializeUI();
+        this.dataLoader = new DataLoader<>("borrowed books", borrowedCountLabel, () -> tableModel.setRowCount(0),
+                                           this::appendBorrowedBooks, this::borrowedBooksLoaded, this::showLoadError);
+        this.loanReloader = new RowReloader<>("loan-rows", transactionService::getTransactionById, this::loanRead);
+        this.memberReloader = new RowReloader<>("return-member", memberService::getMemberById, this::memberRead);
+        
+        // The selected member's loans follow changes made anywhere in the application
+        EventBus.get().subscribe(LoanOpened.class, this::loanChanged);
+        EventBus.get().subscribe(LoanUpdated.class, this::loanChanged);
+        EventBus.get().subscribe(LoanClosed.class, this::loanClosed);
+        EventBus.get().subscribe(MemberChanged.class, this::memberChanged);
         logger.info("ReturnPanel initialized");
     }
 
@@ -151,7 +179,7 @@ public class ReturnPanel extends JPanel {
         ));
         
         // Search type combo with better styling
-        memberSearchTypeCombo = new JComboBox<>(new String[]{"ID", "Name", "Email", "Phone"});
+        memberSearchTypeCombo = new JComboBox<>(new String[]{"ID", "Card", "Name", "Email", "Phone"});
         memberSearchTypeCombo.setFont(new Font("Arial", Font.PLAIN, 14));
         memberSearchTypeCombo.setBackground(Color.WHITE);
         memberSearchTypeCombo.setBorder(BorderFactory.createCompoundBorder(
@@ -231,6 +259,8 @@ public class ReturnPanel extends JPanel {
         };
         
         borrowedBooksTable = new JTable(tableModel);
+        rowSorter = new IndexRowSorter<>(tableModel);
+        borrowedBooksTable.setRowSorter(rowSorter);
         borrowedBooksTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         borrowedBooksTable.getTableHeader().setReorderingAllowed(false);
         borrowedBooksTable.setRowHeight(30); // Taller rows for better readability
@@ -244,8 +274,21 @@ public class ReturnPanel extends JPanel {
 //        borrowedBooksTable.getTableHeader().setForeground(Color.WHITE);
         borrowedBooksTable.getTableHeader().setPreferredSize(new Dimension(0, 35)); // Make header taller
         
+        // Dates are kept as LocalDate so they sort by date, and shown in the display format
+        DefaultTableCellRenderer dateRenderer = new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                setText(value instanceof LocalDate ? DateUtil.formatDate((LocalDate) value) : "");
+            }
+        };
+        
         // Custom renderer for overdue dates (red text)
         DefaultTableCellRenderer dueDateRenderer = new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                setText(value instanceof LocalDate ? DateUtil.formatDate((LocalDate) value) : "");
+            }
+            
             @Override
             public Component getTableCellRendererComponent(JTable table, Object value, 
                                                         boolean isSelected, boolean hasFocus, 
@@ -265,6 +308,7 @@ public class ReturnPanel extends JPanel {
             }
         };
         
+        borrowedBooksTable.getColumnModel().getColumn(3).setCellRenderer(dateRenderer);
         borrowedBooksTable.getColumnModel().getColumn(4).setCellRenderer(dueDateRenderer);
         
         JScrollPane scrollPane = new JScrollPane(borrowedBooksTable);
@@ -286,7 +330,15 @@ public class ReturnPanel extends JPanel {
         JButton returnBookButton = createActionButton("Return Book", "", new Color(76, 175, 80), this::returnBook);
         JButton returnAllButton = createActionButton("Return All Books", "", new Color(76, 175, 80), this::returnAllBooks);
         
+        // Filters the loaded rows without querying again
+        overdueOnlyCheck = new JCheckBox("Overdue only");
+        overdueOnlyCheck.setFont(new Font("Arial", Font.PLAIN, 13));
+        overdueOnlyCheck.setOpaque(false);
+        overdueOnlyCheck.addActionListener(e -> rowSorter.setColumnFilter(5,
+            overdueOnlyCheck.isSelected() ? value -> "OVERDUE".equals(value) : null));
+        
 //        buttonPanel.add(refreshButton);
+        buttonPanel.add(overdueOnlyCheck);
         buttonPanel.add(returnBookButton);
         buttonPanel.add(returnAllButton);
         
@@ -310,9 +362,12 @@ public class ReturnPanel extends JPanel {
     
 
     public void refreshData() {
+        stale = false;
+        loanReloader.clear();
         if (selectedMember != null) {
             refreshBorrowedBooks();
         } else {
+            dataLoader.cancel();
             tableModel.setRowCount(0);
         }
     }
@@ -345,6 +400,10 @@ public class ReturnPanel extends JPanel {
                         return;
                     }
                     break;
+                case "Card":
+                    Member cardHolder = memberService.findMemberByCardNumber(searchText);
+                    results = cardHolder != null ? List.of(cardHolder) : List.of();
+                    break;
                 case "Name":
                     results = memberService.searchMembersByName(searchText);
                     break;
@@ -394,7 +453,7 @@ public class ReturnPanel extends JPanel {
 
     private void selectMember(ActionEvent e) {
         try {
-            List<Member> allMembers = memberService.getAllMembers();
+            List<Member> allMembers = memberService.getMemberDirectory();
             if (allMembers.isEmpty()) {
                 JOptionPane.showMessageDialog(this, 
                     "No members found in the system", 
@@ -424,6 +483,7 @@ public class ReturnPanel extends JPanel {
         memberSearchField.setText("");
         selectedMemberLabel.setText("No member selected");
         borrowedCountLabel.setText("Books Borrowed: 0");
+        dataLoader.cancel();
         tableModel.setRowCount(0);
     }
     
@@ -455,49 +515,188 @@ public class ReturnPanel extends JPanel {
     
 
     private void refreshBorrowedBooks() {
-        try {
-            if (selectedMember == null) {
-                return;
+        if (selectedMember == null) {
+            return;
+        }
+        
+        int memberId = selectedMember.getId();
+        dataLoader.load((handle, sink) -> {
+            for (Transaction transaction : transactionService.getActiveBorrowingsByMember(memberId)) {
+                sink.accept(transaction);
             }
-            
-            tableModel.setRowCount(0);
-            List<Transaction> transactions = transactionService.getActiveBorrowingsByMember(selectedMember.getId());
-            
-            for (Transaction transaction : transactions) {
-                // Check if overdue
-                String status = transaction.getStatus();
-                
-                if (transaction.getDueDate().before(new Date()) && "BORROWED".equals(status)) {
-                    status = "OVERDUE";
-                }
-                
-                Object[] rowData = {
-                    transaction.getId(),
-                    transaction.getBookId(),
-                    transaction.getBookTitle(),
-                    DateUtil.formatDate(transaction.getBorrowDate()),
-                    DateUtil.formatDate(transaction.getDueDate()),
-                    status
-                };
-                tableModel.addRow(rowData);
+        });
+    }
+    
+
+    @Override
+    public void tabShown() {
+        if (stale) {
+            if (selectedMember != null) {
+                memberReloader.reload(selectedMember.getId());
             }
-            
-            logger.info("Loaded " + transactions.size() + " borrowed books for member: " + selectedMember.getName());
-            
-            // Refresh member data to get current borrowed count
-            selectedMember = memberService.getMemberById(selectedMember.getId());
-            updateMemberInfo();
-            
-        } catch (Exception e) {
-            logger.error("Error refreshing borrowed books", e);
-            JOptionPane.showMessageDialog(this, 
-                "Error loading borrowed books: " + e.getMessage(), 
-                "Data Error", 
-                JOptionPane.ERROR_MESSAGE);
+            refreshData();
+        } else {
+            dataLoader.resume();
+        }
+    }
+    
+
+    @Override
+    public void tabHidden() {
+        dataLoader.pause();
+    }
+    
+
+    private void appendBorrowedBooks(List<Transaction> transactions) {
+        List<Object[]> rows = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions) {
+            rows.add(toRow(transaction));
+        }
+        DataLoader.addRows(tableModel, rows);
+    }
+    
+
+    private static Object[] toRow(Transaction transaction) {
+        // Check if overdue
+        String status = transaction.getStatus();
+        
+        if (transaction.getTransactionStatus() == TransactionStatus.BORROWED && transaction.isOverdue()) {
+            status = "OVERDUE";
+        }
+        
+        return new Object[] {
+            transaction.getId(),
+            transaction.getBookId(),
+            transaction.getBookTitle(),
+            toLocalDate(transaction.getBorrowDate()),
+            toLocalDate(transaction.getDueDate()),
+            status
+        };
+    }
+    
+
+    private boolean isSelectedMember(int memberId) {
+        return selectedMember != null && selectedMember.getId() == memberId;
+    }
+    
+
+    private void loanChanged(LoanEvent event) {
+        if (!isSelectedMember(event.getMemberId())) {
+            return;
+        }
+        if (!isShowing()) {
+            // Reloaded when the tab is shown
+            stale = true;
+        } else if (dataLoader.isLoading()) {
+            // The rows already read may predate the change
+            refreshBorrowedBooks();
+        } else {
+            loanReloader.reload(event.getTransactionId());
         }
     }
     
 
+    private void loanClosed(LoanClosed event) {
+        if (!isSelectedMember(event.getMemberId())) {
+            return;
+        }
+        if (!isShowing()) {
+            stale = true;
+        } else if (dataLoader.isLoading()) {
+            refreshBorrowedBooks();
+        } else {
+            loanRead(event.getTransactionId(), null);
+        }
+    }
+    
+
+    private void loanRead(int transactionId, Transaction transaction) {
+        int row = findLoanRow(transactionId);
+        boolean open = transaction != null && isSelectedMember(transaction.getMemberId())
+                       && transaction.getTransactionStatus() != TransactionStatus.RETURNED;
+        if (!open) {
+            if (row >= 0) {
+                tableModel.removeRow(row);
+            }
+        } else if (row >= 0) {
+            DataLoader.replaceRow(tableModel, row, toRow(transaction));
+        } else {
+            DataLoader.addRows(tableModel, List.<Object[]>of(toRow(transaction)));
+        }
+        
+        if (selectedMember != null && !dataLoader.isLoading()) {
+            selectedMember.setBorrowedCount(tableModel.getRowCount());
+            borrowedCountLabel.setText("Books Borrowed: " + tableModel.getRowCount());
+        }
+    }
+    
+
+    private int findLoanRow(int transactionId) {
+        for (int row = 0; row < tableModel.getRowCount(); row++) {
+            Object id = tableModel.getValueAt(row, 0);
+            if (id instanceof Integer && (Integer) id == transactionId) {
+                return row;
+            }
+        }
+        return -1;
+    }
+    
+
+    private void memberChanged(MemberChanged event) {
+        if (!isSelectedMember(event.getMemberId())) {
+            return;
+        }
+        if (event.getKind() == ChangeKind.DELETED) {
+            clearMember(null);
+        } else if (!isShowing()) {
+            stale = true;
+        } else {
+            memberReloader.reload(event.getMemberId());
+        }
+    }
+    
+
+    private void memberRead(int memberId, Member member) {
+        if (!isSelectedMember(memberId)) {
+            return;
+        }
+        if (member == null) {
+            clearMember(null);
+            return;
+        }
+        // The borrowed count shown is the number of loans in the table
+        member.setBorrowedCount(selectedMember.getBorrowedCount());
+        selectedMember = member;
+        selectedMemberLabel.setText(member.getName() + " (ID: " + member.getId() + ")");
+    }
+    
+
+    private static LocalDate toLocalDate(Date date) {
+        return date != null ? DateUtil.toLocalDate(date.getTime()) : null;
+    }
+    
+
+    private void borrowedBooksLoaded(int count) {
+        if (selectedMember == null) {
+            return;
+        }
+        logger.info("Loaded " + count + " borrowed books for member: " + selectedMember.getName());
+        
+        // Every open loan of the member was just loaded, so this is the current borrowed count
+        selectedMember.setBorrowedCount(count);
+        updateMemberInfo();
+    }
+    
+
+    private void showLoadError(Exception e) {
+        borrowedCountLabel.setText("Borrowed books could not be loaded");
+        JOptionPane.showMessageDialog(this, 
+            "Error loading borrowed books: " + e.getMessage(), 
+            "Data Error", 
+            JOptionPane.ERROR_MESSAGE);
+    }
+    
+
     private void returnBook(ActionEvent e) {
         try {
             if (selectedMember == null) {
@@ -517,21 +716,20 @@ public class ReturnPanel extends JPanel {
                 return;
             }
             
-            int transactionId = (int) tableModel.getValueAt(selectedRow, 0);
-            int bookId = (int) tableModel.getValueAt(selectedRow, 1);
-            String bookTitle = (String) tableModel.getValueAt(selectedRow, 2);
+            int transactionId = (int) borrowedBooksTable.getValueAt(selectedRow, 0);
+            int bookId = (int) borrowedBooksTable.getValueAt(selectedRow, 1);
+            String bookTitle = (String) borrowedBooksTable.getValueAt(selectedRow, 2);
             
             // Process return
             Transaction transaction = transactionService.getTransactionById(transactionId);
-            transaction.setReturnDate(new Date());
-            transaction.setStatus("RETURNED");
+            transaction.setReturnDate(LibraryClock.get().now());
+            transaction.setTransactionStatus(TransactionStatus.RETURNED);
             
             transactionService.updateTransaction(transaction);
 
             // Update book availability
-            Book book = bookService.getBookById(bookId);
-            book.setAvailableCopies(book.getAvailableCopies() + 1);
-            bookService.updateBook(book);
+            bookService.returnCopy(bookId);
+            String reservationNote = holdForReservation(bookId);
 
             
             // Update member's borrowed count
@@ -540,16 +738,10 @@ public class ReturnPanel extends JPanel {
             
             // Show confirmation dialog
             JOptionPane.showMessageDialog(this, 
-                "Book \"" + bookTitle + "\" has been returned successfully.", 
+                "Book \"" + bookTitle + "\" has been returned successfully." + reservationNote, 
                 "Return Complete", 
                 JOptionPane.INFORMATION_MESSAGE);
             
-            // Refresh the view
-            refreshBorrowedBooks();
-            bookPanel.refreshData(); // ← يحدث جدول الكتب بعد الإرجاع
-
-// افترض إن عندك دالة بتحدث جدول الكتب
-
             logger.info("Book returned: " + bookTitle + " by member: " + selectedMember.getName());
             
         } catch (Exception ex) {
@@ -562,6 +754,27 @@ public class ReturnPanel extends JPanel {
     }
     
 
+    /**
+     * Sets a returned copy aside for the next patron waiting for the book.
+     * 
+     * @return A line telling the librarian to keep the copy, or an empty string
+     */
+    private String holdForReservation(int bookId) {
+        try {
+            Reservation reservation = reservationService.allocateReturnedCopy(bookId);
+            if (reservation != null) {
+                return "\nKeep \"" + reservation.getBookTitle() + "\" for " + reservation.getMemberName() + 
+                       " (reservation " + reservation.getId() + ") until " + 
+                       DateUtil.formatDate(reservation.getPickupExpiresDate()) + ".";
+            }
+        } catch (Exception e) {
+            // The copy simply stays on the shelf
+            logger.warn("Returned copy was not allocated to a reservation: " + e.getMessage());
+        }
+        return "";
+    }
+    
+
     private void returnAllBooks(ActionEvent e) {
         try {
             if (selectedMember == null) {
@@ -572,6 +785,14 @@ public class ReturnPanel extends JPanel {
                 return;
             }
             
+            if (dataLoader.isLoading()) {
+                JOptionPane.showMessageDialog(this, 
+                    "The borrowed books are still loading, please try again in a moment", 
+                    "Loading", 
+                    JOptionPane.INFORMATION_MESSAGE);
+                return;
+            }
+            
             int rowCount = tableModel.getRowCount();
             if (rowCount == 0) {
                 JOptionPane.showMessageDialog(this, 
@@ -595,7 +816,8 @@ public class ReturnPanel extends JPanel {
             }
             
             // Process returns
-            Date returnDate = new Date();
+            Date returnDate = LibraryClock.get().now();
+            StringBuilder reservationNotes = new StringBuilder();
             for (int i = 0; i < rowCount; i++) {
                 int transactionId = (int) tableModel.getValueAt(i, 0);
                 int bookId = (int) tableModel.getValueAt(i, 1);
@@ -603,14 +825,13 @@ public class ReturnPanel extends JPanel {
                 // Update transaction
                 Transaction transaction = transactionService.getTransactionById(transactionId);
                 transaction.setReturnDate(returnDate);
-                transaction.setStatus("RETURNED");
+                transaction.setTransactionStatus(TransactionStatus.RETURNED);
                 
                 transactionService.updateTransaction(transaction);
                 
                 // Update book availability
-                Book book = bookService.getBookById(bookId);
-                book.setAvailableCopies(book.getAvailableCopies() + 1);
-                bookService.updateBook(book);
+                bookService.returnCopy(bookId);
+                reservationNotes.append(holdForReservation(bookId));
             }
             
             // Update member's borrowed count
@@ -619,13 +840,10 @@ public class ReturnPanel extends JPanel {
             
             // Show confirmation dialog
             JOptionPane.showMessageDialog(this, 
-                "All " + rowCount + " book(s) have been returned successfully.", 
+                "All " + rowCount + " book(s) have been returned successfully." + reservationNotes, 
                 "Return Complete", 
                 JOptionPane.INFORMATION_MESSAGE);
             
-            // Refresh the view
-            refreshBorrowedBooks();
-            bookPanel.refreshData();
             logger.info("All books returned for member: " + selectedMember.getName());
             
         } catch (Exception ex) {
@@ -0,0 +1,292 @@
+package com.library.app.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Append-only log file that rolls over by size and by day.
+ * <p>
+ * The active file is kept open as a {@link FileChannel} and the caller writes
+ * whole batches, so an append costs the same however large the log has grown.
+ * A rolled segment is renamed to {@code <name>-<date>.<n>.log}, gzip-compressed
+ * on a background thread, and only the newest segments are retained.
+ * <p>
+ * Used only from the log writer thread.
+ */
+final class RollingFileChannel {
+
+    private static final String COMPRESSED_SUFFIX = ".gz";
+    private static final String PARTIAL_SUFFIX = ".tmp";
+
+    private final Path activeFile;
+    private final Path directory;
+    private final String baseName;
+    private final String extension;
+    private final long maxBytes;
+    private final int maxSegments;
+    private final boolean rollDaily;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final ExecutorService compressor;
+
+    private FileChannel channel;
+    private boolean started;
+    private long size;
+    private LocalDate openedOn;
+    private long nextDayMillis;
+
+    /**
+     * @param activeFile The active log file
+     * @param maxBytes Roll once the active file reaches this size; 0 disables size rolling
+     * @param maxSegments Number of rolled segments to keep
+     * @param rollDaily Whether to roll at midnight
+     */
+    RollingFileChannel(Path activeFile, long maxBytes, int maxSegments, boolean rollDaily) {
+        this.activeFile = activeFile.toAbsolutePath();
+        this.directory = this.activeFile.getParent();
+        String fileName = this.activeFile.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        this.baseName = dot > 0 ? fileName.substring(0, dot) : fileName;
+        this.extension = dot > 0 ? fileName.substring(dot) : "";
+        this.maxBytes = maxBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.rollDaily = rollDaily;
+        this.compressor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "log-compressor");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Appends the bytes, rolling the file first if it is due.
+     *
+     * @param bytes The bytes to append
+     * @throws IOException if the file cannot be written
+     */
+    void write(ByteBuffer bytes) throws IOException {
+        prepare(bytes.remaining());
+        append(bytes);
+    }
+
+    /**
+     * Opens the file or rolls it if the next write of the given size is due
+     * to go to a new file. Writers whose files carry per-file state, such as
+     * a header, use the result to know when to write it again.
+     *
+     * @param incomingBytes The size of the next write
+     * @return true if the next write starts a new file or reopens the file
+     * @throws IOException if the file cannot be opened or rolled
+     */
+    boolean prepare(long incomingBytes) throws IOException {
+        if (channel == null) {
+            open();
+            return true;
+        }
+
+        long now = System.currentTimeMillis();
+        if ((rollDaily && now >= nextDayMillis) || (maxBytes > 0 && size > 0 && size + incomingBytes > maxBytes)) {
+            roll();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Appends the bytes to the current file without checking for a roll.
+     *
+     * @param bytes The bytes to append
+     * @throws IOException if the file cannot be written
+     */
+    void append(ByteBuffer bytes) throws IOException {
+        if (channel == null) {
+            open();
+        }
+        while (bytes.hasRemaining()) {
+            size += channel.write(bytes);
+        }
+    }
+
+    void close() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Closes the file and gives pending compressions a bounded time to finish.
+     *
+     * @param timeoutMillis How long to wait for the compressor
+     */
+    void shutdown(long timeoutMillis) throws IOException {
+        close();
+        compressor.shutdown();
+        try {
+            compressor.awaitTermination(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void open() throws IOException {
+        if (!started) {
+            started = true;
+            compressLeftoverSegments();
+        }
+
+        // A file left over from an earlier day is rolled before writing to it
+        if (rollDaily && Files.exists(activeFile) && Files.size(activeFile) > 0) {
+            LocalDate modified = toDate(Files.getLastModifiedTime(activeFile).toMillis());
+            if (modified.isBefore(LocalDate.now(zone))) {
+                rollExisting(modified);
+            }
+        }
+
+        channel = FileChannel.open(activeFile, StandardOpenOption.CREATE,
+                                   StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        size = channel.size();
+        openedOn = LocalDate.now(zone);
+        nextDayMillis = openedOn.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+
+    private void roll() throws IOException {
+        close();
+        rollExisting(openedOn);
+        open();
+    }
+
+    private void rollExisting(LocalDate date) throws IOException {
+        Path segment = nextSegment(date);
+        Files.move(activeFile, segment, StandardCopyOption.ATOMIC_MOVE);
+        compressor.execute(() -> {
+            compress(segment);
+            deleteOldSegments();
+        });
+    }
+
+    private Path nextSegment(LocalDate date) throws IOException {
+        String prefix = baseName + "-" + date + ".";
+        int index = 0;
+        for (Path segment : listSegments()) {
+            String name = segment.getFileName().toString();
+            if (name.startsWith(prefix)) {
+                int end = name.indexOf('.', prefix.length());
+                try {
+                    index = Math.max(index, Integer.parseInt(name.substring(prefix.length(), end)));
+                } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        return directory.resolve(prefix + (index + 1) + extension);
+    }
+
+    private List<Path> listSegments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, baseName + "-*" + extension + "*")) {
+            for (Path path : stream) {
+                segments.add(path);
+            }
+        }
+        return segments;
+    }
+
+    private void compressLeftoverSegments() {
+        try {
+            // Segments rolled shortly before the last exit may not have been compressed yet
+            for (Path segment : listSegments()) {
+                String name = segment.getFileName().toString();
+                if (name.endsWith(PARTIAL_SUFFIX)) {
+                    Files.deleteIfExists(segment);
+                } else if (!name.endsWith(COMPRESSED_SUFFIX)) {
+                    compressor.execute(() -> compress(segment));
+                }
+            }
+            compressor.execute(this::deleteOldSegments);
+        } catch (IOException e) {
+            System.err.println("Error listing log segments: " + e.getMessage());
+        }
+    }
+
+    private void compress(Path segment) {
+        Path target = segment.resolveSibling(segment.getFileName() + COMPRESSED_SUFFIX);
+        Path partial = segment.resolveSibling(segment.getFileName() + COMPRESSED_SUFFIX + PARTIAL_SUFFIX);
+        try (InputStream in = Files.newInputStream(segment);
+             OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), 64 * 1024)) {
+            in.transferTo(out);
+        } catch (IOException e) {
+            System.err.println("Error compressing log segment " + segment + ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(partial);
+            } catch (IOException ignored) {
+                // Nothing more to do
+            }
+            return;
+        }
+
+        try {
+            Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+            Files.delete(segment);
+        } catch (IOException e) {
+            System.err.println("Error replacing log segment " + segment + ": " + e.getMessage());
+        }
+    }
+
+    private void deleteOldSegments() {
+        try {
+            // Segments still waiting for compression count towards the limit but are never deleted here
+            List<Path> compressed = new ArrayList<>();
+            int pending = 0;
+            for (Path segment : listSegments()) {
+                String name = segment.getFileName().toString();
+                if (name.endsWith(COMPRESSED_SUFFIX)) {
+                    compressed.add(segment);
+                } else if (!name.endsWith(PARTIAL_SUFFIX)) {
+                    pending++;
+                }
+            }
+
+            int excess = compressed.size() + pending - maxSegments;
+            if (excess <= 0) {
+                return;
+            }
+
+            compressed.sort((a, b) -> Long.compare(lastModified(a), lastModified(b)));
+            for (int i = 0; i < Math.min(excess, compressed.size()); i++) {
+                Files.deleteIfExists(compressed.get(i));
+            }
+        } catch (IOException e) {
+            System.err.println("Error deleting old log segments: " + e.getMessage());
+        }
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private LocalDate toDate(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(zone).toLocalDate();
+    }
+}
@@ -0,0 +1,112 @@
+package com.library.app.ui;
+
+import com.library.app.util.Logger;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads single table rows again by id, on a background thread, so a panel
+ * can patch the rows a change touched instead of reloading the table.
+ * <p>
+ * Ids asked for while a read is running are collected and read together once
+ * it finishes, each id once. The rows are handed to {@code onRead} on the
+ * Event Dispatch Thread; a row that no longer exists is handed over as null.
+ * A row that cannot be read is logged and skipped.
+ * <p>
+ * All methods must be called on the EDT.
+ *
+ * @param <T> The type of the rows
+ */
+public class RowReloader<T> {
+
+    private static final Logger logger = new Logger(RowReloader.class.getName());
+
+    /**
+     * Reads one row, on a background thread.
+     */
+    public interface Reader<T> {
+        /**
+         * @return The row, or null if it no longer exists
+         */
+        T read(int id) throws Exception;
+    }
+
+    private final String name;
+    private final Reader<T> reader;
+    private final BiConsumer<Integer, T> onRead;
+    private final ExecutorService executor;
+
+    private final Set<Integer> pending = new LinkedHashSet<>();
+    private boolean reading;
+
+    /**
+     * @param name The name of the background thread
+     * @param reader Reads a row by id
+     * @param onRead Receives each id with its row, or with null if it is gone
+     */
+    public RowReloader(String name, Reader<T> reader, BiConsumer<Integer, T> onRead) {
+        this.name = name;
+        this.reader = reader;
+        this.onRead = onRead;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads the row with the id again.
+     */
+    public void reload(int id) {
+        pending.add(id);
+        if (!reading) {
+            readPending();
+        }
+    }
+
+    /**
+     * Forgets ids that have not been read yet, for example because the
+     * whole table is being loaded again.
+     */
+    public void clear() {
+        pending.clear();
+    }
+
+    private void readPending() {
+        List<Integer> ids = new ArrayList<>(pending);
+        pending.clear();
+        reading = true;
+
+        executor.execute(() -> {
+            Map<Integer, T> rows = new LinkedHashMap<>();
+            for (int id : ids) {
+                try {
+                    rows.put(id, reader.read(id));
+                } catch (Exception e) {
+                    logger.error("Error reading " + name + " row " + id, e);
+                }
+            }
+            SwingUtilities.invokeLater(() -> finished(rows));
+        });
+    }
+
+    private void finished(Map<Integer, T> rows) {
+        reading = false;
+        for (Map.Entry<Integer, T> row : rows.entrySet()) {
+            onRead.accept(row.getKey(), row.getValue());
+        }
+        if (!pending.isEmpty()) {
+            readPending();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.library.app.model;
+
+
+/**
+ * Summary of a cart stored in the carts table, used to list carts that can be resumed.
+ */
+public class SavedCart {
+    private int id;
+    private String label;
+    private String desk;
+    private int memberId; // 0 when no member has been chosen
+    private String status; // OPEN, CHECKED_OUT, ABANDONED
+    private int itemCount;
+    private long updatedMillis;
+    
+
+    public SavedCart() {
+        this.status = "OPEN";
+    }
+
+    // Getters and Setters
+    
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public String getDesk() {
+        return desk;
+    }
+
+    public void setDesk(String desk) {
+        this.desk = desk;
+    }
+
+    public int getMemberId() {
+        return memberId;
+    }
+
+    public void setMemberId(int memberId) {
+        this.memberId = memberId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(int itemCount) {
+        this.itemCount = itemCount;
+    }
+
+    public long getUpdatedMillis() {
+        return updatedMillis;
+    }
+
+    public void setUpdatedMillis(long updatedMillis) {
+        this.updatedMillis = updatedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Cart " + id + " - " + label + " (" + itemCount + " items, " + desk + ")";
+    }
+}
@@ -0,0 +1,197 @@
+package com.library.app.db;
+
+import com.library.app.util.Logger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Applies additive schema changes on top of schema.sql.
+ * <p>
+ * Every step is idempotent so it can run on each start, and a failing step is
+ * logged and skipped rather than aborting startup.
+ */
+public class SchemaUpgrade {
+
+    private static final Logger logger = new Logger(SchemaUpgrade.class.getName());
+
+    private SchemaUpgrade() {
+    }
+
+    /**
+     * Applies all upgrade steps to the given connection.
+     *
+     * @param conn The database connection
+     */
+    public static void apply(Connection conn) {
+        addSearchKeyColumns(conn);
+        addSearchKeyIndexes(conn);
+        backfillSearchKeys();
+        addCardNumbers(conn);
+        addRenewalCounts(conn);
+        // Older databases default new members to 'MEMBER', which is not a MemberRole
+        execute(conn, "ALTER TABLE members ALTER COLUMN role SET DEFAULT 'REGULAR'");
+        createSettingsTable(conn);
+        createCartTables(conn);
+        createHoldTables(conn);
+        upgradeReservations(conn);
+        // Keyset paging of the catalog by title
+        execute(conn, "CREATE INDEX IF NOT EXISTS idx_books_title_id ON books (title, id)");
+    }
+
+    private static void addSearchKeyColumns(Connection conn) {
+        execute(conn, "ALTER TABLE books " +
+                      "ADD COLUMN IF NOT EXISTS title_key VARCHAR(500), " +
+                      "ADD COLUMN IF NOT EXISTS author_key VARCHAR(500), " +
+                      "ADD COLUMN IF NOT EXISTS publisher_key VARCHAR(500), " +
+                      "ADD COLUMN IF NOT EXISTS genre_key VARCHAR(255), " +
+                      "ADD COLUMN IF NOT EXISTS isbn_key VARCHAR(50)");
+        execute(conn, "ALTER TABLE members " +
+                      "ADD COLUMN IF NOT EXISTS name_key VARCHAR(255), " +
+                      "ADD COLUMN IF NOT EXISTS email_key VARCHAR(255), " +
+                      "ADD COLUMN IF NOT EXISTS phone_key VARCHAR(50)");
+    }
+
+    private static void addSearchKeyIndexes(Connection conn) {
+        String[][] keyColumns = {
+            {"books", "title_key"}, {"books", "author_key"}, {"books", "publisher_key"},
+            {"books", "genre_key"}, {"books", "isbn_key"},
+            {"members", "name_key"}, {"members", "email_key"}, {"members", "phone_key"}
+        };
+
+        // Trigram indexes serve '%term%' lookups; fall back to prefix-capable
+        // btree indexes when the extension cannot be installed.
+        boolean trigram = execute(conn, "CREATE EXTENSION IF NOT EXISTS pg_trgm");
+
+        for (String[] keyColumn : keyColumns) {
+            String table = keyColumn[0];
+            String column = keyColumn[1];
+            String indexName = "idx_" + table + "_" + column;
+            if (trigram) {
+                execute(conn, "CREATE INDEX IF NOT EXISTS " + indexName + "_trgm ON " + table +
+                              " USING gin (" + column + " gin_trgm_ops)");
+            } else {
+                execute(conn, "CREATE INDEX IF NOT EXISTS " + indexName + " ON " + table +
+                              " (" + column + " text_pattern_ops)");
+            }
+        }
+    }
+
+    private static void backfillSearchKeys() {
+        try {
+            int books = new BookDAO().backfillSearchKeys();
+            int members = new MemberDAO().backfillSearchKeys();
+            logger.info("Search key backfill completed: " + books + " books, " + members + " members");
+        } catch (SQLException e) {
+            logger.error("Search key backfill failed", e);
+        }
+    }
+
+    private static void addCardNumbers(Connection conn) {
+        // Keep in sync with MemberDAO.formatCardNumber
+        if (execute(conn, "ALTER TABLE members ADD COLUMN IF NOT EXISTS card_number VARCHAR(32)")) {
+            execute(conn, "UPDATE members SET card_number = 'LIB-' || lpad(id::text, 6, '0') " +
+                          "WHERE card_number IS NULL");
+            execute(conn, "CREATE UNIQUE INDEX IF NOT EXISTS idx_members_card_number ON members (card_number)");
+        }
+    }
+
+    private static void addRenewalCounts(Connection conn) {
+        if (hasColumn(conn, "transactions", "renewal_count")) {
+            return;
+        }
+        if (execute(conn, "ALTER TABLE transactions ADD COLUMN IF NOT EXISTS renewal_count INTEGER NOT NULL DEFAULT 0")) {
+            // Loans renewed before the column existed are counted once from their "Renewed for" remarks
+            execute(conn, "UPDATE transactions SET renewal_count = " +
+                          "(length(notes) - length(replace(notes, 'Renewed for', ''))) / length('Renewed for') " +
+                          "WHERE notes LIKE '%Renewed for%'");
+        }
+    }
+
+    private static void createSettingsTable(Connection conn) {
+        execute(conn, "CREATE TABLE IF NOT EXISTS settings (" +
+                      "setting_key VARCHAR(100) PRIMARY KEY, " +
+                      "setting_value TEXT, " +
+                      "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+    }
+
+    private static void createCartTables(Connection conn) {
+        // One row per cart node; a group's children are the rows pointing to it, in id order
+        execute(conn, "CREATE TABLE IF NOT EXISTS carts (" +
+                      "id SERIAL PRIMARY KEY, " +
+                      "label VARCHAR(255), " +
+                      "desk VARCHAR(100), " +
+                      "member_id INTEGER REFERENCES members(id) ON DELETE SET NULL, " +
+                      "status VARCHAR(20) NOT NULL DEFAULT 'OPEN', " +
+                      "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                      "updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        execute(conn, "CREATE TABLE IF NOT EXISTS cart_items (" +
+                      "id BIGSERIAL PRIMARY KEY, " +
+                      "cart_id INTEGER NOT NULL REFERENCES carts(id) ON DELETE CASCADE, " +
+                      "parent_id BIGINT REFERENCES cart_items(id) ON DELETE CASCADE, " +
+                      "book_id INTEGER REFERENCES books(id) ON DELETE CASCADE, " +
+                      "group_name VARCHAR(255))");
+        execute(conn, "CREATE INDEX IF NOT EXISTS idx_cart_items_cart ON cart_items (cart_id, id)");
+        execute(conn, "CREATE INDEX IF NOT EXISTS idx_cart_items_parent ON cart_items (parent_id)");
+        execute(conn, "CREATE INDEX IF NOT EXISTS idx_carts_status ON carts (status, updated_at)");
+    }
+
+    private static void createHoldTables(Connection conn) {
+        // held_copies counts live rows in book_holds; both change in the same statement
+        execute(conn, "ALTER TABLE books ADD COLUMN IF NOT EXISTS held_copies INTEGER NOT NULL DEFAULT 0");
+        execute(conn, "CREATE TABLE IF NOT EXISTS book_holds (" +
+                      "id BIGSERIAL PRIMARY KEY, " +
+                      "book_id INTEGER NOT NULL REFERENCES books(id) ON DELETE CASCADE, " +
+                      "cart_id INTEGER REFERENCES carts(id) ON DELETE SET NULL, " +
+                      "desk VARCHAR(100), " +
+                      "created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                      "expires_at TIMESTAMP NOT NULL)");
+        execute(conn, "CREATE INDEX IF NOT EXISTS idx_book_holds_expires ON book_holds (expires_at)");
+        execute(conn, "CREATE INDEX IF NOT EXISTS idx_book_holds_cart ON book_holds (cart_id)");
+        // Aborts a hold conversion with a state the application recognises; keep in sync with HoldDAO
+        execute(conn, "CREATE OR REPLACE FUNCTION library_short_of_copies(book INTEGER) RETURNS TEXT " +
+                      "LANGUAGE plpgsql VOLATILE AS $$ BEGIN " +
+                      "RAISE EXCEPTION 'not enough available copies of book %', book USING ERRCODE = '" +
+                      HoldDAO.SHORT_OF_COPIES_STATE + "'; END $$");
+    }
+
+    private static void upgradeReservations(Connection conn) {
+        execute(conn, "CREATE TABLE IF NOT EXISTS reservations (" +
+                      "id SERIAL PRIMARY KEY, " +
+                      "book_id INTEGER NOT NULL REFERENCES books(id) ON DELETE CASCADE, " +
+                      "member_id INTEGER NOT NULL REFERENCES members(id) ON DELETE CASCADE, " +
+                      "status VARCHAR(20) DEFAULT 'WAITING')");
+        execute(conn, "ALTER TABLE reservations " +
+                      "ADD COLUMN IF NOT EXISTS priority INTEGER NOT NULL DEFAULT 0, " +
+                      "ADD COLUMN IF NOT EXISTS queued_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP, " +
+                      "ADD COLUMN IF NOT EXISTS pickup_expires_at TIMESTAMP, " +
+                      "ADD COLUMN IF NOT EXISTS hold_id BIGINT");
+        // Queue order within a book: priority first, then arrival (ids are assigned in arrival order)
+        execute(conn, "CREATE INDEX IF NOT EXISTS idx_reservations_queue " +
+                      "ON reservations (book_id, priority DESC, id) WHERE status = 'WAITING'");
+        execute(conn, "CREATE INDEX IF NOT EXISTS idx_reservations_pickup " +
+                      "ON reservations (pickup_expires_at) WHERE status = 'READY'");
+        execute(conn, "CREATE INDEX IF NOT EXISTS idx_reservations_member ON reservations (member_id, book_id)");
+    }
+
+    private static boolean hasColumn(Connection conn, String table, String column) {
+        try (ResultSet rs = conn.getMetaData().getColumns(null, null, table, column)) {
+            return rs.next();
+        } catch (SQLException e) {
+            logger.warn("Cannot read columns of " + table + " (" + e.getMessage() + ")");
+            return false;
+        }
+    }
+
+    private static boolean execute(Connection conn, String sql) {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+            return true;
+        } catch (SQLException e) {
+            logger.warn("Schema upgrade step failed: " + sql + " (" + e.getMessage() + ")");
+            return false;
+        }
+    }
+}
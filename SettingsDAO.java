@@ -0,0 +1,130 @@
+package com.library.app.db;
+
+import com.library.app.util.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+
+public class SettingsDAO {
+    
+    private static final Logger logger = new Logger(SettingsDAO.class.getName());
+    
+
+    public Map<String, String> getAllSettings() throws SQLException {
+        String sql = "SELECT setting_key, setting_value FROM settings";
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        Map<String, String> settings = new HashMap<>();
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery(sql);
+            
+            while (rs.next()) {
+                settings.put(rs.getString("setting_key"), rs.getString("setting_value"));
+            }
+            
+            logger.info("Retrieved all settings: {} records", settings.size());
+            return settings;
+        } catch (SQLException e) {
+            logger.error("Error retrieving settings", e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    /**
+     * Returns a fingerprint of the whole table that changes whenever any
+     * setting is added, changed or removed, including edits made outside the
+     * application. The table is small, so this is cheap enough to poll.
+     * 
+     * @return The fingerprint, or null when the table is empty
+     */
+    public String getVersion() throws SQLException {
+        String sql = "SELECT md5(string_agg(setting_key || '=' || COALESCE(setting_value, ''), " +
+                     "chr(10) ORDER BY setting_key)) FROM settings";
+        Connection conn = null;
+        Statement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.createStatement();
+            rs = stmt.executeQuery(sql);
+            
+            return rs.next() ? rs.getString(1) : null;
+        } catch (SQLException e) {
+            logger.error("Error retrieving settings version", e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    public String getSetting(String key) throws SQLException {
+        String sql = "SELECT setting_value FROM settings WHERE setting_key = ?";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setString(1, key);
+            rs = stmt.executeQuery();
+            
+            return rs.next() ? rs.getString("setting_value") : null;
+        } catch (SQLException e) {
+            logger.error("Error retrieving setting: {}", key, e);
+            throw e;
+        } finally {
+            closeResources(rs, stmt);
+        }
+    }
+    
+
+    public void saveSetting(String key, String value) throws SQLException {
+        String sql = "INSERT INTO settings (setting_key, setting_value, updated_at) " +
+                     "VALUES (?, ?, CURRENT_TIMESTAMP) " +
+                     "ON CONFLICT (setting_key) DO UPDATE " +
+                     "SET setting_value = EXCLUDED.setting_value, updated_at = CURRENT_TIMESTAMP";
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setString(1, key);
+            stmt.setString(2, value);
+            stmt.executeUpdate();
+            
+            logger.info("Saved setting: {}", key);
+        } catch (SQLException e) {
+            logger.error("Error saving setting: {}", key, e);
+            throw e;
+        } finally {
+            closeResources(null, stmt);
+        }
+    }
+    
+
+    private void closeResources(ResultSet rs, Statement stmt) {
+        try {
+            if (rs != null) rs.close();
+            if (stmt != null) stmt.close();
+        } catch (SQLException e) {
+            logger.error("Error closing database resources", e);
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package com.library.app.service;
+
+import com.library.app.db.SettingsDAO;
+import com.library.app.model.MemberRole;
+import com.library.app.util.Logger;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Library settings from the {@code settings} table, held in memory.
+ * <p>
+ * All settings are loaded into an immutable {@link Snapshot} that lookups read
+ * through a volatile field, without locks or database access. A background
+ * poll compares a fingerprint of the table every {@code library.settings.pollSeconds}
+ * seconds (10 by default) and swaps in a new snapshot when it changed, so a
+ * policy change made on any desk, or directly in the table, applies without a
+ * restart. Listeners registered with {@link #addListener(Runnable)} run after
+ * each swap.
+ * <p>
+ * Circulation settings and their defaults:
+ * <ul>
+ *   <li>{@code loan.period_days} - loan period in days (14)</li>
+ *   <li>{@code loan.renewal_days} - days added by a renewal (the loan period)</li>
+ *   <li>{@code loan.max_books.regular}, {@code .premium}, {@code .admin} - borrowing limits (5, 10, 15)</li>
+ * </ul>
+ */
+public class SettingsService {
+    
+    private static final Logger logger = new Logger(SettingsService.class.getName());
+    
+    public static final String LOAN_PERIOD_KEY = "loan.period_days";
+    public static final String RENEWAL_DAYS_KEY = "loan.renewal_days";
+    public static final String MAX_BOOKS_KEY_PREFIX = "loan.max_books.";
+    
+    private static final int DEFAULT_LOAN_DAYS = 14;
+    private static final int[] DEFAULT_MAX_BOOKS = new int[MemberRole.values().length];
+    static {
+        DEFAULT_MAX_BOOKS[MemberRole.REGULAR.ordinal()] = 5;
+        DEFAULT_MAX_BOOKS[MemberRole.PREMIUM.ordinal()] = 10;
+        DEFAULT_MAX_BOOKS[MemberRole.ADMIN.ordinal()] = 15;
+    }
+    private static final long POLL_SECONDS = Math.max(1, Integer.getInteger("library.settings.pollSeconds", 10));
+    
+    private static SettingsService instance;
+    
+    private final SettingsDAO settingsDAO;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private volatile Snapshot snapshot;
+    
+
+    SettingsService(SettingsDAO settingsDAO) {
+        this.settingsDAO = settingsDAO;
+        // Defaults until the first load
+        this.snapshot = new Snapshot(null, Collections.<String, String>emptyMap(), false);
+    }
+    
+
+    public static synchronized SettingsService getInstance() {
+        if (instance == null) {
+            instance = new SettingsService(new SettingsDAO());
+            instance.refresh();
+            instance.startPolling();
+        }
+        return instance;
+    }
+    
+
+    /**
+     * @return The settings currently in force; never changes once returned
+     */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+    
+
+    public String getString(String key, String defaultValue) {
+        return snapshot.getString(key, defaultValue);
+    }
+    
+
+    public int getInt(String key, int defaultValue) {
+        return snapshot.getInt(key, defaultValue);
+    }
+    
+
+    public int getLoanDays() {
+        return snapshot.getLoanDays();
+    }
+    
+
+    public int getRenewalDays() {
+        return snapshot.getRenewalDays();
+    }
+    
+
+    public int getMaxBorrows(MemberRole role) {
+        return snapshot.getMaxBorrows(role);
+    }
+    
+
+    /**
+     * Stores a setting and applies it on this desk straight away; other desks
+     * pick it up on their next poll.
+     */
+    public void saveSetting(String key, String value) throws Exception {
+        try {
+            settingsDAO.saveSetting(key, value);
+        } catch (Exception e) {
+            logger.error("Error saving setting: " + key, e);
+            throw new Exception("Error saving setting: " + e.getMessage());
+        }
+        refresh();
+    }
+    
+
+    /**
+     * Registers a callback run after a new snapshot is swapped in.
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+    
+
+    /**
+     * Reloads the settings if the table changed since the current snapshot.
+     * If the table cannot be read, the current snapshot is kept.
+     * 
+     * @return true if a new snapshot was swapped in
+     */
+    public synchronized boolean refresh() {
+        try {
+            // Read before the rows, so a change made in between shows up on the next poll
+            String version = settingsDAO.getVersion();
+            Snapshot current = snapshot;
+            if (current.loaded && (version == null ? current.version == null : version.equals(current.version))) {
+                return false;
+            }
+            
+            snapshot = new Snapshot(version, settingsDAO.getAllSettings(), true);
+            logger.info("Settings loaded: {} values", snapshot.values.size());
+        } catch (Exception e) {
+            logger.error("Error loading settings, keeping current values", e);
+            return false;
+        }
+        
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                logger.error("Settings listener failed", e);
+            }
+        }
+        return true;
+    }
+    
+
+    private void startPolling() {
+        ScheduledExecutorService poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "settings-poll");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::refresh, POLL_SECONDS, POLL_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Immutable set of settings with the circulation values parsed once.
+     */
+    public static final class Snapshot {
+        
+        private final String version;
+        private final boolean loaded;
+        private final Map<String, String> values;
+        private final int loanDays;
+        private final int renewalDays;
+        private final int[] maxBooks;
+        
+
+        Snapshot(String version, Map<String, String> values, boolean loaded) {
+            this.version = version;
+            this.loaded = loaded;
+            this.values = Collections.unmodifiableMap(new HashMap<>(values));
+            this.loanDays = positive(getInt(LOAN_PERIOD_KEY, DEFAULT_LOAN_DAYS), DEFAULT_LOAN_DAYS);
+            this.renewalDays = positive(getInt(RENEWAL_DAYS_KEY, loanDays), loanDays);
+            this.maxBooks = new int[DEFAULT_MAX_BOOKS.length];
+            for (MemberRole role : MemberRole.values()) {
+                int fallback = DEFAULT_MAX_BOOKS[role.ordinal()];
+                String key = MAX_BOOKS_KEY_PREFIX + role.name().toLowerCase(Locale.ROOT);
+                maxBooks[role.ordinal()] = Math.max(0, getInt(key, fallback));
+            }
+        }
+        
+
+        public String getString(String key, String defaultValue) {
+            String value = values.get(key);
+            return value != null ? value : defaultValue;
+        }
+        
+
+        public int getInt(String key, int defaultValue) {
+            String value = values.get(key);
+            if (value == null) {
+                return defaultValue;
+            }
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                logger.warn("Setting " + key + " is not a number: " + value);
+                return defaultValue;
+            }
+        }
+        
+
+        public int getLoanDays() {
+            return loanDays;
+        }
+        
+
+        public int getRenewalDays() {
+            return renewalDays;
+        }
+        
+
+        /**
+         * Members without a role, or with a legacy or unrecognised one, have the regular limit.
+         */
+        public int getMaxBorrows(MemberRole role) {
+            return maxBooks[(role != null && role != MemberRole.UNKNOWN ? role : MemberRole.REGULAR).ordinal()];
+        }
+        
+
+        public Map<String, String> asMap() {
+            return values;
+        }
+        
+
+        private static int positive(int value, int fallback) {
+            return value > 0 ? value : fallback;
+        }
+    }
+}
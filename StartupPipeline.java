@@ -0,0 +1,122 @@
+package com.library.app;
+
+import com.library.app.util.Logger;
+
+import javax.swing.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the startup stages, each as soon as the stages it depends on are done,
+ * and times them for a startup report.
+ * <p>
+ * Background stages run on a small pool of daemon threads; stages that build
+ * Swing components run on the Event Dispatch Thread. A stage whose dependency
+ * failed does not run, and its future completes with the same failure.
+ * Milestones such as the login dialog becoming usable are recorded against
+ * the JVM uptime, so the report shows the time from launch as the user sees it.
+ */
+final class StartupPipeline {
+
+    private static final Logger logger = new Logger(StartupPipeline.class.getName());
+
+    private final long startNanos = System.nanoTime();
+    private final long startUptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+    private final List<String> lines = new ArrayList<>();
+    private final ExecutorService executor;
+
+    StartupPipeline() {
+        AtomicInteger threads = new AtomicInteger();
+        int poolSize = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.executor = Executors.newFixedThreadPool(poolSize, r -> {
+            Thread thread = new Thread(r, "startup-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Runs a stage on a background thread once its dependencies are done.
+     */
+    CompletableFuture<Void> stage(String name, Stage work, CompletableFuture<?>... dependencies) {
+        return CompletableFuture.allOf(dependencies).thenRunAsync(() -> run(name, work), executor);
+    }
+
+    /**
+     * Runs a stage on the Event Dispatch Thread once its dependencies are done.
+     */
+    CompletableFuture<Void> stageOnEdt(String name, Stage work, CompletableFuture<?>... dependencies) {
+        return CompletableFuture.allOf(dependencies).thenRunAsync(() -> run(name, work), SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Records a moment of startup, such as a window becoming visible.
+     */
+    void milestone(String name) {
+        long uptime = startUptimeMillis + elapsedMillis(startNanos);
+        record(String.format("  %-24s at %6d ms since JVM start", name, uptime));
+    }
+
+    /**
+     * Logs the timings recorded so far and stops the stage threads.
+     */
+    void report() {
+        executor.shutdown();
+        StringBuilder report = new StringBuilder("Startup report (JVM start to main(): ")
+            .append(startUptimeMillis).append(" ms)");
+        synchronized (lines) {
+            for (String line : lines) {
+                report.append('\n').append(line);
+            }
+        }
+        logger.info(report.toString());
+    }
+
+    private void run(String name, Stage work) {
+        long begin = System.nanoTime();
+        long offset = elapsedMillis(startNanos);
+        try {
+            work.run();
+        } catch (Exception e) {
+            record(String.format("  %-24s FAILED after %5d ms", name, elapsedMillis(begin)));
+            // Carried to dependent stages and to whoever waits on the future
+            throw new StageFailedException(name, e);
+        }
+        record(String.format("  %-24s %5d ms  (started at +%d ms on %s)",
+                             name, elapsedMillis(begin), offset, Thread.currentThread().getName()));
+    }
+
+    private void record(String line) {
+        synchronized (lines) {
+            lines.add(line);
+        }
+    }
+
+    private static long elapsedMillis(long sinceNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sinceNanos);
+    }
+
+    /**
+     * Work done by one stage.
+     */
+    interface Stage {
+        void run() throws Exception;
+    }
+
+    /**
+     * A stage threw; the message names the stage.
+     */
+    static final class StageFailedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        StageFailedException(String stage, Exception cause) {
+            super(stage + " failed: " + cause.getMessage(), cause);
+        }
+    }
+}
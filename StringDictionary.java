@@ -0,0 +1,105 @@
+package com.library.app.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded, thread-safe canonicalizer for low-cardinality column values.
+ * <p>
+ * Row mappers pass values such as genre or publisher through {@link #intern(String)}
+ * so that thousands of rows share one String instance per distinct value
+ * instead of holding one copy each. Once the dictionary is full, new values
+ * are returned as they are, so a column with unexpectedly many distinct
+ * values cannot grow it without bound.
+ */
+public final class StringDictionary {
+    
+    // Object header and fields of a String plus the header of its byte array
+    private static final int STRING_OVERHEAD_BYTES = 40;
+    
+    private final String name;
+    private final int maxSize;
+    private final ConcurrentHashMap<String, String> values;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    
+    /**
+     * @param name Name used in statistics
+     * @param maxSize Maximum number of distinct values kept
+     */
+    public StringDictionary(String name, int maxSize) {
+        this.name = name;
+        this.maxSize = Math.max(1, maxSize);
+        this.values = new ConcurrentHashMap<>(Math.min(this.maxSize, 1024));
+    }
+    
+    /**
+     * Returns the shared instance equal to the value, adding the value if
+     * there is room.
+     * 
+     * @param value The value to canonicalize, may be null
+     * @return The shared instance, or the value itself if it is not in the dictionary
+     */
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = values.get(value);
+        if (existing == null) {
+            if (values.size() >= maxSize) {
+                return value;
+            }
+            existing = values.putIfAbsent(value, value);
+            if (existing == null) {
+                return value;
+            }
+        }
+        if (existing != value) {
+            hits.increment();
+            bytesSaved.add(estimateSize(value));
+        }
+        return existing;
+    }
+    
+    public int size() {
+        return values.size();
+    }
+    
+    public int getMaxSize() {
+        return maxSize;
+    }
+    
+    /**
+     * @return The number of lookups that returned a shared instance in place of a copy
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+    
+    /**
+     * @return Estimated heap released by replacing copies with shared instances
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+    
+    public void clear() {
+        values.clear();
+    }
+    
+    @Override
+    public String toString() {
+        return name + "{size=" + size() + "/" + maxSize + ", hits=" + getHits()
+               + ", savedKb=" + getBytesSaved() / 1024 + "}";
+    }
+    
+    private static long estimateSize(String value) {
+        // Compact strings store Latin-1 text in one byte per char
+        boolean latin1 = true;
+        for (int i = 0; i < value.length() && latin1; i++) {
+            latin1 = value.charAt(i) < 0x100;
+        }
+        long payload = latin1 ? value.length() : 2L * value.length();
+        return STRING_OVERHEAD_BYTES + ((payload + 7) & ~7L);
+    }
+}
@@ -0,0 +1,18 @@
+package com.library.app.ui;
+
+/**
+ * A panel shown in a tab of the {@link MainWindow}, told when its tab is
+ * selected and when it is left.
+ */
+interface TabPanel {
+
+    /**
+     * Called when the panel's tab is selected.
+     */
+    void tabShown();
+
+    /**
+     * Called when another tab is selected after this one.
+     */
+    void tabHidden();
+}
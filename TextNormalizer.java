@@ -0,0 +1,214 @@
+package com.library.app.util;
+
+import java.text.Normalizer;
+
+/**
+ * Normalizes mixed Arabic and Latin text into search keys.
+ * <p>
+ * The same key function is used when rows are written and when a search term
+ * is prepared, so the database only has to compare precomputed keys.
+ */
+public final class TextNormalizer {
+
+    private static final char TATWEEL = '\u0640';
+    private static final char SUPERSCRIPT_ALEF = '\u0670';
+
+    private TextNormalizer() {
+    }
+
+    /**
+     * Builds the search key for free text such as titles, authors and names.
+     * Case, Latin accents, Arabic diacritics (tashkeel) and tatweel are removed,
+     * alef/hamza variants are folded to bare alef, taa marbuta to haa, alef maqsura
+     * to yaa, Arabic-Indic digits to ASCII and runs of whitespace to one space.
+     *
+     * @param text The text to normalize
+     * @return The normalized key, or null if the text is null
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+
+        // Decompose so Latin accents become separate combining marks we can drop
+        String decomposed = isAscii(text) ? text : Normalizer.normalize(text, Normalizer.Form.NFKD);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        boolean pendingSpace = false;
+
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+                continue;
+            }
+
+            char folded = fold(c);
+            if (folded == 0) {
+                continue;
+            }
+
+            if (pendingSpace) {
+                sb.append(' ');
+                pendingSpace = false;
+            }
+            sb.append(folded);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Builds the search key for identifiers such as ISBNs, where separators
+     * carry no meaning. Only letters and digits are kept.
+     *
+     * @param text The identifier to normalize
+     * @return The normalized key, or null if the text is null
+     */
+    public static String normalizeIdentifier(String text) {
+        if (text == null) {
+            return null;
+        }
+        String key = normalize(text);
+        StringBuilder sb = new StringBuilder(key.length());
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Builds the search key for phone numbers: digits only.
+     *
+     * @param phone The phone number to normalize
+     * @return The digits of the phone number, or null if the phone is null
+     */
+    public static String normalizePhone(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = foldDigit(phone.charAt(i));
+            if (c >= '0' && c <= '9') {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Builds the search key for email addresses: trimmed and lower case.
+     *
+     * @param email The email address to normalize
+     * @return The normalized email, or null if the email is null
+     */
+    public static String normalizeEmail(String email) {
+        if (email == null) {
+            return null;
+        }
+        return normalize(email).replace(" ", "");
+    }
+
+    /**
+     * Turns a user-entered search term into a LIKE pattern over a key column.
+     *
+     * @param term The raw search term
+     * @return A contains-pattern over the normalized term
+     */
+    public static String containsPattern(String term) {
+        return likeContains(normalize(term));
+    }
+
+    /**
+     * Wraps an already normalized key into a LIKE contains-pattern, escaping
+     * LIKE wildcards that occur in the key itself.
+     *
+     * @param key The normalized key
+     * @return A contains-pattern over the key
+     */
+    public static String likeContains(String key) {
+        return "%" + escapeLike(key) + "%";
+    }
+
+    private static String escapeLike(String key) {
+        if (key.indexOf('%') < 0 && key.indexOf('_') < 0 && key.indexOf('\\') < 0) {
+            return key;
+        }
+        StringBuilder sb = new StringBuilder(key.length() + 4);
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (c == '%' || c == '_' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Folds a single character. Returns 0 for characters that are dropped.
+     */
+    private static char fold(char c) {
+        if (c < 0x80) {
+            return (c >= 'A' && c <= 'Z') ? (char) (c + 32) : c;
+        }
+
+        // Combining marks (Latin accents after NFKD)
+        if (c >= '\u0300' && c <= '\u036F') {
+            return 0;
+        }
+
+        // Arabic tashkeel, Quranic marks and tatweel
+        if ((c >= '\u064B' && c <= '\u065F') || c == SUPERSCRIPT_ALEF || c == TATWEEL
+                || (c >= '\u0610' && c <= '\u061A') || (c >= '\u06D6' && c <= '\u06ED')) {
+            return 0;
+        }
+
+        switch (c) {
+            case '\u0622': // alef with madda
+            case '\u0623': // alef with hamza above
+            case '\u0625': // alef with hamza below
+            case '\u0671': // alef wasla
+                return '\u0627';
+            case '\u0629': // taa marbuta
+                return '\u0647';
+            case '\u0649': // alef maqsura
+            case '\u0626': // yaa with hamza
+                return '\u064A';
+            case '\u0624': // waw with hamza
+                return '\u0648';
+            default:
+                break;
+        }
+
+        char digit = foldDigit(c);
+        if (digit != c) {
+            return digit;
+        }
+
+        return Character.toLowerCase(c);
+    }
+
+    private static char foldDigit(char c) {
+        if (c >= '\u0660' && c <= '\u0669') {
+            return (char) ('0' + (c - '\u0660'));
+        }
+        if (c >= '\u06F0' && c <= '\u06F9') {
+            return (char) ('0' + (c - '\u06F0'));
+        }
+        return c;
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
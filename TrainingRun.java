@@ -0,0 +1,80 @@
+package com.library.app;
+
+import com.library.app.db.BookDAO;
+import com.library.app.db.PageIndex;
+import com.library.app.service.BookService;
+import com.library.app.service.MemberService;
+import com.library.app.service.TransactionService;
+import com.library.app.ui.LoginDialog;
+import com.library.app.ui.MainWindow;
+import com.library.app.util.Logger;
+
+import javax.swing.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Unattended startup that loads the classes a desk session needs and exits,
+ * started with {@code --train}.
+ * <p>
+ * It goes through the normal startup stages, builds the login dialog and the
+ * main window with every tab without showing them, and runs the first queries
+ * the panels make. Run with {@code -XX:ArchiveClassesAtExit}, the JVM then
+ * writes a dynamic AppCDS archive of those classes at exit, which later
+ * launches map instead of loading and verifying the classes again (see
+ * {@code library.sh train}). The startup report of a training run also makes
+ * a repeatable benchmark for comparing launches with and without the archive.
+ */
+final class TrainingRun {
+
+    static final String FLAG = "--train";
+
+    private static final Logger logger = new Logger(TrainingRun.class.getName());
+    private static final int PAGE_SIZE = 200;
+
+    private TrainingRun() {
+    }
+
+    static void run(StartupPipeline startup, CompletableFuture<Void> lookAndFeel, CompletableFuture<Void> ready) {
+        logger.info("Training run: exercising startup, panels and first queries");
+        
+        CompletableFuture<Void> ui = startup.stageOnEdt("login and main window", () -> {
+            JFrame owner = new JFrame();
+            LoginDialog loginDialog = new LoginDialog(owner);
+            loginDialog.pack();
+            loginDialog.dispose();
+            owner.dispose();
+            
+            MainWindow mainWindow = new MainWindow();
+            mainWindow.buildAllTabs();
+            mainWindow.pack();
+            mainWindow.dispose();
+        }, lookAndFeel, ready);
+        CompletableFuture<Void> queries = startup.stage("first queries", TrainingRun::runFirstQueries, ready);
+        
+        CompletableFuture.allOf(ui, queries).whenComplete((result, error) -> {
+            startup.milestone("training run done");
+            startup.report();
+            if (error != null) {
+                logger.error("Training run failed", error.getCause() instanceof Exception
+                             ? (Exception) error.getCause() : new Exception(error));
+            }
+            // The class-data archive, if requested, is written as the JVM exits
+            System.exit(error == null ? 0 : 1);
+        });
+    }
+
+    private static void runFirstQueries() throws Exception {
+        BookService bookService = new BookService();
+        PageIndex<BookDAO.PageKey> index = bookService.getBookPageIndex(PAGE_SIZE, null);
+        if (index.getPageCount() > 0) {
+            bookService.getBookPage(index.getPageStart(0), PAGE_SIZE, null);
+        }
+        bookService.searchBooksByTitle("a");
+        
+        MemberService memberService = new MemberService();
+        memberService.forEachMember(null, member -> { });
+        memberService.getMemberDirectory();
+        
+        new TransactionService().getOverdueTransactions();
+    }
+}
@@ -1,5 +1,8 @@
 package com.library.app.model;
 
+import com.library.app.util.DateUtil;
+import com.library.app.util.LibraryClock;
+
 import java.util.Date;
 
 
@@ -7,12 +10,16 @@ public class Transaction {
     private int id;
     private int bookId;
     private int memberId;
-    private Date borrowDate;
-    private Date dueDate;
-    private Date returnDate;
-    private String status; // BORROWED, RETURNED, OVERDUE, LOST, RENEWED
+    // Dates are kept as epoch millis, DateUtil.NO_DATE when unset
+    private long borrowMillis = DateUtil.NO_DATE;
+    private long dueMillis = DateUtil.NO_DATE;
+    private long returnMillis = DateUtil.NO_DATE;
+    private TransactionStatus status;
+    // The value as stored when it is not a known status, so saving the transaction keeps it
+    private String storedStatus;
     private double fine;
     private String remarks;
+    private int renewalCount;
     
     // Denormalized fields for display
     private String bookTitle;
@@ -20,8 +27,8 @@ public class Transaction {
     
 
     public Transaction() {
-        this.borrowDate = new Date();
-        this.status = "BORROWED";
+        this.borrowMillis = LibraryClock.currentTimeMillis();
+        this.status = TransactionStatus.BORROWED;
         this.fine = 0.0;
     }
     
@@ -29,9 +36,9 @@ public class Transaction {
     public Transaction(int bookId, int memberId, Date borrowDate, Date dueDate) {
         this.bookId = bookId;
         this.memberId = memberId;
-        this.borrowDate = borrowDate;
-        this.dueDate = dueDate;
-        this.status = "BORROWED";
+        this.borrowMillis = DateUtil.toMillis(borrowDate);
+        this.dueMillis = DateUtil.toMillis(dueDate);
+        this.status = TransactionStatus.BORROWED;
         this.fine = 0.0;
     }
     
@@ -42,10 +49,10 @@ public class Transaction {
         this.id = id;
         this.bookId = bookId;
         this.memberId = memberId;
-        this.borrowDate = borrowDate;
-        this.dueDate = dueDate;
-        this.returnDate = returnDate;
-        this.status = status;
+        this.borrowMillis = DateUtil.toMillis(borrowDate);
+        this.dueMillis = DateUtil.toMillis(dueDate);
+        this.returnMillis = DateUtil.toMillis(returnDate);
+        setStatus(status);
         this.fine = fine;
         this.remarks = remarks;
         this.bookTitle = bookTitle;
@@ -79,34 +86,70 @@ public class Transaction {
     }
 
     public Date getBorrowDate() {
-        return borrowDate;
+        return DateUtil.toDate(borrowMillis);
     }
 
     public void setBorrowDate(Date borrowDate) {
-        this.borrowDate = borrowDate;
+        this.borrowMillis = DateUtil.toMillis(borrowDate);
+    }
+
+    public long getBorrowMillis() {
+        return borrowMillis;
+    }
+
+    public void setBorrowMillis(long borrowMillis) {
+        this.borrowMillis = borrowMillis;
     }
 
     public Date getDueDate() {
-        return dueDate;
+        return DateUtil.toDate(dueMillis);
     }
 
     public void setDueDate(Date dueDate) {
-        this.dueDate = dueDate;
+        this.dueMillis = DateUtil.toMillis(dueDate);
+    }
+
+    public long getDueMillis() {
+        return dueMillis;
+    }
+
+    public void setDueMillis(long dueMillis) {
+        this.dueMillis = dueMillis;
     }
 
     public Date getReturnDate() {
-        return returnDate;
+        return DateUtil.toDate(returnMillis);
     }
 
     public void setReturnDate(Date returnDate) {
-        this.returnDate = returnDate;
+        this.returnMillis = DateUtil.toMillis(returnDate);
+    }
+
+    public long getReturnMillis() {
+        return returnMillis;
+    }
+
+    public void setReturnMillis(long returnMillis) {
+        this.returnMillis = returnMillis;
     }
 
     public String getStatus() {
-        return status;
+        if (status == TransactionStatus.UNKNOWN) {
+            return storedStatus;
+        }
+        return status != null ? status.name() : null;
     }
 
     public void setStatus(String status) {
+        this.status = TransactionStatus.fromString(status);
+        this.storedStatus = status;
+    }
+
+    public TransactionStatus getTransactionStatus() {
+        return status;
+    }
+
+    public void setTransactionStatus(TransactionStatus status) {
         this.status = status;
     }
 
@@ -126,6 +169,14 @@ public class Transaction {
         this.remarks = remarks;
     }
 
+    public int getRenewalCount() {
+        return renewalCount;
+    }
+
+    public void setRenewalCount(int renewalCount) {
+        this.renewalCount = renewalCount;
+    }
+
     public String getBookTitle() {
         return bookTitle;
     }
@@ -148,29 +199,28 @@ public class Transaction {
                "id=" + id +
                ", bookId=" + bookId +
                ", memberId=" + memberId +
-               ", borrowDate=" + borrowDate +
-               ", dueDate=" + dueDate +
+               ", borrowDate=" + getBorrowDate() +
+               ", dueDate=" + getDueDate() +
                ", status='" + status + '\'' +
                '}';
     }
 
 
     public boolean isOverdue() {
-        if ("RETURNED".equals(status)) {
+        if (status == TransactionStatus.RETURNED || dueMillis == DateUtil.NO_DATE) {
             return false;
         }
-        Date currentDate = new Date();
-        return currentDate.after(dueDate);
+        return dueMillis < LibraryClock.currentTimeMillis();
     }
     
 
     
 
     public boolean renew(int renewalDays) {
-        if ("BORROWED".equals(status) && !isOverdue()) {
-            long dueTime = dueDate.getTime();
-            dueDate = new Date(dueTime + (renewalDays * 24 * 60 * 60 * 1000));
+        if (status == TransactionStatus.BORROWED && dueMillis != DateUtil.NO_DATE && !isOverdue()) {
+            dueMillis += renewalDays * DateUtil.MILLIS_PER_DAY;
             remarks = (remarks != null ? remarks + "; " : "") + "Renewed for " + renewalDays + " days";
+            renewalCount++;
             return true;
         }
         return false;
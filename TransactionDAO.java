@@ -1,6 +1,8 @@
 package com.library.app.db;
 
 import com.library.app.model.Transaction;
+import com.library.app.model.TransactionStatus;
+import com.library.app.util.DateUtil;
 import com.library.app.util.Logger;
 
 import java.sql.Connection;
@@ -12,11 +14,15 @@ import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 public class TransactionDAO {
     
     private static final Logger logger = new Logger(TransactionDAO.class.getName());
+    // Unknown stored statuses already warned about, so each is reported once
+    private static final Set<String> reportedUnknownStatuses = ConcurrentHashMap.newKeySet();
     
 
     public Transaction getTransactionById(int id) throws SQLException {
@@ -41,10 +47,10 @@ public class TransactionDAO {
                 transaction = mapResultSetToTransaction(rs);
             }
             
-            logger.info("Retrieved transaction by ID: " + id);
+            logger.info("Retrieved transaction by ID: {}", id);
             return transaction;
         } catch (SQLException e) {
-            logger.error("Error retrieving transaction by ID: " + id, e);
+            logger.error("Error retrieving transaction by ID: {}", id, e);
             throw e;
         } finally {
             closeResources(rs, stmt);
@@ -74,7 +80,7 @@ public class TransactionDAO {
                 transactions.add(transaction);
             }
             
-            logger.info("Retrieved all transactions: " + transactions.size() + " records");
+            logger.info("Retrieved all transactions: {} records", transactions.size());
             return transactions;
         } catch (SQLException e) {
             logger.error("Error retrieving all transactions", e);
@@ -109,11 +115,11 @@ public class TransactionDAO {
                 transactions.add(transaction);
             }
             
-            logger.info("Retrieved active borrowings for member ID " + memberId + 
-                       ": " + transactions.size() + " records");
+            logger.info("Retrieved active borrowings for member ID {}: {} records", 
+                       memberId, transactions.size());
             return transactions;
         } catch (SQLException e) {
-            logger.error("Error retrieving active borrowings for member ID: " + memberId, e);
+            logger.error("Error retrieving active borrowings for member ID: {}", memberId, e);
             throw e;
         } finally {
             closeResources(rs, stmt);
@@ -145,11 +151,11 @@ public class TransactionDAO {
                 transactions.add(transaction);
             }
             
-            logger.info("Retrieved transactions for member ID " + memberId + 
-                       ": " + transactions.size() + " records");
+            logger.info("Retrieved transactions for member ID {}: {} records", 
+                       memberId, transactions.size());
             return transactions;
         } catch (SQLException e) {
-            logger.error("Error retrieving transactions for member ID: " + memberId, e);
+            logger.error("Error retrieving transactions for member ID: {}", memberId, e);
             throw e;
         } finally {
             closeResources(rs, stmt);
@@ -181,11 +187,11 @@ public class TransactionDAO {
                 transactions.add(transaction);
             }
             
-            logger.info("Retrieved transactions for book ID " + bookId + 
-                       ": " + transactions.size() + " records");
+            logger.info("Retrieved transactions for book ID {}: {} records", 
+                       bookId, transactions.size());
             return transactions;
         } catch (SQLException e) {
-            logger.error("Error retrieving transactions for book ID: " + bookId, e);
+            logger.error("Error retrieving transactions for book ID: {}", bookId, e);
             throw e;
         } finally {
             closeResources(rs, stmt);
@@ -213,11 +219,11 @@ public class TransactionDAO {
             
             while (rs.next()) {
                 Transaction transaction = mapResultSetToTransaction(rs);
-                transaction.setStatus("OVERDUE"); // Mark as overdue for display purposes
+                transaction.setTransactionStatus(TransactionStatus.OVERDUE); // Mark as overdue for display purposes
                 transactions.add(transaction);
             }
             
-            logger.info("Retrieved overdue transactions: " + transactions.size() + " records");
+            logger.info("Retrieved overdue transactions: {} records", transactions.size());
             return transactions;
         } catch (SQLException e) {
             logger.error("Error retrieving overdue transactions", e);
@@ -243,12 +249,9 @@ public class TransactionDAO {
             
             stmt.setInt(1, transaction.getBookId());
             stmt.setInt(2, transaction.getMemberId());
-            stmt.setTimestamp(3, transaction.getBorrowDate() != null ? 
-                              new Timestamp(transaction.getBorrowDate().getTime()) : null);
-            stmt.setTimestamp(4, transaction.getDueDate() != null ? 
-                              new Timestamp(transaction.getDueDate().getTime()) : null);
-            stmt.setTimestamp(5, transaction.getReturnDate() != null ? 
-                              new Timestamp(transaction.getReturnDate().getTime()) : null);
+            stmt.setTimestamp(3, toTimestamp(transaction.getBorrowMillis()));
+            stmt.setTimestamp(4, toTimestamp(transaction.getDueMillis()));
+            stmt.setTimestamp(5, toTimestamp(transaction.getReturnMillis()));
             stmt.setString(6, transaction.getStatus());
             stmt.setString(7, transaction.getRemarks());
             
@@ -262,7 +265,7 @@ public class TransactionDAO {
             if (rs.next()) {
                 int id = rs.getInt(1);
                 transaction.setId(id);
-                logger.info("Added new transaction with ID: " + id);
+                logger.info("Added new transaction with ID: {}", id);
                 return id;
             } else {
                 throw new SQLException("Creating transaction failed, no ID obtained.");
@@ -290,21 +293,52 @@ public class TransactionDAO {
             
             stmt.setInt(1, transaction.getBookId());
             stmt.setInt(2, transaction.getMemberId());
-            stmt.setTimestamp(3, transaction.getBorrowDate() != null ? 
-                              new Timestamp(transaction.getBorrowDate().getTime()) : null);
-            stmt.setTimestamp(4, transaction.getDueDate() != null ? 
-                              new Timestamp(transaction.getDueDate().getTime()) : null);
-            stmt.setTimestamp(5, transaction.getReturnDate() != null ? 
-                              new Timestamp(transaction.getReturnDate().getTime()) : null);
+            stmt.setTimestamp(3, toTimestamp(transaction.getBorrowMillis()));
+            stmt.setTimestamp(4, toTimestamp(transaction.getDueMillis()));
+            stmt.setTimestamp(5, toTimestamp(transaction.getReturnMillis()));
             stmt.setString(6, transaction.getStatus());
             stmt.setString(7, transaction.getRemarks());
             stmt.setInt(8, transaction.getId());
             
             int affectedRows = stmt.executeUpdate();
-            logger.info("Updated transaction ID: " + transaction.getId() + 
-                       ", rows affected: " + affectedRows);
+            logger.info("Updated transaction ID: {}, rows affected: {}", 
+                       transaction.getId(), affectedRows);
         } catch (SQLException e) {
-            logger.error("Error updating transaction ID: " + transaction.getId(), e);
+            logger.error("Error updating transaction ID: {}", transaction.getId(), e);
+            throw e;
+        } finally {
+            closeResources(null, stmt);
+        }
+    }
+    
+
+    /**
+     * Stores a renewed due date and remark and counts the renewal, provided
+     * the loan is still out and has not used up its renewals meanwhile.
+     * 
+     * @param renewalsAllowed The number of renewals the loan may have in all
+     * @return false if the loan was returned or renewed up to the limit
+     */
+    public boolean renewTransaction(Transaction transaction, int renewalsAllowed) throws SQLException {
+        String sql = "UPDATE transactions SET due_date = ?, notes = ?, renewal_count = renewal_count + 1 " +
+                     "WHERE id = ? AND status = 'BORROWED' AND renewal_count < ?";
+        
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        
+        try {
+            conn = DatabaseConnection.getInstance().getConnection();
+            stmt = conn.prepareStatement(sql);
+            stmt.setTimestamp(1, toTimestamp(transaction.getDueMillis()));
+            stmt.setString(2, transaction.getRemarks());
+            stmt.setInt(3, transaction.getId());
+            stmt.setInt(4, renewalsAllowed);
+            
+            boolean renewed = stmt.executeUpdate() > 0;
+            logger.info("Renewed transaction ID: {}: {}", transaction.getId(), renewed);
+            return renewed;
+        } catch (SQLException e) {
+            logger.error("Error renewing transaction ID: {}", transaction.getId(), e);
             throw e;
         } finally {
             closeResources(null, stmt);
@@ -323,9 +357,9 @@ public class TransactionDAO {
             stmt.setInt(1, id);
             
             int affectedRows = stmt.executeUpdate();
-            logger.info("Deleted transaction ID: " + id + ", rows affected: " + affectedRows);
+            logger.info("Deleted transaction ID: {}, rows affected: {}", id, affectedRows);
         } catch (SQLException e) {
-            logger.error("Error deleting transaction ID: " + id, e);
+            logger.error("Error deleting transaction ID: {}", id, e);
             throw e;
         } finally {
             closeResources(null, stmt);
@@ -364,7 +398,7 @@ public class TransactionDAO {
                 transactions.add(transaction);
             }
             
-            logger.info("Retrieved transactions by date range: " + transactions.size() + " records");
+            logger.info("Retrieved transactions by date range: {} records", transactions.size());
             return transactions;
         } catch (SQLException e) {
             logger.error("Error retrieving transactions by date range", e);
@@ -383,21 +417,27 @@ public class TransactionDAO {
         
         Timestamp borrowDate = rs.getTimestamp("borrow_date");
         if (borrowDate != null) {
-            transaction.setBorrowDate(new Date(borrowDate.getTime()));
+            transaction.setBorrowMillis(borrowDate.getTime());
         }
         
         Timestamp dueDate = rs.getTimestamp("due_date");
-        if (dueDate != null) {
-            transaction.setDueDate(new Date(dueDate.getTime()));
-        }
+        transaction.setDueMillis(dueDate != null ? dueDate.getTime() : DateUtil.NO_DATE);
         
         Timestamp returnDate = rs.getTimestamp("return_date");
-        if (returnDate != null) {
-            transaction.setReturnDate(new Date(returnDate.getTime()));
-        }
+        transaction.setReturnMillis(returnDate != null ? returnDate.getTime() : DateUtil.NO_DATE);
         
         transaction.setStatus(rs.getString("status"));
+        if (transaction.getTransactionStatus() == TransactionStatus.UNKNOWN
+                && reportedUnknownStatuses.add(transaction.getStatus())) {
+            logger.warn("Unknown status '{}' first read on transaction ID: {}", transaction.getStatus(), transaction.getId());
+        }
         transaction.setRemarks(rs.getString("notes"));
+        try {
+            transaction.setRenewalCount(rs.getInt("renewal_count"));
+        } catch (SQLException e) {
+            // Renewal count column is added by SchemaUpgrade
+            transaction.setRenewalCount(0);
+        }
         transaction.setBookTitle(rs.getString("book_title"));
         transaction.setMemberName(rs.getString("member_name"));
         
@@ -405,6 +445,11 @@ public class TransactionDAO {
     }
     
 
+    private static Timestamp toTimestamp(long epochMillis) {
+        return epochMillis != DateUtil.NO_DATE ? new Timestamp(epochMillis) : null;
+    }
+    
+
     private void closeResources(ResultSet rs, Statement stmt) {
         try {
             if (rs != null) rs.close();
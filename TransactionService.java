@@ -1,8 +1,18 @@
 package com.library.app.service;
 
+import com.library.app.db.BookDAO;
+import com.library.app.db.MemberDAO;
 import com.library.app.db.TransactionDAO;
+import com.library.app.event.EventBus;
+import com.library.app.event.LoanClosed;
+import com.library.app.event.LoanOpened;
+import com.library.app.event.LoanUpdated;
+import com.library.app.model.Book;
+import com.library.app.model.Member;
 import com.library.app.model.Transaction;
+import com.library.app.model.TransactionStatus;
 import com.library.app.util.DateUtil;
+import com.library.app.util.LibraryClock;
 import com.library.app.util.Logger;
 
 import java.util.Date;
@@ -13,10 +23,14 @@ public class TransactionService {
     
     private static final Logger logger = new Logger(TransactionService.class.getName());
     private final TransactionDAO transactionDAO;
+    private final MemberDAO memberDAO;
+    private final BookDAO bookDAO;
     
 
     public TransactionService() {
         this.transactionDAO = new TransactionDAO();
+        this.memberDAO = new MemberDAO();
+        this.bookDAO = new BookDAO();
     }
     
 
@@ -93,19 +107,30 @@ public class TransactionService {
             
             // Set default values if not provided
             if (transaction.getBorrowDate() == null) {
-                transaction.setBorrowDate(new Date());
+                transaction.setBorrowDate(LibraryClock.get().now());
             }
             
             if (transaction.getDueDate() == null) {
-                // Default due date: 14 days from borrow date
-                transaction.setDueDate(DateUtil.calculateDueDate(transaction.getBorrowDate(), 14));
+                // Default due date: the loan period for this member and book, moved off closed days
+                Member member = memberDAO.getMemberById(transaction.getMemberId());
+                if (member == null) {
+                    throw new IllegalArgumentException("Member does not exist");
+                }
+                Book book = bookDAO.getBookById(transaction.getBookId());
+                if (book == null) {
+                    throw new IllegalArgumentException("Book does not exist");
+                }
+                int loanDays = CirculationPolicy.get().getLoanDays(member, book);
+                transaction.setDueDate(LibraryCalendar.getInstance().calculateDueDate(transaction.getBorrowDate(), loanDays));
             }
             
-            if (transaction.getStatus() == null || transaction.getStatus().trim().isEmpty()) {
-                transaction.setStatus("BORROWED");
+            if (transaction.getTransactionStatus() == null) {
+                transaction.setTransactionStatus(TransactionStatus.BORROWED);
             }
             
-            return transactionDAO.addTransaction(transaction);
+            int id = transactionDAO.addTransaction(transaction);
+            EventBus.get().publish(new LoanOpened(id, transaction.getBookId(), transaction.getMemberId()));
+            return id;
         } catch (Exception e) {
             logger.error("Error adding transaction for book ID: " + transaction.getBookId() + 
                          ", member ID: " + transaction.getMemberId(), e);
@@ -130,6 +155,11 @@ public class TransactionService {
             }
             
             transactionDAO.updateTransaction(transaction);
+            if (transaction.getTransactionStatus() == TransactionStatus.RETURNED) {
+                EventBus.get().publish(new LoanClosed(transaction.getId(), transaction.getBookId(), transaction.getMemberId()));
+            } else {
+                EventBus.get().publish(new LoanUpdated(transaction.getId(), transaction.getBookId(), transaction.getMemberId()));
+            }
         } catch (Exception e) {
             logger.error("Error updating transaction ID: " + transaction.getId(), e);
             throw new Exception("Error updating transaction: " + e.getMessage());
@@ -146,6 +176,7 @@ public class TransactionService {
             }
             
             transactionDAO.deleteTransaction(id);
+            EventBus.get().publish(new LoanClosed(id, transaction.getBookId(), transaction.getMemberId()));
         } catch (Exception e) {
             logger.error("Error deleting transaction with ID: " + id, e);
             throw new Exception("Error deleting transaction: " + e.getMessage());
@@ -160,14 +191,15 @@ public class TransactionService {
                 throw new IllegalArgumentException("Transaction does not exist");
             }
             
-            if ("RETURNED".equals(transaction.getStatus())) {
+            if (transaction.getTransactionStatus() == TransactionStatus.RETURNED) {
                 throw new IllegalStateException("Book has already been returned");
             }
             
             transaction.setReturnDate(returnDate);
-            transaction.setStatus("RETURNED");
+            transaction.setTransactionStatus(TransactionStatus.RETURNED);
             
             transactionDAO.updateTransaction(transaction);
+            EventBus.get().publish(new LoanClosed(transactionId, transaction.getBookId(), transaction.getMemberId()));
         } catch (Exception e) {
             logger.error("Error returning book for transaction ID: " + transactionId, e);
             throw new Exception("Error returning book: " + e.getMessage());
@@ -175,6 +207,14 @@ public class TransactionService {
     }
     
 
+    /**
+     * Renews a loan by the renewal period from the settings.
+     */
+    public void renewBook(int transactionId) throws Exception {
+        renewBook(transactionId, SettingsService.getInstance().getRenewalDays());
+    }
+    
+
     public void renewBook(int transactionId, int renewalDays) throws Exception {
         try {
             Transaction transaction = transactionDAO.getTransactionById(transactionId);
@@ -182,7 +222,7 @@ public class TransactionService {
                 throw new IllegalArgumentException("Transaction does not exist");
             }
             
-            if (!"BORROWED".equals(transaction.getStatus())) {
+            if (transaction.getTransactionStatus() != TransactionStatus.BORROWED) {
                 throw new IllegalStateException("Only borrowed books can be renewed");
             }
             
@@ -190,19 +230,37 @@ public class TransactionService {
                 throw new IllegalStateException("Overdue books cannot be renewed");
             }
             
+            Member member = memberDAO.getMemberById(transaction.getMemberId());
+            if (member == null) {
+                throw new IllegalStateException("The member of this loan no longer exists");
+            }
+            Book book = bookDAO.getBookById(transaction.getBookId());
+            if (book == null) {
+                throw new IllegalStateException("The book of this loan no longer exists");
+            }
+            int renewalsAllowed = CirculationPolicy.get().getRenewalsAllowed(member, book);
+            if (transaction.getRenewalCount() >= renewalsAllowed) {
+                throw new IllegalStateException("This book cannot be renewed again");
+            }
+            
             // Calculate new due date
-            Date newDueDate = DateUtil.calculateDueDate(transaction.getDueDate(), renewalDays);
+            Date newDueDate = LibraryCalendar.getInstance().calculateDueDate(transaction.getDueDate(), renewalDays);
             transaction.setDueDate(newDueDate);
             
             // Add renewal remark
-            String remark = "Renewed for " + renewalDays + " days on " + DateUtil.formatDate(new Date());
+            String remark = "Renewed for " + renewalDays + " days on " + DateUtil.formatDate(LibraryClock.get().now());
             if (transaction.getRemarks() != null && !transaction.getRemarks().isEmpty()) {
                 transaction.setRemarks(transaction.getRemarks() + "; " + remark);
             } else {
                 transaction.setRemarks(remark);
             }
             
-            transactionDAO.updateTransaction(transaction);
+            // Checked again in the update, so two desks cannot both take the last renewal
+            if (!transactionDAO.renewTransaction(transaction, renewalsAllowed)) {
+                throw new IllegalStateException("This book cannot be renewed again");
+            }
+            transaction.setRenewalCount(transaction.getRenewalCount() + 1);
+            EventBus.get().publish(new LoanUpdated(transactionId, transaction.getBookId(), transaction.getMemberId()));
         } catch (Exception e) {
             logger.error("Error renewing book for transaction ID: " + transactionId, e);
             throw new Exception("Error renewing book: " + e.getMessage());
@@ -0,0 +1,40 @@
+package com.library.app.model;
+
+
+/**
+ * Status of a borrowing transaction.
+ */
+public enum TransactionStatus {
+    BORROWED,
+    RETURNED,
+    OVERDUE,
+    LOST,
+    RENEWED,
+    /** A stored value that matches none of the other constants; the model keeps the value as stored. */
+    UNKNOWN;
+    
+    private static final TransactionStatus[] VALUES = values();
+    
+
+    /**
+     * Parses a stored or entered value, ignoring case and surrounding spaces.
+     * 
+     * @param value The value to parse
+     * @return The matching constant, null for an empty value, or UNKNOWN for an unknown one
+     */
+    public static TransactionStatus fromString(String value) {
+        if (value == null) {
+            return null;
+        }
+        String key = value.trim();
+        if (key.isEmpty()) {
+            return null;
+        }
+        for (TransactionStatus constant : VALUES) {
+            if (constant.name().equalsIgnoreCase(key)) {
+                return constant;
+            }
+        }
+        return UNKNOWN;
+    }
+}
@@ -0,0 +1,52 @@
+@echo off
+rem Launches the Library Management System.
+rem
+rem   library            start the client, using the class-data archive if there is one
+rem   library train      write the class-data archive with an unattended training run
+rem   library compare    time default and archived training runs, RUNS of each (default 3)
+rem
+rem See library.sh for how the archive is made and when to train again.
+rem
+rem Environment: JAVA_HOME, JAVA_OPTS, LIBRARY_CLASSPATH (default library.jar;lib\*),
+rem LIBRARY_CDS_ARCHIVE (default library.jsa), RUNS.
+
+setlocal
+set MAIN=com.library.app.LibraryManagementSystem
+if "%LIBRARY_CLASSPATH%"=="" (set "CP=library.jar;lib\*") else (set "CP=%LIBRARY_CLASSPATH%")
+if "%LIBRARY_CDS_ARCHIVE%"=="" (set ARCHIVE=library.jsa) else (set "ARCHIVE=%LIBRARY_CDS_ARCHIVE%")
+if "%RUNS%"=="" set RUNS=3
+if "%JAVA_HOME%"=="" (set JAVA=java) else (set "JAVA=%JAVA_HOME%\bin\java")
+
+if "%~1"=="train" goto train
+if "%~1"=="compare" goto compare
+if not "%~1"=="" goto usage
+
+if exist "%ARCHIVE%" (
+    "%JAVA%" %JAVA_OPTS% -XX:SharedArchiveFile="%ARCHIVE%" -cp "%CP%" %MAIN%
+) else (
+    "%JAVA%" %JAVA_OPTS% -cp "%CP%" %MAIN%
+)
+goto :eof
+
+:train
+if exist "%ARCHIVE%" del "%ARCHIVE%"
+"%JAVA%" %JAVA_OPTS% -XX:ArchiveClassesAtExit="%ARCHIVE%" -cp "%CP%" %MAIN% --train || exit /b 1
+echo Wrote %ARCHIVE%
+goto :eof
+
+:compare
+if not exist "%ARCHIVE%" (
+    echo No %ARCHIVE% yet; run "%~nx0 train" first 1>&2
+    exit /b 1
+)
+for /l %%i in (1,1,%RUNS%) do (
+    echo == Default run %%i ^(JDK archive only^)
+    "%JAVA%" %JAVA_OPTS% -cp "%CP%" %MAIN% --train 2>&1 | findstr /c:"Startup report" /c:"since JVM start"
+    echo == Warm run %%i ^(%ARCHIVE%^)
+    "%JAVA%" %JAVA_OPTS% -XX:SharedArchiveFile="%ARCHIVE%" -cp "%CP%" %MAIN% --train 2>&1 | findstr /c:"Startup report" /c:"since JVM start"
+)
+goto :eof
+
+:usage
+echo Usage: %~nx0 [train^|compare] 1>&2
+exit /b 2
@@ -0,0 +1,68 @@
+#!/bin/sh
+# Launches the Library Management System.
+#
+#   library.sh            start the client, using the class-data archive if there is one
+#   library.sh train      write the class-data archive with an unattended training run
+#   library.sh compare    time default and archived training runs, RUNS of each (default 3)
+#
+# The archive is a dynamic AppCDS archive (JDK 13 or later) of the classes the
+# training run loaded. The JVM only archives classes loaded from jar files, and
+# uses the archive only with the class path it was written with, so train again
+# after changing LIBRARY_CLASSPATH or upgrading the application or the JDK. A
+# stale or unusable archive is ignored with a warning, never fatal.
+#
+# Environment: JAVA_HOME, JAVA_OPTS, LIBRARY_CLASSPATH (default library.jar:lib/*),
+# LIBRARY_CDS_ARCHIVE (default library.jsa), RUNS.
+
+MAIN=com.library.app.LibraryManagementSystem
+CLASSPATH=${LIBRARY_CLASSPATH:-library.jar:lib/*}
+ARCHIVE=${LIBRARY_CDS_ARCHIVE:-library.jsa}
+RUNS=${RUNS:-3}
+
+if [ -n "$JAVA_HOME" ]; then
+    JAVA="$JAVA_HOME/bin/java"
+else
+    JAVA=java
+fi
+
+run() {
+    "$JAVA" $JAVA_OPTS "$@" -cp "$CLASSPATH" "$MAIN"
+}
+
+# The startup report lines of a training run
+timings() {
+    grep -E "Startup report|since JVM start"
+}
+
+case "$1" in
+    train)
+        rm -f "$ARCHIVE"
+        run -XX:ArchiveClassesAtExit="$ARCHIVE" --train || exit 1
+        echo "Wrote $ARCHIVE"
+        ;;
+    compare)
+        if [ ! -f "$ARCHIVE" ]; then
+            echo "No $ARCHIVE yet; run '$0 train' first" >&2
+            exit 1
+        fi
+        i=1
+        while [ "$i" -le "$RUNS" ]; do
+            echo "== Default run $i (JDK archive only)"
+            run --train 2>&1 | timings
+            echo "== Warm run $i ($ARCHIVE)"
+            run -XX:SharedArchiveFile="$ARCHIVE" --train 2>&1 | timings
+            i=$((i + 1))
+        done
+        ;;
+    "")
+        if [ -f "$ARCHIVE" ]; then
+            run -XX:SharedArchiveFile="$ARCHIVE"
+        else
+            run
+        fi
+        ;;
+    *)
+        echo "Usage: $0 [train|compare]" >&2
+        exit 2
+        ;;
+esac